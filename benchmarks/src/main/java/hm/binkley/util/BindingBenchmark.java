@@ -0,0 +1,170 @@
+/*
+ * This is free and unencumbered software released into the public domain.
+ *
+ * Anyone is free to copy, modify, publish, use, compile, sell, or
+ * distribute this software, either in source code form or as a compiled
+ * binary, for any purpose, commercial or non-commercial, and by any
+ * means.
+ *
+ * In jurisdictions that recognize copyright laws, the author or authors
+ * of this software dedicate any and all copyright interest in the
+ * software to the public domain. We make this dedication for the benefit
+ * of the public at large and to the detriment of our heirs and
+ * successors. We intend this dedication to be an overt act of
+ * relinquishment in perpetuity of all present and future rights to this
+ * software under copyright law.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY CLAIM, DAMAGES OR
+ * OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ * ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ *
+ * For more information, please refer to <http://unlicense.org/>.
+ */
+
+package hm.binkley.util;
+
+import com.google.inject.AbstractModule;
+import com.google.inject.Injector;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.springframework.beans.factory.support.DefaultListableBeanFactory;
+
+import java.io.IOException;
+import java.net.URLClassLoader;
+
+import static com.google.inject.Guice.createInjector;
+import static hm.binkley.util.ServiceBinder.with;
+import static java.util.concurrent.TimeUnit.MICROSECONDS;
+
+/**
+ * {@code BindingBenchmark} measures binding over a synthetic classpath of <var>jars</var> jars
+ * with <var>providers</var> providers each.  Cold benchmarks use a new class loader for each
+ * invocation, so they include discovery and class loading; registration benchmarks use a warm
+ * class loader, so they measure only the injector.
+ *
+ * @author <a href="mailto:binkley@alumni.rice.edu">B. K. Oxley (binkley)</a>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(MICROSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@Fork(1)
+public class BindingBenchmark {
+    @Param({"1", "10", "100"})
+    public int jars;
+    @Param({"1", "10"})
+    public int providers;
+
+    private SyntheticClasspath classpath;
+    private ClassLoader warm;
+    private URLClassLoader cold;
+
+    @Setup
+    public void setUp()
+            throws IOException {
+        classpath = new SyntheticClasspath(jars, providers);
+        warm = classpath.loader();
+        spring(warm);
+    }
+
+    @TearDown
+    public void tearDown() {
+        ServiceCache.invalidate(warm);
+        classpath.close();
+    }
+
+    @Setup(Level.Invocation)
+    public void setUpCold() {
+        cold = classpath.loader();
+    }
+
+    @TearDown(Level.Invocation)
+    public void tearDownCold()
+            throws IOException {
+        ServiceCache.invalidate(cold);
+        cold.close();
+    }
+
+    /** Binds with Guice from discovery through injector creation. */
+    @Benchmark
+    public Injector guice() {
+        return guice(cold);
+    }
+
+    /** Binds with Spring Framework from discovery through bean registration. */
+    @Benchmark
+    public Object spring() {
+        return spring(cold);
+    }
+
+    /** Binds with the built-in injector from discovery through registration. */
+    @Benchmark
+    public ServiceInjector injector() {
+        return injector(cold);
+    }
+
+    /** Loads each implementation class with a new class loader. */
+    @Benchmark
+    public void loadClass(final Blackhole blackhole)
+            throws ClassNotFoundException {
+        for (final String implementation : classpath.implementations)
+            blackhole.consume(cold.loadClass(implementation));
+    }
+
+    /** Binds discovered and loaded implementations with Guice, including injector creation. */
+    @Benchmark
+    public Injector guiceRegistration() {
+        return guice(warm);
+    }
+
+    /** Registers discovered and loaded implementations with Spring Framework. */
+    @Benchmark
+    public Object springRegistration() {
+        return spring(warm);
+    }
+
+    /** Registers discovered and loaded implementations with the built-in injector. */
+    @Benchmark
+    public ServiceInjector injectorRegistration() {
+        return injector(warm);
+    }
+
+    private static Injector guice(final ClassLoader loader) {
+        return createInjector(new AbstractModule() {
+            @Override
+            protected void configure() {
+                with(binder()).bind(Plugin.class, loader);
+            }
+        });
+    }
+
+    private static DefaultListableBeanFactory spring(final ClassLoader loader) {
+        final DefaultListableBeanFactory beanFactory = new DefaultListableBeanFactory();
+        with(beanFactory).bind(Plugin.class, loader);
+        return beanFactory;
+    }
+
+    private static ServiceInjector injector(final ClassLoader loader) {
+        final ServiceInjector injector = new ServiceInjector();
+        with(injector).bind(Plugin.class, loader);
+        injector.start();
+        return injector;
+    }
+}
@@ -0,0 +1,116 @@
+/*
+ * This is free and unencumbered software released into the public domain.
+ *
+ * Anyone is free to copy, modify, publish, use, compile, sell, or
+ * distribute this software, either in source code form or as a compiled
+ * binary, for any purpose, commercial or non-commercial, and by any
+ * means.
+ *
+ * In jurisdictions that recognize copyright laws, the author or authors
+ * of this software dedicate any and all copyright interest in the
+ * software to the public domain. We make this dedication for the benefit
+ * of the public at large and to the detriment of our heirs and
+ * successors. We intend this dedication to be an overt act of
+ * relinquishment in perpetuity of all present and future rights to this
+ * software under copyright law.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY CLAIM, DAMAGES OR
+ * OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ * ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ *
+ * For more information, please refer to <http://unlicense.org/>.
+ */
+
+package hm.binkley.util;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.IOException;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.List;
+
+import static java.util.concurrent.TimeUnit.MICROSECONDS;
+
+/**
+ * {@code DiscoveryBenchmark} measures the discovery phases of binding over a synthetic classpath
+ * of <var>jars</var> jars with <var>providers</var> providers each: finding configurations for a
+ * service, reading implementation names from them, scanning the whole classpath, and hitting the
+ * process-wide cache.
+ *
+ * @author <a href="mailto:binkley@alumni.rice.edu">B. K. Oxley (binkley)</a>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(MICROSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@Fork(1)
+public class DiscoveryBenchmark {
+    @Param({"1", "10", "100"})
+    public int jars;
+    @Param({"1", "10"})
+    public int providers;
+
+    private SyntheticClasspath classpath;
+    private ClassLoader loader;
+    private final List<URL> configs = new ArrayList<URL>();
+
+    @Setup
+    public void setUp()
+            throws IOException {
+        classpath = new SyntheticClasspath(jars, providers);
+        loader = classpath.loader();
+        for (final ServiceConfiguration configuration : ServiceCache
+                .configurations(Plugin.class, loader))
+            configs.add(configuration.url);
+    }
+
+    @TearDown
+    public void tearDown() {
+        ServiceCache.invalidate(loader);
+        classpath.close();
+    }
+
+    /** Finds and reads the configurations of one service, uncached. */
+    @Benchmark
+    public Object configs() {
+        return ServiceDiscovery.configurations(Plugin.class, loader,
+                ServiceDiscovery.indices(Plugin.class, loader));
+    }
+
+    /** Reads the implementation names of each configuration already found. */
+    @Benchmark
+    public void implementations(final Blackhole blackhole) {
+        for (final URL config : configs)
+            blackhole.consume(ConfigurationReader.read(Plugin.class, config));
+    }
+
+    /** Scans the classpath for configurations of all services, uncached. */
+    @Benchmark
+    public Object scan() {
+        return ServiceDiscovery.scan(loader);
+    }
+
+    /** Gets the configurations of one service from the process-wide cache. */
+    @Benchmark
+    public Object cached() {
+        return ServiceCache.configurations(Plugin.class, loader);
+    }
+}
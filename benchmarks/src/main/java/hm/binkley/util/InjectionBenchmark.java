@@ -0,0 +1,129 @@
+/*
+ * This is free and unencumbered software released into the public domain.
+ *
+ * Anyone is free to copy, modify, publish, use, compile, sell, or
+ * distribute this software, either in source code form or as a compiled
+ * binary, for any purpose, commercial or non-commercial, and by any
+ * means.
+ *
+ * In jurisdictions that recognize copyright laws, the author or authors
+ * of this software dedicate any and all copyright interest in the
+ * software to the public domain. We make this dedication for the benefit
+ * of the public at large and to the detriment of our heirs and
+ * successors. We intend this dedication to be an overt act of
+ * relinquishment in perpetuity of all present and future rights to this
+ * software under copyright law.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY CLAIM, DAMAGES OR
+ * OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ * ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ *
+ * For more information, please refer to <http://unlicense.org/>.
+ */
+
+package hm.binkley.util;
+
+import com.google.inject.AbstractModule;
+import com.google.inject.Injector;
+import com.google.inject.Key;
+import com.google.inject.TypeLiteral;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.beans.factory.support.DefaultListableBeanFactory;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static com.google.inject.Guice.createInjector;
+import static hm.binkley.util.ServiceBinder.with;
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+
+/**
+ * {@code InjectionBenchmark} measures injecting unscoped services once bound, constructing a new
+ * instance of each of <var>providers</var> providers for every injection, with and without
+ * generated <var>factories</var>.
+ *
+ * @author <a href="mailto:binkley@alumni.rice.edu">B. K. Oxley (binkley)</a>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(NANOSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@Fork(1)
+public class InjectionBenchmark {
+    private static final Key<Set<Plugin>> PLUGINS = Key.get(new TypeLiteral<Set<Plugin>>() {});
+
+    @Param({"1", "10"})
+    public int providers;
+    @Param({"false", "true"})
+    public boolean factories;
+
+    private SyntheticClasspath classpath;
+    private ClassLoader loader;
+    private Injector injector;
+    private DefaultListableBeanFactory beanFactory;
+    private ServiceInjector serviceInjector;
+
+    @Setup
+    public void setUp()
+            throws IOException {
+        classpath = new SyntheticClasspath(1, providers);
+        loader = classpath.loader();
+        injector = createInjector(new AbstractModule() {
+            @Override
+            protected void configure() {
+                options(with(binder())).bind(Plugin.class, loader);
+            }
+        });
+        beanFactory = new DefaultListableBeanFactory();
+        options(with(beanFactory)).bind(Plugin.class, loader);
+        serviceInjector = new ServiceInjector();
+        options(with(serviceInjector)).bind(Plugin.class, loader);
+        serviceInjector.start();
+    }
+
+    @TearDown
+    public void tearDown() {
+        ServiceCache.invalidate(loader);
+        classpath.close();
+    }
+
+    /** Injects the set of services with Guice. */
+    @Benchmark
+    public Set<Plugin> guice() {
+        return injector.getInstance(PLUGINS);
+    }
+
+    /** Gets the beans of the service type with Spring Framework. */
+    @Benchmark
+    public Map<String, Plugin> spring() {
+        return beanFactory.getBeansOfType(Plugin.class);
+    }
+
+    /** Gets the instances of the service type with the built-in injector. */
+    @Benchmark
+    public List<Plugin> injector() {
+        return serviceInjector.getInstances(Plugin.class);
+    }
+
+    private <E extends Exception> ServiceBinder<E> options(final ServiceBinder<E> binder) {
+        return (factories ? binder.factories() : binder).unscoped();
+    }
+}
@@ -0,0 +1,136 @@
+/*
+ * This is free and unencumbered software released into the public domain.
+ *
+ * Anyone is free to copy, modify, publish, use, compile, sell, or
+ * distribute this software, either in source code form or as a compiled
+ * binary, for any purpose, commercial or non-commercial, and by any
+ * means.
+ *
+ * In jurisdictions that recognize copyright laws, the author or authors
+ * of this software dedicate any and all copyright interest in the
+ * software to the public domain. We make this dedication for the benefit
+ * of the public at large and to the detriment of our heirs and
+ * successors. We intend this dedication to be an overt act of
+ * relinquishment in perpetuity of all present and future rights to this
+ * software under copyright law.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY CLAIM, DAMAGES OR
+ * OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ * ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ *
+ * For more information, please refer to <http://unlicense.org/>.
+ */
+
+package hm.binkley.util;
+
+import org.springframework.asm.ClassWriter;
+import org.springframework.asm.MethodVisitor;
+import org.springframework.asm.Type;
+
+import javax.annotation.Nonnull;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.jar.JarEntry;
+import java.util.jar.JarOutputStream;
+
+import static java.nio.file.Files.createTempDirectory;
+import static org.springframework.asm.Opcodes.ACC_FINAL;
+import static org.springframework.asm.Opcodes.ACC_PUBLIC;
+import static org.springframework.asm.Opcodes.ACC_SUPER;
+import static org.springframework.asm.Opcodes.ALOAD;
+import static org.springframework.asm.Opcodes.INVOKESPECIAL;
+import static org.springframework.asm.Opcodes.RETURN;
+import static org.springframework.asm.Opcodes.V1_6;
+
+/**
+ * {@code SyntheticClasspath} generates jars of {@link Plugin} providers in a temporary directory:
+ * each jar holds its own provider classes and a {@code META-INF/services} configuration listing
+ * them.  Close to delete the jars.
+ *
+ * @author <a href="mailto:binkley@alumni.rice.edu">B. K. Oxley (binkley)</a>
+ */
+final class SyntheticClasspath
+        implements Closeable {
+    private final File root;
+    private final URL[] jars;
+    final List<String> implementations = new ArrayList<String>();
+
+    /**
+     * Generates <var>jars</var> jars, each with <var>providers</var> providers.
+     *
+     * @param jars the count of jars
+     * @param providers the count of providers in each jar
+     *
+     * @throws IOException if the jars cannot be written
+     */
+    SyntheticClasspath(final int jars, final int providers)
+            throws IOException {
+        root = createTempDirectory("service-binder-").toFile();
+        this.jars = new URL[jars];
+        for (int j = 0; j < jars; ++j) {
+            final File jar = new File(root, "plugins-" + j + ".jar");
+            final StringBuilder config = new StringBuilder();
+            final JarOutputStream out = new JarOutputStream(new FileOutputStream(jar));
+            try {
+                for (int p = 0; p < providers; ++p) {
+                    final String name = Plugin.class.getPackage().getName() + ".generated.Plugin"
+                            + j + "x" + p;
+                    out.putNextEntry(new JarEntry(name.replace('.', '/') + ".class"));
+                    out.write(provider(name));
+                    config.append(name).append('\n');
+                    implementations.add(name);
+                }
+                out.putNextEntry(new JarEntry("META-INF/services/" + Plugin.class.getName()));
+                out.write(config.toString().getBytes("UTF-8"));
+            } finally {
+                out.close();
+            }
+            this.jars[j] = jar.toURI().toURL();
+        }
+    }
+
+    /**
+     * Creates a new class loader over the jars, so nothing is loaded or cached for it yet.
+     *
+     * @return the new class loader, never missing
+     */
+    @Nonnull
+    URLClassLoader loader() {
+        return new URLClassLoader(jars, Plugin.class.getClassLoader());
+    }
+
+    @Override
+    public void close() {
+        final File[] files = root.listFiles();
+        if (null != files)
+            for (final File file : files)
+                file.delete();
+        root.delete();
+    }
+
+    /** Generates a public final class implementing {@link Plugin} with a default constructor. */
+    private static byte[] provider(final String name) {
+        final ClassWriter writer = new ClassWriter(ClassWriter.COMPUTE_MAXS);
+        writer.visit(V1_6, ACC_PUBLIC | ACC_FINAL | ACC_SUPER, name.replace('.', '/'), null,
+                "java/lang/Object", new String[]{Type.getInternalName(Plugin.class)});
+        final MethodVisitor init = writer.visitMethod(ACC_PUBLIC, "<init>", "()V", null, null);
+        init.visitCode();
+        init.visitVarInsn(ALOAD, 0);
+        init.visitMethodInsn(INVOKESPECIAL, "java/lang/Object", "<init>", "()V");
+        init.visitInsn(RETURN);
+        init.visitMaxs(0, 0);
+        init.visitEnd();
+        writer.visitEnd();
+        return writer.toByteArray();
+    }
+}
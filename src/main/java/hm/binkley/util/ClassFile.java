@@ -0,0 +1,248 @@
+/*
+ * This is free and unencumbered software released into the public domain.
+ *
+ * Anyone is free to copy, modify, publish, use, compile, sell, or
+ * distribute this software, either in source code form or as a compiled
+ * binary, for any purpose, commercial or non-commercial, and by any
+ * means.
+ *
+ * In jurisdictions that recognize copyright laws, the author or authors
+ * of this software dedicate any and all copyright interest in the
+ * software to the public domain. We make this dedication for the benefit
+ * of the public at large and to the detriment of our heirs and
+ * successors. We intend this dedication to be an overt act of
+ * relinquishment in perpetuity of all present and future rights to this
+ * software under copyright law.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY CLAIM, DAMAGES OR
+ * OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ * ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ *
+ * For more information, please refer to <http://unlicense.org/>.
+ */
+
+package hm.binkley.util;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static java.util.Collections.unmodifiableList;
+import static java.util.Collections.unmodifiableMap;
+
+/**
+ * {@code ClassFile} is what filters may check of a class without loading it: access flags, super
+ * class, interfaces, and class annotations with their element values, parsed from the class file
+ * bytes.  Fields and methods are skipped.  Annotation element values are boxed primitives,
+ * strings, the names of enum constants and classes, or lists of these; nested annotations are
+ * {@code null}.
+ *
+ * @author <a href="mailto:binkley@alumni.rice.edu">B. K. Oxley (binkley)</a>
+ */
+final class ClassFile {
+    private static final int MAGIC = 0xCAFEBABE;
+
+    final int access;
+    final String name;
+    @Nullable
+    final String superName;
+    final List<String> interfaces;
+    /** Annotation class names, both runtime visible and invisible, to element values. */
+    final Map<String, Map<String, Object>> annotations;
+
+    private ClassFile(final int access, final String name, @Nullable final String superName,
+            final List<String> interfaces, final Map<String, Map<String, Object>> annotations) {
+        this.access = access;
+        this.name = name;
+        this.superName = superName;
+        this.interfaces = unmodifiableList(interfaces);
+        this.annotations = unmodifiableMap(annotations);
+    }
+
+    /**
+     * Parses the class file in <var>bytes</var>.
+     *
+     * @param bytes the class file, never missing
+     *
+     * @return the class file, never missing
+     *
+     * @throws IOException if not a well-formed class file
+     */
+    @Nonnull
+    static ClassFile parse(@Nonnull final byte[] bytes)
+            throws IOException {
+        final DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes));
+        if (MAGIC != in.readInt())
+            throw new IOException("Not a class file");
+        in.readUnsignedShort(); // minor
+        in.readUnsignedShort(); // major
+        final Object[] pool = pool(in);
+        final int access = in.readUnsignedShort();
+        final String name = className(pool, in.readUnsignedShort());
+        final int superIndex = in.readUnsignedShort();
+        final String superName = 0 == superIndex ? null : className(pool, superIndex);
+        final int n = in.readUnsignedShort();
+        final List<String> interfaces = new ArrayList<String>(n);
+        for (int i = 0; i < n; ++i)
+            interfaces.add(className(pool, in.readUnsignedShort()));
+        skipMembers(in);
+        skipMembers(in);
+        final Map<String, Map<String, Object>> annotations
+                = new LinkedHashMap<String, Map<String, Object>>();
+        for (int i = 0, attributes = in.readUnsignedShort(); i < attributes; ++i) {
+            final String attribute = (String) pool[in.readUnsignedShort()];
+            final int length = in.readInt();
+            if ("RuntimeVisibleAnnotations".equals(attribute) || "RuntimeInvisibleAnnotations"
+                    .equals(attribute))
+                for (int j = 0, count = in.readUnsignedShort(); j < count; ++j)
+                    annotation(pool, in, annotations);
+            else
+                skip(in, length);
+        }
+        return new ClassFile(access, name, superName, interfaces, annotations);
+    }
+
+    /** Reads the constant pool, keeping only the values annotations and names need. */
+    private static Object[] pool(final DataInputStream in)
+            throws IOException {
+        final Object[] pool = new Object[in.readUnsignedShort()];
+        for (int i = 1; i < pool.length; ++i)
+            switch (in.readUnsignedByte()) {
+            case 1: // Utf8
+                pool[i] = in.readUTF();
+                break;
+            case 3: // Integer
+                pool[i] = in.readInt();
+                break;
+            case 4: // Float
+                pool[i] = in.readFloat();
+                break;
+            case 5: // Long
+                pool[i++] = in.readLong();
+                break;
+            case 6: // Double
+                pool[i++] = in.readDouble();
+                break;
+            case 7: // Class
+                pool[i] = new ClassRef(in.readUnsignedShort());
+                break;
+            case 8: // String
+            case 16: // MethodType
+            case 19: // Module
+            case 20: // Package
+                in.readUnsignedShort();
+                break;
+            case 9: // Fieldref
+            case 10: // Methodref
+            case 11: // InterfaceMethodref
+            case 12: // NameAndType
+            case 17: // Dynamic
+            case 18: // InvokeDynamic
+                in.readInt();
+                break;
+            case 15: // MethodHandle
+                in.readUnsignedByte();
+                in.readUnsignedShort();
+                break;
+            default:
+                throw new IOException("Bad constant pool tag at " + i);
+            }
+        return pool;
+    }
+
+    private static void skipMembers(final DataInputStream in)
+            throws IOException {
+        for (int i = 0, members = in.readUnsignedShort(); i < members; ++i) {
+            skip(in, 6); // access, name, descriptor
+            for (int j = 0, attributes = in.readUnsignedShort(); j < attributes; ++j) {
+                in.readUnsignedShort();
+                skip(in, in.readInt());
+            }
+        }
+    }
+
+    private static void annotation(final Object[] pool, final DataInputStream in,
+            @Nullable final Map<String, Map<String, Object>> annotations)
+            throws IOException {
+        final String type = descriptor((String) pool[in.readUnsignedShort()]);
+        final Map<String, Object> values = new LinkedHashMap<String, Object>();
+        for (int i = 0, pairs = in.readUnsignedShort(); i < pairs; ++i) {
+            final String element = (String) pool[in.readUnsignedShort()];
+            values.put(element, value(pool, in));
+        }
+        if (null != annotations)
+            annotations.put(type, unmodifiableMap(values));
+    }
+
+    private static Object value(final Object[] pool, final DataInputStream in)
+            throws IOException {
+        final int tag = in.readUnsignedByte();
+        switch (tag) {
+        case 'B':
+            return ((Integer) pool[in.readUnsignedShort()]).byteValue();
+        case 'C':
+            return (char) ((Integer) pool[in.readUnsignedShort()]).intValue();
+        case 'S':
+            return ((Integer) pool[in.readUnsignedShort()]).shortValue();
+        case 'Z':
+            return 0 != (Integer) pool[in.readUnsignedShort()];
+        case 'I':
+        case 'J':
+        case 'F':
+        case 'D':
+        case 's':
+            return pool[in.readUnsignedShort()];
+        case 'e':
+            in.readUnsignedShort(); // enum type
+            return pool[in.readUnsignedShort()];
+        case 'c':
+            final String descriptor = (String) pool[in.readUnsignedShort()];
+            return 'L' == descriptor.charAt(0) ? descriptor(descriptor) : descriptor;
+        case '@':
+            annotation(pool, in, null);
+            return null;
+        case '[':
+            final int n = in.readUnsignedShort();
+            final List<Object> values = new ArrayList<Object>(n);
+            for (int i = 0; i < n; ++i)
+                values.add(value(pool, in));
+            return Collections.unmodifiableList(values);
+        default:
+            throw new IOException("Bad annotation element tag: " + (char) tag);
+        }
+    }
+
+    private static String className(final Object[] pool, final int index) {
+        return ((String) pool[((ClassRef) pool[index]).name]).replace('/', '.');
+    }
+
+    /** Converts a descriptor such as {@code Lcom/example/Foo;} to a class name. */
+    private static String descriptor(final String descriptor) {
+        return descriptor.substring(1, descriptor.length() - 1).replace('/', '.');
+    }
+
+    private static void skip(final DataInputStream in, final int n)
+            throws IOException {
+        if (n != in.skipBytes(n))
+            throw new IOException("Truncated class file");
+    }
+
+    private static final class ClassRef {
+        private final int name;
+
+        private ClassRef(final int name) {
+            this.name = name;
+        }
+    }
+}
@@ -0,0 +1,284 @@
+/*
+ * This is free and unencumbered software released into the public domain.
+ *
+ * Anyone is free to copy, modify, publish, use, compile, sell, or
+ * distribute this software, either in source code form or as a compiled
+ * binary, for any purpose, commercial or non-commercial, and by any
+ * means.
+ *
+ * In jurisdictions that recognize copyright laws, the author or authors
+ * of this software dedicate any and all copyright interest in the
+ * software to the public domain. We make this dedication for the benefit
+ * of the public at large and to the detriment of our heirs and
+ * successors. We intend this dedication to be an overt act of
+ * relinquishment in perpetuity of all present and future rights to this
+ * software under copyright law.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY CLAIM, DAMAGES OR
+ * OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ * ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ *
+ * For more information, please refer to <http://unlicense.org/>.
+ */
+
+package hm.binkley.util;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+import static hm.binkley.util.ServiceBinder.fail;
+import static hm.binkley.util.ServiceListeners.Phase.READ;
+import static java.lang.Character.charCount;
+import static java.lang.Character.isWhitespace;
+
+/**
+ * {@code ConfigurationReader} reads the implementation names listed in {@code META-INF/services}
+ * files. <p/> Configurations in local jars are read directly with {@link ZipFile}, bypassing
+ * {@code JarURLConnection} and its jar file cache; other URLs are opened as usual.  Within a
+ * discovery {@link #pass() pass} each jar is opened once, however many configurations are read
+ * from it, and closed when the pass ends.  Contents are
+ * parsed by scanning bytes in a reused per-thread buffer, allocating only the names found.  As
+ * UTF-8 never encodes other characters with ASCII bytes, comments ({@code #}) and ASCII
+ * whitespace are found without decoding.
+ *
+ * @author <a href="mailto:binkley@alumni.rice.edu">B. K. Oxley (binkley)</a>
+ */
+final class ConfigurationReader {
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+    private static final String JAR_SEPARATOR = "!/";
+    private static final int MAX_RETAINED_BUFFER = 64 * 1024;
+    private static final ThreadLocal<byte[]> BUFFERS = new ThreadLocal<byte[]>() {
+        @Override
+        protected byte[] initialValue() {
+            return new byte[8192];
+        }
+    };
+    private static final ThreadLocal<Pass> PASSES = new ThreadLocal<Pass>();
+
+    private ConfigurationReader() {
+    }
+
+    /**
+     * Reads the implementation names of the configuration at <var>config</var>.
+     *
+     * @param service the service type token for error reporting, never missing
+     * @param config the configuration location, never missing
+     *
+     * @return the implementation names, never missing
+     */
+    @Nonnull
+    static List<String> read(@Nonnull final Class<?> service, @Nonnull final URL config) {
+        final String url = config.toExternalForm();
+        final int separator = url.indexOf(JAR_SEPARATOR);
+        if (url.startsWith("jar:file:") && -1 != separator
+                && -1 == url.indexOf(JAR_SEPARATOR, separator + JAR_SEPARATOR.length())) {
+            final File jar = file(url.substring("jar:".length(), separator));
+            if (null != jar)
+                return read(service, config, jar,
+                        url.substring(separator + JAR_SEPARATOR.length()));
+        }
+        return parse(service, config, open(service, config));
+    }
+
+    /**
+     * Starts a discovery pass on this thread, keeping each jar read open until the pass closes.
+     * Passes nest, and the outermost closes the jars.
+     *
+     * @return the pass, never missing
+     */
+    @Nonnull
+    static Pass pass() {
+        Pass pass = PASSES.get();
+        if (null == pass)
+            PASSES.set(pass = new Pass());
+        else
+            ++pass.depth;
+        return pass;
+    }
+
+    /**
+     * Parses the implementation names of a text configuration, closing <var>in</var>.
+     *
+     * @param service the service type token for error reporting, or {@code null} if scanning
+     * @param config the configuration location, never missing
+     * @param in the configuration contents, never missing
+     *
+     * @return the implementation names, never missing
+     */
+    @Nonnull
+    static List<String> parse(@Nullable final Class<?> service, @Nonnull final URL config,
+            @Nonnull final InputStream in) {
+        final long start = ServiceListeners.start(READ);
+        try {
+            byte[] buffer = BUFFERS.get();
+            int length = 0;
+            int n;
+            while (-1 != (n = in.read(buffer, length, buffer.length - length)))
+                if (buffer.length == (length += n)) {
+                    final byte[] larger = new byte[buffer.length * 2];
+                    System.arraycopy(buffer, 0, larger, 0, length);
+                    if (MAX_RETAINED_BUFFER >= larger.length)
+                        BUFFERS.set(larger);
+                    buffer = larger;
+                }
+            final List<String> implementations = parse(buffer, length);
+            if (ServiceListeners.NONE != start)
+                ServiceListeners.read(config, implementations.size(),
+                        lines(buffer, length) - implementations.size(), start);
+            return implementations;
+        } catch (final IOException e) {
+            return fail(service, config, "Cannot read service configuration", e);
+        } finally {
+            try {
+                in.close();
+            } catch (final IOException e) {
+                fail(service, config, "Cannot close", e);
+            }
+        }
+    }
+
+    /**
+     * Parses the implementation names in the first <var>length</var> UTF-8 <var>bytes</var>, one
+     * per line, without comments or surrounding whitespace, and skipping blank lines.
+     *
+     * @param bytes the configuration contents, never missing
+     * @param length the count of bytes to parse
+     *
+     * @return the implementation names, never missing
+     */
+    @Nonnull
+    static List<String> parse(@Nonnull final byte[] bytes, final int length) {
+        final List<String> implementations = new ArrayList<String>();
+        int line = 0;
+        while (line < length) {
+            int end = line;
+            int content = -1;
+            while (end < length && '\n' != bytes[end] && '\r' != bytes[end]) {
+                if ('#' == bytes[end] && -1 == content)
+                    content = end;
+                ++end;
+            }
+            int start = line;
+            int stop = -1 == content ? end : content;
+            while (start < stop && ' ' >= (bytes[start] & 0xFF))
+                ++start;
+            while (stop > start && ' ' >= (bytes[stop - 1] & 0xFF))
+                --stop;
+            if (start < stop) {
+                final String implementation = new String(bytes, start, stop - start, UTF8);
+                if (!blank(implementation))
+                    implementations.add(implementation);
+            }
+            line = end + 1;
+        }
+        return implementations;
+    }
+
+    /** Counts lines ending in LF, CR or CR-LF, and a last line without an ending. */
+    static int lines(@Nonnull final byte[] bytes, final int length) {
+        int lines = 0;
+        for (int i = 0; i < length; ++i)
+            if ('\n' == bytes[i] || '\r' == bytes[i] && (i + 1 == length || '\n' != bytes[i + 1]))
+                ++lines;
+        if (0 < length && '\n' != bytes[length - 1] && '\r' != bytes[length - 1])
+            ++lines;
+        return lines;
+    }
+
+    private static List<String> read(final Class<?> service, final URL config, final File jar,
+            final String name) {
+        final Pass pass = PASSES.get();
+        try {
+            final ZipFile zip = null == pass ? new ZipFile(jar) : pass.open(jar);
+            try {
+                final ZipEntry entry = zip.getEntry(name);
+                if (null == entry)
+                    throw new IOException("No entry: " + name);
+                return parse(service, config, zip.getInputStream(entry));
+            } finally {
+                if (null == pass)
+                    zip.close();
+            }
+        } catch (final IOException e) {
+            return fail(service, config, "Cannot read service configuration", e);
+        }
+    }
+
+    private static InputStream open(final Class<?> service, final URL config) {
+        try {
+            return config.openStream();
+        } catch (final IOException e) {
+            return fail(service, config, "Cannot read service configuration", e);
+        }
+    }
+
+    private static File file(final String url) {
+        try {
+            return new File(new URL(url).toURI());
+        } catch (final IOException e) {
+            return null; // Not a plain file - open the URL instead
+        } catch (final URISyntaxException e) {
+            return null;
+        } catch (final IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    /** Lines of only non-ASCII whitespace are blank too. */
+    private static boolean blank(final String s) {
+        for (int i = 0, len = s.length(); i < len; ) {
+            final int cp = s.codePointAt(i);
+            if (!isWhitespace(cp))
+                return false;
+            i += charCount(cp);
+        }
+        return true;
+    }
+
+    /** Jars opened during a discovery pass on one thread. */
+    static final class Pass
+            implements Closeable {
+        private final Map<File, ZipFile> jars = new HashMap<File, ZipFile>();
+        private int depth = 1;
+
+        private ZipFile open(final File jar)
+                throws IOException {
+            ZipFile zip = jars.get(jar);
+            if (null == zip)
+                jars.put(jar, zip = new ZipFile(jar));
+            return zip;
+        }
+
+        /** Ends this pass, closing the jars if outermost. */
+        @Override
+        public void close() {
+            if (0 != --depth)
+                return;
+            PASSES.remove();
+            for (final ZipFile zip : jars.values())
+                try {
+                    zip.close();
+                } catch (final IOException ignored) {
+                    // Only read
+                }
+            jars.clear();
+        }
+    }
+}
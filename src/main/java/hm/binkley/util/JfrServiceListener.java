@@ -0,0 +1,308 @@
+/*
+ * This is free and unencumbered software released into the public domain.
+ *
+ * Anyone is free to copy, modify, publish, use, compile, sell, or
+ * distribute this software, either in source code form or as a compiled
+ * binary, for any purpose, commercial or non-commercial, and by any
+ * means.
+ *
+ * In jurisdictions that recognize copyright laws, the author or authors
+ * of this software dedicate any and all copyright interest in the
+ * software to the public domain. We make this dedication for the benefit
+ * of the public at large and to the detriment of our heirs and
+ * successors. We intend this dedication to be an overt act of
+ * relinquishment in perpetuity of all present and future rights to this
+ * software under copyright law.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY CLAIM, DAMAGES OR
+ * OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ * ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ *
+ * For more information, please refer to <http://unlicense.org/>.
+ */
+
+package hm.binkley.util;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.EventType;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import org.kohsuke.MetaInfServices;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.net.URL;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Iterator;
+
+/**
+ * {@code JfrServiceListener} records service binder events with JDK Flight Recorder, in the
+ * "Service Binder" category.  It is registered automatically when the JDK has Flight Recorder,
+ * and is {@link #enabled() enabled} only while a recording enables one of its timed events, so
+ * without a recording phases are not timed at all. <p/> Each event begins when its phase starts
+ * and commits when it ends, so carries the start time and duration of the phase as Flight Recorder
+ * measures them.  Events begun by phases which fail are dropped.
+ *
+ * @author <a href="mailto:binkley@alumni.rice.edu">B. K. Oxley (binkley)</a>
+ */
+@MetaInfServices(ServiceListener.class)
+public final class JfrServiceListener
+        extends ServiceListener {
+    private static final EventType SCANNED = EventType.getEventType(Scanned.class);
+    private static final EventType DISCOVERED = EventType.getEventType(Discovered.class);
+    private static final EventType READ = EventType.getEventType(Read.class);
+    private static final EventType LOADED = EventType.getEventType(Loaded.class);
+    private static final EventType BOUND = EventType.getEventType(Bound.class);
+    private static final EventType FAILED = EventType.getEventType(Failed.class);
+    /** Bounds events begun by phases which failed, and so never end. */
+    private static final int MAX_BEGUN = 64;
+    private static final ThreadLocal<Deque<Event>> BEGUN = new ThreadLocal<Deque<Event>>() {
+        @Override
+        protected Deque<Event> initialValue() {
+            return new ArrayDeque<Event>();
+        }
+    };
+
+    @Override
+    public boolean enabled() {
+        return SCANNED.isEnabled() || DISCOVERED.isEnabled() || READ.isEnabled()
+                || LOADED.isEnabled() || BOUND.isEnabled();
+    }
+
+    @Override
+    public void scanned(@Nonnull final ClassLoader classLoader, final int services,
+            final long nanos) {
+        Scanned event = ended(Scanned.class);
+        if (null == event) {
+            if (!SCANNED.isEnabled())
+                return;
+            event = new Scanned();
+        }
+        event.classLoader = classLoader.toString();
+        event.services = services;
+        event.commit();
+    }
+
+    @Override
+    public void discovered(@Nonnull final Class<?> service,
+            @Nonnull final ClassLoader classLoader, final int configurations,
+            final int providers, final long nanos) {
+        Discovered event = ended(Discovered.class);
+        if (null == event) {
+            if (!DISCOVERED.isEnabled())
+                return;
+            event = new Discovered();
+        }
+        event.service = service;
+        event.classLoader = classLoader.toString();
+        event.configurations = configurations;
+        event.providers = providers;
+        event.commit();
+    }
+
+    @Override
+    public void read(@Nonnull final URL config, final int providers, final int skipped,
+            final long nanos) {
+        Read event = ended(Read.class);
+        if (null == event) {
+            if (!READ.isEnabled())
+                return;
+            event = new Read();
+        }
+        event.config = config.toString();
+        event.providers = providers;
+        event.skipped = skipped;
+        event.commit();
+    }
+
+    @Override
+    public void loaded(@Nonnull final Class<?> service, @Nonnull final URL config,
+            @Nonnull final Class<?> implementation, final long nanos) {
+        Loaded event = ended(Loaded.class);
+        if (null == event) {
+            if (!LOADED.isEnabled())
+                return;
+            event = new Loaded();
+        }
+        event.service = service;
+        event.config = config.toString();
+        event.implementation = implementation;
+        event.commit();
+    }
+
+    @Override
+    public void bound(@Nonnull final Class<?> service, @Nonnull final URL config,
+            final int implementations, final long nanos) {
+        Bound event = ended(Bound.class);
+        if (null == event) {
+            if (!BOUND.isEnabled())
+                return;
+            event = new Bound();
+        }
+        event.service = service;
+        event.config = config.toString();
+        event.implementations = implementations;
+        event.commit();
+    }
+
+    @Override
+    public void failed(@Nullable final Class<?> service, @Nullable final URL config,
+            @Nonnull final String message, @Nonnull final Exception cause) {
+        if (!FAILED.isEnabled())
+            return;
+        final Failed event = new Failed();
+        event.service = service;
+        event.config = null == config ? null : config.toString();
+        event.message = message;
+        event.cause = cause.toString();
+        event.commit();
+    }
+
+    @Override
+    void begin(@Nonnull final ServiceListeners.Phase phase) {
+        final Event event;
+        switch (phase) {
+        case SCANNED:
+            event = SCANNED.isEnabled() ? new Scanned() : null;
+            break;
+        case DISCOVERED:
+            event = DISCOVERED.isEnabled() ? new Discovered() : null;
+            break;
+        case READ:
+            event = READ.isEnabled() ? new Read() : null;
+            break;
+        case LOADED:
+            event = LOADED.isEnabled() ? new Loaded() : null;
+            break;
+        case BOUND:
+            event = BOUND.isEnabled() ? new Bound() : null;
+            break;
+        default:
+            throw new AssertionError(phase);
+        }
+        if (null == event)
+            return;
+        final Deque<Event> begun = BEGUN.get();
+        if (MAX_BEGUN == begun.size())
+            begun.removeLast();
+        begun.push(event);
+        event.begin();
+    }
+
+    /**
+     * Takes the innermost begun event of <var>type</var>, dropping those begun after it by phases
+     * which failed, or {@code null} if none was begun.
+     */
+    private static <E extends Event> E ended(final Class<E> type) {
+        final Deque<Event> begun = BEGUN.get();
+        for (final Iterator<Event> it = begun.iterator(); it.hasNext(); ) {
+            final Event event = it.next();
+            if (!type.isInstance(event))
+                continue;
+            while (event != begun.pop()) {
+                // Abandoned
+            }
+            return type.cast(event);
+        }
+        return null;
+    }
+
+    @Name("hm.binkley.util.Scanned")
+    @Label("Classpath Scanned")
+    @Description("Scanned a classpath for several services at once")
+    @Category("Service Binder")
+    @StackTrace(false)
+    static final class Scanned
+            extends Event {
+        @Label("Class Loader")
+        String classLoader;
+        @Label("Services")
+        int services;
+    }
+
+    @Name("hm.binkley.util.Discovered")
+    @Label("Service Discovered")
+    @Description("Found the configurations of a service")
+    @Category("Service Binder")
+    @StackTrace(false)
+    static final class Discovered
+            extends Event {
+        @Label("Service")
+        Class<?> service;
+        @Label("Class Loader")
+        String classLoader;
+        @Label("Configurations")
+        int configurations;
+        @Label("Providers")
+        int providers;
+    }
+
+    @Name("hm.binkley.util.Read")
+    @Label("Configuration Read")
+    @Description("Read a text service configuration")
+    @Category("Service Binder")
+    @StackTrace(false)
+    static final class Read
+            extends Event {
+        @Label("Configuration")
+        String config;
+        @Label("Providers")
+        int providers;
+        @Label("Skipped Lines")
+        int skipped;
+    }
+
+    @Name("hm.binkley.util.Loaded")
+    @Label("Implementation Loaded")
+    @Description("Loaded a service implementation class")
+    @Category("Service Binder")
+    @StackTrace(false)
+    static final class Loaded
+            extends Event {
+        @Label("Service")
+        Class<?> service;
+        @Label("Configuration")
+        String config;
+        @Label("Implementation")
+        Class<?> implementation;
+    }
+
+    @Name("hm.binkley.util.Bound")
+    @Label("Implementations Bound")
+    @Description("Registered service implementations with the injector")
+    @Category("Service Binder")
+    @StackTrace(false)
+    static final class Bound
+            extends Event {
+        @Label("Service")
+        Class<?> service;
+        @Label("Configuration")
+        String config;
+        @Label("Implementations")
+        int implementations;
+    }
+
+    @Name("hm.binkley.util.Failed")
+    @Label("Binding Failed")
+    @Description("Failed to discover or bind a service")
+    @Category("Service Binder")
+    static final class Failed
+            extends Event {
+        @Label("Service")
+        Class<?> service;
+        @Label("Configuration")
+        String config;
+        @Label("Message")
+        String message;
+        @Label("Cause")
+        String cause;
+    }
+}
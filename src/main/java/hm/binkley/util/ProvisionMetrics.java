@@ -0,0 +1,276 @@
+/*
+ * This is free and unencumbered software released into the public domain.
+ *
+ * Anyone is free to copy, modify, publish, use, compile, sell, or
+ * distribute this software, either in source code form or as a compiled
+ * binary, for any purpose, commercial or non-commercial, and by any
+ * means.
+ *
+ * In jurisdictions that recognize copyright laws, the author or authors
+ * of this software dedicate any and all copyright interest in the
+ * software to the public domain. We make this dedication for the benefit
+ * of the public at large and to the detriment of our heirs and
+ * successors. We intend this dedication to be an overt act of
+ * relinquishment in perpetuity of all present and future rights to this
+ * software under copyright law.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY CLAIM, DAMAGES OR
+ * OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ * ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ *
+ * For more information, please refer to <http://unlicense.org/>.
+ */
+
+package hm.binkley.util;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import javax.management.JMException;
+import javax.management.ObjectName;
+import java.beans.ConstructorProperties;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongBinaryOperator;
+
+import static java.lang.Long.numberOfLeadingZeros;
+import static java.lang.Thread.currentThread;
+
+/**
+ * {@code ProvisionMetrics} is the built-in {@link ProvisionSink}, keeping per implementation the
+ * count of constructions, their total and maximum duration, a histogram of durations, and the
+ * bytes allocated.  Recording takes no locks: counters are striped adders, and the histogram an
+ * atomic array of power-of-two buckets. <p/> Implementations are only weakly held, so recording
+ * does not keep a plugin class loader alive; metrics for collected classes drop out. <p/> The
+ * {@link #global() global} metrics are registered with the platform MBean server as {@value
+ * #OBJECT_NAME}.
+ *
+ * @author <a href="mailto:binkley@alumni.rice.edu">B. K. Oxley (binkley)</a>
+ */
+public final class ProvisionMetrics
+        implements ProvisionSink, ProvisionMetricsMXBean {
+    /** The JMX object name of the global metrics. */
+    public static final String OBJECT_NAME = "hm.binkley.util:type=ProvisionMetrics";
+
+    private static final ThreadMXBean THREADS = ManagementFactory.getThreadMXBean();
+    private static final boolean ALLOCATIONS = allocations();
+
+    private final Set<Recorder> listed = ConcurrentHashMap.newKeySet();
+    private final ClassValue<Recorder> recorders = new ClassValue<Recorder>() {
+        @Override
+        protected Recorder computeValue(final Class<?> implementation) {
+            return new Recorder(implementation);
+        }
+    };
+
+    /**
+     * Gets the process-wide metrics used by {@link ServiceBinder#instrumented()}, registering them
+     * with the platform MBean server on first use.
+     *
+     * @return the global metrics, never missing
+     */
+    @Nonnull
+    public static ProvisionMetrics global() {
+        return Global.METRICS;
+    }
+
+    @Override
+    public void provisioned(@Nonnull final Class<?> implementation, final long nanos,
+            final long allocatedBytes) {
+        final Recorder recorder = recorders.get(implementation);
+        recorder.record(nanos, allocatedBytes);
+        if (!recorder.listed) {
+            recorder.listed = true;
+            listed.add(recorder);
+        }
+    }
+
+    /**
+     * Gets a snapshot of the statistics for <var>implementation</var>.  Querying records nothing
+     * for classes never constructed.
+     *
+     * @param implementation the implementation class, never missing
+     *
+     * @return the statistics, or {@code null} if never constructed
+     */
+    @Nullable
+    public Statistics statistics(@Nonnull final Class<?> implementation) {
+        for (final Recorder recorder : listed)
+            if (implementation == recorder.implementation.get())
+                return recorder.snapshot();
+        return null;
+    }
+
+    @Override
+    public List<Statistics> getStatistics() {
+        final Map<String, Statistics> sorted = new TreeMap<String, Statistics>();
+        for (final Recorder recorder : listed)
+            if (null == recorder.implementation.get())
+                listed.remove(recorder);
+            else
+                sorted.put(recorder.name, recorder.snapshot());
+        return new ArrayList<Statistics>(sorted.values());
+    }
+
+    @Override
+    public void reset() {
+        for (final Recorder recorder : listed) {
+            final Class<?> implementation = recorder.implementation.get();
+            if (null != implementation)
+                recorders.remove(implementation);
+            listed.remove(recorder);
+        }
+    }
+
+    /**
+     * Gets the bytes allocated so far by the current thread, for measuring constructions.
+     *
+     * @return the allocated bytes, or 0 if the JVM does not measure
+     */
+    static long allocatedBytes() {
+        return ALLOCATIONS ? ((com.sun.management.ThreadMXBean) THREADS)
+                .getThreadAllocatedBytes(currentThread().getId()) : 0L;
+    }
+
+    private static boolean allocations() {
+        try {
+            return THREADS instanceof com.sun.management.ThreadMXBean
+                    && ((com.sun.management.ThreadMXBean) THREADS)
+                    .isThreadAllocatedMemoryEnabled();
+        } catch (final UnsupportedOperationException e) {
+            return false;
+        } catch (final LinkageError e) {
+            return false;
+        }
+    }
+
+    /**
+     * {@code Statistics} is a snapshot of the constructions of one implementation.  The histogram
+     * counts constructions by duration: bucket <var>i</var> counts durations of at least
+     * 2<sup><var>i</var></sup> nanoseconds and less than 2<sup><var>i</var>+1</sup>, bucket 0
+     * including 0.
+     */
+    public static final class Statistics {
+        private final String implementation;
+        private final long count;
+        private final long totalNanos;
+        private final long maxNanos;
+        private final long allocatedBytes;
+        private final long[] histogram;
+
+        @ConstructorProperties({"implementation", "count", "totalNanos", "maxNanos",
+                "allocatedBytes", "histogram"})
+        public Statistics(@Nonnull final String implementation, final long count,
+                final long totalNanos, final long maxNanos, final long allocatedBytes,
+                @Nonnull final long[] histogram) {
+            this.implementation = implementation;
+            this.count = count;
+            this.totalNanos = totalNanos;
+            this.maxNanos = maxNanos;
+            this.allocatedBytes = allocatedBytes;
+            this.histogram = histogram.clone();
+        }
+
+        @Nonnull
+        public String getImplementation() {
+            return implementation;
+        }
+
+        public long getCount() {
+            return count;
+        }
+
+        public long getTotalNanos() {
+            return totalNanos;
+        }
+
+        public long getMaxNanos() {
+            return maxNanos;
+        }
+
+        public double getMeanNanos() {
+            return 0 == count ? 0 : (double) totalNanos / count;
+        }
+
+        public long getAllocatedBytes() {
+            return allocatedBytes;
+        }
+
+        @Nonnull
+        public long[] getHistogram() {
+            return histogram.clone();
+        }
+
+        @Override
+        public String toString() {
+            return implementation + "[count=" + count + ", totalNanos=" + totalNanos
+                    + ", maxNanos=" + maxNanos + ", allocatedBytes=" + allocatedBytes + "]";
+        }
+    }
+
+    private static final class Recorder {
+        private static final LongBinaryOperator MAX = new LongBinaryOperator() {
+            @Override
+            public long applyAsLong(final long left, final long right) {
+                return Math.max(left, right);
+            }
+        };
+
+        private final WeakReference<Class<?>> implementation;
+        private final String name;
+        private final LongAdder count = new LongAdder();
+        private final LongAdder totalNanos = new LongAdder();
+        private final LongAccumulator maxNanos = new LongAccumulator(MAX, 0L);
+        private final LongAdder allocatedBytes = new LongAdder();
+        private final AtomicLongArray histogram = new AtomicLongArray(Long.SIZE);
+        private volatile boolean listed;
+
+        private Recorder(final Class<?> implementation) {
+            this.implementation = new WeakReference<Class<?>>(implementation);
+            name = implementation.getName();
+        }
+
+        private void record(final long nanos, final long bytes) {
+            count.increment();
+            totalNanos.add(nanos);
+            maxNanos.accumulate(nanos);
+            allocatedBytes.add(bytes);
+            histogram.incrementAndGet(0 >= nanos ? 0 : Long.SIZE - 1 - numberOfLeadingZeros(nanos));
+        }
+
+        private Statistics snapshot() {
+            final long[] histogram = new long[this.histogram.length()];
+            for (int i = 0; i < histogram.length; ++i)
+                histogram[i] = this.histogram.get(i);
+            return new Statistics(name, count.sum(), totalNanos.sum(),
+                    maxNanos.get(), allocatedBytes.sum(), histogram);
+        }
+    }
+
+    /** Registers the global metrics on first use. */
+    private static final class Global {
+        private static final ProvisionMetrics METRICS = new ProvisionMetrics();
+
+        static {
+            try {
+                ManagementFactory.getPlatformMBeanServer()
+                        .registerMBean(METRICS, new ObjectName(OBJECT_NAME));
+            } catch (final JMException ignored) {
+                // Already registered by another class loader - still record here
+            }
+        }
+    }
+}
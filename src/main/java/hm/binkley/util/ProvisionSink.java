@@ -0,0 +1,51 @@
+/*
+ * This is free and unencumbered software released into the public domain.
+ *
+ * Anyone is free to copy, modify, publish, use, compile, sell, or
+ * distribute this software, either in source code form or as a compiled
+ * binary, for any purpose, commercial or non-commercial, and by any
+ * means.
+ *
+ * In jurisdictions that recognize copyright laws, the author or authors
+ * of this software dedicate any and all copyright interest in the
+ * software to the public domain. We make this dedication for the benefit
+ * of the public at large and to the detriment of our heirs and
+ * successors. We intend this dedication to be an overt act of
+ * relinquishment in perpetuity of all present and future rights to this
+ * software under copyright law.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY CLAIM, DAMAGES OR
+ * OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ * ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ *
+ * For more information, please refer to <http://unlicense.org/>.
+ */
+
+package hm.binkley.util;
+
+import javax.annotation.Nonnull;
+
+/**
+ * {@code ProvisionSink} receives a measurement each time an injector constructs an implementation
+ * bound by an {@link ServiceBinder#instrumented(ProvisionSink) instrumented} service binder.
+ * Sinks are called on the constructing thread, so must be thread-safe and should be cheap.
+ *
+ * @author <a href="mailto:binkley@alumni.rice.edu">B. K. Oxley (binkley)</a>
+ * @see ProvisionMetrics
+ */
+public interface ProvisionSink {
+    /**
+     * Records a construction of <var>implementation</var>, including injecting its dependencies.
+     *
+     * @param implementation the implementation class, never missing
+     * @param nanos the duration
+     * @param allocatedBytes the bytes allocated by the constructing thread, or 0 if the JVM does
+     * not measure
+     */
+    void provisioned(@Nonnull final Class<?> implementation, final long nanos,
+            final long allocatedBytes);
+}
@@ -28,39 +28,95 @@
 package hm.binkley.util;
 
 import com.google.inject.Binder;
+import com.google.inject.Inject;
+import com.google.inject.Injector;
+import com.google.inject.Key;
+import com.google.inject.MembersInjector;
 import com.google.inject.Module;
+import com.google.inject.Provider;
+import com.google.inject.ProvisionException;
+import com.google.inject.Scope;
+import com.google.inject.ScopeAnnotation;
+import com.google.inject.Scopes;
+import com.google.inject.binder.LinkedBindingBuilder;
+import com.google.inject.binder.ScopedBindingBuilder;
 import com.google.inject.multibindings.Multibinder;
+import com.google.inject.spi.Dependency;
+import com.google.inject.spi.InjectionPoint;
+import com.google.inject.util.Types;
+import org.springframework.beans.BeanInstantiationException;
+import org.springframework.beans.factory.BeanFactory;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.beans.factory.config.ConfigurableBeanFactory;
 import org.springframework.beans.factory.serviceloader.ServiceLoaderFactoryBean;
+import org.springframework.beans.factory.support.AbstractAutowireCapableBeanFactory;
 import org.springframework.beans.factory.support.BeanDefinitionRegistry;
+import org.springframework.beans.factory.support.CglibSubclassingInstantiationStrategy;
 import org.springframework.beans.factory.support.RootBeanDefinition;
+import org.springframework.context.ApplicationContext;
+import org.springframework.context.ApplicationListener;
+import org.springframework.context.event.ContextRefreshedEvent;
+import org.springframework.context.support.GenericApplicationContext;
+import org.springframework.core.io.ResourceLoader;
 
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
-import java.io.BufferedReader;
-import java.io.IOException;
-import java.io.InputStreamReader;
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.InvocationTargetException;
 import java.net.URL;
-import java.nio.charset.Charset;
 import java.util.ArrayList;
-import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
 import java.util.ServiceConfigurationError;
 import java.util.ServiceLoader;
-import java.util.regex.Pattern;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
 
 import static com.google.inject.multibindings.Multibinder.newSetBinder;
-import static java.lang.Character.charCount;
-import static java.lang.Character.isWhitespace;
+import static hm.binkley.util.ServiceListeners.Phase.BOUND;
+import static hm.binkley.util.ServiceListeners.Phase.DISCOVERED;
+import static hm.binkley.util.ServiceListeners.Phase.LOADED;
+import static hm.binkley.util.ServiceListeners.Phase.SCANNED;
 import static java.lang.ClassLoader.getSystemClassLoader;
+import static java.lang.Integer.MAX_VALUE;
 import static java.lang.Integer.toHexString;
+import static java.lang.System.nanoTime;
 import static java.lang.Thread.currentThread;
+import static java.util.Collections.emptyList;
+import static java.util.Collections.singletonList;
+import static java.util.Collections.unmodifiableList;
+import static org.springframework.beans.factory.config.BeanDefinition.SCOPE_PROTOTYPE;
+import static org.springframework.beans.factory.config.BeanDefinition.SCOPE_SINGLETON;
 import static org.springframework.beans.factory.support.AbstractBeanDefinition.AUTOWIRE_CONSTRUCTOR;
+import static org.springframework.beans.factory.support.BeanDefinitionReaderUtils.registerWithGeneratedName;
 
 /**
  * {@code ServiceBinder} is {@link ServiceLoader} with injection.  Create a service binder for Guice
- * using {@link #with(Binder)} or Spring Framework using {@link #with(BeanDefinitionRegistry)}. The
- * service binder is reuseable. <p/> To discover and bind implementations of a service, use {@link
- * #bind(Class)} or {@link #bind(Class, ClassLoader)}. <p/> All exeptions thrown internally appear
+ * using {@link #with(Binder)}, Spring Framework using {@link #with(BeanDefinitionRegistry)}, or
+ * the lightweight built-in injector using {@link #with(ServiceInjector)}.  The service binder is
+ * reuseable. <p/> To discover and bind implementations of a service, use {@link
+ * #bind(Class)} or {@link #bind(Class, ClassLoader)}; to bind from many class loaders sharing
+ * parents, use {@link #bindAcross(Class, ClassLoader[])}; to bind several services with a single
+ * pass over the classpath, use {@link #bindAll(Class[])} or {@link #bindAll(ClassLoader,
+ * Class[])}; to bind a single implementation, use {@link #bindFirst(Class)} or {@link
+ * #bindHighestPriority(Class)}.  To bind the same services with many injectors, record a {@link
+ * ServicePlan} once with {@link #with(ServicePlan.Builder)}. <p/> Jars compiled with {@link
+ * ServiceIndexProcessor} carry a binary service index read in place of their text configurations;
+ * other jars are read as for {@code ServiceLoader}. <p/> Discovery is cached process-wide by class
+ * loader and service; see {@link ServiceCache}. <p/> Options such as {@link #parallel(Executor)}
+ * return a configured copy of the service binder. <p/> All exeptions thrown internally appear
  * as {@link ServiceConfigurationError}.
  *
  * @param <E> the exception type thrown internally, not visible outside declaration
@@ -69,11 +125,8 @@ import static org.springframework.beans.factory.support.AbstractBeanDefinition.A
  * @todo Needs documentation.
  */
 public final class ServiceBinder<E extends Exception> {
-    private static final String PREFIX = "META-INF/services/";
-    private static final Charset UTF8 = Charset.forName("UTF-8");
-    private static final Pattern COMMENT = Pattern.compile("#.*");
-
     private final With<E> with;
+    private final Options options;
 
     /**
      * Creates a service binder for Guice with the given <var>binder</var>.  Discovered classes are
@@ -88,7 +141,7 @@ public final class ServiceBinder<E extends Exception> {
      */
     @Nonnull
     public static ServiceBinder<RuntimeException> with(@Nonnull final Binder binder) {
-        return new ServiceBinder<RuntimeException>(new WithGuice(binder));
+        return new ServiceBinder<RuntimeException>(new WithGuice(binder), new Options());
     }
 
     /**
@@ -106,7 +159,261 @@ public final class ServiceBinder<E extends Exception> {
     @Nonnull
     public static ServiceBinder<ClassNotFoundException> with(
             @Nonnull final BeanDefinitionRegistry registry) {
-        return new ServiceBinder<ClassNotFoundException>(new WithSpring(registry));
+        return new ServiceBinder<ClassNotFoundException>(new WithSpring(registry, null),
+                new Options());
+    }
+
+    /**
+     * Creates a service binder for the built-in injector with the given <var>injector</var>.
+     * Discovered classes are bound as implementations of the service, injected with {@link
+     * ServiceInjector#getInstances(Class)}.  Generated factories are always used.
+     *
+     * @param injector the built-in injector, never missing
+     *
+     * @return the service binder, never missing
+     */
+    @Nonnull
+    public static ServiceBinder<RuntimeException> with(@Nonnull final ServiceInjector injector) {
+        return new ServiceBinder<RuntimeException>(new WithInjector(injector), new Options());
+    }
+
+    /**
+     * Creates a service binder recording bindings with the given plan <var>builder</var>, in
+     * place of binding to an injector.  Either Guice or Spring Framework scopes may be recorded;
+     * binding the plan to the other fails.
+     *
+     * @param builder the plan builder, never missing
+     *
+     * @return the service binder, never missing
+     *
+     * @see ServicePlan
+     */
+    @Nonnull
+    public static ServiceBinder<RuntimeException> with(@Nonnull final ServicePlan.Builder builder) {
+        return new ServiceBinder<RuntimeException>(new Recording(builder), new Options());
+    }
+
+    /**
+     * Creates a copy of this service binder which loads implementation classes concurrently on
+     * the common fork-join pool.
+     *
+     * @return the parallel service binder, never missing
+     *
+     * @see #parallel(Executor)
+     */
+    @Nonnull
+    public ServiceBinder<E> parallel() {
+        return parallel(ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Creates a copy of this service binder which loads implementation classes concurrently on
+     * the given <var>executor</var>, for example a fork-join pool or virtual threads.  Loading
+     * starts for all implementations of all services bound in a single call before binding any,
+     * and binds them in the same order as serially.  The calling thread loads any
+     * implementations the executor has not yet started, so a busy or rejecting executor does not
+     * stall binding.  Failures report as when loading serially, for the first failing
+     * implementation in binding order.
+     *
+     * @param executor the executor, never missing
+     *
+     * @return the parallel service binder, never missing
+     */
+    @Nonnull
+    public ServiceBinder<E> parallel(@Nonnull final Executor executor) {
+        final Options options = this.options.copy();
+        options.executor = executor;
+        return new ServiceBinder<E>(with, options);
+    }
+
+    /**
+     * Creates a copy of this service binder which does not load implementation classes until
+     * first injected.  For Guice, each implementation is bound to a provider which loads the class
+     * and gets an instance from the injector on first provision.  For Spring Framework, each
+     * implementation is registered as a lazy-init bean definition by class name; Spring loads the
+     * class only when matching or creating the bean, and matches by type without loading when
+     * {@code DefaultListableBeanFactory.setAllowEagerClassLoading(false)}.  Note - if the bean
+     * class loader of the
+     * registry is not the binding class loader, classes are loaded when bound so Spring can find
+     * them, but beans are still lazy-init.
+     *
+     * @return the lazy service binder, never missing
+     */
+    @Nonnull
+    public ServiceBinder<E> lazy() {
+        final Options options = this.options.copy();
+        options.lazy = true;
+        return new ServiceBinder<E>(with, options);
+    }
+
+    /**
+     * Creates a copy of this service binder which constructs implementations through generated
+     * factories rather than reflectively.  Each factory invokes a method handle for the injectable
+     * constructor; field and method injection still follow.  For Guice, each implementation is
+     * bound to a provider which resolves constructor arguments from the injector, then injects
+     * members; method interceptors do not apply to these instances.  Without an explicit scope,
+     * the provider binding takes the scope annotation of the implementation, such as {@code
+     * Singleton}, as Guice would for the class.  For Spring Framework, the bean factory
+     * instantiates the registered beans with the factories, leaving constructor resolution and
+     * bean post-processing to Spring.  Note - this replaces the instantiation strategy of the bean
+     * factory, and falls back to reflection when the registry is not an autowiring bean factory
+     * or generic application context.  The built-in {@link ServiceInjector} always constructs
+     * through factories.
+     *
+     * @return the service binder with factories, never missing
+     */
+    @Nonnull
+    public ServiceBinder<E> factories() {
+        final Options options = this.options.copy();
+        options.factories = true;
+        return new ServiceBinder<E>(with, options);
+    }
+
+    /**
+     * Creates a copy of this service binder which binds only implementations <var>filter</var>
+     * accepts, checking before loading their classes.  Filters may read class files for
+     * annotations, but rejected implementations are never loaded or initialized.  Filtering again
+     * binds implementations all filters accept.
+     *
+     * @param filter the filter, never missing
+     *
+     * @return the filtered service binder, never missing
+     *
+     * @see ServiceFilters
+     */
+    @Nonnull
+    public ServiceBinder<E> filter(@Nonnull final ServiceFilter filter) {
+        final Options options = this.options.copy();
+        final List<ServiceFilter> filters = new ArrayList<ServiceFilter>(options.filters);
+        filters.add(filter);
+        options.filters = unmodifiableList(filters);
+        return new ServiceBinder<E>(with, options);
+    }
+
+    /**
+     * Creates a copy of this service binder which measures each construction of bound
+     * implementations in the {@link ProvisionMetrics#global() global metrics}.
+     *
+     * @return the instrumented service binder, never missing
+     *
+     * @see #instrumented(ProvisionSink)
+     */
+    @Nonnull
+    public ServiceBinder<E> instrumented() {
+        return instrumented(ProvisionMetrics.global());
+    }
+
+    /**
+     * Creates a copy of this service binder which measures each construction of bound
+     * implementations in <var>sink</var>: the duration, including injecting dependencies, and the
+     * bytes allocated by the constructing thread.  Scoped instances are measured only when
+     * constructed.  For Guice, each implementation is bound to a provider which measures getting
+     * the instance from the injector, or from the factory or lazy provider.  For Spring Framework,
+     * the instantiation strategy of {@link #factories()} starts measuring, after resolving
+     * constructor arguments, and a bean post-processor stops after initialization.  Note - as with
+     * {@code factories()}, Spring registries other than autowiring bean factories and generic
+     * application contexts are not instrumented.
+     *
+     * @param sink the metrics sink, never missing
+     *
+     * @return the instrumented service binder, never missing
+     */
+    @Nonnull
+    public ServiceBinder<E> instrumented(@Nonnull final ProvisionSink sink) {
+        final Options options = this.options.copy();
+        options.sink = sink;
+        return new ServiceBinder<E>(with, options);
+    }
+
+    /**
+     * Creates a copy of this service binder which binds implementations as singletons, created
+     * once per injector or application context.  For Guice, in {@code Scopes.SINGLETON}; for Spring
+     * Framework, in the {@code "singleton"} scope.  Use a copy for each service needing a
+     * different scope.
+     *
+     * @return the singleton service binder, never missing
+     */
+    @Nonnull
+    public ServiceBinder<E> singleton() {
+        return scoped(Scoping.SINGLETON);
+    }
+
+    /**
+     * Creates a copy of this service binder which binds implementations as singletons created
+     * when the injector or application context starts.  For Guice, with {@code
+     * asEagerSingleton()}; for Spring Framework, in the {@code "singleton"} scope and not
+     * lazy-init.
+     *
+     * @return the eager singleton service binder, never missing
+     */
+    @Nonnull
+    public ServiceBinder<E> eagerSingleton() {
+        return scoped(Scoping.EAGER_SINGLETON);
+    }
+
+    /**
+     * Creates a copy of this service binder which binds implementations unscoped, creating a new
+     * instance for each injection.  This is the default for Guice; for Spring Framework, binds in
+     * the {@code "prototype"} scope.
+     *
+     * @return the unscoped service binder, never missing
+     */
+    @Nonnull
+    public ServiceBinder<E> unscoped() {
+        return scoped(Scoping.UNSCOPED);
+    }
+
+    /**
+     * Creates a copy of this service binder which binds implementations in the Guice
+     * <var>scope</var>.
+     *
+     * @param scope the Guice scope, never missing
+     *
+     * @return the scoped service binder, never missing
+     *
+     * @throws IllegalArgumentException if not binding with Guice, or recording a plan
+     */
+    @Nonnull
+    public ServiceBinder<E> in(@Nonnull final Scope scope) {
+        if (!(with instanceof WithGuice || with instanceof Recording))
+            throw new IllegalArgumentException("Guice scope without Guice: " + scope);
+        return scoped(scope);
+    }
+
+    /**
+     * Creates a copy of this service binder which binds implementations in the Spring Framework
+     * scope named <var>scope</var>, for example {@code "request"}.
+     *
+     * @param scope the Spring scope name, never missing
+     *
+     * @return the scoped service binder, never missing
+     *
+     * @throws IllegalArgumentException if not binding with Spring Framework, or recording a
+     * plan
+     */
+    @Nonnull
+    public ServiceBinder<E> in(@Nonnull final String scope) {
+        if (!(with instanceof WithSpring || with instanceof Recording))
+            throw new IllegalArgumentException("Spring scope without Spring: " + scope);
+        return scoped(scope);
+    }
+
+    /**
+     * Creates a copy of this service binder which warms up bound implementations in the
+     * background with <var>warmUp</var>: initializing their classes as bound, and optionally
+     * constructing instances once injectable.  For Guice, constructs the bound set, or single
+     * binding, when the injector is created.  For Spring Framework, constructs the registered
+     * beans when the application context refreshes; other registries do not construct.
+     *
+     * @param warmUp the warm-up, never missing
+     *
+     * @return the warming service binder, never missing
+     */
+    @Nonnull
+    public ServiceBinder<E> warmUp(@Nonnull final ServiceWarmUp warmUp) {
+        final Options options = this.options.copy();
+        options.warmUp = warmUp;
+        return new ServiceBinder<E>(with, options);
     }
 
     /**
@@ -137,114 +444,660 @@ public final class ServiceBinder<E extends Exception> {
     public <T> void bind(@Nonnull final Class<T> service, @Nullable ClassLoader classLoader) {
         if (null == classLoader)
             classLoader = getSystemClassLoader();
-        final Enumeration<URL> configs = configs(service, classLoader);
-        while (configs.hasMoreElements())
-            bind(service, classLoader, configs.nextElement(), with);
+        final long start = ServiceListeners.start(DISCOVERED);
+        final List<ServiceConfiguration> configurations = ServiceCache
+                .configurations(service, classLoader);
+        ServiceListeners.discovered(service, classLoader, configurations, start);
+        bind(service, classLoader, configurations);
     }
 
-    private ServiceBinder(final With<E> with) {
-        this.with = with;
+    /**
+     * Binds injected instances of the <var>service</var> type token to the binding instance from
+     * several <var>classLoaders</var> at once, such as plugin class loaders sharing a parent, or
+     * the system class loader for {@code null}.  Rather than bind each class loader separately,
+     * this reads each configuration once however many class loaders see it through parent
+     * delegation, and binds each implementation once by defining class loader and name, however
+     * many configurations list it, as when the same provider is shaded into several jars.  Class
+     * loaders not yet in the {@link ServiceCache} are discovered and implementations loaded
+     * concurrently on the executor of {@link #parallel(Executor)}, or the common fork-join pool;
+     * binding keeps class loader order, ancestors first.  Discovery is cached for each class
+     * loader, as by {@link #bind(Class, ClassLoader)}. <p/> Note - when binding lazily,
+     * implementations are not loaded to find their defining class loader, so each is bound once
+     * by name for the first class loader whose configurations list it, including parents.
+     *
+     * @param service the service type token, never missing
+     * @param classLoaders the class loaders, {@code null} for the system class loader
+     * @param <T> the service type
+     */
+    public <T> void bindAcross(@Nonnull final Class<T> service,
+            @Nullable final ClassLoader... classLoaders) {
+        final List<ClassLoader> hierarchy = new ArrayList<ClassLoader>();
+        for (final ClassLoader classLoader : null == classLoaders ? new ClassLoader[1]
+                : classLoaders)
+            hierarchy.add(null == classLoader ? getSystemClassLoader() : classLoader);
+        final Options options = this.options.copy();
+        if (null == options.executor)
+            options.executor = ForkJoinPool.commonPool();
+        // Class loaders are discovered together, so each reports the time of the whole pass
+        final long start = ServiceListeners.start(DISCOVERED);
+        final Map<ClassLoader, List<ServiceConfiguration>> discovered = ServiceCache
+                .configurations(service, hierarchy, options.executor);
+        final List<Loading<T>> loadings = new ArrayList<Loading<T>>(discovered.size());
+        for (final Map.Entry<ClassLoader, List<ServiceConfiguration>> each : discovered
+                .entrySet()) {
+            ServiceListeners.discovered(service, each.getKey(), each.getValue(), start);
+            loadings.add(new Loading<T>(service, each.getKey(), each.getValue(), options));
+        }
+        final Map<ClassLoader, Set<String>> bound = new HashMap<ClassLoader, Set<String>>();
+        for (final Loading<T> loading : loadings)
+            loading.bind(with, bound);
     }
 
-    private static <T> Enumeration<URL> configs(final Class<T> service,
-            final ClassLoader classLoader) {
-        try {
-            return classLoader.getResources(PREFIX + service.getName());
-        } catch (final IOException e) {
-            return fail(service, "Cannot load configuration", e);
-        }
+    /**
+     * Binds injected instances of the <var>service</var> type token from <var>plugin</var> alone,
+     * loaded by its class loader.  Implementations elsewhere on the classpath are not bound.
+     *
+     * @param service the service type token, never missing
+     * @param plugin the plugin, never missing
+     * @param <T> the service type
+     *
+     * @see ServicePlugins
+     */
+    public <T> void bindPlugin(@Nonnull final Class<T> service,
+            @Nonnull final ServicePlugin plugin) {
+        final long start = ServiceListeners.start(DISCOVERED);
+        final List<ServiceConfiguration> configurations = plugin.configurations(service);
+        ServiceListeners.discovered(service, plugin.classLoader(), configurations, start);
+        bind(service, plugin.classLoader(), configurations);
+    }
+
+    /**
+     * Binds injected instances of each of the <var>services</var> type tokens to the binding
+     * instance using the thread-context class loader.
+     *
+     * @param services the service type tokens, never missing
+     *
+     * @see #bindAll(ClassLoader, Class[])
+     */
+    public void bindAll(@Nonnull final Class<?>... services) {
+        bindAll(currentThread().getContextClassLoader(), services);
     }
 
-    private static <T, E extends Exception> void bind(final Class<T> service,
-            final ClassLoader classLoader, final URL config, final With<E> with) {
-        final BufferedReader reader = config(service, config);
+    /**
+     * Binds injected instances of each of the <var>services</var> type tokens to the binding
+     * instance using the given <var>classLoader</var>, or the system class loader if {@code
+     * null}.  Rather than look up each service separately as does {@link #bind(Class,
+     * ClassLoader)}, this scans each classpath root once for all services.  If the class loader
+     * cannot be scanned, falls back to looking up each service separately.
+     *
+     * @param classLoader the classloader, if {@code null} the system class loader
+     * @param services the service type tokens, never missing
+     */
+    public void bindAll(@Nullable ClassLoader classLoader,
+            @Nonnull final Class<?>... services) {
+        if (null == classLoader)
+            classLoader = getSystemClassLoader();
+        final long scan = ServiceListeners.start(SCANNED);
+        final ServiceDiscovery discovery = ServiceCache.scan(classLoader);
+        ServiceListeners.scanned(classLoader, discovery.services().size(), scan);
+        final List<Loading<?>> loadings = new ArrayList<Loading<?>>(services.length);
+        final ConfigurationReader.Pass pass = ConfigurationReader.pass();
         try {
-            with.bind(service, implementations(service, classLoader, config, reader));
-        } catch (final Exception e) { // Cannot declare a generic catch using <E>
-            fail(service, config, "Cannot bind implemntations", e);
+            for (final Class<?> service : services) {
+                final long start = ServiceListeners.start(DISCOVERED);
+                final List<ServiceConfiguration> configurations = discovery.complete()
+                        ? discovery.configurations(service.getName())
+                        : ServiceCache.configurations(service, classLoader);
+                ServiceListeners.discovered(service, classLoader, configurations, start);
+                loadings.add(loading(service, classLoader, configurations));
+            }
         } finally {
-            try {
-                reader.close();
-            } catch (final IOException e) {
-                fail(service, config, "Cannot close", e);
+            pass.close();
+        }
+        for (final Loading<?> loading : loadings)
+            loading.bind(with);
+    }
+
+    /**
+     * Binds the first implementation of the <var>service</var> type token in classpath order
+     * using the thread-context class loader.
+     *
+     * @param service the service type token, never missing
+     * @param <T> the service type
+     *
+     * @see #bindFirst(Class, ClassLoader)
+     */
+    public <T> void bindFirst(@Nonnull final Class<T> service) {
+        bindFirst(service, currentThread().getContextClassLoader());
+    }
+
+    /**
+     * Binds the first implementation of the <var>service</var> type token in classpath order, as
+     * {@code ServiceLoader.findFirst()}, using the given <var>classLoader</var>, or the system
+     * class loader if {@code null}.  Discovery stops at the first implementation filters accept:
+     * later configurations are not read, and other implementations are not loaded.  For Guice, the
+     * implementation is bound directly to the service rather than to a set; for Spring Framework,
+     * the bean definition is primary.  If there are no implementations, binds nothing.
+     *
+     * @param service the service type token, never missing
+     * @param classLoader the classloader, if {@code null} the system class loader
+     * @param <T> the service type
+     */
+    public <T> void bindFirst(@Nonnull final Class<T> service,
+            @Nullable final ClassLoader classLoader) {
+        bindFirst(service, classLoader, false);
+    }
+
+    /**
+     * Binds the highest priority implementation of the <var>service</var> type token using the
+     * thread-context class loader.
+     *
+     * @param service the service type token, never missing
+     * @param <T> the service type
+     *
+     * @see #bindHighestPriority(Class, ClassLoader)
+     */
+    public <T> void bindHighestPriority(@Nonnull final Class<T> service) {
+        bindHighestPriority(service, currentThread().getContextClassLoader());
+    }
+
+    /**
+     * Binds the highest priority implementation of the <var>service</var> type token using the
+     * given <var>classLoader</var>, or the system class loader if {@code null}.  Priorities are
+     * read from {@link ServicePriority} annotations in class files, lowest value first;
+     * implementations without are last, and ties go to classpath order.  All configurations are
+     * read, but only the chosen implementation is loaded.  Binds as {@link #bindFirst(Class,
+     * ClassLoader)}.
+     *
+     * @param service the service type token, never missing
+     * @param classLoader the classloader, if {@code null} the system class loader
+     * @param <T> the service type
+     */
+    public <T> void bindHighestPriority(@Nonnull final Class<T> service,
+            @Nullable final ClassLoader classLoader) {
+        bindFirst(service, classLoader, true);
+    }
+
+    private ServiceBinder(final With<E> with, final Options options) {
+        this.with = with;
+        this.options = options;
+    }
+
+    private ServiceBinder<E> scoped(final Object scope) {
+        final Options options = this.options.copy();
+        options.scope = scope;
+        return new ServiceBinder<E>(with, options);
+    }
+
+    /** Chooses a single implementation, reading no further configurations than needed. */
+    private <T> void bindFirst(final Class<T> service, @Nullable ClassLoader classLoader,
+            final boolean prioritized) {
+        if (null == classLoader)
+            classLoader = getSystemClassLoader();
+        final long start = ServiceListeners.start(DISCOVERED);
+        final List<ServiceConfiguration> read = new ArrayList<ServiceConfiguration>();
+        final Iterator<ServiceConfiguration> configurations = ServiceCache
+                .lookup(service, classLoader);
+        ServiceConfiguration chosen = null;
+        int implementation = -1;
+        int priority = MAX_VALUE;
+        found:
+        while (configurations.hasNext()) {
+            final ServiceConfiguration configuration = configurations.next();
+            read.add(configuration);
+            for (int i = 0, n = configuration.implementations.size(); i < n; ++i) {
+                final ServiceCandidate candidate = new ServiceCandidate(service, classLoader,
+                        configuration.url, configuration.implementations.get(i));
+                if (!options.accept(candidate))
+                    continue;
+                if (!prioritized) {
+                    chosen = configuration;
+                    implementation = i;
+                    break found;
+                }
+                final int rank = candidate.priority();
+                if (null == chosen || rank < priority) {
+                    chosen = configuration;
+                    implementation = i;
+                    priority = rank;
+                }
             }
         }
+        ServiceListeners.discovered(service, classLoader, read, start);
+        if (null != chosen)
+            bindFirst(service, classLoader, chosen, implementation, options, with);
+    }
+
+    private <T> void bind(final Class<T> service, final ClassLoader classLoader,
+            final List<ServiceConfiguration> configurations) {
+        loading(service, classLoader, configurations).bind(with);
+    }
+
+    private <T> Loading<T> loading(final Class<T> service, final ClassLoader classLoader,
+            final List<ServiceConfiguration> configurations) {
+        return new Loading<T>(service, classLoader, configurations, options);
     }
 
-    private static <T> BufferedReader config(final Class<T> service, final URL config) {
+    private static <T, E extends Exception> void bind(final Class<T> service, final URL config,
+            final List<Class<? extends T>> implementations, final Options options,
+            final With<E> with) {
+        final long start = ServiceListeners.start(BOUND);
         try {
-            return new BufferedReader(new InputStreamReader(config.openStream(), UTF8));
-        } catch (final IOException e) {
-            return fail(service, config, "Cannot read service configuration", e);
+            with.bind(service, implementations, options);
+            ServiceListeners.bound(service, config, implementations.size(), start);
+            if (null == options.warmUp)
+                return;
+            final List<String> names = new ArrayList<String>(implementations.size());
+            for (final Class<? extends T> implementation : implementations) {
+                options.warmUp.initialize(implementation);
+                names.add(implementation.getName());
+            }
+            if (options.warmUp.constructs())
+                with.construct(service, names, false, options.warmUp);
+        } catch (final Exception e) { // Cannot declare a generic catch using <E>
+            fail(service, config, "Cannot bind implementations", e);
         }
     }
 
-    private static <T> List<Class<? extends T>> implementations(final Class<T> service,
-            final ClassLoader classLoader, final URL config, final BufferedReader reader) {
-        final List<Class<? extends T>> implementations = new ArrayList<Class<? extends T>>();
-        String implementation;
-        while (null != (implementation = implementation(service, config, reader)))
-            if (!skip(implementation))
-                implementations.add(loadClass(service, classLoader, config, implementation));
-        return implementations;
+    private static <T, E extends Exception> void bindLazily(final Class<T> service,
+            final ClassLoader classLoader, final ServiceConfiguration configuration,
+            final Options options, final With<E> with) {
+        final long start = ServiceListeners.start(BOUND);
+        try {
+            with.bindLazily(service, classLoader, configuration, options);
+            ServiceListeners.bound(service, configuration.url,
+                    configuration.implementations.size(), start);
+            if (null == options.warmUp)
+                return;
+            for (int i = 0, n = configuration.implementations.size(); i < n; ++i)
+                options.warmUp.initialize(service, classLoader, configuration, i);
+            if (options.warmUp.constructs())
+                with.construct(service, configuration.implementations, false, options.warmUp);
+        } catch (final Exception e) { // Cannot declare a generic catch using <E>
+            fail(service, configuration.url, "Cannot bind implementations", e);
+        }
     }
 
-    private static <T> String implementation(final Class<T> service, final URL config,
-            final BufferedReader reader) {
+    private static <T, E extends Exception> void bindFirst(final Class<T> service,
+            final ClassLoader classLoader, final ServiceConfiguration configuration, final int i,
+            final Options options, final With<E> with) {
+        final Class<? extends T> implementation = options.lazy ? null
+                : loadClass(service, classLoader, configuration, i);
+        final long start = ServiceListeners.start(BOUND);
         try {
-            final String line = reader.readLine();
-            if (null == line)
-                return null;
+            with.bindFirst(service, classLoader, configuration, i, implementation, options);
+            ServiceListeners.bound(service, configuration.url, 1, start);
+            if (null == options.warmUp)
+                return;
+            if (null == implementation)
+                options.warmUp.initialize(service, classLoader, configuration, i);
             else
-                return COMMENT.matcher(line).replaceFirst("").trim();
-        } catch (final IOException e) {
-            return fail(service, config, "Cannot read service configuration", e);
+                options.warmUp.initialize(implementation);
+            if (options.warmUp.constructs())
+                with.construct(service, singletonList(configuration.implementations.get(i)),
+                        true, options.warmUp);
+        } catch (final Exception e) { // Cannot declare a generic catch using <E>
+            fail(service, configuration.url, "Cannot bind implemntation", e);
         }
     }
 
+    /** Resolves the <var>i</var>th implementation once while its class remains loaded. */
+    @SuppressWarnings("unchecked")
+    static <T> Class<? extends T> loadClass(final Class<T> service,
+            final ClassLoader classLoader, final ServiceConfiguration configuration,
+            final int i) {
+        Class<?> implementation = configuration.resolved(i);
+        if (null == implementation)
+            configuration.resolved(i, implementation = loadClass(service, classLoader,
+                    configuration.url, configuration.implementations.get(i)));
+        return (Class<? extends T>) implementation;
+    }
+
     @SuppressWarnings("unchecked")
     private static <T> Class<? extends T> loadClass(final Class<T> service,
             final ClassLoader classLoader, final URL config, final String className) {
+        final long start = ServiceListeners.start(LOADED);
         try {
-            return (Class<? extends T>) classLoader.loadClass(className);
+            final Class<? extends T> implementation = (Class<? extends T>) classLoader
+                    .loadClass(className);
+            if (ServiceModules.factory(implementation))
+                return fail(service, config, "Cannot bind implementation for " + className,
+                        new UnsupportedOperationException(
+                                "Module provider() factories are not supported"));
+            ServiceListeners.loaded(service, config, implementation, start);
+            return implementation;
         } catch (final ClassNotFoundException e) {
             return fail(service, config, "Cannot bind implementation for " + className, e);
         }
     }
 
-    private static boolean skip(final String s) {
-        if (null == s)
-            return true;
-        final int len = s.length();
-        if (0 == len)
+    static <R> R fail(final Class<?> service, final String message, final Exception cause) {
+        ServiceListeners.failed(service, null, message, cause);
+        throw new ServiceConfigurationError(service.getName() + ": " + message, cause);
+    }
+
+    static <R> R fail(@Nullable final Class<?> service, final URL config, final String message,
+            final Exception cause) {
+        ServiceListeners.failed(service, config, message, cause);
+        throw new ServiceConfigurationError(
+                (null == service ? "" : service.getName() + ": ") + config + ": " + message,
+                cause);
+    }
+
+    static <R> R fail(final URL config, final String message, final Exception cause) {
+        return fail(null, config, message, cause);
+    }
+
+    /** Binds the recorded <var>steps</var> of a plan with Guice. */
+    static void replay(final List<Step> steps, final Binder binder) {
+        replay(steps, new WithGuice(binder));
+    }
+
+    /** Binds the recorded <var>steps</var> of a plan with the built-in injector. */
+    static void replay(final List<Step> steps, final ServiceInjector injector) {
+        replay(steps, new WithInjector(injector));
+    }
+
+    /** Binds the recorded <var>steps</var> of a plan with Spring, sharing its definitions. */
+    static void replay(final List<Step> steps, final BeanDefinitionRegistry registry,
+            final ConcurrentMap<Class<?>, RootBeanDefinition> definitions) {
+        replay(steps, new WithSpring(registry, definitions));
+    }
+
+    private static void replay(final List<Step> steps, final With<?> with) {
+        for (final Step step : steps)
+            step.replay(with);
+    }
+
+    /** Options for discovery and binding, copied on change so service binders are immutable. */
+    private static final class Options
+            implements Cloneable {
+        private Executor executor;
+        private boolean lazy;
+        private boolean factories;
+        private ProvisionSink sink;
+        private List<ServiceFilter> filters = emptyList();
+        private ServiceWarmUp warmUp;
+        /** {@code null}, a {@link Scoping}, or a Guice scope or Spring scope name. */
+        private Object scope;
+
+        private boolean accept(final ServiceCandidate candidate) {
+            for (final ServiceFilter filter : filters)
+                if (!filter.accept(candidate))
+                    return false;
             return true;
-        for (int i = 0; i < len; ) {
-            final int cp = s.codePointAt(i);
-            if (!isWhitespace(cp))
-                return false;
-            i += charCount(cp);
         }
-        return true;
+
+        private Options copy() {
+            try {
+                return (Options) clone();
+            } catch (final CloneNotSupportedException e) {
+                throw new AssertionError(e);
+            }
+        }
     }
 
-    private static <R> R fail(final Class<?> service, final String message, final Exception cause) {
-        throw new ServiceConfigurationError(service.getName() + ": " + message, cause);
+    /**
+     * Loads the implementations of a service, serially when bound or in parallel beforehand on an
+     * executor, or not at all when binding lazily.
+     */
+    private static final class Loading<T> {
+        private final Class<T> service;
+        private final ClassLoader classLoader;
+        private final List<ServiceConfiguration> configurations;
+        private final Options options;
+        private final List<FutureTask<Class<? extends T>>> tasks;
+
+        private Loading(final Class<T> service, final ClassLoader classLoader,
+                final List<ServiceConfiguration> configurations, final Options options) {
+            this.service = service;
+            this.classLoader = classLoader;
+            this.options = options;
+            this.configurations = options.filters.isEmpty() ? configurations
+                    : filter(configurations);
+            tasks = options.lazy || null == options.executor ? null : start(options.executor);
+        }
+
+        /** Selects the implementations all filters accept, before loading any. */
+        private List<ServiceConfiguration> filter(
+                final List<ServiceConfiguration> configurations) {
+            final List<ServiceConfiguration> filtered = new ArrayList<ServiceConfiguration>(
+                    configurations.size());
+            for (final ServiceConfiguration configuration : configurations) {
+                final List<Integer> accepted = new ArrayList<Integer>();
+                for (int i = 0, n = configuration.implementations.size(); i < n; ++i)
+                    if (options.accept(new ServiceCandidate(service, classLoader,
+                            configuration.url,
+                            configuration.implementations.get(i))))
+                        accepted.add(i);
+                if (accepted.size() == configuration.implementations.size())
+                    filtered.add(configuration);
+                else if (!accepted.isEmpty())
+                    filtered.add(configuration.select(accepted));
+            }
+            return filtered;
+        }
+
+        private List<FutureTask<Class<? extends T>>> start(final Executor executor) {
+            final List<FutureTask<Class<? extends T>>> tasks
+                    = new ArrayList<FutureTask<Class<? extends T>>>();
+            for (final ServiceConfiguration configuration : configurations)
+                for (int i = 0, n = configuration.implementations.size(); i < n; ++i) {
+                    final int implementation = i;
+                    final FutureTask<Class<? extends T>> task = new FutureTask<Class<? extends T>>(
+                            new Callable<Class<? extends T>>() {
+                                @Override
+                                public Class<? extends T> call() {
+                                    return loadClass(service, classLoader, configuration,
+                                            implementation);
+                                }
+                            });
+                    tasks.add(task);
+                    if (null == configuration.resolved(i))
+                        try {
+                            executor.execute(task);
+                        } catch (final RejectedExecutionException ignored) {
+                            // Loaded when bound
+                        }
+                }
+            return tasks;
+        }
+
+        private <E extends Exception> void bind(final With<E> with) {
+            bind(with, null);
+        }
+
+        /**
+         * Binds the implementations, leaving out any already in <var>bound</var> by defining class
+         * loader and name, if deduplicating, and adding those bound.
+         */
+        private <E extends Exception> void bind(final With<E> with,
+                @Nullable final Map<ClassLoader, Set<String>> bound) {
+            if (options.lazy) {
+                for (final ServiceConfiguration configuration : configurations) {
+                    final ServiceConfiguration unbound = null == bound ? configuration
+                            : unbound(configuration, bound);
+                    if (null != unbound)
+                        bindLazily(service, classLoader, unbound, options, with);
+                }
+                return;
+            }
+            int t = 0;
+            for (final ServiceConfiguration configuration : configurations) {
+                final int n = configuration.implementations.size();
+                final List<Class<? extends T>> implementations
+                        = new ArrayList<Class<? extends T>>(n);
+                for (int i = 0; i < n; ++i) {
+                    final Class<? extends T> implementation = null == tasks
+                            ? loadClass(service, classLoader, configuration, i)
+                            : await(tasks.get(t++));
+                    if (null == bound || first(bound, implementation.getClassLoader(),
+                            implementation.getName()))
+                        implementations.add(implementation);
+                }
+                if (null == bound || !implementations.isEmpty())
+                    ServiceBinder.bind(service, configuration.url, implementations, options,
+                            with);
+            }
+        }
+
+        /** Selects the implementations not yet bound, or {@code null} if none. */
+        private ServiceConfiguration unbound(final ServiceConfiguration configuration,
+                final Map<ClassLoader, Set<String>> bound) {
+            final List<Integer> unbound = new ArrayList<Integer>();
+            for (int i = 0, n = configuration.implementations.size(); i < n; ++i)
+                if (first(bound, classLoader, configuration.implementations.get(i)))
+                    unbound.add(i);
+            if (unbound.isEmpty())
+                return null;
+            return unbound.size() == configuration.implementations.size() ? configuration
+                    : configuration.select(unbound);
+        }
+
+        private static boolean first(final Map<ClassLoader, Set<String>> bound,
+                @Nullable final ClassLoader classLoader, final String implementation) {
+            Set<String> names = bound.get(classLoader);
+            if (null == names)
+                bound.put(classLoader, names = new HashSet<String>());
+            return names.add(implementation);
+        }
+
+        /** Runs <var>task</var> here if not yet started elsewhere, then waits for it. */
+        private Class<? extends T> await(final FutureTask<Class<? extends T>> task) {
+            task.run();
+            try {
+                return task.get();
+            } catch (final InterruptedException e) {
+                currentThread().interrupt();
+                return fail(service, "Interrupted loading implementations", e);
+            } catch (final ExecutionException e) {
+                final Throwable cause = e.getCause();
+                if (cause instanceof Error)
+                    throw (Error) cause;
+                if (cause instanceof RuntimeException)
+                    throw (RuntimeException) cause;
+                return fail(service, "Cannot load implementations", (Exception) cause);
+            }
+        }
     }
 
-    private static <R> R fail(final Class<?> service, final URL config, final String message,
-            final Exception cause) {
-        throw new ServiceConfigurationError(service.getName() + ": " + config + ": " + message,
-                cause);
+    /** Portable scopes, translated by each injector. */
+    private enum Scoping {
+        SINGLETON, EAGER_SINGLETON, UNSCOPED
     }
 
     private interface With<E extends Exception> {
-        <T> void bind(final Class<T> service, final Iterable<Class<? extends T>> implementation)
+        <T> void bind(final Class<T> service, final Iterable<Class<? extends T>> implementation,
+                final Options options)
+                throws E;
+
+        /** Binds without loading implementation classes until first injected, if possible. */
+        <T> void bindLazily(final Class<T> service, final ClassLoader classLoader,
+                final ServiceConfiguration configuration, final Options options)
+                throws E;
+
+        /**
+         * Binds the <var>i</var>th implementation in <var>configuration</var> as the only one,
+         * already loaded unless lazy.
+         */
+        <T> void bindFirst(final Class<T> service, final ClassLoader classLoader,
+                final ServiceConfiguration configuration, final int i,
+                @Nullable final Class<? extends T> implementation, final Options options)
                 throws E;
+
+        /**
+         * Constructs the bound <var>implementations</var> of <var>service</var> with
+         * <var>warmUp</var> once injectable, all bound to a set unless <var>single</var>.
+         */
+        <T> void construct(final Class<T> service, final List<String> implementations,
+                final boolean single, final ServiceWarmUp warmUp)
+                throws E;
+    }
+
+    /** A binding recorded by a plan, replayed with each binding instance. */
+    interface Step {
+        void replay(final With<?> with);
+    }
+
+    /** Records bindings as plan steps, loading and filtering as when binding directly. */
+    private static final class Recording
+            implements With<RuntimeException> {
+        private final ServicePlan.Builder builder;
+
+        private Recording(final ServicePlan.Builder builder) {
+            this.builder = builder;
+        }
+
+        @Override
+        public <T> void bind(final Class<T> service,
+                final Iterable<Class<? extends T>> implementations, final Options options) {
+            final List<Class<? extends T>> recorded = new ArrayList<Class<? extends T>>();
+            for (final Class<? extends T> implementation : implementations)
+                recorded.add(implementation);
+            builder.add(new Step() {
+                @Override
+                public void replay(final With<?> with) {
+                    try {
+                        with.bind(service, recorded, options);
+                    } catch (final Exception e) { // Cannot declare a generic catch using <E>
+                        fail(service, "Cannot bind implementations", e);
+                    }
+                }
+            });
+        }
+
+        @Override
+        public <T> void bindLazily(final Class<T> service, final ClassLoader classLoader,
+                final ServiceConfiguration configuration, final Options options) {
+            builder.add(new Step() {
+                @Override
+                public void replay(final With<?> with) {
+                    try {
+                        with.bindLazily(service, classLoader, configuration, options);
+                    } catch (final Exception e) { // Cannot declare a generic catch using <E>
+                        fail(service, configuration.url, "Cannot bind implementations", e);
+                    }
+                }
+            });
+        }
+
+        @Override
+        public <T> void bindFirst(final Class<T> service, final ClassLoader classLoader,
+                final ServiceConfiguration configuration, final int i,
+                @Nullable final Class<? extends T> implementation, final Options options) {
+            builder.add(new Step() {
+                @Override
+                public void replay(final With<?> with) {
+                    try {
+                        with.bindFirst(service, classLoader, configuration, i, implementation,
+                                options);
+                    } catch (final Exception e) { // Cannot declare a generic catch using <E>
+                        fail(service, configuration.url, "Cannot bind implementation", e);
+                    }
+                }
+            });
+        }
+
+        @Override
+        public <T> void construct(final Class<T> service, final List<String> implementations,
+                final boolean single, final ServiceWarmUp warmUp) {
+            builder.add(new Step() {
+                @Override
+                public void replay(final With<?> with) {
+                    try {
+                        with.construct(service, implementations, single, warmUp);
+                    } catch (final Exception e) { // Cannot declare a generic catch using <E>
+                        fail(service, "Cannot warm up implementations", e);
+                    }
+                }
+            });
+        }
     }
 
     private static class WithGuice
             implements With<RuntimeException> {
         private final Binder binder;
+        private final Set<Class<?>> constructing = new HashSet<Class<?>>();
 
         public WithGuice(final Binder binder) {
             this.binder = binder;
@@ -252,28 +1105,702 @@ public final class ServiceBinder<E extends Exception> {
 
         @Override
         public <T> void bind(final Class<T> service,
-                final Iterable<Class<? extends T>> implementations) {
+                final Iterable<Class<? extends T>> implementations, final Options options) {
             final Multibinder<T> bindings = newSetBinder(binder, service);
             for (final Class<? extends T> implementation : implementations)
-                bindings.addBinding().to(implementation);
+                to(bindings.addBinding(), implementation, options);
+        }
+
+        @Override
+        public <T> void bindLazily(final Class<T> service, final ClassLoader classLoader,
+                final ServiceConfiguration configuration, final Options options) {
+            final Multibinder<T> bindings = newSetBinder(binder, service);
+            for (int i = 0, n = configuration.implementations.size(); i < n; ++i)
+                toLazy(bindings.addBinding(), service, classLoader, configuration, i, options);
+        }
+
+        @Override
+        public <T> void bindFirst(final Class<T> service, final ClassLoader classLoader,
+                final ServiceConfiguration configuration, final int i,
+                @Nullable final Class<? extends T> implementation, final Options options) {
+            if (null == implementation)
+                toLazy(binder.bind(service), service, classLoader, configuration, i, options);
+            else
+                to(binder.bind(service), implementation, options);
+        }
+
+        /** Constructs the whole set once per service, however many bindings add to it. */
+        @Override
+        public <T> void construct(final Class<T> service, final List<String> implementations,
+                final boolean single, final ServiceWarmUp warmUp) {
+            if (single)
+                binder.requestInjection(new GuiceWarmUp(warmUp, Key.get(service), true));
+            else if (constructing.add(service))
+                binder.requestInjection(
+                        new GuiceWarmUp(warmUp, Key.get(Types.setOf(service)), false));
+        }
+
+        private static <T> void to(final LinkedBindingBuilder<T> binding,
+                final Class<? extends T> implementation, final Options options) {
+            final Provider<T> factory = options.factories
+                    ? new FactoryProvider<T>(implementation) : null;
+            // Guice does not scope provider bindings by the implementation class
+            final Object scope = null == options.scope ? scopeAnnotation(implementation)
+                    : options.scope;
+            if (null != options.sink)
+                scope(binding.toProvider(
+                        new InstrumentedProvider<T>(options.sink, implementation, factory)),
+                        scope);
+            else if (null != factory)
+                scope(binding.toProvider(factory), scope);
+            else
+                scope(binding.to(implementation), options.scope);
+        }
+
+        /** Finds the Guice or {@code javax.inject} scope annotation of a class, if any. */
+        @Nullable
+        private static Class<? extends Annotation> scopeAnnotation(final Class<?> implementation) {
+            for (final Annotation annotation : implementation.getAnnotations()) {
+                final Class<? extends Annotation> type = annotation.annotationType();
+                if (type.isAnnotationPresent(ScopeAnnotation.class) || type.isAnnotationPresent(
+                        javax.inject.Scope.class))
+                    return type;
+            }
+            return null;
+        }
+
+        private static <T> void toLazy(final LinkedBindingBuilder<T> binding,
+                final Class<T> service, final ClassLoader classLoader,
+                final ServiceConfiguration configuration, final int i, final Options options) {
+            final Provider<T> lazy = new LazyProvider<T>(service, classLoader, configuration, i,
+                    options.factories);
+            scope(binding.toProvider(null == options.sink ? lazy
+                    : new InstrumentedProvider<T>(options.sink, null, lazy)), options.scope);
+        }
+
+        private static void scope(final ScopedBindingBuilder binding, final Object scope) {
+            if (Scoping.SINGLETON == scope)
+                binding.in(Scopes.SINGLETON);
+            else if (Scoping.EAGER_SINGLETON == scope)
+                binding.asEagerSingleton();
+            else if (scope instanceof Scope)
+                binding.in((Scope) scope);
+            else if (scope instanceof Class) // Scope annotation of the implementation
+                binding.in(((Class<?>) scope).asSubclass(Annotation.class));
+            else if (null != scope && Scoping.UNSCOPED != scope) // Recorded by a plan
+                throw new IllegalArgumentException("Spring scope without Spring: " + scope);
+        }
+    }
+
+    /** Starts constructing bound instances in the background when the injector is created. */
+    private static final class GuiceWarmUp {
+        private final ServiceWarmUp warmUp;
+        private final Key<?> key;
+        private final boolean single;
+
+        private GuiceWarmUp(final ServiceWarmUp warmUp, final Key<?> key, final boolean single) {
+            this.warmUp = warmUp;
+            this.key = key;
+            this.single = single;
+        }
+
+        @Inject
+        void start(final Injector injector) {
+            warmUp.construct(new Callable<Iterable<?>>() {
+                @Override
+                public Iterable<?> call() {
+                    final Object instance = injector.getInstance(key);
+                    return single ? singletonList(instance) : (Iterable<?>) instance;
+                }
+
+                @Override
+                public String toString() {
+                    return key.toString();
+                }
+            });
+        }
+    }
+
+    /** Loads the implementation class on first provision, then defers to the injector. */
+    private static final class LazyProvider<T>
+            implements Provider<T> {
+        private final Class<T> service;
+        private final ClassLoader classLoader;
+        private final ServiceConfiguration configuration;
+        private final int implementation;
+        private final boolean factories;
+        @Inject
+        private Injector injector;
+        private volatile GuiceFactory<? extends T> factory;
+
+        private LazyProvider(final Class<T> service, final ClassLoader classLoader,
+                final ServiceConfiguration configuration, final int implementation,
+                final boolean factories) {
+            this.service = service;
+            this.classLoader = classLoader;
+            this.configuration = configuration;
+            this.implementation = implementation;
+            this.factories = factories;
+        }
+
+        @Override
+        public T get() {
+            if (!factories)
+                return injector.getInstance(
+                        loadClass(service, classLoader, configuration, implementation));
+            GuiceFactory<? extends T> factory = this.factory;
+            if (null == factory)
+                this.factory = factory = GuiceFactory.of(injector,
+                        loadClass(service, classLoader, configuration, implementation));
+            return factory.create();
+        }
+
+        @Override
+        public String toString() {
+            return getClass().getSimpleName() + "["
+                    + configuration.implementations.get(implementation) + "]";
+        }
+    }
+
+    /**
+     * Measures each provision from <var>delegate</var>, or from the injector for
+     * <var>implementation</var> without a delegate.  The delegate is injected along with this
+     * provider.
+     */
+    private static final class InstrumentedProvider<T>
+            implements Provider<T> {
+        private final ProvisionSink sink;
+        private final Class<? extends T> implementation;
+        private final Provider<? extends T> delegate;
+        private Injector injector;
+
+        private InstrumentedProvider(final ProvisionSink sink,
+                @Nullable final Class<? extends T> implementation,
+                @Nullable final Provider<? extends T> delegate) {
+            this.sink = sink;
+            this.implementation = implementation;
+            this.delegate = delegate;
+        }
+
+        @Inject
+        void inject(final Injector injector) {
+            this.injector = injector;
+            if (null != delegate)
+                injector.injectMembers(delegate);
+        }
+
+        @Override
+        public T get() {
+            final long bytes = ProvisionMetrics.allocatedBytes();
+            final long start = nanoTime();
+            final T instance = null == delegate
+                    ? injector.getInstance(implementation) : delegate.get();
+            final long nanos = nanoTime() - start;
+            sink.provisioned(null == implementation ? instance.getClass() : implementation,
+                    nanos, ProvisionMetrics.allocatedBytes() - bytes);
+            return instance;
+        }
+
+        @Override
+        public String toString() {
+            return getClass().getSimpleName() + "["
+                    + (null == delegate ? implementation.getName() : delegate) + "]";
+        }
+    }
+
+    /** Creates instances with a generated factory for an already loaded implementation. */
+    private static final class FactoryProvider<T>
+            implements Provider<T> {
+        private final Class<? extends T> implementation;
+        @Inject
+        private Injector injector;
+        private volatile GuiceFactory<? extends T> factory;
+
+        private FactoryProvider(final Class<? extends T> implementation) {
+            this.implementation = implementation;
+        }
+
+        @Override
+        public T get() {
+            GuiceFactory<? extends T> factory = this.factory;
+            if (null == factory)
+                this.factory = factory = GuiceFactory.of(injector, implementation);
+            return factory.create();
+        }
+
+        @Override
+        public String toString() {
+            return getClass().getSimpleName() + "[" + implementation.getName() + "]";
+        }
+    }
+
+    /**
+     * Constructs with a {@link ServiceFactory} for the constructor Guice would inject, with
+     * arguments from the injector, then injects members.
+     */
+    private static final class GuiceFactory<T> {
+        private final ServiceFactory<T> factory;
+        private final Provider<?>[] arguments;
+        private final MembersInjector<T> members;
+
+        @SuppressWarnings("unchecked")
+        private GuiceFactory(final Injector injector, final Class<T> implementation) {
+            final InjectionPoint constructor = InjectionPoint.forConstructorOf(implementation);
+            factory = new ServiceFactory<T>((Constructor<T>) constructor.getMember());
+            final List<Dependency<?>> dependencies = constructor.getDependencies();
+            arguments = new Provider<?>[dependencies.size()];
+            for (int i = 0; i < arguments.length; ++i)
+                arguments[i] = injector.getProvider(dependencies.get(i).getKey());
+            members = injector.getMembersInjector(implementation);
+        }
+
+        private static <T> GuiceFactory<T> of(final Injector injector,
+                final Class<T> implementation) {
+            return new GuiceFactory<T>(injector, implementation);
+        }
+
+        private T create() {
+            final Object[] values = new Object[arguments.length];
+            for (int i = 0; i < values.length; ++i)
+                values[i] = arguments[i].get();
+            final T instance;
+            try {
+                instance = factory.create(values);
+            } catch (final InvocationTargetException e) {
+                throw new ProvisionException(
+                        "Cannot construct " + factory.constructor.getDeclaringClass().getName(),
+                        e.getCause());
+            }
+            members.injectMembers(instance);
+            return instance;
         }
     }
 
     private static class WithSpring
             implements With<ClassNotFoundException> {
         private final BeanDefinitionRegistry registry;
+        /** Definitions of loaded implementations shared by a plan, copied when registered. */
+        private final ConcurrentMap<Class<?>, RootBeanDefinition> definitions;
 
-        public WithSpring(final BeanDefinitionRegistry registry) {
+        public WithSpring(final BeanDefinitionRegistry registry,
+                @Nullable final ConcurrentMap<Class<?>, RootBeanDefinition> definitions) {
             this.registry = registry;
+            this.definitions = definitions;
         }
 
         @Override
         public <T> void bind(final Class<T> service,
-                final Iterable<Class<? extends T>> implementations)
+                final Iterable<Class<? extends T>> implementations, final Options options)
                 throws ClassNotFoundException {
             for (final Class<? extends T> implementation : implementations)
                 registry.registerBeanDefinition(implementation.getName(),
-                        new RootBeanDefinition(implementation, AUTOWIRE_CONSTRUCTOR, true));
+                        definition(implementation, options));
+        }
+
+        /**
+         * Registers lazy-init definitions by class name when Spring resolves names with
+         * <var>classLoader</var>, else by class, still lazy-init.
+         */
+        @Override
+        public <T> void bindLazily(final Class<T> service, final ClassLoader classLoader,
+                final ServiceConfiguration configuration, final Options options)
+                throws ClassNotFoundException {
+            final boolean byName = classLoader == beanClassLoader();
+            for (int i = 0, n = configuration.implementations.size(); i < n; ++i)
+                registry.registerBeanDefinition(configuration.implementations.get(i),
+                        definition(service, classLoader, configuration, i, byName, options));
+        }
+
+        /** Registers a primary definition, lazily as {@link #bindLazily} if not loaded. */
+        @Override
+        public <T> void bindFirst(final Class<T> service, final ClassLoader classLoader,
+                final ServiceConfiguration configuration, final int i,
+                @Nullable final Class<? extends T> implementation, final Options options)
+                throws ClassNotFoundException {
+            final RootBeanDefinition definition = null == implementation
+                    ? definition(service, classLoader, configuration, i,
+                    classLoader == beanClassLoader(), options)
+                    : definition(implementation, options);
+            definition.setPrimary(true);
+            registry.registerBeanDefinition(configuration.implementations.get(i), definition);
+        }
+
+        /** Registers a listener constructing the beans when the context refreshes. */
+        @Override
+        public <T> void construct(final Class<T> service, final List<String> implementations,
+                final boolean single, final ServiceWarmUp warmUp) {
+            final RootBeanDefinition definition = new RootBeanDefinition(SpringWarmUp.class);
+            definition.getConstructorArgumentValues().addIndexedArgumentValue(0, warmUp);
+            definition.getConstructorArgumentValues()
+                    .addIndexedArgumentValue(1, new ArrayList<String>(implementations));
+            registerWithGeneratedName(definition, registry);
+        }
+
+        private RootBeanDefinition definition(final Class<?> implementation,
+                final Options options) {
+            if (null == definitions)
+                return instantiate(definition(implementation, options.scope), options);
+            RootBeanDefinition shared = definitions.get(implementation);
+            if (null == shared) {
+                final RootBeanDefinition created = definition(implementation, options.scope);
+                if (options.factories) // Share the factory as well
+                    created.setAttribute(ServiceInstantiationStrategy.FACTORY,
+                            new AtomicReference<ServiceFactory<?>>());
+                shared = definitions.putIfAbsent(implementation, created);
+                if (null == shared)
+                    shared = created;
+            }
+            return instantiate(new RootBeanDefinition(shared), options);
+        }
+
+        private static RootBeanDefinition definition(final Class<?> implementation,
+                final Object scope) {
+            return scope(new RootBeanDefinition(implementation, AUTOWIRE_CONSTRUCTOR, true),
+                    scope);
+        }
+
+        private RootBeanDefinition definition(final Class<?> service,
+                final ClassLoader classLoader, final ServiceConfiguration configuration,
+                final int i, final boolean byName, final Options options) {
+            final RootBeanDefinition definition = new RootBeanDefinition();
+            if (byName)
+                definition.setBeanClassName(configuration.implementations.get(i));
+            else
+                definition.setBeanClass(loadClass(service, classLoader, configuration, i));
+            definition.setAutowireMode(AUTOWIRE_CONSTRUCTOR);
+            definition.setLazyInit(true);
+            return instantiate(scope(definition, options.scope), options);
+        }
+
+        private static RootBeanDefinition scope(final RootBeanDefinition definition,
+                final Object scope) {
+            if (Scoping.SINGLETON == scope)
+                definition.setScope(SCOPE_SINGLETON);
+            else if (Scoping.EAGER_SINGLETON == scope) {
+                definition.setScope(SCOPE_SINGLETON);
+                definition.setLazyInit(false);
+            } else if (Scoping.UNSCOPED == scope)
+                definition.setScope(SCOPE_PROTOTYPE);
+            else if (scope instanceof String)
+                definition.setScope((String) scope);
+            else if (null != scope) // Recorded by a plan
+                throw new IllegalArgumentException("Guice scope without Guice: " + scope);
+            return definition;
+        }
+
+        /**
+         * Marks <var>definition</var> for instantiation by factory, or for measuring, if possible.
+         */
+        private RootBeanDefinition instantiate(final RootBeanDefinition definition,
+                final Options options) {
+            if (!options.factories && null == options.sink)
+                return definition;
+            final AbstractAutowireCapableBeanFactory beanFactory = beanFactory();
+            if (null == beanFactory)
+                return definition;
+            beanFactory.setInstantiationStrategy(ServiceInstantiationStrategy.INSTANCE);
+            if (options.factories && !definition.hasAttribute(ServiceInstantiationStrategy.FACTORY))
+                definition.setAttribute(ServiceInstantiationStrategy.FACTORY,
+                        new AtomicReference<ServiceFactory<?>>());
+            if (null != options.sink)
+                definition.setAttribute(ServiceInstantiationStrategy.PROVISION,
+                        provision(beanFactory, options.sink));
+            return definition;
+        }
+
+        private static ProvisionPostProcessor provision(
+                final AbstractAutowireCapableBeanFactory beanFactory, final ProvisionSink sink) {
+            for (final BeanPostProcessor processor : beanFactory.getBeanPostProcessors())
+                if (processor instanceof ProvisionPostProcessor
+                        && sink == ((ProvisionPostProcessor) processor).sink)
+                    return (ProvisionPostProcessor) processor;
+            final ProvisionPostProcessor processor = new ProvisionPostProcessor(sink);
+            beanFactory.addBeanPostProcessor(processor);
+            return processor;
+        }
+
+        private AbstractAutowireCapableBeanFactory beanFactory() {
+            if (registry instanceof AbstractAutowireCapableBeanFactory)
+                return (AbstractAutowireCapableBeanFactory) registry;
+            if (registry instanceof GenericApplicationContext)
+                return ((GenericApplicationContext) registry).getDefaultListableBeanFactory();
+            return null;
+        }
+
+        private ClassLoader beanClassLoader() {
+            if (registry instanceof ResourceLoader)
+                return ((ResourceLoader) registry).getClassLoader();
+            if (registry instanceof ConfigurableBeanFactory)
+                return ((ConfigurableBeanFactory) registry).getBeanClassLoader();
+            return null;
+        }
+    }
+
+    /** Starts constructing the named beans in the background when the context refreshes, once. */
+    private static final class SpringWarmUp
+            implements ApplicationListener<ContextRefreshedEvent> {
+        private final ServiceWarmUp warmUp;
+        private final List<String> names;
+        private final AtomicBoolean started = new AtomicBoolean();
+
+        private SpringWarmUp(final ServiceWarmUp warmUp, final List<String> names) {
+            this.warmUp = warmUp;
+            this.names = names;
+        }
+
+        @Override
+        public void onApplicationEvent(final ContextRefreshedEvent event) {
+            if (!started.compareAndSet(false, true))
+                return;
+            final ApplicationContext context = event.getApplicationContext();
+            warmUp.construct(new Callable<Iterable<?>>() {
+                @Override
+                public Iterable<?> call() {
+                    final List<Object> beans = new ArrayList<Object>(names.size());
+                    for (final String name : names)
+                        beans.add(context.getBean(name));
+                    return beans;
+                }
+
+                @Override
+                public String toString() {
+                    return names.toString();
+                }
+            });
+        }
+    }
+
+    /**
+     * Instantiates bean definitions marked with a factory holder with a {@link ServiceFactory} for
+     * the constructor Spring resolves, else as Spring does by default.  Starts measuring bean
+     * definitions marked with a provision post-processor, which Spring calls for every
+     * construction, unlike {@code postProcessBeforeInstantiation}.
+     */
+    private static final class ServiceInstantiationStrategy
+            extends CglibSubclassingInstantiationStrategy {
+        private static final String FACTORY = ServiceBinder.class.getName() + ".factory";
+        private static final String PROVISION = ServiceBinder.class.getName() + ".provision";
+        private static final ServiceInstantiationStrategy INSTANCE
+                = new ServiceInstantiationStrategy();
+
+        @Override
+        public Object instantiate(final RootBeanDefinition definition, final String name,
+                final BeanFactory owner) {
+            if (!(definition.getAttribute(FACTORY) instanceof AtomicReference)) {
+                start(definition, name);
+                return super.instantiate(definition, name, owner);
+            }
+            try {
+                return instantiate(definition, name, owner,
+                        definition.getBeanClass().getDeclaredConstructor(), new Object[0]);
+            } catch (final NoSuchMethodException e) {
+                throw new BeanInstantiationException(definition.getBeanClass(),
+                        "No default constructor found", e);
+            }
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public Object instantiate(final RootBeanDefinition definition, final String name,
+                final BeanFactory owner, final Constructor<?> constructor,
+                final Object[] arguments) {
+            start(definition, name);
+            final Object holder = definition.getAttribute(FACTORY);
+            if (!(holder instanceof AtomicReference) || !definition.getMethodOverrides()
+                    .isEmpty())
+                return super.instantiate(definition, name, owner, constructor, arguments);
+            final AtomicReference<ServiceFactory<?>> factories
+                    = (AtomicReference<ServiceFactory<?>>) holder;
+            ServiceFactory<?> factory = factories.get();
+            if (null == factory || !constructor.equals(factory.constructor))
+                factories.set(factory = new ServiceFactory<Object>(
+                        (Constructor<Object>) constructor));
+            try {
+                return factory.create(arguments);
+            } catch (final IllegalArgumentException e) {
+                throw new BeanInstantiationException(constructor.getDeclaringClass(),
+                        "Illegal arguments for constructor", e);
+            } catch (final InvocationTargetException e) {
+                throw new BeanInstantiationException(constructor.getDeclaringClass(),
+                        "Constructor threw exception", e.getCause());
+            }
+        }
+
+        private static void start(final RootBeanDefinition definition, final String name) {
+            final Object processor = definition.getAttribute(PROVISION);
+            if (processor instanceof ProvisionPostProcessor)
+                ((ProvisionPostProcessor) processor).start(name, definition.getBeanClass());
+        }
+    }
+
+    /**
+     * Measures constructions of beans started by the instantiation strategy, through
+     * initialization, on the constructing thread.
+     */
+    private static final class ProvisionPostProcessor
+            implements BeanPostProcessor {
+        private final ProvisionSink sink;
+        private final ThreadLocal<Map<String, Started>> started
+                = new ThreadLocal<Map<String, Started>>() {
+            @Override
+            protected Map<String, Started> initialValue() {
+                return new HashMap<String, Started>();
+            }
+        };
+
+        private ProvisionPostProcessor(final ProvisionSink sink) {
+            this.sink = sink;
+        }
+
+        private void start(final String beanName, final Class<?> beanClass) {
+            started.get().put(beanName, new Started(beanClass));
+        }
+
+        @Override
+        public Object postProcessBeforeInitialization(final Object bean, final String beanName) {
+            return bean;
+        }
+
+        @Override
+        public Object postProcessAfterInitialization(final Object bean, final String beanName) {
+            final Map<String, Started> started = this.started.get();
+            if (started.isEmpty())
+                return bean;
+            final Started start = started.remove(beanName);
+            if (null != start)
+                sink.provisioned(start.beanClass, nanoTime() - start.nanos,
+                        ProvisionMetrics.allocatedBytes() - start.bytes);
+            return bean;
+        }
+
+        private static final class Started {
+            private final Class<?> beanClass;
+            private final long bytes = ProvisionMetrics.allocatedBytes();
+            private final long nanos = nanoTime();
+
+            private Started(final Class<?> beanClass) {
+                this.beanClass = beanClass;
+            }
+        }
+    }
+
+    /**
+     * Binds implementations as providers in the built-in injector, each linked to the injector
+     * binding of its class, so scope annotations apply as in Guice.
+     */
+    private static final class WithInjector
+            implements With<RuntimeException> {
+        private final ServiceInjector injector;
+
+        private WithInjector(final ServiceInjector injector) {
+            this.injector = injector;
+        }
+
+        @Override
+        public <T> void bind(final Class<T> service,
+                final Iterable<Class<? extends T>> implementations, final Options options) {
+            for (final Class<? extends T> implementation : implementations)
+                injector.add(service, scope(instrument(injector.getProvider(implementation),
+                        implementation, options), options));
+        }
+
+        @Override
+        public <T> void bindLazily(final Class<T> service, final ClassLoader classLoader,
+                final ServiceConfiguration configuration, final Options options) {
+            for (int i = 0, n = configuration.implementations.size(); i < n; ++i)
+                injector.add(service, scope(instrument(
+                        lazy(service, classLoader, configuration, i), null, options), options));
+        }
+
+        @Override
+        public <T> void bindFirst(final Class<T> service, final ClassLoader classLoader,
+                final ServiceConfiguration configuration, final int i,
+                @Nullable final Class<? extends T> implementation, final Options options) {
+            final javax.inject.Provider<? extends T> provider = null == implementation
+                    ? lazy(service, classLoader, configuration, i)
+                    : injector.getProvider(implementation);
+            injector.bind(service, null,
+                    scope(instrument(provider, implementation, options), options));
+        }
+
+        /** Constructs when the injector starts. */
+        @Override
+        public <T> void construct(final Class<T> service, final List<String> implementations,
+                final boolean single, final ServiceWarmUp warmUp) {
+            injector.onStart(new Runnable() {
+                @Override
+                public void run() {
+                    warmUp.construct(new Callable<Iterable<?>>() {
+                        @Override
+                        public Iterable<?> call() {
+                            return single ? singletonList(injector.getInstance(service))
+                                    : injector.getInstances(service);
+                        }
+
+                        @Override
+                        public String toString() {
+                            return implementations.toString();
+                        }
+                    });
+                }
+            });
+        }
+
+        /** Loads the implementation class on first provision, then defers to the injector. */
+        private <T> javax.inject.Provider<T> lazy(final Class<T> service,
+                final ClassLoader classLoader, final ServiceConfiguration configuration,
+                final int i) {
+            return new javax.inject.Provider<T>() {
+                @Override
+                public T get() {
+                    return injector.getInstance(loadClass(service, classLoader, configuration, i));
+                }
+
+                @Override
+                public String toString() {
+                    return configuration.implementations.get(i);
+                }
+            };
+        }
+
+        private static <T> javax.inject.Provider<T> instrument(
+                final javax.inject.Provider<T> provider,
+                @Nullable final Class<?> implementation, final Options options) {
+            final ProvisionSink sink = options.sink;
+            if (null == sink)
+                return provider;
+            return new javax.inject.Provider<T>() {
+                @Override
+                public T get() {
+                    final long bytes = ProvisionMetrics.allocatedBytes();
+                    final long start = nanoTime();
+                    final T instance = provider.get();
+                    final long nanos = nanoTime() - start;
+                    sink.provisioned(null == implementation ? instance.getClass()
+                            : implementation, nanos, ProvisionMetrics.allocatedBytes() - bytes);
+                    return instance;
+                }
+            };
+        }
+
+        private <T> javax.inject.Provider<T> scope(final javax.inject.Provider<T> provider,
+                final Options options) {
+            final Object scope = options.scope;
+            if (null == scope || Scoping.UNSCOPED == scope)
+                return provider;
+            if (scope instanceof String) // Recorded by a plan
+                throw new IllegalArgumentException("Spring scope without Spring: " + scope);
+            if (!(scope instanceof Scoping))
+                throw new IllegalArgumentException("Guice scope without Guice: " + scope);
+            final javax.inject.Provider<T> singleton = ServiceInjector.singleton(provider);
+            if (Scoping.EAGER_SINGLETON == scope)
+                injector.onStart(new Runnable() {
+                    @Override
+                    public void run() {
+                        singleton.get();
+                    }
+                });
+            return singleton;
         }
     }
 }
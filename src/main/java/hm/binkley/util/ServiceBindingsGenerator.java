@@ -0,0 +1,411 @@
+/*
+ * This is free and unencumbered software released into the public domain.
+ *
+ * Anyone is free to copy, modify, publish, use, compile, sell, or
+ * distribute this software, either in source code form or as a compiled
+ * binary, for any purpose, commercial or non-commercial, and by any
+ * means.
+ *
+ * In jurisdictions that recognize copyright laws, the author or authors
+ * of this software dedicate any and all copyright interest in the
+ * software to the public domain. We make this dedication for the benefit
+ * of the public at large and to the detriment of our heirs and
+ * successors. We intend this dedication to be an overt act of
+ * relinquishment in perpetuity of all present and future rights to this
+ * software under copyright law.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY CLAIM, DAMAGES OR
+ * OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ * ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ *
+ * For more information, please refer to <http://unlicense.org/>.
+ */
+
+package hm.binkley.util;
+
+import javax.annotation.processing.ProcessingEnvironment;
+import javax.lang.model.element.AnnotationMirror;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.element.VariableElement;
+import javax.lang.model.type.PrimitiveType;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.util.Elements;
+import javax.lang.model.util.Types;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static javax.lang.model.element.ElementKind.CONSTRUCTOR;
+import static javax.lang.model.element.Modifier.ABSTRACT;
+import static javax.lang.model.element.Modifier.PRIVATE;
+import static javax.lang.model.element.Modifier.PUBLIC;
+import static javax.lang.model.element.Modifier.STATIC;
+import static javax.lang.model.element.NestingKind.TOP_LEVEL;
+import static javax.tools.Diagnostic.Kind.ERROR;
+import static javax.tools.Diagnostic.Kind.WARNING;
+
+/**
+ * {@code ServiceBindingsGenerator} writes source for a Guice module and a Spring Framework bean
+ * class binding the services found by {@link ServiceIndexProcessor}, so applications bind them
+ * without discovery at runtime.  Each implementation is constructed with {@code new} through its
+ * injectable constructor, as {@link ServiceBinder} would choose: one annotated with {@code
+ * javax.inject.Inject} or Guice {@code Inject}, else the no-argument constructor.  Qualifiers on
+ * constructor parameters are copied.  Field and method injection are left to the injector.
+ * Constructors declaring checked exceptions are reported as errors. <p/> The Guice module,
+ * <var>base</var>{@code Module}, adds a provider for each implementation to the multibinding of
+ * each service, as does {@link ServiceBinder}, in the scope annotating the implementation class,
+ * except for services which are Guice types, such as {@code Module}, which Guice refuses to bind.
+ * The Spring bean class, <var>base</var>{@code Configuration}, has a {@code @Bean} method for each
+ * implementation, named by class as {@code ServiceBinder} names them.  It is a component rather
+ * than a {@code @Configuration}, so Spring does not subclass it.  Each is written only when its
+ * framework is on the compile classpath.
+ *
+ * @author <a href="mailto:binkley@alumni.rice.edu">B. K. Oxley (binkley)</a>
+ */
+final class ServiceBindingsGenerator {
+    private static final String HEADER = "// Generated by " + ServiceIndexProcessor.class.getName()
+            + " - do not edit";
+
+    private final ProcessingEnvironment processingEnv;
+    private final String packageName;
+    private final String simpleName;
+
+    /**
+     * Creates a generator for classes named from <var>base</var>, a qualified class name prefix.
+     *
+     * @param processingEnv the processing environment, never missing
+     * @param base the qualified name prefix, never missing
+     */
+    ServiceBindingsGenerator(final ProcessingEnvironment processingEnv, final String base) {
+        this.processingEnv = processingEnv;
+        final int dot = base.lastIndexOf('.');
+        packageName = -1 == dot ? "" : base.substring(0, dot);
+        simpleName = base.substring(dot + 1);
+    }
+
+    /**
+     * Writes the bindings of <var>services</var>, keyed by binary name.  Implementations which
+     * cannot be constructed from the generated package are reported as errors.
+     *
+     * @param services the implementation names by service name, never missing
+     */
+    void generate(final Map<String, Set<String>> services) {
+        final List<Service> found = new ArrayList<Service>(services.size());
+        for (final Map.Entry<String, Set<String>> service : services.entrySet()) {
+            final TypeElement contract = type(service.getKey());
+            if (null == contract)
+                continue;
+            final List<Implementation> implementations = new ArrayList<Implementation>();
+            for (final String name : service.getValue()) {
+                final Implementation implementation = implementation(name);
+                if (null != implementation)
+                    implementations.add(implementation);
+            }
+            found.add(new Service(contract, implementations));
+        }
+        if (null != elements().getTypeElement("com.google.inject.AbstractModule"))
+            guice(found);
+        if (null != elements().getTypeElement("org.springframework.context.annotation.Bean"))
+            spring(found);
+    }
+
+    private void guice(final List<Service> services) {
+        final String name = simpleName + "Module";
+        final PrintWriter out = open(name);
+        if (null == out)
+            return;
+        header(out);
+        out.println("/** Binds services found at compile time, without discovery. */");
+        out.println("public final class " + name);
+        out.println("        extends com.google.inject.AbstractModule {");
+        out.println("    @Override");
+        out.println("    protected void configure() {");
+        int p = 0;
+        for (int s = 0; s < services.size(); ++s) {
+            final Service service = services.get(s);
+            if (framework(service))
+                continue;
+            final String contract = service.contract.getQualifiedName().toString();
+            out.println("        final com.google.inject.multibindings.Multibinder<" + contract
+                    + "> bindings" + s);
+            out.println("                = com.google.inject.multibindings.Multibinder"
+                    + ".newSetBinder(binder(), " + contract + ".class);");
+            for (final Implementation implementation : service.implementations)
+                out.println("        bindings" + s + ".addBinding().toProvider(new Provider"
+                        + p++ + "())" + (null == implementation.scope ? ""
+                        : ".in(" + implementation.scope + ".class)") + ";");
+        }
+        out.println("    }");
+        p = 0;
+        for (final Service service : services)
+            if (!framework(service))
+                for (final Implementation implementation : service.implementations)
+                    provider(out, p++, implementation);
+        out.println("}");
+        out.close();
+    }
+
+    /** Guice refuses to bind its own types, such as modules. */
+    private boolean framework(final Service service) {
+        if (!elements().getPackageOf(service.contract).getQualifiedName()
+                .contentEquals("com.google.inject"))
+            return false;
+        processingEnv.getMessager().printMessage(WARNING,
+                "Not binding Guice type " + service.contract.getQualifiedName() + " in "
+                        + simpleName + "Module");
+        return true;
+    }
+
+    private void provider(final PrintWriter out, final int p,
+            final Implementation implementation) {
+        final String type = implementation.type.getQualifiedName().toString();
+        final List<? extends VariableElement> parameters = implementation.constructor
+                .getParameters();
+        out.println();
+        out.println("    private static final class Provider" + p);
+        out.println("            implements com.google.inject.Provider<" + type + "> {");
+        out.println("        private com.google.inject.MembersInjector<" + type + "> members;");
+        for (int i = 0; i < parameters.size(); ++i)
+            out.println("        private com.google.inject.Provider<"
+                    + boxed(parameters.get(i).asType()) + "> p" + i + ";");
+        out.println();
+        out.println("        @com.google.inject.Inject");
+        out.print("        void inject(final com.google.inject.MembersInjector<" + type
+                + "> members");
+        for (int i = 0; i < parameters.size(); ++i)
+            out.print(",\n                " + qualifiers(parameters.get(i))
+                    + "final com.google.inject.Provider<" + boxed(parameters.get(i).asType())
+                    + "> p" + i);
+        out.println(") {");
+        out.println("            this.members = members;");
+        for (int i = 0; i < parameters.size(); ++i)
+            out.println("            this.p" + i + " = p" + i + ";");
+        out.println("        }");
+        out.println();
+        out.println("        @Override");
+        out.println("        public " + type + " get() {");
+        out.print("            final " + type + " instance = new " + type + "(");
+        for (int i = 0; i < parameters.size(); ++i)
+            out.print((0 == i ? "" : ", ") + "p" + i + ".get()");
+        out.println(");");
+        out.println("            members.injectMembers(instance);");
+        out.println("            return instance;");
+        out.println("        }");
+        out.println("    }");
+    }
+
+    private void spring(final List<Service> services) {
+        final String name = simpleName + "Configuration";
+        final PrintWriter out = open(name);
+        if (null == out)
+            return;
+        final Set<Implementation> implementations = new LinkedHashSet<Implementation>();
+        for (final Service service : services)
+            implementations.addAll(service.implementations);
+        header(out);
+        out.println("/** Defines beans for services found at compile time, without discovery. */");
+        out.println("@org.springframework.stereotype.Component");
+        out.println("public class " + name + " {");
+        int b = 0;
+        for (final Implementation implementation : implementations) {
+            final String type = implementation.type.getQualifiedName().toString();
+            final List<? extends VariableElement> parameters = implementation.constructor
+                    .getParameters();
+            if (0 < b)
+                out.println();
+            out.println("    @org.springframework.context.annotation.Bean(name = \""
+                    + implementation.name + "\")");
+            out.print("    public " + type + " bean" + b++ + "(");
+            for (int i = 0; i < parameters.size(); ++i)
+                out.print((0 == i ? "" : ",\n            ") + qualifiers(parameters.get(i))
+                        + "final " + parameters.get(i).asType() + " p" + i);
+            out.println(") {");
+            out.print("        return new " + type + "(");
+            for (int i = 0; i < parameters.size(); ++i)
+                out.print((0 == i ? "" : ", ") + "p" + i);
+            out.println(");");
+            out.println("    }");
+        }
+        out.println("}");
+        out.close();
+    }
+
+    private void header(final PrintWriter out) {
+        out.println(HEADER);
+        if (!packageName.isEmpty()) {
+            out.println("package " + packageName + ";");
+            out.println();
+        }
+    }
+
+    private PrintWriter open(final String name) {
+        final String qualified = packageName.isEmpty() ? name : packageName + "." + name;
+        try {
+            return new PrintWriter(
+                    processingEnv.getFiler().createSourceFile(qualified).openWriter());
+        } catch (final IOException e) {
+            processingEnv.getMessager().printMessage(ERROR, "Cannot write " + qualified + ": " + e);
+            return null;
+        }
+    }
+
+    private Implementation implementation(final String name) {
+        final TypeElement type = type(name);
+        if (null == type)
+            return null;
+        final ExecutableElement constructor = constructor(type);
+        if (null == constructor || !constructible(type, constructor)) {
+            processingEnv.getMessager().printMessage(ERROR,
+                    "Cannot construct from " + (packageName.isEmpty() ? "default" : packageName)
+                            + " package: " + name, type);
+            return null;
+        }
+        if (checked(constructor)) {
+            processingEnv.getMessager().printMessage(ERROR,
+                    "Cannot construct with checked exceptions: " + name, constructor);
+            return null;
+        }
+        return new Implementation(name, type, constructor, scope(type));
+    }
+
+    /** Reports binary names not in this compilation nor on the classpath. */
+    private TypeElement type(final String name) {
+        final TypeElement type = elements().getTypeElement(name.replace('$', '.'));
+        if (null == type)
+            processingEnv.getMessager().printMessage(ERROR, "Cannot find " + name);
+        return type;
+    }
+
+    private static ExecutableElement constructor(final TypeElement type) {
+        ExecutableElement none = null;
+        for (final Element element : type.getEnclosedElements()) {
+            if (CONSTRUCTOR != element.getKind())
+                continue;
+            final ExecutableElement constructor = (ExecutableElement) element;
+            if (annotated(constructor, "javax.inject.Inject", "com.google.inject.Inject"))
+                return constructor;
+            if (constructor.getParameters().isEmpty())
+                none = constructor;
+        }
+        return none;
+    }
+
+    private boolean constructible(final TypeElement type, final ExecutableElement constructor) {
+        final boolean local = elements().getPackageOf(type).getQualifiedName()
+                .contentEquals(packageName);
+        if (type.getModifiers().contains(ABSTRACT) || !visible(constructor, local))
+            return false;
+        for (Element outer = type; outer instanceof TypeElement; outer = outer
+                .getEnclosingElement())
+            if (!visible(outer, local) || TOP_LEVEL != ((TypeElement) outer).getNestingKind()
+                    && !outer.getModifiers().contains(STATIC))
+                return false;
+        return true;
+    }
+
+    /** The generated providers cannot throw what {@code Provider.get()} does not declare. */
+    private boolean checked(final ExecutableElement constructor) {
+        final Types types = processingEnv.getTypeUtils();
+        final TypeMirror runtime = elements().getTypeElement(RuntimeException.class.getName())
+                .asType();
+        final TypeMirror error = elements().getTypeElement(Error.class.getName()).asType();
+        for (final TypeMirror thrown : constructor.getThrownTypes())
+            if (!types.isSubtype(thrown, runtime) && !types.isSubtype(thrown, error))
+                return true;
+        return false;
+    }
+
+    /** Gets the qualified name of the scope annotation of <var>type</var>, if any. */
+    private static String scope(final TypeElement type) {
+        for (final AnnotationMirror annotation : type.getAnnotationMirrors()) {
+            final TypeElement annotationType = (TypeElement) annotation.getAnnotationType()
+                    .asElement();
+            if (annotated(annotationType, "javax.inject.Scope",
+                    "com.google.inject.ScopeAnnotation"))
+                return annotationType.getQualifiedName().toString();
+        }
+        return null;
+    }
+
+    private static boolean visible(final Element element, final boolean local) {
+        return element.getModifiers().contains(PUBLIC)
+                || local && !element.getModifiers().contains(PRIVATE);
+    }
+
+    /** Copies the qualifier and binding annotations of <var>parameter</var> as source. */
+    private static String qualifiers(final VariableElement parameter) {
+        final StringBuilder qualifiers = new StringBuilder();
+        for (final AnnotationMirror annotation : parameter.getAnnotationMirrors())
+            if (annotated(annotation.getAnnotationType().asElement(), "javax.inject.Qualifier",
+                    "com.google.inject.BindingAnnotation"))
+                qualifiers.append(annotation).append(' ');
+        return qualifiers.toString();
+    }
+
+    private static boolean annotated(final Element element, final String... annotations) {
+        for (final AnnotationMirror mirror : element.getAnnotationMirrors()) {
+            final String name = ((TypeElement) mirror.getAnnotationType().asElement())
+                    .getQualifiedName().toString();
+            for (final String annotation : annotations)
+                if (annotation.equals(name))
+                    return true;
+        }
+        return false;
+    }
+
+    private String boxed(final TypeMirror type) {
+        return type.getKind().isPrimitive() ? processingEnv.getTypeUtils()
+                .boxedClass((PrimitiveType) type).getQualifiedName().toString()
+                : type.toString();
+    }
+
+    private Elements elements() {
+        return processingEnv.getElementUtils();
+    }
+
+    private static final class Service {
+        private final TypeElement contract;
+        private final List<Implementation> implementations;
+
+        private Service(final TypeElement contract, final List<Implementation> implementations) {
+            this.contract = contract;
+            this.implementations = implementations;
+        }
+    }
+
+    private static final class Implementation {
+        private final String name;
+        private final TypeElement type;
+        private final ExecutableElement constructor;
+        private final String scope;
+
+        private Implementation(final String name, final TypeElement type,
+                final ExecutableElement constructor, final String scope) {
+            this.name = name;
+            this.type = type;
+            this.constructor = constructor;
+            this.scope = scope;
+        }
+
+        @Override
+        public boolean equals(final Object o) {
+            return this == o || o instanceof Implementation && name
+                    .equals(((Implementation) o).name);
+        }
+
+        @Override
+        public int hashCode() {
+            return name.hashCode();
+        }
+    }
+}
@@ -0,0 +1,447 @@
+/*
+ * This is free and unencumbered software released into the public domain.
+ *
+ * Anyone is free to copy, modify, publish, use, compile, sell, or
+ * distribute this software, either in source code form or as a compiled
+ * binary, for any purpose, commercial or non-commercial, and by any
+ * means.
+ *
+ * In jurisdictions that recognize copyright laws, the author or authors
+ * of this software dedicate any and all copyright interest in the
+ * software to the public domain. We make this dedication for the benefit
+ * of the public at large and to the detriment of our heirs and
+ * successors. We intend this dedication to be an overt act of
+ * relinquishment in perpetuity of all present and future rights to this
+ * software under copyright law.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY CLAIM, DAMAGES OR
+ * OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ * ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ *
+ * For more information, please refer to <http://unlicense.org/>.
+ */
+
+package hm.binkley.util;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.io.File;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.ServiceConfigurationError;
+import java.util.Set;
+import java.util.WeakHashMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static java.lang.Thread.currentThread;
+
+/**
+ * {@code ServiceCache} is the process-wide cache of service discovery shared by all {@link
+ * ServiceBinder}s.  Configurations and the implementation classes resolved from them are
+ * remembered by class loader and service, so binding the same services again, as when creating
+ * many injectors or application contexts, skips classpath lookup, parsing and class loading.
+ * This holds whether binding one class loader or several at once. <p/> Class loaders are
+ * weakly held, and resolved classes weakly remembered, so caching does not prevent collection of
+ * plugin class loaders.  Concurrent discovery of the same service in the same class loader
+ * happens once, other callers waiting for the result. <p/> The cache assumes classpaths do not
+ * change.  Use {@link #invalidate(ClassLoader)} or {@link #invalidate()} after changing what a
+ * class loader finds. <p/> Optionally, scans also persist between runs in a file named by the
+ * {@value #FILE_PROPERTY} system property, or by {@link #persistTo(File)}.  Each jar scanned is
+ * recorded with its size and modification time, and later runs reuse the record for unchanged
+ * jars without opening them.  With a persistent file, single service lookups also use a scan in
+ * place of {@link ClassLoader#getResources(String)}.
+ *
+ * @author <a href="mailto:binkley@alumni.rice.edu">B. K. Oxley (binkley)</a>
+ */
+public final class ServiceCache {
+    /** System property naming a file to persist classpath scans between runs, if any. */
+    public static final String FILE_PROPERTY = "hm.binkley.util.ServiceCache.file";
+
+    private static final Map<ClassLoader, Loader> LOADERS = new WeakHashMap<ClassLoader, Loader>();
+    private static final AtomicLong HITS = new AtomicLong();
+    private static final AtomicLong MISSES = new AtomicLong();
+    private static volatile ServiceCacheFile store = store(System.getProperty(FILE_PROPERTY));
+
+    private ServiceCache() {
+    }
+
+    /**
+     * Forgets all cached discovery.
+     */
+    public static void invalidate() {
+        synchronized (LOADERS) {
+            LOADERS.clear();
+        }
+    }
+
+    /**
+     * Forgets cached discovery for <var>classLoader</var>.  Child class loaders which delegate to
+     * it are not affected.
+     *
+     * @param classLoader the class loader, never missing
+     */
+    public static void invalidate(@Nonnull final ClassLoader classLoader) {
+        synchronized (LOADERS) {
+            LOADERS.remove(classLoader);
+        }
+    }
+
+    /**
+     * Persists classpath scans in <var>file</var>, replacing any file named by the {@value
+     * #FILE_PROPERTY} system property.  Already cached scans are not written until a class loader
+     * is scanned again.
+     *
+     * @param file the cache file, or {@code null} not to persist scans
+     */
+    public static void persistTo(@Nullable final File file) {
+        store = null == file ? null : ServiceCacheFile.read(file);
+    }
+
+    /**
+     * Gets a snapshot of cache statistics.
+     *
+     * @return the statistics, never missing
+     */
+    @Nonnull
+    public static Statistics statistics() {
+        final List<Loader> loaders;
+        synchronized (LOADERS) {
+            loaders = new ArrayList<Loader>(LOADERS.values());
+        }
+        int services = 0;
+        int configurations = 0;
+        int implementations = 0;
+        int resolved = 0;
+        for (final Loader loader : loaders)
+            for (final Once<List<ServiceConfiguration>> service : loader.services.values()) {
+                final List<ServiceConfiguration> found = service.peek();
+                if (null == found)
+                    continue;
+                ++services;
+                for (final ServiceConfiguration configuration : found) {
+                    ++configurations;
+                    implementations += configuration.implementations.size();
+                    resolved += configuration.resolved();
+                }
+            }
+        return new Statistics(HITS.get(), MISSES.get(), loaders.size(), services,
+                configurations, implementations, resolved);
+    }
+
+    /**
+     * Finds the configurations of <var>service</var> in <var>classLoader</var>, discovering them
+     * once.  If a complete {@link #scan(ClassLoader) scan} is cached, uses that.
+     */
+    @Nonnull
+    static List<ServiceConfiguration> configurations(@Nonnull final Class<?> service,
+            @Nonnull final ClassLoader classLoader) {
+        final Loader loader = loader(classLoader);
+        ServiceDiscovery scan = loader.scan.peek();
+        if (null != scan)
+            HITS.incrementAndGet();
+        else if (null != store)
+            scan = scan(classLoader);
+        if (null != scan && scan.complete())
+            return scan.configurations(service.getName());
+        return loader.service(service.getName())
+                .get(new Callable<List<ServiceConfiguration>>() {
+                    @Override
+                    public List<ServiceConfiguration> call() {
+                        return ServiceDiscovery.configurations(service, classLoader,
+                                indices(service, classLoader));
+                    }
+                });
+    }
+
+    /**
+     * Finds the configurations of <var>service</var> in each of several <var>classLoaders</var>,
+     * discovering together those not yet cached, as {@link ServiceDiscovery#configurations(Class,
+     * List, Executor)}, and caching each as for {@link #configurations(Class, ClassLoader)}.  Each
+     * configuration belongs to the first class loader which sees it, ancestors first: to a parent
+     * among <var>classLoaders</var>, else to the first of its children.
+     *
+     * @return the configurations belonging to each class loader, ancestors first, never missing
+     */
+    @Nonnull
+    static Map<ClassLoader, List<ServiceConfiguration>> configurations(
+            @Nonnull final Class<?> service, @Nonnull final List<ClassLoader> classLoaders,
+            @Nonnull final Executor executor) {
+        final List<ClassLoader> hierarchy = ServiceDiscovery.ancestorsFirst(classLoaders);
+        final Map<ClassLoader, List<ServiceConfiguration>> visible
+                = new IdentityHashMap<ClassLoader, List<ServiceConfiguration>>();
+        final List<ClassLoader> uncached = new ArrayList<ClassLoader>();
+        for (final ClassLoader classLoader : hierarchy) {
+            final List<ServiceConfiguration> cached = null == store
+                    ? cached(service, classLoader) : configurations(service, classLoader);
+            if (null == cached)
+                uncached.add(classLoader);
+            else
+                visible.put(classLoader, cached);
+        }
+        if (!uncached.isEmpty())
+            for (final Map.Entry<ClassLoader, List<ServiceConfiguration>> each : ServiceDiscovery
+                    .configurations(service, uncached, executor).entrySet()) {
+                final List<ServiceConfiguration> discovered = each.getValue();
+                visible.put(each.getKey(), loader(each.getKey()).service(service.getName())
+                        .get(new Callable<List<ServiceConfiguration>>() {
+                            @Override
+                            public List<ServiceConfiguration> call() {
+                                return discovered;
+                            }
+                        }));
+            }
+        final Set<String> seen = new HashSet<String>();
+        final Map<ClassLoader, List<ServiceConfiguration>> owned
+                = new LinkedHashMap<ClassLoader, List<ServiceConfiguration>>();
+        for (final ClassLoader classLoader : hierarchy) {
+            final List<ServiceConfiguration> found = new ArrayList<ServiceConfiguration>();
+            for (final ServiceConfiguration configuration : visible.get(classLoader))
+                if (seen.add(configuration.url.toExternalForm()))
+                    found.add(configuration);
+            owned.put(classLoader, found);
+        }
+        return owned;
+    }
+
+    /**
+     * Iterates the configurations of <var>service</var> in <var>classLoader</var>, from the cache
+     * if already discovered, else reading each only when iterated.  Unlike {@link
+     * #configurations(Class, ClassLoader)}, neither scans nor caches, so stopping early leaves
+     * the rest of the classpath unread.
+     */
+    @Nonnull
+    static Iterator<ServiceConfiguration> lookup(@Nonnull final Class<?> service,
+            @Nonnull final ClassLoader classLoader) {
+        final Loader loader = loader(classLoader);
+        final ServiceDiscovery scan = loader.scan.peek();
+        if (null != scan && scan.complete()) {
+            HITS.incrementAndGet();
+            return scan.configurations(service.getName()).iterator();
+        }
+        final Once<List<ServiceConfiguration>> once = loader.services.get(service.getName());
+        final List<ServiceConfiguration> found = null == once ? null : once.peek();
+        if (null != found) {
+            HITS.incrementAndGet();
+            return found.iterator();
+        }
+        return ServiceDiscovery.lookup(service, classLoader, indices(service, classLoader));
+    }
+
+    /** Gets the configurations already discovered, or {@code null} if none. */
+    @Nullable
+    private static List<ServiceConfiguration> cached(final Class<?> service,
+            final ClassLoader classLoader) {
+        final Loader loader = loader(classLoader);
+        final ServiceDiscovery scan = loader.scan.peek();
+        List<ServiceConfiguration> found = null;
+        if (null != scan && scan.complete())
+            found = scan.configurations(service.getName());
+        else {
+            final Once<List<ServiceConfiguration>> once = loader.services
+                    .get(service.getName());
+            if (null != once)
+                found = once.peek();
+        }
+        if (null != found)
+            HITS.incrementAndGet();
+        return found;
+    }
+
+    /** Scans <var>classLoader</var> once, persisting the scan if configured. */
+    @Nonnull
+    static ServiceDiscovery scan(@Nonnull final ClassLoader classLoader) {
+        return loader(classLoader).scan.get(new Callable<ServiceDiscovery>() {
+            @Override
+            public ServiceDiscovery call() {
+                final ServiceCacheFile store = ServiceCache.store;
+                final ServiceDiscovery scan = ServiceDiscovery.scan(classLoader, store);
+                if (null != store)
+                    store.write();
+                return scan;
+            }
+        });
+    }
+
+    /** Reads the service indices of <var>classLoader</var> once. */
+    @Nonnull
+    static Map<String, ServiceIndex> indices(@Nonnull final Class<?> service,
+            @Nonnull final ClassLoader classLoader) {
+        return loader(classLoader).indices.get(new Callable<Map<String, ServiceIndex>>() {
+            @Override
+            public Map<String, ServiceIndex> call() {
+                return ServiceDiscovery.indices(service, classLoader);
+            }
+        });
+    }
+
+    private static ServiceCacheFile store(final String file) {
+        return null == file || file.isEmpty() ? null : ServiceCacheFile.read(new File(file));
+    }
+
+    private static Loader loader(final ClassLoader classLoader) {
+        synchronized (LOADERS) {
+            Loader loader = LOADERS.get(classLoader);
+            if (null == loader)
+                LOADERS.put(classLoader, loader = new Loader());
+            return loader;
+        }
+    }
+
+    /**
+     * {@code Statistics} is a snapshot of {@link ServiceCache} use and size.
+     */
+    public static final class Statistics {
+        private final long hits;
+        private final long misses;
+        private final int loaders;
+        private final int services;
+        private final int configurations;
+        private final int implementations;
+        private final int resolved;
+
+        private Statistics(final long hits, final long misses, final int loaders,
+                final int services, final int configurations, final int implementations,
+                final int resolved) {
+            this.hits = hits;
+            this.misses = misses;
+            this.loaders = loaders;
+            this.services = services;
+            this.configurations = configurations;
+            this.implementations = implementations;
+            this.resolved = resolved;
+        }
+
+        /** Gets the count of lookups answered from the cache, including waits on another. */
+        public long hits() {
+            return hits;
+        }
+
+        /** Gets the count of lookups which ran discovery. */
+        public long misses() {
+            return misses;
+        }
+
+        /** Gets the ratio of hits to all lookups, or 0 if none. */
+        public double hitRate() {
+            final long lookups = hits + misses;
+            return 0 == lookups ? 0 : (double) hits / lookups;
+        }
+
+        /** Gets the count of class loaders cached and not yet collected. */
+        public int loaders() {
+            return loaders;
+        }
+
+        /** Gets the count of services cached across class loaders. */
+        public int services() {
+            return services;
+        }
+
+        /** Gets the count of service configurations cached. */
+        public int configurations() {
+            return configurations;
+        }
+
+        /** Gets the count of implementation names cached. */
+        public int implementations() {
+            return implementations;
+        }
+
+        /** Gets the count of implementation classes remembered and not yet collected. */
+        public int resolved() {
+            return resolved;
+        }
+
+        @Override
+        public String toString() {
+            return getClass().getSimpleName() + "{hits=" + hits + ", misses=" + misses
+                    + ", loaders=" + loaders + ", services=" + services + ", configurations="
+                    + configurations + ", implementations=" + implementations + ", resolved="
+                    + resolved + '}';
+        }
+    }
+
+    /** Cached discovery for a single class loader. */
+    private static final class Loader {
+        private final Once<Map<String, ServiceIndex>> indices
+                = new Once<Map<String, ServiceIndex>>();
+        private final Once<ServiceDiscovery> scan = new Once<ServiceDiscovery>();
+        private final ConcurrentMap<String, Once<List<ServiceConfiguration>>> services
+                = new ConcurrentHashMap<String, Once<List<ServiceConfiguration>>>();
+
+        private Once<List<ServiceConfiguration>> service(final String service) {
+            final Once<List<ServiceConfiguration>> once = new Once<List<ServiceConfiguration>>();
+            final Once<List<ServiceConfiguration>> found = services.putIfAbsent(service, once);
+            return null == found ? once : found;
+        }
+    }
+
+    /**
+     * A value computed at most once at a time: concurrent callers wait for the first.  Failures
+     * are not remembered, so a later call tries again.
+     */
+    private static final class Once<V> {
+        private final AtomicReference<FutureTask<V>> task = new AtomicReference<FutureTask<V>>();
+
+        private V get(final Callable<V> load) {
+            FutureTask<V> current;
+            do {
+                current = task.get();
+                if (null != current) {
+                    HITS.incrementAndGet();
+                    break;
+                }
+                final FutureTask<V> created = new FutureTask<V>(load);
+                if (task.compareAndSet(null, created)) {
+                    MISSES.incrementAndGet();
+                    (current = created).run();
+                }
+            } while (null == current);
+            try {
+                return current.get();
+            } catch (final InterruptedException e) {
+                currentThread().interrupt();
+                throw new ServiceConfigurationError("Interrupted waiting for discovery", e);
+            } catch (final ExecutionException e) {
+                task.compareAndSet(current, null);
+                final Throwable cause = e.getCause();
+                if (cause instanceof Error)
+                    throw (Error) cause;
+                if (cause instanceof RuntimeException)
+                    throw (RuntimeException) cause;
+                throw new ServiceConfigurationError(cause.getMessage(), cause);
+            }
+        }
+
+        @Nullable
+        private V peek() {
+            final FutureTask<V> current = task.get();
+            if (null == current || !current.isDone())
+                return null;
+            try {
+                return current.get();
+            } catch (final InterruptedException e) {
+                currentThread().interrupt();
+                return null;
+            } catch (final ExecutionException e) {
+                return null;
+            }
+        }
+    }
+}
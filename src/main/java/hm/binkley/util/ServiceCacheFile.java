@@ -0,0 +1,281 @@
+/*
+ * This is free and unencumbered software released into the public domain.
+ *
+ * Anyone is free to copy, modify, publish, use, compile, sell, or
+ * distribute this software, either in source code form or as a compiled
+ * binary, for any purpose, commercial or non-commercial, and by any
+ * means.
+ *
+ * In jurisdictions that recognize copyright laws, the author or authors
+ * of this software dedicate any and all copyright interest in the
+ * software to the public domain. We make this dedication for the benefit
+ * of the public at large and to the detriment of our heirs and
+ * successors. We intend this dedication to be an overt act of
+ * relinquishment in perpetuity of all present and future rights to this
+ * software under copyright law.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY CLAIM, DAMAGES OR
+ * OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ * ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ *
+ * For more information, please refer to <http://unlicense.org/>.
+ */
+
+package hm.binkley.util;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static java.nio.channels.FileChannel.MapMode.READ_ONLY;
+import static java.nio.file.Files.move;
+import static java.nio.file.StandardCopyOption.ATOMIC_MOVE;
+import static java.nio.file.StandardCopyOption.REPLACE_EXISTING;
+import static java.util.Collections.unmodifiableList;
+import static java.util.Collections.unmodifiableMap;
+
+/**
+ * {@code ServiceCacheFile} persists classpath scans between runs.  For each jar it records the
+ * services and implementation names found, and the manifest {@code Class-Path}, keyed by the jar
+ * path and fingerprinted by size and modification time.  A later scan reuses the record of any
+ * jar whose fingerprint matches without opening it, and rescans only changed jars. <p/> The file
+ * is memory-mapped to read, and replaced atomically to write.  The cache is best effort: a
+ * missing, unreadable or corrupt file is treated as empty, and failing to write it is ignored.
+ * Class directories are never cached, as their contents change without changing a fingerprint.
+ * <p/> The format is versioned: <pre>
+ * int magic ("SBCF")
+ * unsigned short version
+ * int jar count
+ *   UTF path
+ *   long length
+ *   long last modified
+ *   int class path count
+ *     UTF class path entry
+ *   int service count
+ *     UTF service name
+ *     int implementation count
+ *       UTF implementation name</pre>
+ *
+ * @author <a href="mailto:binkley@alumni.rice.edu">B. K. Oxley (binkley)</a>
+ */
+final class ServiceCacheFile {
+    static final int MAGIC = 0x53424346;
+    static final int VERSION = 1;
+
+    private final File file;
+    private final Map<String, Jar> jars;
+    private boolean dirty;
+
+    private ServiceCacheFile(final File file, final Map<String, Jar> jars) {
+        this.file = file;
+        this.jars = jars;
+    }
+
+    /**
+     * Reads the cache in <var>file</var>, or an empty cache if it cannot be read.
+     *
+     * @param file the cache file, never missing
+     *
+     * @return the cache, never missing
+     */
+    @Nonnull
+    static ServiceCacheFile read(@Nonnull final File file) {
+        final Map<String, Jar> jars = new LinkedHashMap<String, Jar>();
+        if (file.isFile())
+            try {
+                read(file, jars);
+            } catch (final IOException e) {
+                jars.clear(); // Corrupt or another version - start over
+            } catch (final RuntimeException e) {
+                jars.clear();
+            }
+        return new ServiceCacheFile(file, jars);
+    }
+
+    /**
+     * Gets the cached scan of <var>jar</var> if its fingerprint still matches.
+     *
+     * @param jar the jar, never missing
+     *
+     * @return the cached scan, or {@code null} if absent or changed
+     */
+    @Nullable
+    synchronized Jar get(@Nonnull final File jar) {
+        final Jar cached = jars.get(jar.getPath());
+        return null != cached && cached.length == jar.length()
+                && cached.lastModified == jar.lastModified() ? cached : null;
+    }
+
+    /**
+     * Records the scan of <var>jar</var>.
+     *
+     * @param jar the jar, never missing
+     * @param scan the scan with the fingerprint when read, never missing
+     */
+    synchronized void put(@Nonnull final File jar, @Nonnull final Jar scan) {
+        jars.put(jar.getPath(), scan);
+        dirty = true;
+    }
+
+    /**
+     * Writes the cache if changed since read, dropping jars which no longer exist.
+     */
+    synchronized void write() {
+        if (!dirty)
+            return;
+        for (final Iterator<String> it = jars.keySet().iterator(); it.hasNext(); )
+            if (!new File(it.next()).isFile())
+                it.remove();
+        final File parent = file.getAbsoluteFile().getParentFile();
+        try {
+            parent.mkdirs();
+            final File temp = File.createTempFile(file.getName(), ".tmp", parent);
+            try {
+                write(temp);
+                try {
+                    move(temp.toPath(), file.toPath(), ATOMIC_MOVE, REPLACE_EXISTING);
+                } catch (final AtomicMoveNotSupportedException e) {
+                    move(temp.toPath(), file.toPath(), REPLACE_EXISTING);
+                }
+                dirty = false;
+            } finally {
+                temp.delete();
+            }
+        } catch (final IOException ignored) {
+            // Best effort - scan again next run
+        } catch (final SecurityException ignored) {
+            // Best effort - not permitted to write the cache; scan again next run
+        }
+    }
+
+    private static void read(final File file, final Map<String, Jar> jars)
+            throws IOException {
+        final RandomAccessFile raf = new RandomAccessFile(file, "r");
+        try {
+            final FileChannel channel = raf.getChannel();
+            final DataInputStream data = new DataInputStream(
+                    new ByteBufferInputStream(channel.map(READ_ONLY, 0, channel.size())));
+            if (MAGIC != data.readInt() || VERSION != data.readUnsignedShort())
+                return;
+            for (int i = data.readInt(); 0 < i; --i) {
+                final String path = data.readUTF();
+                final long length = data.readLong();
+                final long lastModified = data.readLong();
+                final List<String> classPath = strings(data);
+                final Map<String, List<String>> services
+                        = new LinkedHashMap<String, List<String>>();
+                for (int j = data.readInt(); 0 < j; --j)
+                    services.put(data.readUTF(), strings(data));
+                jars.put(path, new Jar(length, lastModified, services, classPath));
+            }
+        } finally {
+            raf.close();
+        }
+    }
+
+    private void write(final File temp)
+            throws IOException {
+        final DataOutputStream data = new DataOutputStream(
+                new BufferedOutputStream(new FileOutputStream(temp)));
+        try {
+            data.writeInt(MAGIC);
+            data.writeShort(VERSION);
+            data.writeInt(jars.size());
+            for (final Map.Entry<String, Jar> entry : jars.entrySet()) {
+                final Jar jar = entry.getValue();
+                data.writeUTF(entry.getKey());
+                data.writeLong(jar.length);
+                data.writeLong(jar.lastModified);
+                strings(data, jar.classPath);
+                data.writeInt(jar.services.size());
+                for (final Map.Entry<String, List<String>> service : jar.services.entrySet()) {
+                    data.writeUTF(service.getKey());
+                    strings(data, service.getValue());
+                }
+            }
+        } finally {
+            data.close();
+        }
+    }
+
+    private static List<String> strings(final DataInputStream data)
+            throws IOException {
+        final int count = data.readInt();
+        final List<String> strings = new ArrayList<String>(count);
+        for (int i = 0; i < count; ++i)
+            strings.add(data.readUTF());
+        return strings;
+    }
+
+    private static void strings(final DataOutputStream data, final List<String> strings)
+            throws IOException {
+        data.writeInt(strings.size());
+        for (final String string : strings)
+            data.writeUTF(string);
+    }
+
+    @Override
+    public String toString() {
+        return getClass().getSimpleName() + "[" + file + "]";
+    }
+
+    /** The scan of a single jar: its fingerprint, services and manifest class path. */
+    static final class Jar {
+        final long length;
+        final long lastModified;
+        final Map<String, List<String>> services;
+        final List<String> classPath;
+
+        Jar(final long length, final long lastModified,
+                final Map<String, List<String>> services, final List<String> classPath) {
+            this.length = length;
+            this.lastModified = lastModified;
+            this.services = unmodifiableMap(services);
+            this.classPath = unmodifiableList(classPath);
+        }
+    }
+
+    private static final class ByteBufferInputStream
+            extends InputStream {
+        private final ByteBuffer buffer;
+
+        private ByteBufferInputStream(final ByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+
+        @Override
+        public int read() {
+            return buffer.hasRemaining() ? buffer.get() & 0xFF : -1;
+        }
+
+        @Override
+        public int read(final byte[] b, final int off, final int len) {
+            if (0 == len)
+                return 0;
+            if (!buffer.hasRemaining())
+                return -1;
+            final int n = Math.min(len, buffer.remaining());
+            buffer.get(b, off, n);
+            return n;
+        }
+    }
+}
@@ -0,0 +1,196 @@
+/*
+ * This is free and unencumbered software released into the public domain.
+ *
+ * Anyone is free to copy, modify, publish, use, compile, sell, or
+ * distribute this software, either in source code form or as a compiled
+ * binary, for any purpose, commercial or non-commercial, and by any
+ * means.
+ *
+ * In jurisdictions that recognize copyright laws, the author or authors
+ * of this software dedicate any and all copyright interest in the
+ * software to the public domain. We make this dedication for the benefit
+ * of the public at large and to the detriment of our heirs and
+ * successors. We intend this dedication to be an overt act of
+ * relinquishment in perpetuity of all present and future rights to this
+ * software under copyright law.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY CLAIM, DAMAGES OR
+ * OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ * ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ *
+ * For more information, please refer to <http://unlicense.org/>.
+ */
+
+package hm.binkley.util;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URL;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static hm.binkley.util.ServiceBinder.fail;
+import static java.lang.Integer.MAX_VALUE;
+
+/**
+ * {@code ServiceCandidate} is an implementation listed in a service configuration, not yet
+ * loaded, as seen by a {@link ServiceFilter}.  Checking anything but the name or configuration
+ * reads and parses the class file through the class loader, once, without defining the class.
+ *
+ * @author <a href="mailto:binkley@alumni.rice.edu">B. K. Oxley (binkley)</a>
+ */
+public final class ServiceCandidate {
+    private static final String PRIORITY = "javax.annotation.Priority";
+
+    private final Class<?> service;
+    private final ClassLoader classLoader;
+    private final URL config;
+    private final String name;
+    private ClassFile classFile;
+
+    ServiceCandidate(final Class<?> service, final ClassLoader classLoader, final URL config,
+            final String name) {
+        this.service = service;
+        this.classLoader = classLoader;
+        this.config = config;
+        this.name = name;
+    }
+
+    /**
+     * Gets the service type token.
+     *
+     * @return the service, never missing
+     */
+    @Nonnull
+    public Class<?> service() {
+        return service;
+    }
+
+    /**
+     * Gets the configuration listing this implementation.
+     *
+     * @return the configuration location, never missing
+     */
+    @Nonnull
+    public URL config() {
+        return config;
+    }
+
+    /**
+     * Gets the implementation class name.
+     *
+     * @return the class name, never missing
+     */
+    @Nonnull
+    public String name() {
+        return name;
+    }
+
+    /**
+     * Gets the class modifiers from the class file, as for {@link java.lang.reflect.Modifier}.
+     *
+     * @return the class access flags
+     */
+    public int modifiers() {
+        return classFile().access;
+    }
+
+    /**
+     * Gets the super class name from the class file.
+     *
+     * @return the super class name, or {@code null} for {@code Object}
+     */
+    @Nullable
+    public String superName() {
+        return classFile().superName;
+    }
+
+    /**
+     * Gets the directly implemented interface names from the class file.
+     *
+     * @return the interface names, never missing
+     */
+    @Nonnull
+    public List<String> interfaces() {
+        return classFile().interfaces;
+    }
+
+    /**
+     * Gets the class annotation names from the class file, with class or runtime retention.
+     *
+     * @return the annotation names, never missing
+     */
+    @Nonnull
+    public Set<String> annotations() {
+        return classFile().annotations.keySet();
+    }
+
+    /**
+     * Gets the element values of the class annotation named <var>annotation</var>, as written in
+     * the class file: defaults are not included.  Values are boxed primitives, strings, names of
+     * enum constants and classes, or lists of these.
+     *
+     * @param annotation the annotation class name, never missing
+     *
+     * @return the element values, or {@code null} if not annotated
+     */
+    @Nullable
+    public Map<String, Object> annotation(@Nonnull final String annotation) {
+        return classFile().annotations.get(annotation);
+    }
+
+    /**
+     * Gets the priority from a {@link ServicePriority} or {@code javax.annotation.Priority} class
+     * annotation in the class file.  Lower values come first.
+     *
+     * @return the priority, or {@code Integer.MAX_VALUE} if not annotated
+     */
+    public int priority() {
+        Map<String, Object> priority = annotation(ServicePriority.class.getName());
+        if (null == priority)
+            priority = annotation(PRIORITY);
+        final Object value = null == priority ? null : priority.get("value");
+        return value instanceof Integer ? (Integer) value : MAX_VALUE;
+    }
+
+    @Override
+    public String toString() {
+        return name;
+    }
+
+    private ClassFile classFile() {
+        if (null == classFile)
+            try {
+                classFile = ClassFile.parse(read());
+            } catch (final IOException e) {
+                return fail(service, config, "Cannot read class file for " + name, e);
+            }
+        return classFile;
+    }
+
+    private byte[] read()
+            throws IOException {
+        final String resource = name.replace('.', '/') + ".class";
+        final InputStream in = classLoader.getResourceAsStream(resource);
+        if (null == in)
+            throw new IOException("No class file: " + resource);
+        try {
+            final ByteArrayOutputStream out = new ByteArrayOutputStream(4096);
+            final byte[] buffer = new byte[4096];
+            int n;
+            while (-1 != (n = in.read(buffer)))
+                out.write(buffer, 0, n);
+            return out.toByteArray();
+        } finally {
+            in.close();
+        }
+    }
+}
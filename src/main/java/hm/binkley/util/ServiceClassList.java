@@ -0,0 +1,183 @@
+/*
+ * This is free and unencumbered software released into the public domain.
+ *
+ * Anyone is free to copy, modify, publish, use, compile, sell, or
+ * distribute this software, either in source code form or as a compiled
+ * binary, for any purpose, commercial or non-commercial, and by any
+ * means.
+ *
+ * In jurisdictions that recognize copyright laws, the author or authors
+ * of this software dedicate any and all copyright interest in the
+ * software to the public domain. We make this dedication for the benefit
+ * of the public at large and to the detriment of our heirs and
+ * successors. We intend this dedication to be an overt act of
+ * relinquishment in perpetuity of all present and future rights to this
+ * software under copyright law.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY CLAIM, DAMAGES OR
+ * OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ * ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ *
+ * For more information, please refer to <http://unlicense.org/>.
+ */
+
+package hm.binkley.util;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.logging.Logger;
+
+import static java.lang.ClassLoader.getSystemClassLoader;
+import static java.util.logging.Level.WARNING;
+
+/**
+ * {@code ServiceClassList} records the service and implementation classes service binders resolve,
+ * in order of first loading, and writes them as a class list for class data sharing (AppCDS).  In
+ * a training run, name the list file with the {@value #FILE_PROPERTY} system property; the list is
+ * written when the JVM exits.  Then dump a shared archive with the list, and start with it: <pre>
+ * java -Dhm.binkley.util.ServiceClassList.file=app.classlist ...
+ * java -Xshare:dump -XX:SharedClassListFile=app.classlist -XX:SharedArchiveFile=app.jsa ...
+ * java -XX:SharedArchiveFile=app.jsa ...</pre>
+ * JDK 8 also needs {@code -XX:+UnlockCommercialFeatures -XX:+UseAppCDS}. <p/> The list holds
+ * classes defined by the system class loader or its parents, one internal name per line, which
+ * the default archive can share.  Classes of other class loaders, as of {@link ServicePlugin}s,
+ * are left out when recorded, so the list does not keep their class loaders.  Classes which
+ * Spring Framework loads itself by name, for lazy bindings, are not seen.
+ *
+ * @author <a href="mailto:binkley@alumni.rice.edu">B. K. Oxley (binkley)</a>
+ */
+public final class ServiceClassList
+        extends ServiceListener {
+    /** System property naming a class list file to write on exit, if any. */
+    public static final String FILE_PROPERTY = "hm.binkley.util.ServiceClassList.file";
+
+    private static final Logger LOGGER = Logger.getLogger(ServiceClassList.class.getName());
+
+    private final Set<Class<?>> classes = new LinkedHashSet<Class<?>>();
+
+    /**
+     * Creates a class list for the {@value #FILE_PROPERTY} system property, written on exit.
+     *
+     * @return the class list, or {@code null} if the property is not set
+     */
+    @Nullable
+    static ServiceClassList fromProperty() {
+        final String file = System.getProperty(FILE_PROPERTY);
+        return null == file || file.isEmpty() ? null : writeOnExit(new File(file));
+    }
+
+    /**
+     * Creates a class list written to <var>file</var> when the JVM exits.  Register it with
+     * {@link ServiceListener#add(ServiceListener)} to record.
+     *
+     * @param file the class list file, never missing
+     *
+     * @return the class list, never missing
+     */
+    @Nonnull
+    public static ServiceClassList writeOnExit(@Nonnull final File file) {
+        final ServiceClassList classList = new ServiceClassList();
+        Runtime.getRuntime().addShutdownHook(new Thread("ServiceClassList: " + file) {
+            @Override
+            public void run() {
+                try {
+                    classList.write(file);
+                } catch (final IOException e) {
+                    LOGGER.log(WARNING, "Cannot write class list: " + file, e);
+                }
+            }
+        });
+        return classList;
+    }
+
+    /**
+     * Gets the shareable classes recorded so far, in order of first loading.
+     *
+     * @return the classes, never missing
+     */
+    @Nonnull
+    public List<Class<?>> classes() {
+        synchronized (classes) {
+            return new ArrayList<Class<?>>(classes);
+        }
+    }
+
+    /**
+     * Writes the classes recorded so far to <var>file</var> as a class list.
+     *
+     * @param file the class list file, never missing
+     *
+     * @throws IOException if the file cannot be written
+     */
+    public void write(@Nonnull final File file)
+            throws IOException {
+        final Writer writer = new OutputStreamWriter(new FileOutputStream(file), "UTF-8");
+        try {
+            write(writer);
+        } finally {
+            writer.close();
+        }
+    }
+
+    /**
+     * Writes the classes recorded so far to <var>writer</var> as a class list, one
+     * internal name per line.
+     *
+     * @param writer the writer, never missing
+     *
+     * @throws IOException if the list cannot be written
+     */
+    public void write(@Nonnull final Writer writer)
+            throws IOException {
+        for (final Class<?> type : classes())
+            writer.append(type.getName().replace('.', '/')).append('\n');
+        writer.flush();
+    }
+
+    @Override
+    public void discovered(@Nonnull final Class<?> service,
+            @Nonnull final ClassLoader classLoader, final int configurations,
+            final int providers, final long nanos) {
+        record(service);
+    }
+
+    @Override
+    public void loaded(@Nonnull final Class<?> service, @Nonnull final URL config,
+            @Nonnull final Class<?> implementation, final long nanos) {
+        record(service);
+        record(implementation);
+    }
+
+    private void record(final Class<?> type) {
+        if (shareable(type))
+            synchronized (classes) {
+                classes.add(type);
+            }
+    }
+
+    /** Is <var>type</var> defined by the system class loader or its parents? */
+    private static boolean shareable(final Class<?> type) {
+        final ClassLoader definer = type.getClassLoader();
+        if (null == definer)
+            return true;
+        for (ClassLoader loader = getSystemClassLoader(); null != loader;
+                loader = loader.getParent())
+            if (definer == loader)
+                return true;
+        return false;
+    }
+}
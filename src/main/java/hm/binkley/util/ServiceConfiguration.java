@@ -0,0 +1,122 @@
+/*
+ * This is free and unencumbered software released into the public domain.
+ *
+ * Anyone is free to copy, modify, publish, use, compile, sell, or
+ * distribute this software, either in source code form or as a compiled
+ * binary, for any purpose, commercial or non-commercial, and by any
+ * means.
+ *
+ * In jurisdictions that recognize copyright laws, the author or authors
+ * of this software dedicate any and all copyright interest in the
+ * software to the public domain. We make this dedication for the benefit
+ * of the public at large and to the detriment of our heirs and
+ * successors. We intend this dedication to be an overt act of
+ * relinquishment in perpetuity of all present and future rights to this
+ * software under copyright law.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY CLAIM, DAMAGES OR
+ * OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ * ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ *
+ * For more information, please refer to <http://unlicense.org/>.
+ */
+
+package hm.binkley.util;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.lang.ref.WeakReference;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import static java.util.Collections.unmodifiableList;
+
+/**
+ * {@code ServiceConfiguration} is a single discovered service configuration: the location of the
+ * {@code META-INF/services} file and the implementation class names it lists, in order, without
+ * comments or blank lines. <p/> Configurations remember the implementation classes resolved for
+ * them weakly, so that cached configurations do not keep class loaders from collection.
+ *
+ * @author <a href="mailto:binkley@alumni.rice.edu">B. K. Oxley (binkley)</a>
+ */
+final class ServiceConfiguration {
+    final URL url;
+    final List<String> implementations;
+    private final AtomicReferenceArray<WeakReference<Class<?>>> resolved;
+
+    ServiceConfiguration(@Nonnull final URL url, @Nonnull final List<String> implementations) {
+        this.url = url;
+        this.implementations = unmodifiableList(implementations);
+        resolved = new AtomicReferenceArray<WeakReference<Class<?>>>(implementations.size());
+    }
+
+    /**
+     * Gets the implementation class previously resolved for the <var>i</var>th implementation
+     * name.
+     *
+     * @param i the implementation index
+     *
+     * @return the implementation class, or {@code null} if unresolved or collected
+     */
+    @Nullable
+    Class<?> resolved(final int i) {
+        final WeakReference<Class<?>> ref = resolved.get(i);
+        return null == ref ? null : ref.get();
+    }
+
+    /**
+     * Remembers the implementation class resolved for the <var>i</var>th implementation name.
+     *
+     * @param i the implementation index
+     * @param implementation the implementation class, never missing
+     */
+    void resolved(final int i, @Nonnull final Class<?> implementation) {
+        resolved.set(i, new WeakReference<Class<?>>(implementation));
+    }
+
+    /**
+     * Counts the implementation classes currently resolved and not collected.
+     *
+     * @return the count of resolved classes
+     */
+    int resolved() {
+        int count = 0;
+        for (int i = 0, n = resolved.length(); i < n; ++i)
+            if (null != resolved(i))
+                ++count;
+        return count;
+    }
+
+    /**
+     * Selects the implementations at <var>indices</var>, in order, as a new configuration for the
+     * same location, keeping those already resolved.
+     *
+     * @param indices the implementation indices, never missing
+     *
+     * @return the selected configuration, never missing
+     */
+    @Nonnull
+    ServiceConfiguration select(@Nonnull final List<Integer> indices) {
+        final List<String> implementations = new ArrayList<String>(indices.size());
+        for (final int i : indices)
+            implementations.add(this.implementations.get(i));
+        final ServiceConfiguration selected = new ServiceConfiguration(url, implementations);
+        for (int i = 0, n = indices.size(); i < n; ++i) {
+            final Class<?> implementation = resolved(indices.get(i));
+            if (null != implementation)
+                selected.resolved(i, implementation);
+        }
+        return selected;
+    }
+
+    @Override
+    public String toString() {
+        return url + ": " + implementations;
+    }
+}
@@ -0,0 +1,689 @@
+/*
+ * This is free and unencumbered software released into the public domain.
+ *
+ * Anyone is free to copy, modify, publish, use, compile, sell, or
+ * distribute this software, either in source code form or as a compiled
+ * binary, for any purpose, commercial or non-commercial, and by any
+ * means.
+ *
+ * In jurisdictions that recognize copyright laws, the author or authors
+ * of this software dedicate any and all copyright interest in the
+ * software to the public domain. We make this dedication for the benefit
+ * of the public at large and to the detriment of our heirs and
+ * successors. We intend this dedication to be an overt act of
+ * relinquishment in perpetuity of all present and future rights to this
+ * software under copyright law.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY CLAIM, DAMAGES OR
+ * OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ * ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ *
+ * For more information, please refer to <http://unlicense.org/>.
+ */
+
+package hm.binkley.util;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.MalformedURLException;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.jar.Attributes;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+import java.util.jar.Manifest;
+
+import static hm.binkley.util.ServiceBinder.fail;
+import static java.io.File.pathSeparator;
+import static java.lang.System.getProperty;
+import static java.lang.Thread.currentThread;
+import static java.util.Collections.emptyList;
+import static java.util.Collections.list;
+import static java.util.Collections.sort;
+import static java.util.Collections.unmodifiableMap;
+
+/**
+ * {@code ServiceDiscovery} finds service configurations for {@link ServiceBinder}, either for a
+ * single service with {@link ClassLoader#getResources(String)}, or for all services at once with
+ * a single pass over each classpath root with {@link #scan(ClassLoader)}. <p/> A scan reads the
+ * roots of {@link URLClassLoader}s and the JDK application class loader, following jar manifest
+ * {@code Class-Path} entries as they do.  Other class loaders or non-file roots leave the scan
+ * {@link #complete() incomplete}, and callers should discover services singly instead. <p/>
+ * Either way, providers declared by named modules follow those on the classpath; see {@link
+ * ServiceModules}.
+ *
+ * @author <a href="mailto:binkley@alumni.rice.edu">B. K. Oxley (binkley)</a>
+ */
+final class ServiceDiscovery {
+    static final String PREFIX = "META-INF/services/";
+
+    private final Map<String, List<ServiceConfiguration>> services;
+    private final boolean complete;
+
+    private ServiceDiscovery(final Map<String, List<ServiceConfiguration>> services,
+            final boolean complete) {
+        this.services = unmodifiableMap(services);
+        this.complete = complete;
+    }
+
+    /**
+     * Scans every classpath root of <var>classLoader</var> and its parents once, in resource
+     * lookup order, reading service indices in place of text configurations where present.
+     *
+     * @param classLoader the class loader, never missing
+     *
+     * @return the discovered services, never missing
+     */
+    @Nonnull
+    static ServiceDiscovery scan(@Nonnull final ClassLoader classLoader) {
+        return scan(classLoader, null);
+    }
+
+    /**
+     * Scans as {@link #scan(ClassLoader)}, reusing the scans of unchanged jars in
+     * <var>store</var>, and recording the scans of others.
+     *
+     * @param classLoader the class loader, never missing
+     * @param store the persistent scans, or {@code null} to scan all jars
+     *
+     * @return the discovered services, never missing
+     */
+    @Nonnull
+    static ServiceDiscovery scan(@Nonnull final ClassLoader classLoader,
+            @Nullable final ServiceCacheFile store) {
+        final Scan scan = new Scan(store);
+        scan.loader(classLoader);
+        scan.modules(classLoader);
+        return new ServiceDiscovery(scan.services, scan.complete);
+    }
+
+    /**
+     * Scans the single classpath <var>root</var>, a jar or directory, and jars named by its
+     * manifest {@code Class-Path}, without parent class loaders or modules.
+     *
+     * @param root the jar or directory, never missing
+     *
+     * @return the discovered services, never missing
+     */
+    @Nonnull
+    static ServiceDiscovery root(@Nonnull final File root) {
+        final Scan scan = new Scan(null);
+        scan.root(root);
+        return new ServiceDiscovery(scan.services, scan.complete);
+    }
+
+    /**
+     * Checks if every root was scanned.  If not, configurations found by this discovery are
+     * partial.
+     *
+     * @return {@code true} if complete
+     */
+    boolean complete() {
+        return complete;
+    }
+
+    /**
+     * Gets the names of the services found.
+     *
+     * @return the service names, never missing
+     */
+    @Nonnull
+    Set<String> services() {
+        return services.keySet();
+    }
+
+    /**
+     * Gets the scanned configurations of <var>service</var> in resource lookup order.
+     *
+     * @param service the service name, never missing
+     *
+     * @return the configurations, never missing
+     */
+    @Nonnull
+    List<ServiceConfiguration> configurations(@Nonnull final String service) {
+        final List<ServiceConfiguration> configurations = services.get(service);
+        return null == configurations ? ServiceDiscovery.<ServiceConfiguration>none()
+                : configurations;
+    }
+
+    /**
+     * Finds the configurations of a single <var>service</var> with {@link
+     * ClassLoader#getResources(String)}, using <var>indices</var> in place of text configurations
+     * in indexed roots.
+     *
+     * @param service the service type token, never missing
+     * @param classLoader the class loader, never missing
+     * @param indices the service indices by root, never missing
+     *
+     * @return the configurations, never missing
+     *
+     * @see #indices(Class, ClassLoader)
+     */
+    @Nonnull
+    static List<ServiceConfiguration> configurations(@Nonnull final Class<?> service,
+            @Nonnull final ClassLoader classLoader,
+            @Nonnull final Map<String, ServiceIndex> indices) {
+        final List<ServiceConfiguration> configurations = new ArrayList<ServiceConfiguration>();
+        final ConfigurationReader.Pass pass = ConfigurationReader.pass();
+        try {
+            final Iterator<ServiceConfiguration> lookup = lookup(service, classLoader, indices);
+            while (lookup.hasNext())
+                configurations.add(lookup.next());
+        } finally {
+            pass.close();
+        }
+        return configurations;
+    }
+
+    /**
+     * Finds the configurations of a single <var>service</var> as {@link #configurations(Class,
+     * ClassLoader, Map)}, reading each only when iterated, so callers may stop early without
+     * reading the rest.
+     *
+     * @param service the service type token, never missing
+     * @param classLoader the class loader, never missing
+     * @param indices the service indices by root, never missing
+     *
+     * @return the configurations in resource lookup order, never missing
+     */
+    @Nonnull
+    static Iterator<ServiceConfiguration> lookup(@Nonnull final Class<?> service,
+            @Nonnull final ClassLoader classLoader,
+            @Nonnull final Map<String, ServiceIndex> indices) {
+        final String name = PREFIX + service.getName();
+        final Enumeration<URL> configs = resources(service, classLoader, name,
+                "Cannot load configuration");
+        return new Iterator<ServiceConfiguration>() {
+            private final Set<String> listed = new HashSet<String>();
+            private Iterator<ServiceConfiguration> modules;
+
+            @Override
+            public boolean hasNext() {
+                if (configs.hasMoreElements())
+                    return true;
+                if (null == modules)
+                    modules = ServiceModules
+                            .configurations(service.getName(), classLoader, listed).iterator();
+                return modules.hasNext();
+            }
+
+            @Override
+            public ServiceConfiguration next() {
+                if (!configs.hasMoreElements() && hasNext())
+                    return modules.next();
+                final ServiceConfiguration configuration = read(service, name,
+                        configs.nextElement(), indices);
+                listed.addAll(configuration.implementations);
+                return configuration;
+            }
+
+            @Override
+            public void remove() {
+                throw new UnsupportedOperationException();
+            }
+        };
+    }
+
+    /**
+     * Finds the configurations of a single <var>service</var> in each of several
+     * <var>classLoaders</var>, as {@link #configurations(Class, ClassLoader, Map)}, reading each
+     * distinct configuration once however many class loaders see it through parent delegation.
+     * Class loaders are looked up and their configurations read concurrently on
+     * <var>executor</var>; the calling thread runs any lookups the executor has not started.
+     * Each class loader has its own configurations, so classes resolved for one are not reused
+     * for another.
+     *
+     * @param service the service type token, never missing
+     * @param classLoaders the class loaders, never missing
+     * @param executor the executor, never missing
+     *
+     * @return the configurations each class loader sees, ancestors first, never missing
+     */
+    @Nonnull
+    static Map<ClassLoader, List<ServiceConfiguration>> configurations(
+            @Nonnull final Class<?> service, @Nonnull final List<ClassLoader> classLoaders,
+            @Nonnull final Executor executor) {
+        final String name = PREFIX + service.getName();
+        final List<ClassLoader> hierarchy = ancestorsFirst(classLoaders);
+        final int n = hierarchy.size();
+        final List<FutureTask<List<URL>>> lookups = new ArrayList<FutureTask<List<URL>>>(n);
+        for (final ClassLoader classLoader : hierarchy)
+            lookups.add(start(executor, new Callable<List<URL>>() {
+                @Override
+                public List<URL> call() {
+                    return list(resources(service, classLoader, name,
+                            "Cannot load configuration"));
+                }
+            }));
+        // Attribute configurations in order, reading those of earlier class loaders meanwhile
+        final Set<String> seen = new HashSet<String>();
+        final List<List<URL>> visible = new ArrayList<List<URL>>(n);
+        final List<FutureTask<List<ServiceConfiguration>>> reads
+                = new ArrayList<FutureTask<List<ServiceConfiguration>>>(n);
+        for (int i = 0; i < n; ++i) {
+            final ClassLoader classLoader = hierarchy.get(i);
+            final List<URL> configs = get(service, lookups.get(i));
+            final List<URL> unread = new ArrayList<URL>();
+            for (final URL config : configs)
+                if (seen.add(config.toExternalForm()))
+                    unread.add(config);
+            visible.add(configs);
+            reads.add(start(executor, new Callable<List<ServiceConfiguration>>() {
+                @Override
+                public List<ServiceConfiguration> call() {
+                    if (unread.isEmpty())
+                        return none();
+                    final Map<String, ServiceIndex> indices = ServiceCache
+                            .indices(service, classLoader);
+                    final List<ServiceConfiguration> read
+                            = new ArrayList<ServiceConfiguration>(unread.size());
+                    final ConfigurationReader.Pass pass = ConfigurationReader.pass();
+                    try {
+                        for (final URL config : unread)
+                            read.add(read(service, name, config, indices));
+                    } finally {
+                        pass.close();
+                    }
+                    return read;
+                }
+            }));
+        }
+        final Map<String, ServiceConfiguration> read = new HashMap<String, ServiceConfiguration>();
+        for (final FutureTask<List<ServiceConfiguration>> task : reads)
+            for (final ServiceConfiguration configuration : get(service, task))
+                read.put(configuration.url.toExternalForm(), configuration);
+        final Map<ClassLoader, List<ServiceConfiguration>> configurations
+                = new LinkedHashMap<ClassLoader, List<ServiceConfiguration>>();
+        final Set<String> owned = new HashSet<String>();
+        for (int i = 0; i < n; ++i) {
+            final ClassLoader classLoader = hierarchy.get(i);
+            final Set<String> listed = new HashSet<String>();
+            final List<ServiceConfiguration> found = new ArrayList<ServiceConfiguration>();
+            for (final URL config : visible.get(i)) {
+                final ServiceConfiguration configuration = read.get(config.toExternalForm());
+                // Copied for class loaders after the first, which may resolve other classes
+                found.add(owned.add(config.toExternalForm()) ? configuration
+                        : new ServiceConfiguration(config, configuration.implementations));
+                listed.addAll(configuration.implementations);
+            }
+            found.addAll(ServiceModules.configurations(service.getName(), classLoader, listed));
+            configurations.put(classLoader, found);
+        }
+        return configurations;
+    }
+
+    /**
+     * Reads the service indices of <var>classLoader</var>, keyed by classpath root.  Roots without
+     * an index, or with an unsupported index version, are absent.
+     *
+     * @param service the service type token for error reporting, never missing
+     * @param classLoader the class loader, never missing
+     *
+     * @return the service indices, never missing
+     */
+    @Nonnull
+    static Map<String, ServiceIndex> indices(@Nonnull final Class<?> service,
+            @Nonnull final ClassLoader classLoader) {
+        final Map<String, ServiceIndex> indices = new HashMap<String, ServiceIndex>();
+        final Enumeration<URL> resources = resources(service, classLoader, ServiceIndex.NAME,
+                "Cannot load service indices");
+        while (resources.hasMoreElements()) {
+            final URL resource = resources.nextElement();
+            final ServiceIndex index = index(service, resource);
+            if (null != index)
+                indices.put(ServiceIndex.root(resource, ServiceIndex.NAME), index);
+        }
+        return indices;
+    }
+
+    private static Enumeration<URL> resources(final Class<?> service,
+            final ClassLoader classLoader, final String name, final String message) {
+        try {
+            return classLoader.getResources(name);
+        } catch (final IOException e) {
+            return fail(service, message, e);
+        }
+    }
+
+    /** Reads <var>config</var> from the service index of its root if any, else as text. */
+    private static ServiceConfiguration read(final Class<?> service, final String name,
+            final URL config, final Map<String, ServiceIndex> indices) {
+        final ServiceIndex index = indices.get(ServiceIndex.root(config, name));
+        List<String> implementations = null == index ? null
+                : index.implementations(service.getName());
+        if (null == implementations)
+            implementations = ConfigurationReader.read(service, config);
+        return new ServiceConfiguration(config, implementations);
+    }
+
+    /**
+     * Orders distinct class loaders by depth, so each follows its ancestors among them.
+     *
+     * @param classLoaders the class loaders, never missing
+     *
+     * @return the distinct class loaders, ancestors first, never missing
+     */
+    @Nonnull
+    static List<ClassLoader> ancestorsFirst(@Nonnull final List<ClassLoader> classLoaders) {
+        final Map<ClassLoader, Integer> depths = new IdentityHashMap<ClassLoader, Integer>();
+        final List<ClassLoader> ordered = new ArrayList<ClassLoader>(classLoaders.size());
+        for (final ClassLoader classLoader : classLoaders) {
+            if (depths.containsKey(classLoader))
+                continue;
+            int depth = 0;
+            for (ClassLoader parent = classLoader.getParent(); null != parent;
+                    parent = parent.getParent())
+                ++depth;
+            depths.put(classLoader, depth);
+            ordered.add(classLoader);
+        }
+        sort(ordered, new Comparator<ClassLoader>() { // Stable for equal depths
+            @Override
+            public int compare(final ClassLoader a, final ClassLoader b) {
+                return depths.get(a).compareTo(depths.get(b));
+            }
+        });
+        return ordered;
+    }
+
+    private static <T> FutureTask<T> start(final Executor executor, final Callable<T> call) {
+        final FutureTask<T> task = new FutureTask<T>(call);
+        try {
+            executor.execute(task);
+        } catch (final RejectedExecutionException ignored) {
+            // Run when awaited
+        }
+        return task;
+    }
+
+    /** Runs <var>task</var> here if not yet started elsewhere, then waits for it. */
+    private static <T> T get(final Class<?> service, final FutureTask<T> task) {
+        task.run();
+        try {
+            return task.get();
+        } catch (final InterruptedException e) {
+            currentThread().interrupt();
+            return fail(service, "Interrupted finding configurations", e);
+        } catch (final ExecutionException e) {
+            final Throwable cause = e.getCause();
+            if (cause instanceof Error)
+                throw (Error) cause;
+            if (cause instanceof RuntimeException)
+                throw (RuntimeException) cause;
+            return fail(service, "Cannot find configurations", (Exception) cause);
+        }
+    }
+
+    private static ServiceIndex index(final Class<?> service, final URL resource) {
+        try {
+            return ServiceIndex.read(resource.openStream());
+        } catch (final IOException e) {
+            return fail(service, resource, "Cannot read service index", e);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> List<T> none() {
+        return (List<T>) emptyList();
+    }
+
+    /** A single pass over classpath roots, accumulating configurations by service. */
+    private static final class Scan {
+        private static final String APP_CLASS_LOADER
+                = "jdk.internal.loader.ClassLoaders$AppClassLoader";
+        private static final String PLATFORM_CLASS_LOADER
+                = "jdk.internal.loader.ClassLoaders$PlatformClassLoader";
+
+        private final Map<String, List<ServiceConfiguration>> services
+                = new LinkedHashMap<String, List<ServiceConfiguration>>();
+        private final Set<File> roots = new HashSet<File>();
+        private final ServiceCacheFile store;
+        private boolean complete = true;
+
+        private Scan(@Nullable final ServiceCacheFile store) {
+            this.store = store;
+        }
+
+        /** Parents first, as does {@link ClassLoader#getResources(String)}. */
+        private void loader(final ClassLoader loader) {
+            if (null == loader) {
+                paths(getProperty("sun.boot.class.path")); // Absent after JDK 8
+                return;
+            }
+            loader(loader.getParent());
+            final String type = loader.getClass().getName();
+            if (loader instanceof URLClassLoader)
+                for (final URL url : ((URLClassLoader) loader).getURLs())
+                    url(url);
+            else if (APP_CLASS_LOADER.equals(type))
+                paths(getProperty("java.class.path"));
+            else if (!PLATFORM_CLASS_LOADER.equals(type))
+                complete = false;
+        }
+
+        /** Module providers follow the classpath, as for {@code ServiceLoader}. */
+        private void modules(final ClassLoader classLoader) {
+            for (final String service : ServiceModules.services()) {
+                final Set<String> listed = new HashSet<String>();
+                final List<ServiceConfiguration> configurations = services.get(service);
+                if (null != configurations)
+                    for (final ServiceConfiguration configuration : configurations)
+                        listed.addAll(configuration.implementations);
+                for (final ServiceConfiguration configuration : ServiceModules
+                        .configurations(service, classLoader, listed))
+                    add(service, configuration);
+            }
+        }
+
+        private void paths(final String paths) {
+            if (null != paths)
+                for (final String path : paths.split(pathSeparator))
+                    if (!path.isEmpty())
+                        root(new File(path));
+        }
+
+        private void url(final URL url) {
+            if ("file".equals(url.getProtocol()))
+                root(file(url));
+            else
+                complete = false;
+        }
+
+        private void root(final File root) {
+            final File file = root.getAbsoluteFile();
+            if (!roots.add(file))
+                return;
+            if (file.isDirectory())
+                directory(file);
+            else if (file.isFile())
+                jar(file);
+        }
+
+        private void directory(final File root) {
+            final ServiceIndex index = index(new File(root, ServiceIndex.NAME));
+            final File[] configs = new File(root, PREFIX).listFiles();
+            if (null == configs)
+                return;
+            for (final File config : configs) {
+                if (!config.isFile())
+                    continue;
+                final URL url = url(config);
+                List<String> implementations = indexed(index, config.getName());
+                if (null == implementations)
+                    implementations = ConfigurationReader.parse(null, url, open(config));
+                add(config.getName(), url, implementations);
+            }
+        }
+
+        private void jar(final File root) {
+            ServiceCacheFile.Jar jar = null == store ? null : store.get(root);
+            if (null == jar) {
+                jar = read(root);
+                if (null == jar)
+                    return; // Not a jar - ignored as by URLClassLoader
+                if (null != store)
+                    store.put(root, jar);
+            }
+            final URL url = url(root);
+            final String base = "jar:" + url + "!/";
+            try {
+                for (final Map.Entry<String, List<String>> service : jar.services.entrySet())
+                    add(service.getKey(), new URL(base + PREFIX + service.getKey()),
+                            service.getValue());
+                for (final String path : jar.classPath)
+                    url(new URL(url, path));
+            } catch (final MalformedURLException e) {
+                fail(url, "Cannot scan service configurations", e);
+            }
+        }
+
+        /** Fingerprints <var>root</var> before reading, so a concurrent change rescans. */
+        private static ServiceCacheFile.Jar read(final File root) {
+            final long length = root.length();
+            final long lastModified = root.lastModified();
+            final JarFile jar = jarFile(root);
+            if (null == jar)
+                return null;
+            final URL url = url(root);
+            try {
+                final ServiceIndex index = index(jar);
+                final String base = "jar:" + url + "!/";
+                final Map<String, List<String>> services
+                        = new LinkedHashMap<String, List<String>>();
+                final Enumeration<JarEntry> entries = jar.entries();
+                while (entries.hasMoreElements()) {
+                    final JarEntry entry = entries.nextElement();
+                    final String name = entry.getName();
+                    if (entry.isDirectory() || !name.startsWith(PREFIX)
+                            || -1 != name.indexOf('/', PREFIX.length()))
+                        continue;
+                    final String service = name.substring(PREFIX.length());
+                    List<String> implementations = indexed(index, service);
+                    if (null == implementations)
+                        implementations = ConfigurationReader
+                                .parse(null, new URL(base + name), jar.getInputStream(entry));
+                    services.put(service, implementations);
+                }
+                return new ServiceCacheFile.Jar(length, lastModified, services,
+                        classPath(jar.getManifest()));
+            } catch (final IOException e) {
+                return fail(url, "Cannot scan service configurations", e);
+            } finally {
+                close(root, jar);
+            }
+        }
+
+        /** Manifest {@code Class-Path} jars follow their referring jar. */
+        private static List<String> classPath(final Manifest manifest) {
+            final List<String> paths = new ArrayList<String>();
+            if (null == manifest)
+                return paths;
+            final String classPath = manifest.getMainAttributes()
+                    .getValue(Attributes.Name.CLASS_PATH);
+            if (null == classPath)
+                return paths;
+            for (final String path : classPath.trim().split("\\s+"))
+                if (!path.isEmpty())
+                    paths.add(path);
+            return paths;
+        }
+
+        private static List<String> indexed(final ServiceIndex index, final String service) {
+            return null == index ? null : index.implementations(service);
+        }
+
+        private void add(final String service, final URL config,
+                final List<String> implementations) {
+            add(service, new ServiceConfiguration(config, implementations));
+        }
+
+        private void add(final String service, final ServiceConfiguration configuration) {
+            List<ServiceConfiguration> configurations = services.get(service);
+            if (null == configurations)
+                services.put(service,
+                        configurations = new ArrayList<ServiceConfiguration>());
+            configurations.add(configuration);
+        }
+
+        private static ServiceIndex index(final File index) {
+            if (!index.isFile())
+                return null;
+            try {
+                return ServiceIndex.read(new FileInputStream(index));
+            } catch (final IOException e) {
+                return fail(url(index), "Cannot read service index", e);
+            }
+        }
+
+        private static ServiceIndex index(final JarFile jar)
+                throws IOException {
+            final JarEntry entry = jar.getJarEntry(ServiceIndex.NAME);
+            return null == entry ? null : ServiceIndex.read(jar.getInputStream(entry));
+        }
+
+        private static InputStream open(final File config) {
+            try {
+                return new FileInputStream(config);
+            } catch (final IOException e) {
+                return fail(url(config), "Cannot read service configuration", e);
+            }
+        }
+
+        private static JarFile jarFile(final File root) {
+            try {
+                return new JarFile(root, false);
+            } catch (final IOException e) {
+                return null;
+            }
+        }
+
+        private static void close(final File root, final JarFile jar) {
+            try {
+                jar.close();
+            } catch (final IOException e) {
+                fail(url(root), "Cannot close", e);
+            }
+        }
+
+        private static File file(final URL url) {
+            try {
+                return new File(url.toURI());
+            } catch (final URISyntaxException e) {
+                return new File(url.getPath());
+            }
+        }
+
+        private static URL url(final File file) {
+            try {
+                return file.toURI().toURL();
+            } catch (final MalformedURLException e) {
+                throw new IllegalArgumentException(file.toString(), e);
+            }
+        }
+    }
+}
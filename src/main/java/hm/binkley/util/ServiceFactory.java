@@ -0,0 +1,111 @@
+/*
+ * This is free and unencumbered software released into the public domain.
+ *
+ * Anyone is free to copy, modify, publish, use, compile, sell, or
+ * distribute this software, either in source code form or as a compiled
+ * binary, for any purpose, commercial or non-commercial, and by any
+ * means.
+ *
+ * In jurisdictions that recognize copyright laws, the author or authors
+ * of this software dedicate any and all copyright interest in the
+ * software to the public domain. We make this dedication for the benefit
+ * of the public at large and to the detriment of our heirs and
+ * successors. We intend this dedication to be an overt act of
+ * relinquishment in perpetuity of all present and future rights to this
+ * software under copyright law.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY CLAIM, DAMAGES OR
+ * OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ * ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ *
+ * For more information, please refer to <http://unlicense.org/>.
+ */
+
+package hm.binkley.util;
+
+import javax.annotation.Nonnull;
+import java.lang.invoke.MethodHandle;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.InvocationTargetException;
+
+import static java.lang.invoke.MethodHandles.lookup;
+import static java.lang.invoke.MethodType.genericMethodType;
+import static java.lang.invoke.MethodType.methodType;
+import static java.lang.reflect.Modifier.isPublic;
+
+/**
+ * {@code ServiceFactory} creates instances through a method handle for a constructor rather than
+ * by reflection.  The handle takes its arguments as a single array, so invoking it needs neither
+ * access checks nor boxing to a reflective call.  Arguments are checked against the constructor
+ * first, so that only exceptions thrown by the constructor itself are wrapped.
+ *
+ * @param <T> the constructed type
+ *
+ * @author <a href="mailto:binkley@alumni.rice.edu">B. K. Oxley (binkley)</a>
+ */
+final class ServiceFactory<T> {
+    final Constructor<T> constructor;
+    private final MethodHandle handle;
+    private final Class<?>[] parameters;
+    private final Class<?>[] wrapped;
+
+    ServiceFactory(@Nonnull final Constructor<T> constructor) {
+        this.constructor = constructor;
+        if (!isPublic(constructor.getModifiers()) || !isPublic(
+                constructor.getDeclaringClass().getModifiers()))
+            constructor.setAccessible(true);
+        parameters = constructor.getParameterTypes();
+        final int arity = parameters.length;
+        wrapped = methodType(void.class, parameters).wrap().parameterArray();
+        try {
+            handle = lookup().unreflectConstructor(constructor).
+                    asType(genericMethodType(arity)).
+                    asSpreader(Object[].class, arity);
+        } catch (final IllegalAccessException e) {
+            throw ServiceBinder.<RuntimeException>fail(constructor.getDeclaringClass(),
+                    "Cannot create factory", e);
+        }
+    }
+
+    /**
+     * Creates a new instance with the given constructor <var>arguments</var>.
+     *
+     * @param arguments the constructor arguments, never missing
+     *
+     * @return the new instance, never missing
+     *
+     * @throws IllegalArgumentException if the arguments do not match the constructor
+     * @throws InvocationTargetException if the constructor throws an exception
+     */
+    @Nonnull
+    @SuppressWarnings("unchecked")
+    T create(@Nonnull final Object... arguments)
+            throws InvocationTargetException {
+        check(arguments);
+        try {
+            return (T) (Object) handle.invokeExact(arguments);
+        } catch (final Error e) {
+            throw e;
+        } catch (final Throwable t) {
+            throw new InvocationTargetException(t);
+        }
+    }
+
+    /** Fails as reflection would for arguments the handle cannot convert. */
+    private void check(final Object[] arguments) {
+        if (parameters.length != arguments.length)
+            throw new IllegalArgumentException(constructor + ": Expected " + parameters.length
+                    + " arguments, got " + arguments.length);
+        for (int i = 0; i < parameters.length; ++i) {
+            final Object argument = arguments[i];
+            if (null == argument ? parameters[i].isPrimitive()
+                    : !wrapped[i].isInstance(argument))
+                throw new IllegalArgumentException(constructor + ": Argument " + i
+                        + " is not " + parameters[i].getName() + ": " + argument);
+        }
+    }
+}
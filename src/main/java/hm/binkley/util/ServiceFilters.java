@@ -0,0 +1,170 @@
+/*
+ * This is free and unencumbered software released into the public domain.
+ *
+ * Anyone is free to copy, modify, publish, use, compile, sell, or
+ * distribute this software, either in source code form or as a compiled
+ * binary, for any purpose, commercial or non-commercial, and by any
+ * means.
+ *
+ * In jurisdictions that recognize copyright laws, the author or authors
+ * of this software dedicate any and all copyright interest in the
+ * software to the public domain. We make this dedication for the benefit
+ * of the public at large and to the detriment of our heirs and
+ * successors. We intend this dedication to be an overt act of
+ * relinquishment in perpetuity of all present and future rights to this
+ * software under copyright law.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY CLAIM, DAMAGES OR
+ * OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ * ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ *
+ * For more information, please refer to <http://unlicense.org/>.
+ */
+
+package hm.binkley.util;
+
+import javax.annotation.Nonnull;
+import java.lang.annotation.Annotation;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+/**
+ * {@code ServiceFilters} has common {@link ServiceFilter}s: by name pattern, and by class
+ * annotations read from the class file.
+ *
+ * @author <a href="mailto:binkley@alumni.rice.edu">B. K. Oxley (binkley)</a>
+ */
+public final class ServiceFilters {
+    private ServiceFilters() {
+    }
+
+    /**
+     * Accepts implementations whose class names match <var>regex</var> entirely.
+     *
+     * @param regex the class name pattern, never missing
+     *
+     * @return the filter, never missing
+     */
+    @Nonnull
+    public static ServiceFilter named(@Nonnull final String regex) {
+        final Pattern pattern = Pattern.compile(regex);
+        return new ServiceFilter() {
+            @Override
+            public boolean accept(@Nonnull final ServiceCandidate candidate) {
+                return pattern.matcher(candidate.name()).matches();
+            }
+
+            @Override
+            public String toString() {
+                return "named(" + regex + ")";
+            }
+        };
+    }
+
+    /**
+     * Accepts implementations whose class files have the <var>annotation</var>, which needs
+     * class or runtime retention.
+     *
+     * @param annotation the annotation type token, never missing
+     *
+     * @return the filter, never missing
+     */
+    @Nonnull
+    public static ServiceFilter annotated(@Nonnull final Class<? extends Annotation> annotation) {
+        final String name = annotation.getName();
+        return new ServiceFilter() {
+            @Override
+            public boolean accept(@Nonnull final ServiceCandidate candidate) {
+                return null != candidate.annotation(name);
+            }
+
+            @Override
+            public String toString() {
+                return "annotated(@" + name + ")";
+            }
+        };
+    }
+
+    /**
+     * Accepts implementations whose class files have the <var>annotation</var> with the
+     * <var>element</var> explicitly set to <var>value</var>.  Compare enum constants and classes
+     * by passing them, or their names.
+     *
+     * @param annotation the annotation type token, never missing
+     * @param element the annotation element name, never missing
+     * @param value the element value, never missing
+     *
+     * @return the filter, never missing
+     */
+    @Nonnull
+    public static ServiceFilter annotated(@Nonnull final Class<? extends Annotation> annotation,
+            @Nonnull final String element, @Nonnull final Object value) {
+        final String name = annotation.getName();
+        final Object expected = value instanceof Enum ? ((Enum<?>) value).name()
+                : value instanceof Class ? ((Class<?>) value).getName() : value;
+        return new ServiceFilter() {
+            @Override
+            public boolean accept(@Nonnull final ServiceCandidate candidate) {
+                final Map<String, Object> values = candidate.annotation(name);
+                return null != values && expected.equals(values.get(element));
+            }
+
+            @Override
+            public String toString() {
+                return "annotated(@" + name + "(" + element + "=" + value + "))";
+            }
+        };
+    }
+
+    /**
+     * Accepts implementations which <var>filter</var> rejects.
+     *
+     * @param filter the filter to negate, never missing
+     *
+     * @return the filter, never missing
+     */
+    @Nonnull
+    public static ServiceFilter not(@Nonnull final ServiceFilter filter) {
+        return new ServiceFilter() {
+            @Override
+            public boolean accept(@Nonnull final ServiceCandidate candidate) {
+                return !filter.accept(candidate);
+            }
+
+            @Override
+            public String toString() {
+                return "not(" + filter + ")";
+            }
+        };
+    }
+
+    /**
+     * Accepts implementations which any of the <var>filters</var> accepts.
+     *
+     * @param filters the filters, never missing
+     *
+     * @return the filter, never missing
+     */
+    @Nonnull
+    public static ServiceFilter any(@Nonnull final ServiceFilter... filters) {
+        return new ServiceFilter() {
+            @Override
+            public boolean accept(@Nonnull final ServiceCandidate candidate) {
+                for (final ServiceFilter filter : filters)
+                    if (filter.accept(candidate))
+                        return true;
+                return false;
+            }
+
+            @Override
+            public String toString() {
+                return "any" + Arrays.toString(filters);
+            }
+        };
+    }
+}
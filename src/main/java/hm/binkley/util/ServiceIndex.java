@@ -0,0 +1,179 @@
+/*
+ * This is free and unencumbered software released into the public domain.
+ *
+ * Anyone is free to copy, modify, publish, use, compile, sell, or
+ * distribute this software, either in source code form or as a compiled
+ * binary, for any purpose, commercial or non-commercial, and by any
+ * means.
+ *
+ * In jurisdictions that recognize copyright laws, the author or authors
+ * of this software dedicate any and all copyright interest in the
+ * software to the public domain. We make this dedication for the benefit
+ * of the public at large and to the detriment of our heirs and
+ * successors. We intend this dedication to be an overt act of
+ * relinquishment in perpetuity of all present and future rights to this
+ * software under copyright law.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY CLAIM, DAMAGES OR
+ * OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ * ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ *
+ * For more information, please refer to <http://unlicense.org/>.
+ */
+
+package hm.binkley.util;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static java.util.Collections.unmodifiableList;
+import static java.util.Collections.unmodifiableMap;
+
+/**
+ * {@code ServiceIndex} is the compact binary form of all {@code META-INF/services} configurations
+ * for a single jar or class directory.  {@link ServiceIndexProcessor} writes one index per
+ * compilation as {@value #NAME}; {@link ServiceBinder} reads it in place of opening and parsing
+ * each text configuration in that classpath root. <p/> The format is versioned: <pre>
+ * int magic ("SBIX")
+ * unsigned short version
+ * int service count
+ *   UTF service name
+ *   int implementation count
+ *     UTF implementation name</pre> Indices with another magic or version are ignored, and the
+ * text configurations used instead.
+ *
+ * @author <a href="mailto:binkley@alumni.rice.edu">B. K. Oxley (binkley)</a>
+ */
+final class ServiceIndex {
+    static final String NAME = "META-INF/service-binder.index";
+    static final int MAGIC = 0x53424958;
+    static final int VERSION = 1;
+
+    private final Map<String, List<String>> services;
+
+    ServiceIndex(@Nonnull final Map<String, ? extends Iterable<String>> services) {
+        final Map<String, List<String>> copy = new LinkedHashMap<String, List<String>>();
+        for (final Map.Entry<String, ? extends Iterable<String>> entry : services.entrySet()) {
+            final List<String> implementations = new ArrayList<String>();
+            for (final String implementation : entry.getValue())
+                implementations.add(implementation);
+            copy.put(entry.getKey(), unmodifiableList(implementations));
+        }
+        this.services = unmodifiableMap(copy);
+    }
+
+    /**
+     * Reads a service index from <var>in</var>, closing it.
+     *
+     * @param in the input stream, never missing
+     *
+     * @return the service index, or {@code null} if not a supported index version
+     *
+     * @throws IOException if <var>in</var> cannot be read
+     */
+    @Nullable
+    static ServiceIndex read(@Nonnull final InputStream in)
+            throws IOException {
+        final DataInputStream data = new DataInputStream(new BufferedInputStream(in));
+        try {
+            if (MAGIC != data.readInt() || VERSION != data.readUnsignedShort())
+                return null;
+            final Map<String, List<String>> services = new LinkedHashMap<String, List<String>>();
+            for (int i = data.readInt(); 0 < i; --i) {
+                final String service = data.readUTF();
+                final int count = data.readInt();
+                final List<String> implementations = new ArrayList<String>(count);
+                for (int j = 0; j < count; ++j)
+                    implementations.add(data.readUTF());
+                services.put(service, implementations);
+            }
+            return new ServiceIndex(services);
+        } finally {
+            data.close();
+        }
+    }
+
+    /**
+     * Writes this service index to <var>out</var>, closing it.
+     *
+     * @param out the output stream, never missing
+     *
+     * @throws IOException if <var>out</var> cannot be written
+     */
+    void write(@Nonnull final OutputStream out)
+            throws IOException {
+        final DataOutputStream data = new DataOutputStream(new BufferedOutputStream(out));
+        try {
+            data.writeInt(MAGIC);
+            data.writeShort(VERSION);
+            data.writeInt(services.size());
+            for (final Map.Entry<String, List<String>> entry : services.entrySet()) {
+                data.writeUTF(entry.getKey());
+                data.writeInt(entry.getValue().size());
+                for (final String implementation : entry.getValue())
+                    data.writeUTF(implementation);
+            }
+        } finally {
+            data.close();
+        }
+    }
+
+    /**
+     * Gets the names of the services indexed.
+     *
+     * @return the service names, never missing
+     */
+    @Nonnull
+    Set<String> services() {
+        return services.keySet();
+    }
+
+    /**
+     * Gets the implementation names of <var>service</var> in configuration order.
+     *
+     * @param service the service name, never missing
+     *
+     * @return the implementation names, or {@code null} if <var>service</var> is not indexed
+     */
+    @Nullable
+    List<String> implementations(@Nonnull final String service) {
+        return services.get(service);
+    }
+
+    /**
+     * Gets the classpath root of <var>resource</var>, the URL text before <var>name</var>.  Roots
+     * are comparable between resources found in the same jar or directory.
+     *
+     * @param resource the resource URL, never missing
+     * @param name the resource name, never missing
+     *
+     * @return the classpath root, never missing
+     */
+    @Nonnull
+    static String root(@Nonnull final URL resource, @Nonnull final String name) {
+        final String url = resource.toExternalForm();
+        return url.endsWith(name) ? url.substring(0, url.length() - name.length()) : url;
+    }
+
+    @Override
+    public String toString() {
+        return getClass().getSimpleName() + services;
+    }
+}
@@ -0,0 +1,209 @@
+/*
+ * This is free and unencumbered software released into the public domain.
+ *
+ * Anyone is free to copy, modify, publish, use, compile, sell, or
+ * distribute this software, either in source code form or as a compiled
+ * binary, for any purpose, commercial or non-commercial, and by any
+ * means.
+ *
+ * In jurisdictions that recognize copyright laws, the author or authors
+ * of this software dedicate any and all copyright interest in the
+ * software to the public domain. We make this dedication for the benefit
+ * of the public at large and to the detriment of our heirs and
+ * successors. We intend this dedication to be an overt act of
+ * relinquishment in perpetuity of all present and future rights to this
+ * software under copyright law.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY CLAIM, DAMAGES OR
+ * OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ * ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ *
+ * For more information, please refer to <http://unlicense.org/>.
+ */
+
+package hm.binkley.util;
+
+import org.kohsuke.MetaInfServices;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.Processor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.annotation.processing.SupportedOptions;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.AnnotationMirror;
+import javax.lang.model.element.AnnotationValue;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+import static javax.tools.Diagnostic.Kind.ERROR;
+import static javax.tools.StandardLocation.CLASS_OUTPUT;
+
+/**
+ * {@code ServiceIndexProcessor} writes a {@link ServiceIndex} alongside the {@code
+ * META-INF/services} files generated for {@link MetaInfServices @MetaInfServices}.  The index is a
+ * single binary resource per jar which {@link ServiceBinder} reads in place of the text
+ * configurations. <p/> The processor does not claim {@code @MetaInfServices}, so the text files
+ * are still generated for {@link java.util.ServiceLoader} and tools without the index.  Service
+ * files already in the class output, such as those copied from resources, are merged into the
+ * index. <p/> Implementations keep configuration order, so indexed jars bind in the same order as
+ * text configurations: those of an existing service file first, in file order, then annotated
+ * implementations as compiled. <p/> With the {@value #BINDINGS} option naming a class prefix, for
+ * example {@code -Ahm.binkley.util.ServiceIndexProcessor.bindings=com.example.Services}, also
+ * generates a Guice module and a Spring Framework bean class binding the indexed services without
+ * discovery; see {@link ServiceBindingsGenerator}.  Bindings are generated in the first round
+ * finding services, so services found in later rounds, as from generated sources, are reported as
+ * errors.
+ *
+ * @author <a href="mailto:binkley@alumni.rice.edu">B. K. Oxley (binkley)</a>
+ */
+@MetaInfServices(Processor.class)
+@SupportedAnnotationTypes("org.kohsuke.MetaInfServices")
+@SupportedOptions(ServiceIndexProcessor.BINDINGS)
+public final class ServiceIndexProcessor
+        extends AbstractProcessor {
+    /** Processor option naming the class prefix of generated bindings, if any. */
+    public static final String BINDINGS = "hm.binkley.util.ServiceIndexProcessor.bindings";
+    private static final String PREFIX = "META-INF/services/";
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+
+    private final Map<String, Set<String>> services = new TreeMap<String, Set<String>>();
+    private boolean generated;
+
+    @Override
+    public SourceVersion getSupportedSourceVersion() {
+        return SourceVersion.latestSupported();
+    }
+
+    @Override
+    public boolean process(final Set<? extends TypeElement> annotations,
+            final RoundEnvironment roundEnv) {
+        if (roundEnv.processingOver()) {
+            if (!services.isEmpty())
+                write();
+            return false;
+        }
+        boolean found = false;
+        for (final TypeElement annotation : annotations)
+            for (final Element element : roundEnv.getElementsAnnotatedWith(annotation)) {
+                index(annotation, (TypeElement) element);
+                found = true;
+            }
+        if (found)
+            generate();
+        return false;
+    }
+
+    private void generate() {
+        final String bindings = processingEnv.getOptions().get(BINDINGS);
+        if (null == bindings || bindings.isEmpty())
+            return;
+        if (generated) {
+            processingEnv.getMessager().printMessage(ERROR,
+                    "Services found after generating bindings " + bindings);
+            return;
+        }
+        generated = true;
+        new ServiceBindingsGenerator(processingEnv, bindings).generate(services);
+    }
+
+    private void index(final TypeElement annotation, final TypeElement type) {
+        for (final TypeElement contract : contracts(annotation, type)) {
+            final String service = binaryName(contract);
+            Set<String> implementations = services.get(service);
+            if (null == implementations) {
+                implementations = new LinkedHashSet<String>();
+                existing(service, implementations);
+                services.put(service, implementations);
+            }
+            implementations.add(binaryName(type));
+        }
+    }
+
+    private String binaryName(final TypeElement type) {
+        return processingEnv.getElementUtils().getBinaryName(type).toString();
+    }
+
+    /**
+     * Finds the services of <var>type</var> as does the services file generator: those named by
+     * the annotation, else the single base class or first interface.  Empty if not inferrable,
+     * which the services file generator reports.
+     */
+    private static List<TypeElement> contracts(final TypeElement annotation,
+            final TypeElement type) {
+        final List<TypeElement> contracts = new ArrayList<TypeElement>();
+        for (final AnnotationMirror mirror : type.getAnnotationMirrors())
+            if (mirror.getAnnotationType().asElement().equals(annotation))
+                for (final Map.Entry<? extends ExecutableElement, ? extends AnnotationValue> value
+                        : mirror.getElementValues().entrySet())
+                    if (value.getKey().getSimpleName().contentEquals("value"))
+                        for (final Object contract : (List<?>) value.getValue().getValue())
+                            contracts.add(typeElement(
+                                    (TypeMirror) ((AnnotationValue) contract).getValue()));
+        if (!contracts.isEmpty())
+            return contracts;
+
+        final TypeMirror superclass = type.getSuperclass();
+        final boolean hasBaseClass = TypeKind.DECLARED == superclass.getKind()
+                && !typeElement(superclass).getQualifiedName().contentEquals("java.lang.Object");
+        final boolean hasInterfaces = !type.getInterfaces().isEmpty();
+        if (hasBaseClass != hasInterfaces)
+            contracts.add(typeElement(hasBaseClass ? superclass : type.getInterfaces().get(0)));
+        return contracts;
+    }
+
+    private static TypeElement typeElement(final TypeMirror type) {
+        return (TypeElement) ((DeclaredType) type).asElement();
+    }
+
+    /** Merges any service file already in the class output, e.g., copied from resources. */
+    private void existing(final String service, final Set<String> implementations) {
+        try {
+            final BufferedReader reader = new BufferedReader(new InputStreamReader(
+                    processingEnv.getFiler().getResource(CLASS_OUTPUT, "", PREFIX + service)
+                            .openInputStream(), UTF8));
+            try {
+                String line;
+                while (null != (line = reader.readLine())) {
+                    final int comment = line.indexOf('#');
+                    final String implementation = (-1 == comment ? line
+                            : line.substring(0, comment)).trim();
+                    if (!implementation.isEmpty())
+                        implementations.add(implementation);
+                }
+            } finally {
+                reader.close();
+            }
+        } catch (final IOException ignored) {
+            // No existing file
+        }
+    }
+
+    private void write() {
+        try {
+            new ServiceIndex(services).write(processingEnv.getFiler()
+                    .createResource(CLASS_OUTPUT, "", ServiceIndex.NAME).openOutputStream());
+        } catch (final IOException e) {
+            processingEnv.getMessager()
+                    .printMessage(ERROR, "Cannot write " + ServiceIndex.NAME + ": " + e);
+        }
+    }
+}
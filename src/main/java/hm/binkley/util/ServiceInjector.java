@@ -0,0 +1,637 @@
+/*
+ * This is free and unencumbered software released into the public domain.
+ *
+ * Anyone is free to copy, modify, publish, use, compile, sell, or
+ * distribute this software, either in source code form or as a compiled
+ * binary, for any purpose, commercial or non-commercial, and by any
+ * means.
+ *
+ * In jurisdictions that recognize copyright laws, the author or authors
+ * of this software dedicate any and all copyright interest in the
+ * software to the public domain. We make this dedication for the benefit
+ * of the public at large and to the detriment of our heirs and
+ * successors. We intend this dedication to be an overt act of
+ * relinquishment in perpetuity of all present and future rights to this
+ * software under copyright law.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY CLAIM, DAMAGES OR
+ * OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ * ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ *
+ * For more information, please refer to <http://unlicense.org/>.
+ */
+
+package hm.binkley.util;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import javax.inject.Inject;
+import javax.inject.Named;
+import javax.inject.Provider;
+import javax.inject.Qualifier;
+import javax.inject.Singleton;
+import java.lang.annotation.Annotation;
+import java.lang.invoke.MethodHandle;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.ServiceConfigurationError;
+import java.util.Set;
+
+import static java.lang.invoke.MethodHandles.lookup;
+import static java.lang.invoke.MethodType.genericMethodType;
+import static java.lang.invoke.MethodType.methodType;
+import static java.lang.reflect.Modifier.isAbstract;
+import static java.lang.reflect.Modifier.isFinal;
+import static java.lang.reflect.Modifier.isPrivate;
+import static java.lang.reflect.Modifier.isStatic;
+
+/**
+ * {@code ServiceInjector} is a small built-in {@code javax.inject} injector for services bound
+ * with {@link ServiceBinder#with(ServiceInjector)}, for embedded uses which want constructor
+ * injection of providers without the startup cost of Guice or Spring Framework.  Implementations
+ * are injected through an {@link Inject @Inject} constructor, or a no-argument constructor, then
+ * {@code @Inject} fields and methods, supertypes first.  Dependencies are bound instances, bound
+ * services, or concrete classes constructed just in time; {@link Named @Named} qualifies them,
+ * and {@link Provider} or {@code Set} of a service may be injected.  Classes annotated {@link
+ * Singleton @Singleton} are constructed once. <p/> Binding records providers only; classes are
+ * inspected when first constructed, and each is constructed thereafter through a cached method
+ * handle with its dependencies already resolved.  Lookups read copy-on-write tables without
+ * locking or allocating. <p/> Bind instances first, such as configuration values, then bind
+ * services, then call {@link #start()} to create eager singletons and start warm-ups.  Circular
+ * dependencies and qualifiers other than {@code @Named} are not supported; a cycle fails naming
+ * the classes in it.  Failures throw {@link ServiceConfigurationError}.
+ *
+ * @author <a href="mailto:binkley@alumni.rice.edu">B. K. Oxley (binkley)</a>
+ */
+public final class ServiceInjector {
+    /** The classes being constructed on this thread, outermost first, to detect cycles. */
+    private static final ThreadLocal<List<Class<?>>> CONSTRUCTING
+            = new ThreadLocal<List<Class<?>>>() {
+        @Override
+        protected List<Class<?>> initialValue() {
+            return new ArrayList<Class<?>>();
+        }
+    };
+
+    private final Object lock = new Object();
+    private volatile Map<Class<?>, Provider<?>> unnamed = Collections.emptyMap();
+    private volatile Map<Key, Provider<?>> named = Collections.emptyMap();
+    private volatile Map<Class<?>, Provider<?>[]> services = Collections.emptyMap();
+    private volatile Map<Class<?>, Construction<?>> constructions = Collections.emptyMap();
+    private final List<Runnable> starting = new ArrayList<Runnable>();
+
+    /**
+     * Binds <var>instance</var> to <var>type</var>.
+     *
+     * @param type the bound type token, never missing
+     * @param instance the instance, never missing
+     * @param <T> the bound type
+     *
+     * @throws ServiceConfigurationError if <var>type</var> is already bound
+     */
+    public <T> void bindInstance(@Nonnull final Class<T> type, @Nonnull final T instance) {
+        bind(type, null, new Instance<T>(instance));
+    }
+
+    /**
+     * Binds <var>instance</var> to <var>type</var> qualified as {@code @Named(name)}.
+     *
+     * @param type the bound type token, never missing
+     * @param name the qualifying name, never missing
+     * @param instance the instance, never missing
+     * @param <T> the bound type
+     *
+     * @throws ServiceConfigurationError if <var>type</var> is already bound with <var>name</var>
+     */
+    public <T> void bindInstance(@Nonnull final Class<T> type, @Nonnull final String name,
+            @Nonnull final T instance) {
+        bind(type, name, new Instance<T>(instance));
+    }
+
+    /**
+     * Gets an instance of <var>type</var>, constructing concrete classes not bound.
+     *
+     * @param type the type token, never missing
+     * @param <T> the type
+     *
+     * @return the instance, never missing
+     *
+     * @throws ServiceConfigurationError if <var>type</var> cannot be provided
+     */
+    @Nonnull
+    public <T> T getInstance(@Nonnull final Class<T> type) {
+        return getProvider(type).get();
+    }
+
+    /**
+     * Gets an instance of <var>type</var> qualified as {@code @Named(name)}.
+     *
+     * @param type the type token, never missing
+     * @param name the qualifying name, never missing
+     * @param <T> the type
+     *
+     * @return the instance, never missing
+     *
+     * @throws ServiceConfigurationError if <var>type</var> is not bound with <var>name</var>
+     */
+    @Nonnull
+    public <T> T getInstance(@Nonnull final Class<T> type, @Nonnull final String name) {
+        return getProvider(type, name).get();
+    }
+
+    /**
+     * Gets a provider of <var>type</var>, constructing concrete classes not bound.
+     *
+     * @param type the type token, never missing
+     * @param <T> the type
+     *
+     * @return the provider, never missing
+     *
+     * @throws ServiceConfigurationError if <var>type</var> cannot be provided
+     */
+    @Nonnull
+    @SuppressWarnings("unchecked")
+    public <T> Provider<T> getProvider(@Nonnull final Class<T> type) {
+        final Provider<T> provider = (Provider<T>) unnamed.get(type);
+        return null == provider ? justInTime(type) : provider;
+    }
+
+    /**
+     * Gets a provider of <var>type</var> qualified as {@code @Named(name)}.
+     *
+     * @param type the type token, never missing
+     * @param name the qualifying name, never missing
+     * @param <T> the type
+     *
+     * @return the provider, never missing
+     *
+     * @throws ServiceConfigurationError if <var>type</var> is not bound with <var>name</var>
+     */
+    @Nonnull
+    @SuppressWarnings("unchecked")
+    public <T> Provider<T> getProvider(@Nonnull final Class<T> type,
+            @Nonnull final String name) {
+        final Provider<T> provider = (Provider<T>) named.get(new Key(type, name));
+        if (null == provider)
+            throw new ServiceConfigurationError(
+                    type.getName() + ": No binding named '" + name + "'");
+        return provider;
+    }
+
+    /**
+     * Gets instances of every implementation bound for <var>service</var>, in binding order, as
+     * does a Guice multibinding.
+     *
+     * @param service the service type token, never missing
+     * @param <T> the service type
+     *
+     * @return the instances, never missing
+     */
+    @Nonnull
+    @SuppressWarnings("unchecked")
+    public <T> List<T> getInstances(@Nonnull final Class<T> service) {
+        final Provider<?>[] providers = services.get(service);
+        if (null == providers)
+            return Collections.emptyList();
+        final List<T> instances = new ArrayList<T>(providers.length);
+        for (final Provider<?> provider : providers)
+            instances.add((T) provider.get());
+        return instances;
+    }
+
+    /**
+     * Injects the {@code @Inject} fields and methods of <var>instance</var>.
+     *
+     * @param instance the instance, never missing
+     */
+    public void injectMembers(@Nonnull final Object instance) {
+        construction(instance.getClass()).inject(instance);
+    }
+
+    /**
+     * Finishes binding: creates eager singletons and starts warming up, once.  Call after binding
+     * all instances and services.
+     */
+    public void start() {
+        final List<Runnable> starting;
+        synchronized (lock) {
+            starting = new ArrayList<Runnable>(this.starting);
+            this.starting.clear();
+        }
+        for (final Runnable start : starting)
+            start.run();
+    }
+
+    @Override
+    public String toString() {
+        return getClass().getSimpleName() + "[" + unnamed.size() + " unnamed, " + named.size()
+                + " named, " + services.size() + " services]";
+    }
+
+    /** Binds <var>provider</var> as the only provider of <var>type</var>. */
+    <T> void bind(final Class<T> type, @Nullable final String name,
+            final Provider<? extends T> provider) {
+        synchronized (lock) {
+            if (null == name) {
+                if (unnamed.containsKey(type))
+                    throw new ServiceConfigurationError(type.getName() + ": Already bound");
+                final Map<Class<?>, Provider<?>> unnamed = new HashMap<Class<?>, Provider<?>>(
+                        this.unnamed);
+                unnamed.put(type, provider);
+                this.unnamed = unnamed;
+            } else {
+                final Key key = new Key(type, name);
+                if (named.containsKey(key))
+                    throw new ServiceConfigurationError(
+                            type.getName() + ": Already bound named '" + name + "'");
+                final Map<Key, Provider<?>> named = new HashMap<Key, Provider<?>>(this.named);
+                named.put(key, provider);
+                this.named = named;
+            }
+        }
+    }
+
+    /** Adds <var>provider</var> to the implementations of <var>service</var>. */
+    <T> void add(final Class<T> service, final Provider<? extends T> provider) {
+        synchronized (lock) {
+            final Provider<?>[] existing = services.get(service);
+            final Provider<?>[] providers = null == existing ? new Provider<?>[1]
+                    : Arrays.copyOf(existing, existing.length + 1);
+            providers[providers.length - 1] = provider;
+            final Map<Class<?>, Provider<?>[]> services = new HashMap<Class<?>, Provider<?>[]>(
+                    this.services);
+            services.put(service, providers);
+            this.services = services;
+        }
+    }
+
+    /** Runs <var>start</var> when {@link #start() started}. */
+    void onStart(final Runnable start) {
+        synchronized (lock) {
+            starting.add(start);
+        }
+    }
+
+    /** Provides from <var>provider</var> once, the first time asked. */
+    static <T> Provider<T> singleton(final Provider<T> provider) {
+        return new Once<T>(provider);
+    }
+
+    /** Binds a concrete class not bound, once, scoped by its annotation. */
+    @SuppressWarnings("unchecked")
+    private <T> Provider<T> justInTime(final Class<T> type) {
+        if (type.isInterface() || isAbstract(type.getModifiers()) || type.isPrimitive()
+                || type.isArray())
+            throw new ServiceConfigurationError(type.getName() + ": No binding");
+        final Provider<T> constructor = new Constructing<T>(type);
+        final Provider<T> created = type.isAnnotationPresent(Singleton.class)
+                ? singleton(constructor) : constructor;
+        synchronized (lock) {
+            final Provider<T> existing = (Provider<T>) unnamed.get(type);
+            if (null != existing)
+                return existing;
+            final Map<Class<?>, Provider<?>> unnamed = new HashMap<Class<?>, Provider<?>>(
+                    this.unnamed);
+            unnamed.put(type, created);
+            this.unnamed = unnamed;
+            return created;
+        }
+    }
+
+    /** Gets the construction of <var>type</var>, inspecting it the first time. */
+    @SuppressWarnings("unchecked")
+    private <T> Construction<T> construction(final Class<T> type) {
+        Construction<T> construction = (Construction<T>) constructions.get(type);
+        if (null != construction)
+            return construction;
+        construction = new Construction<T>(type); // Outside the lock: may inject dependencies
+        synchronized (lock) {
+            final Construction<T> existing = (Construction<T>) constructions.get(type);
+            if (null != existing)
+                return existing;
+            final Map<Class<?>, Construction<?>> constructions
+                    = new HashMap<Class<?>, Construction<?>>(this.constructions);
+            constructions.put(type, construction);
+            this.constructions = constructions;
+            return construction;
+        }
+    }
+
+    /** Resolves the provider of a dependency declared as <var>type</var>. */
+    private Provider<?> dependency(final Class<?> owner, final Type type,
+            final Annotation[] annotations) {
+        final String name = name(owner, annotations);
+        if (type instanceof ParameterizedType) {
+            final ParameterizedType parameterized = (ParameterizedType) type;
+            final Type argument = parameterized.getActualTypeArguments()[0];
+            if (!(argument instanceof Class))
+                throw new ServiceConfigurationError(
+                        owner.getName() + ": Unsupported dependency: " + type);
+            final Class<?> element = (Class<?>) argument;
+            if (Provider.class == parameterized.getRawType()) {
+                final Provider<?> provider = dependency(element, name);
+                return new Instance<Provider<?>>(provider);
+            }
+            if (Set.class == parameterized.getRawType() && null == name)
+                return new Provider<Set<?>>() {
+                    @Override
+                    public Set<?> get() {
+                        return Collections
+                                .unmodifiableSet(new LinkedHashSet<Object>(getInstances(element)));
+                    }
+                };
+        }
+        if (!(type instanceof Class))
+            throw new ServiceConfigurationError(
+                    owner.getName() + ": Unsupported dependency: " + type);
+        return dependency(methodType((Class<?>) type).wrap().returnType(), name);
+    }
+
+    private Provider<?> dependency(final Class<?> type, @Nullable final String name) {
+        return null == name ? getProvider(type) : getProvider(type, name);
+    }
+
+    @Nullable
+    private static String name(final Class<?> owner, final Annotation[] annotations) {
+        for (final Annotation annotation : annotations) {
+            if (annotation instanceof Named)
+                return ((Named) annotation).value();
+            if (annotation.annotationType().isAnnotationPresent(Qualifier.class))
+                throw new ServiceConfigurationError(
+                        owner.getName() + ": Unsupported qualifier: " + annotation);
+        }
+        return null;
+    }
+
+    private static Object[] get(final Provider<?>[] providers) {
+        final Object[] values = new Object[providers.length];
+        for (int i = 0; i < values.length; ++i)
+            values[i] = providers[i].get();
+        return values;
+    }
+
+    private static <T> Constructor<T> constructor(final Class<T> type) {
+        Constructor<T> injectable = null;
+        for (final Constructor<?> constructor : type.getDeclaredConstructors())
+            if (constructor.isAnnotationPresent(Inject.class)) {
+                if (null != injectable)
+                    throw new ServiceConfigurationError(
+                            type.getName() + ": More than one @Inject constructor");
+                injectable = cast(constructor);
+            }
+        if (null != injectable)
+            return injectable;
+        try {
+            return type.getDeclaredConstructor();
+        } catch (final NoSuchMethodException e) {
+            throw new ServiceConfigurationError(
+                    type.getName() + ": No @Inject or no-argument constructor", e);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> Constructor<T> cast(final Constructor<?> constructor) {
+        return (Constructor<T>) constructor;
+    }
+
+    /** Qualifies a type by name. */
+    private static final class Key {
+        private final Class<?> type;
+        private final String name;
+
+        private Key(final Class<?> type, final String name) {
+            this.type = type;
+            this.name = name;
+        }
+
+        @Override
+        public boolean equals(final Object o) {
+            if (this == o)
+                return true;
+            if (!(o instanceof Key))
+                return false;
+            final Key that = (Key) o;
+            return type == that.type && name.equals(that.name);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * type.hashCode() + name.hashCode();
+        }
+    }
+
+    private static final class Instance<T>
+            implements Provider<T> {
+        private final T instance;
+
+        private Instance(final T instance) {
+            this.instance = instance;
+        }
+
+        @Override
+        public T get() {
+            return instance;
+        }
+
+        @Override
+        public String toString() {
+            return String.valueOf(instance);
+        }
+    }
+
+    private static final class Once<T>
+            implements Provider<T> {
+        private final Provider<T> provider;
+        private volatile T instance;
+
+        private Once(final Provider<T> provider) {
+            this.provider = provider;
+        }
+
+        @Override
+        public T get() {
+            T instance = this.instance;
+            if (null != instance)
+                return instance;
+            synchronized (this) {
+                instance = this.instance;
+                if (null == instance)
+                    this.instance = instance = provider.get();
+                return instance;
+            }
+        }
+
+        @Override
+        public String toString() {
+            return "Singleton[" + provider + "]";
+        }
+    }
+
+    /** Constructs a new instance each time. */
+    private final class Constructing<T>
+            implements Provider<T> {
+        private final Class<T> type;
+
+        private Constructing(final Class<T> type) {
+            this.type = type;
+        }
+
+        @Override
+        public T get() {
+            return construction(type).create();
+        }
+
+        @Override
+        public String toString() {
+            return type.getName();
+        }
+    }
+
+    /**
+     * Constructs and injects instances of a class through method handles, with the providers of
+     * dependencies resolved once.
+     */
+    private final class Construction<T> {
+        private final Class<T> type;
+        private final ServiceFactory<T> factory;
+        private final Provider<?>[] arguments;
+        private final List<MethodHandle> members = new ArrayList<MethodHandle>();
+        private final List<Provider<?>[]> values = new ArrayList<Provider<?>[]>();
+
+        private Construction(final Class<T> type) {
+            this.type = type;
+            final Constructor<T> constructor = constructor(type);
+            factory = new ServiceFactory<T>(constructor);
+            arguments = dependencies(constructor.getGenericParameterTypes(),
+                    constructor.getParameterAnnotations());
+            members(type, new HashSet<String>());
+        }
+
+        private T create() {
+            final List<Class<?>> constructing = CONSTRUCTING.get();
+            final int cycle = constructing.indexOf(type);
+            if (-1 != cycle)
+                throw new ServiceConfigurationError(type.getName() + ": Circular dependency: "
+                        + cycle(constructing.subList(cycle, constructing.size())));
+            constructing.add(type);
+            try {
+                final T instance;
+                try {
+                    instance = factory.create(get(arguments));
+                } catch (final InvocationTargetException e) {
+                    throw new ServiceConfigurationError(type.getName() + ": Cannot construct",
+                            e.getCause());
+                }
+                inject(instance);
+                return instance;
+            } finally {
+                constructing.remove(constructing.size() - 1);
+            }
+        }
+
+        /** Names the classes of a cycle in order, back to the first. */
+        private String cycle(final List<Class<?>> classes) {
+            final StringBuilder cycle = new StringBuilder();
+            for (final Class<?> each : classes)
+                cycle.append(each.getName()).append(" -> ");
+            return cycle.append(type.getName()).toString();
+        }
+
+        private void inject(final Object instance) {
+            for (int i = 0, n = members.size(); i < n; ++i) {
+                final Object[] values = get(this.values.get(i));
+                final Object[] arguments = new Object[values.length + 1];
+                arguments[0] = instance;
+                System.arraycopy(values, 0, arguments, 1, values.length);
+                try {
+                    members.get(i).invokeExact(arguments);
+                } catch (final Throwable t) {
+                    throw new ServiceConfigurationError(type.getName() + ": Cannot inject", t);
+                }
+            }
+        }
+
+        /**
+         * Finds injected fields then methods, supertypes first, skipping methods overridden below
+         * by signature.
+         */
+        private void members(final Class<?> type, final Set<String> overridden) {
+            if (Object.class == type)
+                return;
+            final Method[] methods = type.getDeclaredMethods();
+            final Set<String> below = new HashSet<String>(overridden);
+            for (final Method method : methods)
+                if (!isPrivate(method.getModifiers()) && !isStatic(method.getModifiers()))
+                    below.add(signature(method));
+            members(type.getSuperclass(), below);
+            for (final Field field : type.getDeclaredFields())
+                if (field.isAnnotationPresent(Inject.class)) {
+                    final int modifiers = field.getModifiers();
+                    if (isFinal(modifiers) || isStatic(modifiers))
+                        throw new ServiceConfigurationError(type.getName()
+                                + ": Cannot inject final or static field: " + field.getName());
+                    field.setAccessible(true);
+                    try {
+                        add(lookup().unreflectSetter(field), 1, new Provider<?>[]{
+                                dependency(type, field.getGenericType(),
+                                        field.getAnnotations())});
+                    } catch (final IllegalAccessException e) {
+                        throw new ServiceConfigurationError(
+                                type.getName() + ": Cannot inject " + field.getName(), e);
+                    }
+                }
+            for (final Method method : methods)
+                if (method.isAnnotationPresent(Inject.class) && (isPrivate(method.getModifiers())
+                        || !overridden.contains(signature(method)))) {
+                    final int modifiers = method.getModifiers();
+                    if (isStatic(modifiers) || isAbstract(modifiers))
+                        throw new ServiceConfigurationError(type.getName()
+                                + ": Cannot inject static or abstract method: "
+                                + method.getName());
+                    method.setAccessible(true);
+                    try {
+                        add(lookup().unreflect(method), method.getParameterTypes().length,
+                                dependencies(method.getGenericParameterTypes(),
+                                        method.getParameterAnnotations()));
+                    } catch (final IllegalAccessException e) {
+                        throw new ServiceConfigurationError(
+                                type.getName() + ": Cannot inject " + method.getName(), e);
+                    }
+                }
+        }
+
+        private void add(final MethodHandle member, final int arity,
+                final Provider<?>[] values) {
+            members.add(member.asType(genericMethodType(arity + 1).changeReturnType(void.class))
+                    .asSpreader(Object[].class, arity + 1));
+            this.values.add(values);
+        }
+
+        private Provider<?>[] dependencies(final Type[] types, final Annotation[][] annotations) {
+            final Provider<?>[] providers = new Provider<?>[types.length];
+            for (int i = 0; i < providers.length; ++i)
+                providers[i] = dependency(type, types[i], annotations[i]);
+            return providers;
+        }
+
+        private String signature(final Method method) {
+            return method.getName() + Arrays.toString(method.getParameterTypes());
+        }
+    }
+}
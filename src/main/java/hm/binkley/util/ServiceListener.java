@@ -0,0 +1,156 @@
+/*
+ * This is free and unencumbered software released into the public domain.
+ *
+ * Anyone is free to copy, modify, publish, use, compile, sell, or
+ * distribute this software, either in source code form or as a compiled
+ * binary, for any purpose, commercial or non-commercial, and by any
+ * means.
+ *
+ * In jurisdictions that recognize copyright laws, the author or authors
+ * of this software dedicate any and all copyright interest in the
+ * software to the public domain. We make this dedication for the benefit
+ * of the public at large and to the detriment of our heirs and
+ * successors. We intend this dedication to be an overt act of
+ * relinquishment in perpetuity of all present and future rights to this
+ * software under copyright law.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY CLAIM, DAMAGES OR
+ * OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ * ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ *
+ * For more information, please refer to <http://unlicense.org/>.
+ */
+
+package hm.binkley.util;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.net.URL;
+
+/**
+ * {@code ServiceListener} receives timed events from each phase of discovery and binding, for
+ * metrics or tracing.  Override the events of interest; the defaults do nothing. <p/> Listeners
+ * are process-wide.  Implementations listed in {@code
+ * META-INF/services/hm.binkley.util.ServiceListener} are registered when first needed, including
+ * the built-in {@link JfrServiceListener} when the JDK has Flight Recorder; add or remove others
+ * with {@link #add(ServiceListener)} and {@link #remove(ServiceListener)}.  With no {@link
+ * #enabled() enabled} listeners, nothing is timed. <p/> Events arrive on the binding thread, or
+ * on executor threads when {@link ServiceBinder#parallel() binding in parallel}, so listeners
+ * must be thread-safe.  Listeners should not throw: exceptions propagate to the caller of the
+ * service binder.  Durations are in nanoseconds.
+ *
+ * @author <a href="mailto:binkley@alumni.rice.edu">B. K. Oxley (binkley)</a>
+ */
+public abstract class ServiceListener {
+    /**
+     * Registers <var>listener</var> for events from all service binders.
+     *
+     * @param listener the listener, never missing
+     */
+    public static void add(@Nonnull final ServiceListener listener) {
+        ServiceListeners.add(listener);
+    }
+
+    /**
+     * Unregisters <var>listener</var>, if registered.
+     *
+     * @param listener the listener, never missing
+     */
+    public static void remove(@Nonnull final ServiceListener listener) {
+        ServiceListeners.remove(listener);
+    }
+
+    /**
+     * Is this listener interested in events now?  Checked as each phase starts, so should be
+     * cheap; when no listener is enabled, the phase is not timed and its events are dropped.
+     * Defaults to {@code true}.
+     *
+     * @return {@code true} if interested
+     */
+    public boolean enabled() {
+        return true;
+    }
+
+    /**
+     * Scanned the classpath of <var>classLoader</var> for several services at once.
+     *
+     * @param classLoader the class loader, never missing
+     * @param services the count of services found
+     * @param nanos the duration
+     */
+    public void scanned(@Nonnull final ClassLoader classLoader, final int services,
+            final long nanos) {
+    }
+
+    /**
+     * Found the configurations of <var>service</var>, from the classpath or the process-wide
+     * cache.
+     *
+     * @param service the service type token, never missing
+     * @param classLoader the class loader, never missing
+     * @param configurations the count of configurations found
+     * @param providers the count of implementations listed in them
+     * @param nanos the duration
+     */
+    public void discovered(@Nonnull final Class<?> service,
+            @Nonnull final ClassLoader classLoader, final int configurations,
+            final int providers, final long nanos) {
+    }
+
+    /**
+     * Read the text configuration at <var>config</var>.
+     *
+     * @param config the configuration location, never missing
+     * @param providers the count of implementations listed
+     * @param skipped the count of comment or blank lines
+     * @param nanos the duration
+     */
+    public void read(@Nonnull final URL config, final int providers, final int skipped,
+            final long nanos) {
+    }
+
+    /**
+     * Loaded an implementation class of <var>service</var>.
+     *
+     * @param service the service type token, never missing
+     * @param config the configuration listing the implementation, never missing
+     * @param implementation the implementation class, never missing
+     * @param nanos the duration
+     */
+    public void loaded(@Nonnull final Class<?> service, @Nonnull final URL config,
+            @Nonnull final Class<?> implementation, final long nanos) {
+    }
+
+    /**
+     * Registered the implementations of <var>service</var> in <var>config</var> with the
+     * injector, lazily or not.
+     *
+     * @param service the service type token, never missing
+     * @param config the configuration listing the implementations, never missing
+     * @param implementations the count of implementations
+     * @param nanos the duration
+     */
+    public void bound(@Nonnull final Class<?> service, @Nonnull final URL config,
+            final int implementations, final long nanos) {
+    }
+
+    /**
+     * Failed to discover or bind, just before throwing {@link java.util.ServiceConfigurationError}.
+     *
+     * @param service the service type token, or {@code null} if scanning
+     * @param config the configuration location, or {@code null} if none
+     * @param message the failure message, never missing
+     * @param cause the cause, never missing
+     */
+    public void failed(@Nullable final Class<?> service, @Nullable final URL config,
+            @Nonnull final String message, @Nonnull final Exception cause) {
+    }
+
+    /** Began timing <var>phase</var> on this thread, ended by the matching event or a failure. */
+    void begin(@Nonnull final ServiceListeners.Phase phase) {
+    }
+}
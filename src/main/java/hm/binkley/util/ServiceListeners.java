@@ -0,0 +1,179 @@
+/*
+ * This is free and unencumbered software released into the public domain.
+ *
+ * Anyone is free to copy, modify, publish, use, compile, sell, or
+ * distribute this software, either in source code form or as a compiled
+ * binary, for any purpose, commercial or non-commercial, and by any
+ * means.
+ *
+ * In jurisdictions that recognize copyright laws, the author or authors
+ * of this software dedicate any and all copyright interest in the
+ * software to the public domain. We make this dedication for the benefit
+ * of the public at large and to the detriment of our heirs and
+ * successors. We intend this dedication to be an overt act of
+ * relinquishment in perpetuity of all present and future rights to this
+ * software under copyright law.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY CLAIM, DAMAGES OR
+ * OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ * ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ *
+ * For more information, please refer to <http://unlicense.org/>.
+ */
+
+package hm.binkley.util;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.ServiceConfigurationError;
+import java.util.ServiceLoader;
+
+import static java.lang.System.nanoTime;
+
+/**
+ * {@code ServiceListeners} holds the registered {@link ServiceListener}s and times events for
+ * them.  Registration copies on write, so sending events reads a single volatile array.  Phases
+ * take a {@link #start(Phase)} time, which is {@link #NONE} without enabled listeners, and events
+ * started without them are dropped.
+ *
+ * @author <a href="mailto:binkley@alumni.rice.edu">B. K. Oxley (binkley)</a>
+ */
+final class ServiceListeners {
+    static final long NONE = Long.MIN_VALUE;
+
+    private static volatile ServiceListener[] listeners = load();
+
+    private ServiceListeners() {
+    }
+
+    static synchronized void add(@Nonnull final ServiceListener listener) {
+        final ServiceListener[] listeners = Arrays.copyOf(ServiceListeners.listeners,
+                ServiceListeners.listeners.length + 1);
+        listeners[listeners.length - 1] = listener;
+        ServiceListeners.listeners = listeners;
+    }
+
+    static synchronized void remove(@Nonnull final ServiceListener listener) {
+        final List<ServiceListener> listeners = new ArrayList<ServiceListener>(
+                Arrays.asList(ServiceListeners.listeners));
+        if (listeners.remove(listener))
+            ServiceListeners.listeners = listeners.toArray(new ServiceListener[listeners.size()]);
+    }
+
+    /** Is any listener registered and enabled? */
+    static boolean enabled() {
+        for (final ServiceListener listener : listeners)
+            if (listener.enabled())
+                return true;
+        return false;
+    }
+
+    /** Starts timing <var>phase</var>, or returns {@link #NONE} if no listener is enabled. */
+    static long start(final Phase phase) {
+        boolean enabled = false;
+        for (final ServiceListener listener : listeners)
+            if (listener.enabled()) {
+                listener.begin(phase);
+                enabled = true;
+            }
+        return enabled ? nanoTime() : NONE;
+    }
+
+    static void scanned(final ClassLoader classLoader, final int services, final long start) {
+        if (NONE == start)
+            return;
+        final long nanos = nanoTime() - start;
+        for (final ServiceListener listener : listeners)
+            listener.scanned(classLoader, services, nanos);
+    }
+
+    static void discovered(final Class<?> service, final ClassLoader classLoader,
+            final List<ServiceConfiguration> configurations, final long start) {
+        if (NONE == start)
+            return;
+        final long nanos = nanoTime() - start;
+        int providers = 0;
+        for (final ServiceConfiguration configuration : configurations)
+            providers += configuration.implementations.size();
+        for (final ServiceListener listener : listeners)
+            listener.discovered(service, classLoader, configurations.size(), providers, nanos);
+    }
+
+    static void read(final URL config, final int providers, final int skipped,
+            final long start) {
+        if (NONE == start)
+            return;
+        final long nanos = nanoTime() - start;
+        for (final ServiceListener listener : listeners)
+            listener.read(config, providers, skipped, nanos);
+    }
+
+    static void loaded(final Class<?> service, final URL config, final Class<?> implementation,
+            final long start) {
+        if (NONE == start)
+            return;
+        final long nanos = nanoTime() - start;
+        for (final ServiceListener listener : listeners)
+            listener.loaded(service, config, implementation, nanos);
+    }
+
+    static void bound(final Class<?> service, final URL config, final int implementations,
+            final long start) {
+        if (NONE == start)
+            return;
+        final long nanos = nanoTime() - start;
+        for (final ServiceListener listener : listeners)
+            listener.bound(service, config, implementations, nanos);
+    }
+
+    static void failed(@Nullable final Class<?> service, @Nullable final URL config,
+            final String message, final Exception cause) {
+        for (final ServiceListener listener : listeners)
+            listener.failed(service, config, message, cause);
+    }
+
+    /**
+     * Skips the Flight Recorder listener on JDKs without Flight Recorder.  Adds a class list if
+     * asked for by system property.
+     */
+    private static ServiceListener[] load() {
+        final List<ServiceListener> listeners = new ArrayList<ServiceListener>();
+        final Iterator<ServiceListener> it = ServiceLoader
+                .load(ServiceListener.class, ServiceListener.class.getClassLoader()).iterator();
+        for (; ; )
+            try {
+                if (!it.hasNext())
+                    break;
+                listeners.add(it.next());
+            } catch (final ServiceConfigurationError e) {
+                if (!noFlightRecorder(e))
+                    throw e;
+            }
+        final ServiceClassList classList = ServiceClassList.fromProperty();
+        if (null != classList)
+            listeners.add(classList);
+        return listeners.toArray(new ServiceListener[listeners.size()]);
+    }
+
+    private static boolean noFlightRecorder(final Throwable e) {
+        for (Throwable cause = e; null != cause; cause = cause.getCause())
+            if (cause instanceof NoClassDefFoundError && String.valueOf(cause.getMessage())
+                    .startsWith("jdk/jfr/"))
+                return true;
+        return false;
+    }
+
+    /** Timed phases, each ended by the event of the same name. */
+    enum Phase {
+        SCANNED, DISCOVERED, READ, LOADED, BOUND
+    }
+}
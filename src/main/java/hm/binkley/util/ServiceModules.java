@@ -0,0 +1,260 @@
+/*
+ * This is free and unencumbered software released into the public domain.
+ *
+ * Anyone is free to copy, modify, publish, use, compile, sell, or
+ * distribute this software, either in source code form or as a compiled
+ * binary, for any purpose, commercial or non-commercial, and by any
+ * means.
+ *
+ * In jurisdictions that recognize copyright laws, the author or authors
+ * of this software dedicate any and all copyright interest in the
+ * software to the public domain. We make this dedication for the benefit
+ * of the public at large and to the detriment of our heirs and
+ * successors. We intend this dedication to be an overt act of
+ * relinquishment in perpetuity of all present and future rights to this
+ * software under copyright law.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY CLAIM, DAMAGES OR
+ * OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ * ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ *
+ * For more information, please refer to <http://unlicense.org/>.
+ */
+
+package hm.binkley.util;
+
+import javax.annotation.Nonnull;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.net.MalformedURLException;
+import java.net.URI;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.ServiceConfigurationError;
+import java.util.Set;
+
+import static java.util.Collections.emptyList;
+import static java.util.Collections.emptyMap;
+import static java.util.Collections.unmodifiableMap;
+
+/**
+ * {@code ServiceModules} finds service providers declared by {@code provides} clauses of named
+ * application modules in the boot module layer, as {@code ServiceLoader} does for modules, so that
+ * {@link ServiceDiscovery} sees applications run from the module path or a jlink image.  Each
+ * module providing a service appears as a configuration at the module location, listing its
+ * providers in declaration order. <p/> Modules are read through reflection, once, as the library
+ * runs on JDK 8 where there are none.  Modules of the JDK itself, defined to the bootstrap or
+ * platform class loaders, are left out: their providers are for the runtime, not to bind.  Only
+ * modules defined to the class loader used for discovery, or to one of its ancestors, are
+ * included. <p/> Providers with a static {@code provider()} factory are rejected when loaded, as
+ * binders construct implementations themselves; see {@link #factory(Class)}.
+ *
+ * @author <a href="mailto:binkley@alumni.rice.edu">B. K. Oxley (binkley)</a>
+ */
+final class ServiceModules {
+    private static volatile Map<String, List<Provides>> provides;
+
+    private ServiceModules() {
+    }
+
+    /**
+     * Finds the module configurations of <var>service</var> visible to <var>classLoader</var>,
+     * leaving out implementations in <var>listed</var>, as already found on the classpath.
+     *
+     * @param service the service name, never missing
+     * @param classLoader the class loader, never missing
+     * @param listed the implementations already found, never missing
+     *
+     * @return the configurations in module order, never missing
+     */
+    @Nonnull
+    static List<ServiceConfiguration> configurations(@Nonnull final String service,
+            @Nonnull final ClassLoader classLoader, @Nonnull final Collection<String> listed) {
+        final List<Provides> provides = provides().get(service);
+        if (null == provides)
+            return emptyList();
+        final List<ServiceConfiguration> configurations = new ArrayList<ServiceConfiguration>(
+                provides.size());
+        for (final Provides module : provides) {
+            if (!visible(module.classLoader, classLoader))
+                continue;
+            final List<String> implementations = new ArrayList<String>(module.providers);
+            implementations.removeAll(listed);
+            if (!implementations.isEmpty())
+                configurations.add(new ServiceConfiguration(module.location, implementations));
+        }
+        return configurations;
+    }
+
+    /**
+     * Gets the names of services provided by modules.
+     *
+     * @return the service names, never missing
+     */
+    @Nonnull
+    static Set<String> services() {
+        return provides().keySet();
+    }
+
+    /**
+     * Checks if <var>implementation</var> is in a named module and declares a public static
+     * {@code provider()} method, which {@code ServiceLoader} calls in place of a constructor.
+     * Binders construct implementations themselves, so cannot honor these.
+     *
+     * @param implementation the implementation class, never missing
+     *
+     * @return {@code true} if a module provider factory
+     */
+    static boolean factory(@Nonnull final Class<?> implementation) {
+        if (null == Named.GET_MODULE || !Named.named(implementation))
+            return false;
+        try {
+            final int modifiers = implementation.getDeclaredMethod("provider").getModifiers();
+            return Modifier.isPublic(modifiers) && Modifier.isStatic(modifiers);
+        } catch (final NoSuchMethodException e) {
+            return false;
+        }
+    }
+
+    private static boolean visible(final ClassLoader module, ClassLoader classLoader) {
+        for (; null != classLoader; classLoader = classLoader.getParent())
+            if (module == classLoader)
+                return true;
+        return false;
+    }
+
+    /** The boot layer does not change, so is read once. */
+    private static Map<String, List<Provides>> provides() {
+        Map<String, List<Provides>> provides = ServiceModules.provides;
+        if (null == provides)
+            ServiceModules.provides = provides = read();
+        return provides;
+    }
+
+    /** Reads the boot layer, or nothing before JDK 9. */
+    private static Map<String, List<Provides>> read() {
+        final Class<?> moduleLayer;
+        try {
+            moduleLayer = Class.forName("java.lang.ModuleLayer");
+        } catch (final ClassNotFoundException e) {
+            return emptyMap();
+        }
+        try {
+            final Object layer = moduleLayer.getMethod("boot").invoke(null);
+            final Object configuration = moduleLayer.getMethod("configuration").invoke(layer);
+            final Class<?> module = Class.forName("java.lang.Module");
+            final Method getName = module.getMethod("getName");
+            final Method getClassLoader = module.getMethod("getClassLoader");
+            final Method getDescriptor = module.getMethod("getDescriptor");
+            final Method provides = Class.forName("java.lang.module.ModuleDescriptor")
+                    .getMethod("provides");
+            final Class<?> provide = Class.forName("java.lang.module.ModuleDescriptor$Provides");
+            final Method service = provide.getMethod("service");
+            final Method providers = provide.getMethod("providers");
+            final Method findModule = Class.forName("java.lang.module.Configuration")
+                    .getMethod("findModule", String.class);
+            final Method reference = Class.forName("java.lang.module.ResolvedModule")
+                    .getMethod("reference");
+            final Method location = Class.forName("java.lang.module.ModuleReference")
+                    .getMethod("location");
+
+            final Object platform = ClassLoader.class.getMethod("getPlatformClassLoader")
+                    .invoke(null);
+
+            final Map<String, List<Provides>> found = new LinkedHashMap<String, List<Provides>>();
+            for (final Object each : (Set<?>) moduleLayer.getMethod("modules").invoke(layer)) {
+                final ClassLoader classLoader = (ClassLoader) getClassLoader.invoke(each);
+                if (null == classLoader || platform == classLoader)
+                    continue;
+                final String name = (String) getName.invoke(each);
+                final Optional<?> resolved = (Optional<?>) findModule.invoke(configuration, name);
+                final Optional<?> uri = resolved.isPresent() ? (Optional<?>) location
+                        .invoke(reference.invoke(resolved.get())) : Optional.empty();
+                final URL url = url(name, (URI) uri.orElse(null));
+                for (final Object p : (Set<?>) provides.invoke(getDescriptor.invoke(each))) {
+                    final String key = (String) service.invoke(p);
+                    List<Provides> modules = found.get(key);
+                    if (null == modules)
+                        found.put(key, modules = new ArrayList<Provides>());
+                    @SuppressWarnings("unchecked")
+                    final List<String> names = (List<String>) providers.invoke(p);
+                    modules.add(new Provides(url, classLoader, names));
+                }
+            }
+            return unmodifiableMap(found);
+        } catch (final ClassNotFoundException e) {
+            throw new ServiceConfigurationError("Cannot read modules", e);
+        } catch (final NoSuchMethodException e) {
+            throw new ServiceConfigurationError("Cannot read modules", e);
+        } catch (final IllegalAccessException e) {
+            throw new ServiceConfigurationError("Cannot read modules", e);
+        } catch (final InvocationTargetException e) {
+            throw new ServiceConfigurationError("Cannot read modules", e.getCause());
+        }
+    }
+
+    /** Modules without a location, as those defined at runtime, are named by a jrt URL. */
+    private static URL url(final String module, final URI location) {
+        try {
+            return null == location ? new URL("jrt:/" + module) : location.toURL();
+        } catch (final MalformedURLException e) {
+            throw new ServiceConfigurationError("Cannot locate module " + module, e);
+        } catch (final IllegalArgumentException e) {
+            throw new ServiceConfigurationError("Cannot locate module " + module, e);
+        }
+    }
+
+    /** Reflects on the modules of classes, or nothing before JDK 9. */
+    private static final class Named {
+        private static final Method GET_MODULE;
+        private static final Method IS_NAMED;
+
+        static {
+            Method getModule;
+            Method isNamed;
+            try {
+                getModule = Class.class.getMethod("getModule");
+                isNamed = getModule.getReturnType().getMethod("isNamed");
+            } catch (final NoSuchMethodException e) {
+                getModule = null;
+                isNamed = null;
+            }
+            GET_MODULE = getModule;
+            IS_NAMED = isNamed;
+        }
+
+        private static boolean named(final Class<?> implementation) {
+            try {
+                return (Boolean) IS_NAMED.invoke(GET_MODULE.invoke(implementation));
+            } catch (final IllegalAccessException e) {
+                throw new ServiceConfigurationError("Cannot read modules", e);
+            } catch (final InvocationTargetException e) {
+                throw new ServiceConfigurationError("Cannot read modules", e.getCause());
+            }
+        }
+    }
+
+    /** The providers of a single service declared by a single module. */
+    private static final class Provides {
+        private final URL location;
+        private final ClassLoader classLoader;
+        private final List<String> providers;
+
+        private Provides(final URL location, final ClassLoader classLoader,
+                final List<String> providers) {
+            this.location = location;
+            this.classLoader = classLoader;
+            this.providers = providers;
+        }
+    }
+}
@@ -0,0 +1,124 @@
+/*
+ * This is free and unencumbered software released into the public domain.
+ *
+ * Anyone is free to copy, modify, publish, use, compile, sell, or
+ * distribute this software, either in source code form or as a compiled
+ * binary, for any purpose, commercial or non-commercial, and by any
+ * means.
+ *
+ * In jurisdictions that recognize copyright laws, the author or authors
+ * of this software dedicate any and all copyright interest in the
+ * software to the public domain. We make this dedication for the benefit
+ * of the public at large and to the detriment of our heirs and
+ * successors. We intend this dedication to be an overt act of
+ * relinquishment in perpetuity of all present and future rights to this
+ * software under copyright law.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY CLAIM, DAMAGES OR
+ * OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ * ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ *
+ * For more information, please refer to <http://unlicense.org/>.
+ */
+
+package hm.binkley.util;
+
+import com.google.inject.Binder;
+import org.springframework.beans.factory.support.BeanDefinitionRegistry;
+import org.springframework.beans.factory.support.RootBeanDefinition;
+
+import javax.annotation.Nonnull;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import static java.util.Collections.unmodifiableList;
+
+/**
+ * {@code ServicePlan} is an immutable binding plan, resolved once and bound to any number of
+ * Guice binders or Spring bean definition registries.  Record a plan with a service binder as
+ * usual, then bind it in place of discovering again: <pre>
+ * ServicePlan.Builder builder = new ServicePlan.Builder();
+ * ServiceBinder.with(builder).singleton().bind(Bob.class);
+ * ServicePlan plan = builder.build();
+ * // Per context
+ * plan.bindTo(context);</pre>
+ * Discovery, filtering and class loading happen while recording, as do service listener events,
+ * so each binding costs only registration.  For Spring, bean definitions of loaded
+ * implementations are made once and copied into each registry; lazy bindings resolve class
+ * names as they do when bound directly. <p/> Plans are safe to bind from several threads at
+ * once.
+ *
+ * @author <a href="mailto:binkley@alumni.rice.edu">B. K. Oxley (binkley)</a>
+ */
+public final class ServicePlan {
+    private final List<ServiceBinder.Step> steps;
+    private final ConcurrentMap<Class<?>, RootBeanDefinition> definitions
+            = new ConcurrentHashMap<Class<?>, RootBeanDefinition>();
+
+    private ServicePlan(final List<ServiceBinder.Step> steps) {
+        this.steps = steps;
+    }
+
+    /**
+     * Binds the plan with the given Guice <var>binder</var>.
+     *
+     * @param binder the Guice binder, never missing
+     */
+    public void bindTo(@Nonnull final Binder binder) {
+        ServiceBinder.replay(steps, binder);
+    }
+
+    /**
+     * Binds the plan with the given built-in <var>injector</var>.
+     *
+     * @param injector the built-in injector, never missing
+     */
+    public void bindTo(@Nonnull final ServiceInjector injector) {
+        ServiceBinder.replay(steps, injector);
+    }
+
+    /**
+     * Binds the plan with the given Spring Framework <var>registry</var>, registering copies of
+     * the plan bean definitions.
+     *
+     * @param registry the Spring bean definition registry, never missing
+     */
+    public void bindTo(@Nonnull final BeanDefinitionRegistry registry) {
+        ServiceBinder.replay(steps, registry, definitions);
+    }
+
+    @Override
+    public String toString() {
+        return getClass().getSimpleName() + "[" + steps.size() + " bindings]";
+    }
+
+    /**
+     * {@code Builder} records the bindings of service binders {@link
+     * ServiceBinder#with(ServicePlan.Builder) made with it}, in order, to build plans.  Builders
+     * are not safe to share between threads.
+     */
+    public static final class Builder {
+        private final List<ServiceBinder.Step> steps = new ArrayList<ServiceBinder.Step>();
+
+        /**
+         * Builds a plan of the bindings recorded so far.
+         *
+         * @return the new plan, never missing
+         */
+        @Nonnull
+        public ServicePlan build() {
+            return new ServicePlan(unmodifiableList(new ArrayList<ServiceBinder.Step>(steps)));
+        }
+
+        /** Records a step for later plans. */
+        void add(@Nonnull final ServiceBinder.Step step) {
+            steps.add(step);
+        }
+    }
+}
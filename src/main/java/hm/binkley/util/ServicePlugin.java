@@ -0,0 +1,161 @@
+/*
+ * This is free and unencumbered software released into the public domain.
+ *
+ * Anyone is free to copy, modify, publish, use, compile, sell, or
+ * distribute this software, either in source code form or as a compiled
+ * binary, for any purpose, commercial or non-commercial, and by any
+ * means.
+ *
+ * In jurisdictions that recognize copyright laws, the author or authors
+ * of this software dedicate any and all copyright interest in the
+ * software to the public domain. We make this dedication for the benefit
+ * of the public at large and to the detriment of our heirs and
+ * successors. We intend this dedication to be an overt act of
+ * relinquishment in perpetuity of all present and future rights to this
+ * software under copyright law.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY CLAIM, DAMAGES OR
+ * OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ * ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ *
+ * For more information, please refer to <http://unlicense.org/>.
+ */
+
+package hm.binkley.util;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.io.File;
+import java.io.IOException;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.util.List;
+import java.util.Set;
+import java.util.jar.JarFile;
+
+import static hm.binkley.util.ServiceBinder.fail;
+
+/**
+ * {@code ServicePlugin} is a single plugin jar found by {@link ServicePlugins}, with its own class
+ * loader and the service configurations of that jar alone.  Bind its implementations with {@link
+ * ServiceBinder#bindPlugin(Class, ServicePlugin)}. <p/> The class loader delegates to the parent
+ * first, so plugins share the service types of the application.  Once the plugin is removed, its
+ * class loader is closed and forgotten by {@link ServiceCache}; it is collected once nothing else
+ * holds the plugin classes or instances.
+ *
+ * @author <a href="mailto:binkley@alumni.rice.edu">B. K. Oxley (binkley)</a>
+ */
+public final class ServicePlugin {
+    private final File jar;
+    private final long length;
+    private final long lastModified;
+    private final URLClassLoader classLoader;
+    private final ServiceDiscovery discovery;
+
+    private ServicePlugin(final File jar, final long length, final long lastModified,
+            final URLClassLoader classLoader, final ServiceDiscovery discovery) {
+        this.jar = jar;
+        this.length = length;
+        this.lastModified = lastModified;
+        this.classLoader = classLoader;
+        this.discovery = discovery;
+    }
+
+    /**
+     * Opens <var>jar</var> as a plugin with a new class loader under <var>parent</var>.
+     * Fingerprints the jar before reading, so a concurrent change reopens.
+     *
+     * @param jar the plugin jar, never missing
+     * @param parent the parent class loader, never missing
+     *
+     * @return the plugin, or {@code null} if not a readable jar, as while being copied
+     */
+    @Nullable
+    static ServicePlugin open(@Nonnull final File jar, @Nonnull final ClassLoader parent) {
+        final long length = jar.length();
+        final long lastModified = jar.lastModified();
+        if (!readable(jar))
+            return null;
+        final URLClassLoader classLoader = new URLClassLoader(new URL[]{url(jar)}, parent);
+        return new ServicePlugin(jar, length, lastModified, classLoader,
+                ServiceDiscovery.root(jar));
+    }
+
+    /**
+     * Gets the plugin jar.
+     *
+     * @return the jar, never missing
+     */
+    @Nonnull
+    public File jar() {
+        return jar;
+    }
+
+    /**
+     * Gets the class loader of the plugin.
+     *
+     * @return the class loader, never missing
+     */
+    @Nonnull
+    public ClassLoader classLoader() {
+        return classLoader;
+    }
+
+    /**
+     * Gets the names of services the plugin configures.
+     *
+     * @return the service names, never missing
+     */
+    @Nonnull
+    public Set<String> services() {
+        return discovery.services();
+    }
+
+    @Override
+    public String toString() {
+        return getClass().getSimpleName() + "[" + jar + "]";
+    }
+
+    /** Gets the configurations of <var>service</var> in this jar alone. */
+    @Nonnull
+    List<ServiceConfiguration> configurations(@Nonnull final Class<?> service) {
+        return discovery.configurations(service.getName());
+    }
+
+    /** Checks if the jar changed or went away since opened. */
+    boolean changed() {
+        return length != jar.length() || lastModified != jar.lastModified();
+    }
+
+    /** Closes the class loader and forgets its cached discovery. */
+    void close() {
+        ServiceCache.invalidate(classLoader);
+        try {
+            classLoader.close();
+        } catch (final IOException e) {
+            fail(url(jar), "Cannot close plugin", e);
+        }
+    }
+
+    private static boolean readable(final File jar) {
+        try {
+            new JarFile(jar, false).close();
+            return true;
+        } catch (final IOException e) {
+            return false;
+        }
+    }
+
+    private static URL url(final File jar) {
+        try {
+            return jar.toURI().toURL();
+        } catch (final MalformedURLException e) {
+            throw new IllegalArgumentException(jar.toString(), e);
+        }
+    }
+}
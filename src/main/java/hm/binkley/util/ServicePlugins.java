@@ -0,0 +1,429 @@
+/*
+ * This is free and unencumbered software released into the public domain.
+ *
+ * Anyone is free to copy, modify, publish, use, compile, sell, or
+ * distribute this software, either in source code form or as a compiled
+ * binary, for any purpose, commercial or non-commercial, and by any
+ * means.
+ *
+ * In jurisdictions that recognize copyright laws, the author or authors
+ * of this software dedicate any and all copyright interest in the
+ * software to the public domain. We make this dedication for the benefit
+ * of the public at large and to the detriment of our heirs and
+ * successors. We intend this dedication to be an overt act of
+ * relinquishment in perpetuity of all present and future rights to this
+ * software under copyright law.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY CLAIM, DAMAGES OR
+ * OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ * ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ *
+ * For more information, please refer to <http://unlicense.org/>.
+ */
+
+package hm.binkley.util;
+
+import com.google.inject.AbstractModule;
+import com.google.inject.Injector;
+import com.google.inject.Key;
+import com.google.inject.util.Types;
+import org.springframework.beans.factory.support.DefaultListableBeanFactory;
+
+import javax.annotation.Nonnull;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileFilter;
+import java.io.IOException;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.ServiceConfigurationError;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import static hm.binkley.util.ServiceBinder.fail;
+import static hm.binkley.util.ServiceBinder.loadClass;
+import static hm.binkley.util.ServiceBinder.with;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_CREATE;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_DELETE;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_MODIFY;
+
+/**
+ * {@code ServicePlugins} watches a plugin directory, binding the services of jars added at runtime
+ * without restarting.  Each jar is a {@link ServicePlugin} with its own class loader, and discovery
+ * reads that jar alone.  A {@link Listener} publishes plugins as they come and go: {@link
+ * ChildInjectors} creates a child Guice injector per plugin, and {@link RegisteredBeans} registers
+ * plugin beans with a Spring bean factory. <p/> Changes are picked up after the directory is quiet
+ * for a moment, so jars being copied are not read half-written.  A changed jar is removed, then
+ * added again with a new class loader.  Removing a jar removes its plugin and closes its class
+ * loader. <p/> Call {@link #start()} to scan and begin watching, and {@link #close()} to stop and
+ * remove all plugins.  {@link #scan()} checks the directory at once, for example where the
+ * platform watch service polls slowly.
+ *
+ * @author <a href="mailto:binkley@alumni.rice.edu">B. K. Oxley (binkley)</a>
+ */
+public final class ServicePlugins
+        implements Closeable {
+    private static final long QUIET_MILLIS = 500;
+    private static final FileFilter JARS = new FileFilter() {
+        @Override
+        public boolean accept(final File file) {
+            return file.isFile() && file.getName().endsWith(".jar");
+        }
+    };
+
+    private final File directory;
+    private final ClassLoader parent;
+    private final Listener listener;
+    private final Map<File, ServicePlugin> plugins = new LinkedHashMap<File, ServicePlugin>();
+    private WatchService watcher;
+    private boolean closed;
+
+    /**
+     * Creates plugins for the jars in <var>directory</var>, loaded by class loaders under
+     * <var>parent</var>, and published to <var>listener</var>.
+     *
+     * @param directory the plugin directory, never missing
+     * @param parent the parent class loader of plugins, never missing
+     * @param listener the plugin listener, never missing
+     */
+    public ServicePlugins(@Nonnull final File directory, @Nonnull final ClassLoader parent,
+            @Nonnull final Listener listener) {
+        this.directory = directory;
+        this.parent = parent;
+        this.listener = listener;
+    }
+
+    /**
+     * Scans the directory, then watches it on a daemon thread.
+     *
+     * @throws IOException if the directory cannot be watched
+     */
+    public synchronized void start()
+            throws IOException {
+        if (closed)
+            throw new IllegalStateException("Closed: " + this);
+        if (null != watcher)
+            throw new IllegalStateException("Already started: " + this);
+        scan();
+        watcher = FileSystems.getDefault().newWatchService();
+        directory.toPath().register(watcher, ENTRY_CREATE, ENTRY_DELETE, ENTRY_MODIFY);
+        final Thread thread = new Thread(new Watch(watcher), toString());
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Brings the plugins up to date with the directory: removes plugins whose jar changed or went
+     * away, then adds plugins for new or changed jars, in name order.  Jars which cannot yet be
+     * read are left for a later scan.  Does nothing once closed.
+     *
+     * @throws ServiceConfigurationError if the listener fails to add a plugin, which is not kept
+     */
+    public synchronized void scan() {
+        if (closed)
+            return;
+        for (final ServicePlugin plugin : new ArrayList<ServicePlugin>(plugins.values()))
+            if (plugin.changed())
+                remove(plugin);
+        final File[] jars = directory.listFiles(JARS);
+        if (null == jars)
+            return;
+        Arrays.sort(jars);
+        for (final File jar : jars) {
+            if (plugins.containsKey(jar))
+                continue;
+            final ServicePlugin plugin = ServicePlugin.open(jar, parent);
+            if (null == plugin)
+                continue;
+            try {
+                listener.added(plugin);
+            } catch (final RuntimeException e) {
+                plugin.close();
+                fail(url(jar), "Cannot add plugin", e);
+            } catch (final ServiceConfigurationError e) {
+                plugin.close();
+                throw e;
+            }
+            plugins.put(jar, plugin);
+        }
+    }
+
+    /**
+     * Gets the current plugins in the order added.
+     *
+     * @return the plugins, never missing
+     */
+    @Nonnull
+    public synchronized List<ServicePlugin> plugins() {
+        return new ArrayList<ServicePlugin>(plugins.values());
+    }
+
+    /** Stops watching, then removes all plugins.  Plugins are not scanned again. */
+    @Override
+    public synchronized void close()
+            throws IOException {
+        closed = true;
+        if (null != watcher)
+            watcher.close();
+        watcher = null;
+        for (final ServicePlugin plugin : new ArrayList<ServicePlugin>(plugins.values()))
+            remove(plugin);
+    }
+
+    @Override
+    public String toString() {
+        return getClass().getSimpleName() + "[" + directory + "]";
+    }
+
+    private synchronized boolean closed() {
+        return closed;
+    }
+
+    /** Closes the class loader even if the listener fails. */
+    private void remove(final ServicePlugin plugin) {
+        plugins.remove(plugin.jar());
+        try {
+            listener.removed(plugin);
+        } finally {
+            plugin.close();
+        }
+    }
+
+    private static URL url(final File jar) {
+        try {
+            return jar.toURI().toURL();
+        } catch (final MalformedURLException e) {
+            throw new IllegalArgumentException(jar.toString(), e);
+        }
+    }
+
+    /** Scans after each burst of events, once quiet, until closed. */
+    private final class Watch
+            implements Runnable {
+        private final WatchService watcher;
+
+        private Watch(final WatchService watcher) {
+            this.watcher = watcher;
+        }
+
+        @Override
+        public void run() {
+            try {
+                for (; ; ) {
+                    WatchKey key = watcher.take();
+                    do {
+                        key.pollEvents();
+                        key.reset();
+                    } while (null != (key = watcher.poll(QUIET_MILLIS, TimeUnit.MILLISECONDS)));
+                    if (closed())
+                        return;
+                    try {
+                        scan();
+                    } catch (final ServiceConfigurationError ignored) {
+                        // Reported to service listeners; keep watching
+                    }
+                }
+            } catch (final ClosedWatchServiceException ignored) {
+                // Closed
+            } catch (final InterruptedException ignored) {
+                // Stopped
+            }
+        }
+    }
+
+    /**
+     * {@code Listener} publishes plugins as they are added and removed.  Calls come from the
+     * thread scanning, one at a time.
+     */
+    public interface Listener {
+        /**
+         * Publishes a new <var>plugin</var>.
+         *
+         * @param plugin the plugin, never missing
+         */
+        void added(@Nonnull final ServicePlugin plugin);
+
+        /**
+         * Withdraws a removed <var>plugin</var>, just before closing its class loader.
+         *
+         * @param plugin the plugin, never missing
+         */
+        void removed(@Nonnull final ServicePlugin plugin);
+    }
+
+    /**
+     * {@code ChildInjectors} creates a child injector of a parent Guice injector for each plugin,
+     * binding the implementations of the given services in that plugin, and drops it when the
+     * plugin is removed.  The parent must not itself bind sets of the services. <p/> Plugin
+     * implementations are bound explicitly in the child, else Guice would bind them just in time
+     * in the parent, keeping removed plugins' class loaders.  Other plugin classes injected into
+     * them should likewise be bound by the plugin, not left to just-in-time binding.
+     */
+    public static final class ChildInjectors
+            implements Listener {
+        private final Injector parent;
+        private final List<Class<?>> services;
+        private final Map<ServicePlugin, Injector> injectors
+                = new LinkedHashMap<ServicePlugin, Injector>();
+
+        /**
+         * Creates a listener binding <var>services</var> in child injectors of
+         * <var>parent</var>.
+         *
+         * @param parent the parent injector, never missing
+         * @param services the service type tokens, never missing
+         */
+        public ChildInjectors(@Nonnull final Injector parent,
+                @Nonnull final Class<?>... services) {
+            this.parent = parent;
+            this.services = Arrays.asList(services.clone());
+        }
+
+        @Override
+        public void added(@Nonnull final ServicePlugin plugin) {
+            final Set<Class<?>> implementations = implementations(plugin);
+            final Injector injector = parent.createChildInjector(new AbstractModule() {
+                @Override
+                protected void configure() {
+                    for (final Class<?> implementation : implementations)
+                        bind(implementation);
+                    final ServiceBinder<RuntimeException> binder = with(binder());
+                    for (final Class<?> service : services)
+                        binder.bindPlugin(service, plugin);
+                }
+            });
+            synchronized (injectors) {
+                injectors.put(plugin, injector);
+            }
+        }
+
+        @Override
+        public void removed(@Nonnull final ServicePlugin plugin) {
+            synchronized (injectors) {
+                injectors.remove(plugin);
+            }
+        }
+
+        /** The implementations of the services defined by the plugin class loader. */
+        private Set<Class<?>> implementations(final ServicePlugin plugin) {
+            final Set<Class<?>> implementations = new LinkedHashSet<Class<?>>();
+            for (final Class<?> service : services)
+                for (final ServiceConfiguration configuration : plugin.configurations(service))
+                    for (int i = 0, n = configuration.implementations.size(); i < n; ++i) {
+                        final Class<?> implementation = loadClass(service, plugin.classLoader(),
+                                configuration, i);
+                        if (plugin.classLoader() == implementation.getClassLoader())
+                            implementations.add(implementation);
+                    }
+            return implementations;
+        }
+
+        /**
+         * Gets the child injectors of current plugins.
+         *
+         * @return the child injectors by plugin, never missing
+         */
+        @Nonnull
+        public Map<ServicePlugin, Injector> injectors() {
+            synchronized (injectors) {
+                return new LinkedHashMap<ServicePlugin, Injector>(injectors);
+            }
+        }
+
+        /**
+         * Gets the instances of <var>service</var> from all current plugins.
+         *
+         * @param service the service type token, never missing
+         * @param <T> the service type
+         *
+         * @return the instances in plugin order, never missing
+         */
+        @Nonnull
+        @SuppressWarnings("unchecked")
+        public <T> List<T> instances(@Nonnull final Class<T> service) {
+            final Key<Set<T>> key = (Key<Set<T>>) Key.get(Types.setOf(service));
+            final List<T> instances = new ArrayList<T>();
+            for (final Injector injector : injectors().values())
+                if (null != injector.getExistingBinding(key))
+                    instances.addAll(injector.getInstance(key));
+            return instances;
+        }
+    }
+
+    /**
+     * {@code RegisteredBeans} registers the implementations of the given services in each plugin
+     * with a Spring bean factory, and removes them with the plugin.  Beans which were injected
+     * with existing beans of the services are destroyed, so they are created again with the
+     * current beans on next use.  Note - beans are named by implementation class, so plugins
+     * should not share implementation class names.
+     */
+    public static final class RegisteredBeans
+            implements Listener {
+        private final DefaultListableBeanFactory beanFactory;
+        private final List<Class<?>> services;
+        private final Map<ServicePlugin, List<String>> names
+                = new LinkedHashMap<ServicePlugin, List<String>>();
+
+        /**
+         * Creates a listener registering <var>services</var> with <var>beanFactory</var>.
+         *
+         * @param beanFactory the bean factory, never missing
+         * @param services the service type tokens, never missing
+         */
+        public RegisteredBeans(@Nonnull final DefaultListableBeanFactory beanFactory,
+                @Nonnull final Class<?>... services) {
+            this.beanFactory = beanFactory;
+            this.services = Arrays.asList(services.clone());
+        }
+
+        @Override
+        public void added(@Nonnull final ServicePlugin plugin) {
+            final List<String> added = new ArrayList<String>();
+            final ServiceBinder<ClassNotFoundException> binder = with(beanFactory);
+            for (final Class<?> service : services) {
+                for (final String existing : beanFactory.getBeanNamesForType(service, true, false))
+                    refresh(existing);
+                for (final ServiceConfiguration configuration : plugin.configurations(service))
+                    added.addAll(configuration.implementations);
+                binder.bindPlugin(service, plugin);
+            }
+            synchronized (names) {
+                names.put(plugin, added);
+            }
+        }
+
+        @Override
+        public void removed(@Nonnull final ServicePlugin plugin) {
+            final List<String> removed;
+            synchronized (names) {
+                removed = names.remove(plugin);
+            }
+            if (null == removed)
+                return;
+            for (final String name : removed) {
+                refresh(name);
+                if (beanFactory.containsBeanDefinition(name))
+                    beanFactory.removeBeanDefinition(name);
+            }
+        }
+
+        private void refresh(final String name) {
+            for (final String dependent : beanFactory.getDependentBeans(name))
+                beanFactory.destroySingleton(dependent);
+        }
+    }
+}
@@ -0,0 +1,184 @@
+/*
+ * This is free and unencumbered software released into the public domain.
+ *
+ * Anyone is free to copy, modify, publish, use, compile, sell, or
+ * distribute this software, either in source code form or as a compiled
+ * binary, for any purpose, commercial or non-commercial, and by any
+ * means.
+ *
+ * In jurisdictions that recognize copyright laws, the author or authors
+ * of this software dedicate any and all copyright interest in the
+ * software to the public domain. We make this dedication for the benefit
+ * of the public at large and to the detriment of our heirs and
+ * successors. We intend this dedication to be an overt act of
+ * relinquishment in perpetuity of all present and future rights to this
+ * software under copyright law.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY CLAIM, DAMAGES OR
+ * OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ * ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ *
+ * For more information, please refer to <http://unlicense.org/>.
+ */
+
+package hm.binkley.util;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.util.Iterator;
+import java.util.ServiceLoader;
+import java.util.Spliterator;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+import static java.lang.ClassLoader.getSystemClassLoader;
+import static java.lang.Thread.currentThread;
+
+/**
+ * {@code ServiceProviders} discovers implementation classes of a service without binding them, as
+ * {@code ServiceLoader.stream()} finds providers without instantiating them.  Discovery is
+ * lazy: configurations are read and classes loaded only as the stream or spliterator advances.
+ * Parallel streams split by configuration, and within a configuration by implementation, so
+ * classes load concurrently.  Providers of named modules follow those on the classpath; see
+ * {@link ServiceModules}.
+ *
+ * @author <a href="mailto:binkley@alumni.rice.edu">B. K. Oxley (binkley)</a>
+ * @see ServiceLoader
+ */
+public final class ServiceProviders {
+    private ServiceProviders() {
+    }
+
+    /**
+     * Streams the implementation classes of <var>service</var> using the thread-context class
+     * loader.
+     *
+     * @param service the service type token, never missing
+     * @param <T> the service type
+     *
+     * @return the sequential stream of implementations, never missing
+     *
+     * @see #stream(Class, ClassLoader)
+     */
+    @Nonnull
+    public static <T> Stream<Class<? extends T>> stream(@Nonnull final Class<T> service) {
+        return stream(service, currentThread().getContextClassLoader());
+    }
+
+    /**
+     * Streams the implementation classes of <var>service</var> using <var>classLoader</var>, or
+     * the system class loader if {@code null}, in configuration order.
+     *
+     * @param service the service type token, never missing
+     * @param classLoader the class loader, if {@code null} the system class loader
+     * @param <T> the service type
+     *
+     * @return the sequential stream of implementations, never missing
+     */
+    @Nonnull
+    public static <T> Stream<Class<? extends T>> stream(@Nonnull final Class<T> service,
+            @Nullable final ClassLoader classLoader) {
+        return StreamSupport.stream(spliterator(service, classLoader), false);
+    }
+
+    /**
+     * Creates a spliterator over the implementation classes of <var>service</var> using
+     * <var>classLoader</var>, or the system class loader if {@code null}.  Configurations come from
+     * {@link ServiceCache} when already discovered, else are read as the spliterator advances or
+     * splits, and are not cached.
+     *
+     * @param service the service type token, never missing
+     * @param classLoader the class loader, if {@code null} the system class loader
+     * @param <T> the service type
+     *
+     * @return the ordered spliterator of implementations, never missing
+     */
+    @Nonnull
+    public static <T> Spliterator<Class<? extends T>> spliterator(
+            @Nonnull final Class<T> service, @Nullable ClassLoader classLoader) {
+        if (null == classLoader)
+            classLoader = getSystemClassLoader();
+        return new Providers<T>(service, classLoader,
+                ServiceCache.lookup(service, classLoader), null, 0, 0);
+    }
+
+    /**
+     * Loads implementations of the current configuration, from <var>next</var> up to
+     * <var>end</var>, then of the remaining configurations, if any.
+     */
+    private static final class Providers<T>
+            implements Spliterator<Class<? extends T>> {
+        private final Class<T> service;
+        private final ClassLoader classLoader;
+        private final Iterator<ServiceConfiguration> configurations;
+        private ServiceConfiguration configuration;
+        private int next;
+        private int end;
+
+        private Providers(final Class<T> service, final ClassLoader classLoader,
+                @Nullable final Iterator<ServiceConfiguration> configurations,
+                @Nullable final ServiceConfiguration configuration, final int next,
+                final int end) {
+            this.service = service;
+            this.classLoader = classLoader;
+            this.configurations = configurations;
+            this.configuration = configuration;
+            this.next = next;
+            this.end = end;
+        }
+
+        @Override
+        public boolean tryAdvance(final Consumer<? super Class<? extends T>> action) {
+            while (next == end) {
+                if (null == configurations || !configurations.hasNext())
+                    return false;
+                read(configurations.next());
+            }
+            action.accept(ServiceBinder.loadClass(service, classLoader, configuration, next++));
+            return true;
+        }
+
+        /** Splits off the first half of the current configuration, else all of it. */
+        @Override
+        public Spliterator<Class<? extends T>> trySplit() {
+            final int remaining = end - next;
+            if (1 < remaining) {
+                final int middle = next + remaining / 2;
+                final Providers<T> prefix = new Providers<T>(service, classLoader, null,
+                        configuration, next, middle);
+                next = middle;
+                return prefix;
+            }
+            if (null == configurations || !configurations.hasNext())
+                return null;
+            if (0 == remaining)
+                read(configurations.next());
+            final Providers<T> prefix = new Providers<T>(service, classLoader, null,
+                    configuration, next, end);
+            next = end;
+            return prefix;
+        }
+
+        @Override
+        public long estimateSize() {
+            return null == configurations ? end - next : Long.MAX_VALUE;
+        }
+
+        @Override
+        public int characteristics() {
+            return null == configurations ? ORDERED | NONNULL | IMMUTABLE | SIZED | SUBSIZED
+                    : ORDERED | NONNULL | IMMUTABLE;
+        }
+
+        private void read(final ServiceConfiguration configuration) {
+            this.configuration = configuration;
+            next = 0;
+            end = configuration.implementations.size();
+        }
+    }
+}
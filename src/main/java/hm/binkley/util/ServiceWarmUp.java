@@ -0,0 +1,207 @@
+/*
+ * This is free and unencumbered software released into the public domain.
+ *
+ * Anyone is free to copy, modify, publish, use, compile, sell, or
+ * distribute this software, either in source code form or as a compiled
+ * binary, for any purpose, commercial or non-commercial, and by any
+ * means.
+ *
+ * In jurisdictions that recognize copyright laws, the author or authors
+ * of this software dedicate any and all copyright interest in the
+ * software to the public domain. We make this dedication for the benefit
+ * of the public at large and to the detriment of our heirs and
+ * successors. We intend this dedication to be an overt act of
+ * relinquishment in perpetuity of all present and future rights to this
+ * software under copyright law.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY CLAIM, DAMAGES OR
+ * OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ * ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ *
+ * For more information, please refer to <http://unlicense.org/>.
+ */
+
+package hm.binkley.util;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.ServiceConfigurationError;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * {@code ServiceWarmUp} prepares implementations bound by a {@link
+ * ServiceBinder#warmUp(ServiceWarmUp) warming} service binder in the background, so the first
+ * request does not pay for class initialization and construction.  Each implementation class is
+ * initialized on the executor as soon as bound, or loaded then initialized when binding lazily.
+ * Optionally, once the injector is created or the application context refreshed, the bound
+ * instances are also constructed, and passed to a hook, for example to exercise hot paths. <p/> A
+ * single warm-up may collect several service binders.  Await {@link #future()} before reporting
+ * the application ready.
+ *
+ * @author <a href="mailto:binkley@alumni.rice.edu">B. K. Oxley (binkley)</a>
+ */
+public final class ServiceWarmUp {
+    private final Executor executor;
+    private final boolean construct;
+    private final Hook hook;
+    private final List<CompletableFuture<Void>> tasks = new ArrayList<CompletableFuture<Void>>();
+
+    /**
+     * Creates a warm-up which initializes implementation classes on the common fork-join pool.
+     */
+    public ServiceWarmUp() {
+        this(ForkJoinPool.commonPool(), false, null);
+    }
+
+    /**
+     * Creates a warm-up which initializes implementation classes on <var>executor</var>, and
+     * constructs instances if <var>construct</var>, passing them, or the classes if not
+     * constructing, to <var>hook</var>.  A rejecting executor warms up on the binding thread.
+     *
+     * @param executor the executor, never missing
+     * @param construct {@code true} to construct bound instances
+     * @param hook the warm-up hook, or {@code null} for none
+     */
+    public ServiceWarmUp(@Nonnull final Executor executor, final boolean construct,
+            @Nullable final Hook hook) {
+        this.executor = executor;
+        this.construct = construct;
+        this.hook = hook;
+    }
+
+    /**
+     * Gets a future completing when all warm-up started so far completes, or exceptionally with
+     * the first failure.  Construction starts only when the injector is created or the
+     * application context refreshed, so get the future after that.
+     *
+     * @return the warm-up future, never missing
+     */
+    @Nonnull
+    public CompletableFuture<Void> future() {
+        synchronized (tasks) {
+            return CompletableFuture.allOf(tasks.toArray(new CompletableFuture<?>[tasks.size()]));
+        }
+    }
+
+    /** Checks if bound instances are constructed once injectable. */
+    boolean constructs() {
+        return construct;
+    }
+
+    /** Initializes the already loaded <var>implementation</var>. */
+    void initialize(@Nonnull final Class<?> implementation) {
+        submit(new Runnable() {
+            @Override
+            public void run() {
+                initialized(implementation);
+            }
+        });
+    }
+
+    /** Loads, then initializes, the <var>i</var>th implementation of <var>configuration</var>. */
+    void initialize(@Nonnull final Class<?> service, @Nonnull final ClassLoader classLoader,
+            @Nonnull final ServiceConfiguration configuration, final int i) {
+        submit(new Runnable() {
+            @Override
+            public void run() {
+                initialized(ServiceBinder.loadClass(service, classLoader, configuration, i));
+            }
+        });
+    }
+
+    /** Constructs the <var>instances</var>, passing each to the hook. */
+    void construct(@Nonnull final Callable<? extends Iterable<?>> instances) {
+        submit(new Runnable() {
+            @Override
+            public void run() {
+                final Iterable<?> constructed;
+                try {
+                    constructed = instances.call();
+                } catch (final RuntimeException e) {
+                    throw e;
+                } catch (final Exception e) {
+                    throw new ServiceConfigurationError("Cannot construct: " + instances, e);
+                }
+                for (final Object instance : constructed)
+                    hook(instance.getClass(), instance);
+            }
+        });
+    }
+
+    @Override
+    public String toString() {
+        synchronized (tasks) {
+            return getClass().getSimpleName() + "{construct=" + construct + ", hook=" + hook
+                    + ", tasks=" + tasks.size() + '}';
+        }
+    }
+
+    private void initialized(final Class<?> implementation) {
+        try {
+            Class.forName(implementation.getName(), true, implementation.getClassLoader());
+        } catch (final ClassNotFoundException e) {
+            throw new ServiceConfigurationError("Cannot initialize " + implementation, e);
+        }
+        if (!construct)
+            hook(implementation, null);
+    }
+
+    private void hook(final Class<?> implementation, final Object instance) {
+        if (null == hook)
+            return;
+        try {
+            hook.warmUp(implementation, instance);
+        } catch (final RuntimeException e) {
+            throw e;
+        } catch (final Exception e) {
+            throw new ServiceConfigurationError("Cannot warm up " + implementation.getName(), e);
+        }
+    }
+
+    private void submit(final Runnable task) {
+        CompletableFuture<Void> future;
+        try {
+            future = CompletableFuture.runAsync(task, executor);
+        } catch (final RejectedExecutionException ignored) {
+            future = new CompletableFuture<Void>();
+            try {
+                task.run();
+                future.complete(null);
+            } catch (final RuntimeException e) {
+                future.completeExceptionally(e);
+            } catch (final Error e) {
+                future.completeExceptionally(e);
+            }
+        }
+        synchronized (tasks) {
+            tasks.add(future);
+        }
+    }
+
+    /**
+     * {@code Hook} warms up an implementation, for example by calling methods on hot paths.
+     * Hooks are called on the executor, concurrently for different implementations.
+     */
+    public interface Hook {
+        /**
+         * Warms up <var>implementation</var>.
+         *
+         * @param implementation the implementation class, never missing
+         * @param instance the constructed instance, or {@code null} if not constructing
+         *
+         * @throws Exception if warm-up fails
+         */
+        void warmUp(@Nonnull final Class<?> implementation, @Nullable final Object instance)
+                throws Exception;
+    }
+}
@@ -0,0 +1,129 @@
+/*
+ * This is free and unencumbered software released into the public domain.
+ *
+ * Anyone is free to copy, modify, publish, use, compile, sell, or
+ * distribute this software, either in source code form or as a compiled
+ * binary, for any purpose, commercial or non-commercial, and by any
+ * means.
+ *
+ * In jurisdictions that recognize copyright laws, the author or authors
+ * of this software dedicate any and all copyright interest in the
+ * software to the public domain. We make this dedication for the benefit
+ * of the public at large and to the detriment of our heirs and
+ * successors. We intend this dedication to be an overt act of
+ * relinquishment in perpetuity of all present and future rights to this
+ * software under copyright law.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY CLAIM, DAMAGES OR
+ * OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ * ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ *
+ * For more information, please refer to <http://unlicense.org/>.
+ */
+
+package hm.binkley.util;
+
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Serializable;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.util.Map;
+
+import static java.lang.annotation.RetentionPolicy.CLASS;
+import static java.util.Arrays.asList;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.hasKey;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.not;
+import static org.junit.Assert.assertThat;
+
+/**
+ * {@code ClassFileTest} tests {@link ClassFile}.
+ *
+ * @author <a href="mailto:binkley@alumni.rice.edu">B. K. Oxley (binkley)</a>
+ */
+public final class ClassFileTest {
+    @Test
+    public void shouldReadNamesAndSupertypes()
+            throws IOException {
+        final ClassFile classFile = ClassFile.parse(bytes(Fixture.class));
+
+        assertThat(classFile.name, is(equalTo(Fixture.class.getName())));
+        assertThat(classFile.superName, is(equalTo(Number.class.getName())));
+        assertThat(classFile.interfaces, is(equalTo(asList(Serializable.class.getName()))));
+    }
+
+    @Test
+    public void shouldReadAnnotationValues()
+            throws IOException {
+        final Map<String, Object> values = ClassFile.parse(bytes(Fixture.class)).annotations
+                .get(Marked.class.getName());
+
+        assertThat(values.get("value"), is(equalTo((Object) "Felix")));
+        assertThat(values.get("priority"), is(equalTo((Object) 3)));
+        assertThat(values.get("weight"), is(equalTo((Object) 2L)));
+        assertThat(values.get("kind"), is(equalTo((Object) "FIELD")));
+        assertThat(values.get("type"), is(equalTo((Object) String.class.getName())));
+        assertThat(values.get("tags"), is(equalTo((Object) asList("a", "b"))));
+        assertThat(values, not(hasKey("missing")));
+    }
+
+    @Test(expected = IOException.class)
+    public void shouldRejectOtherFiles()
+            throws IOException {
+        ClassFile.parse("Not a class".getBytes("UTF-8"));
+    }
+
+    private static byte[] bytes(final Class<?> type)
+            throws IOException {
+        final InputStream in = type.getResourceAsStream(
+                type.getName().substring(type.getName().lastIndexOf('.') + 1) + ".class");
+        try {
+            final ByteArrayOutputStream out = new ByteArrayOutputStream();
+            final byte[] buffer = new byte[4096];
+            int n;
+            while (-1 != (n = in.read(buffer)))
+                out.write(buffer, 0, n);
+            return out.toByteArray();
+        } finally {
+            in.close();
+        }
+    }
+
+    @Retention(CLASS)
+    @interface Marked {
+        String value();
+
+        int priority();
+
+        long weight();
+
+        ElementType kind();
+
+        Class<?> type();
+
+        String[] tags();
+
+        String missing() default "";
+    }
+
+    @Marked(value = "Felix", priority = 3, weight = 2L, kind = ElementType.FIELD,
+            type = String.class, tags = {"a", "b"})
+    abstract static class Fixture
+            extends Number
+            implements Serializable {
+        private static final long serialVersionUID = 1L;
+        private int field;
+
+        void method() {
+        }
+    }
+}
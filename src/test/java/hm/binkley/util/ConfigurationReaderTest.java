@@ -0,0 +1,169 @@
+/*
+ * This is free and unencumbered software released into the public domain.
+ *
+ * Anyone is free to copy, modify, publish, use, compile, sell, or
+ * distribute this software, either in source code form or as a compiled
+ * binary, for any purpose, commercial or non-commercial, and by any
+ * means.
+ *
+ * In jurisdictions that recognize copyright laws, the author or authors
+ * of this software dedicate any and all copyright interest in the
+ * software to the public domain. We make this dedication for the benefit
+ * of the public at large and to the detriment of our heirs and
+ * successors. We intend this dedication to be an overt act of
+ * relinquishment in perpetuity of all present and future rights to this
+ * software under copyright law.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY CLAIM, DAMAGES OR
+ * OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ * ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ *
+ * For more information, please refer to <http://unlicense.org/>.
+ */
+
+package hm.binkley.util;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.net.URL;
+import java.util.ServiceConfigurationError;
+import java.util.jar.JarOutputStream;
+import java.util.zip.ZipEntry;
+
+import static java.util.Arrays.asList;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+
+/**
+ * {@code ConfigurationReaderTest} tests {@link ConfigurationReader}.
+ *
+ * @author <a href="mailto:binkley@alumni.rice.edu">B. K. Oxley (binkley)</a>
+ */
+public final class ConfigurationReaderTest {
+    private static final String CONFIG = "# comment\n a.One # trailing\n\n\t\r\na.Two\r\na.É";
+
+    @Rule
+    public final TemporaryFolder temp = new TemporaryFolder();
+
+    @Test
+    public void shouldParseWithoutCommentsOrBlanks()
+            throws IOException {
+        final byte[] bytes = CONFIG.getBytes("UTF-8");
+
+        assertThat(ConfigurationReader.parse(bytes, bytes.length),
+                is(equalTo(asList("a.One", "a.Two", "a.É"))));
+    }
+
+    @Test
+    public void shouldCountLinesWithAnyEnding()
+            throws IOException {
+        final byte[] bytes = CONFIG.getBytes("UTF-8");
+
+        assertThat(ConfigurationReader.lines(bytes, bytes.length), is(equalTo(6)));
+    }
+
+    @Test
+    public void shouldSkipUnicodeBlankLines()
+            throws IOException {
+        final byte[] bytes = " \na.One".getBytes("UTF-8");
+
+        assertThat(ConfigurationReader.parse(bytes, bytes.length),
+                is(equalTo(asList("a.One"))));
+    }
+
+    @Test
+    public void shouldReadJarsDirectly()
+            throws IOException {
+        final File jar = temp.newFile("a.jar");
+        final JarOutputStream out = new JarOutputStream(new FileOutputStream(jar));
+        try {
+            out.putNextEntry(new ZipEntry("META-INF/services/a.Service"));
+            out.write(CONFIG.getBytes("UTF-8"));
+            out.closeEntry();
+        } finally {
+            out.close();
+        }
+
+        assertThat(ConfigurationReader.read(Object.class,
+                        new URL("jar:" + jar.toURI() + "!/META-INF/services/a.Service")),
+                is(equalTo(asList("a.One", "a.Two", "a.É"))));
+    }
+
+    @Test
+    public void shouldOpenJarsOncePerPass()
+            throws IOException {
+        final File jar = temp.newFile("b.jar");
+        final JarOutputStream out = new JarOutputStream(new FileOutputStream(jar));
+        try {
+            for (final String service : asList("a.Service", "b.Service")) {
+                out.putNextEntry(new ZipEntry("META-INF/services/" + service));
+                out.write(CONFIG.getBytes("UTF-8"));
+                out.closeEntry();
+            }
+        } finally {
+            out.close();
+        }
+        final String root = "jar:" + jar.toURI() + "!/META-INF/services/";
+
+        final ConfigurationReader.Pass pass = ConfigurationReader.pass();
+        try {
+            ConfigurationReader.read(Object.class, new URL(root + "a.Service"));
+            // Still open, so still readable once deleted
+            assertThat(jar.delete(), is(true));
+
+            assertThat(ConfigurationReader.read(Object.class, new URL(root + "b.Service")),
+                    is(equalTo(asList("a.One", "a.Two", "a.É"))));
+        } finally {
+            pass.close();
+        }
+    }
+
+    @Test(expected = ServiceConfigurationError.class)
+    public void shouldCloseJarsAfterPass()
+            throws IOException {
+        final File jar = temp.newFile("c.jar");
+        final JarOutputStream out = new JarOutputStream(new FileOutputStream(jar));
+        try {
+            out.putNextEntry(new ZipEntry("META-INF/services/a.Service"));
+            out.write(CONFIG.getBytes("UTF-8"));
+            out.closeEntry();
+        } finally {
+            out.close();
+        }
+        final URL config = new URL("jar:" + jar.toURI() + "!/META-INF/services/a.Service");
+        final ConfigurationReader.Pass pass = ConfigurationReader.pass();
+        try {
+            ConfigurationReader.read(Object.class, config);
+        } finally {
+            pass.close();
+        }
+        assertThat(jar.delete(), is(true));
+
+        ConfigurationReader.read(Object.class, config);
+    }
+
+    @Test
+    public void shouldReadOtherUrls()
+            throws IOException {
+        final File config = temp.newFile("a.Service");
+        final FileOutputStream out = new FileOutputStream(config);
+        try {
+            out.write(CONFIG.getBytes("UTF-8"));
+        } finally {
+            out.close();
+        }
+
+        assertThat(ConfigurationReader.read(Object.class, config.toURI().toURL()),
+                is(equalTo(asList("a.One", "a.Two", "a.É"))));
+    }
+}
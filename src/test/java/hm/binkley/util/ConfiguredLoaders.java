@@ -0,0 +1,99 @@
+/*
+ * This is free and unencumbered software released into the public domain.
+ *
+ * Anyone is free to copy, modify, publish, use, compile, sell, or
+ * distribute this software, either in source code form or as a compiled
+ * binary, for any purpose, commercial or non-commercial, and by any
+ * means.
+ *
+ * In jurisdictions that recognize copyright laws, the author or authors
+ * of this software dedicate any and all copyright interest in the
+ * software to the public domain. We make this dedication for the benefit
+ * of the public at large and to the detriment of our heirs and
+ * successors. We intend this dedication to be an overt act of
+ * relinquishment in perpetuity of all present and future rights to this
+ * software under copyright law.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY CLAIM, DAMAGES OR
+ * OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ * ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ *
+ * For more information, please refer to <http://unlicense.org/>.
+ */
+
+package hm.binkley.util;
+
+import org.junit.rules.ExternalResource;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * {@code ConfiguredLoaders} creates new class loaders with a service configuration of their own, so
+ * discovery is not already cached, and closes them after each test.
+ *
+ * @author <a href="mailto:binkley@alumni.rice.edu">B. K. Oxley (binkley)</a>
+ */
+final class ConfiguredLoaders
+        extends ExternalResource {
+    private final TemporaryFolder temp = new TemporaryFolder();
+    private final List<URLClassLoader> loaders = new ArrayList<URLClassLoader>();
+
+    /**
+     * Creates a class loader under the test class loader with <var>config</var> as its
+     * configuration of <var>service</var>.
+     *
+     * @param service the service type token, never missing
+     * @param config the configuration text, never missing
+     *
+     * @return the class loader, never missing
+     *
+     * @throws IOException if the configuration cannot be written
+     */
+    URLClassLoader loader(final Class<?> service, final String config)
+            throws IOException {
+        final File root = temp.newFolder();
+        final File file = new File(root, "META-INF/services/" + service.getName());
+        file.getParentFile().mkdirs();
+        final FileOutputStream out = new FileOutputStream(file);
+        try {
+            out.write(config.getBytes("UTF-8"));
+        } finally {
+            out.close();
+        }
+        final URLClassLoader loader = new URLClassLoader(new URL[]{root.toURI().toURL()},
+                getClass().getClassLoader());
+        loaders.add(loader);
+        return loader;
+    }
+
+    @Override
+    protected void before()
+            throws Throwable {
+        temp.create();
+    }
+
+    @Override
+    protected void after() {
+        try {
+            for (final URLClassLoader loader : loaders)
+                loader.close();
+        } catch (final IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            loaders.clear();
+            temp.delete();
+        }
+    }
+}
@@ -0,0 +1,130 @@
+/*
+ * This is free and unencumbered software released into the public domain.
+ *
+ * Anyone is free to copy, modify, publish, use, compile, sell, or
+ * distribute this software, either in source code form or as a compiled
+ * binary, for any purpose, commercial or non-commercial, and by any
+ * means.
+ *
+ * In jurisdictions that recognize copyright laws, the author or authors
+ * of this software dedicate any and all copyright interest in the
+ * software to the public domain. We make this dedication for the benefit
+ * of the public at large and to the detriment of our heirs and
+ * successors. We intend this dedication to be an overt act of
+ * relinquishment in perpetuity of all present and future rights to this
+ * software under copyright law.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY CLAIM, DAMAGES OR
+ * OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ * ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ *
+ * For more information, please refer to <http://unlicense.org/>.
+ */
+
+package hm.binkley.util;
+
+import hm.binkley.util.ServiceBinderTest.Bob;
+import hm.binkley.util.ServiceBinderTest.Nancy;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedClass;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.springframework.beans.factory.support.DefaultListableBeanFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static hm.binkley.util.ServiceBinder.with;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.greaterThan;
+import static org.hamcrest.Matchers.hasItem;
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+
+/**
+ * {@code JfrServiceListenerTest} tests {@link JfrServiceListener}.
+ *
+ * @author <a href="mailto:binkley@alumni.rice.edu">B. K. Oxley (binkley)</a>
+ */
+public final class JfrServiceListenerTest {
+    @Rule
+    public final TemporaryFolder temp = new TemporaryFolder();
+
+    @Test
+    public void shouldRecordLoadedImplementations()
+            throws IOException {
+        final File dump = new File(temp.getRoot(), "binding.jfr");
+        final Recording recording = new Recording();
+        try {
+            recording.enable("hm.binkley.util.Loaded");
+            recording.start();
+            with(new DefaultListableBeanFactory()).bind(Bob.class,
+                    new URLClassLoader(new URL[0], getClass().getClassLoader()));
+            recording.stop();
+            recording.dump(dump.toPath());
+        } finally {
+            recording.close();
+        }
+
+        final Set<String> loaded = new HashSet<String>();
+        for (final RecordedEvent event : RecordingFile.readAllEvents(dump.toPath()))
+            if ("hm.binkley.util.Loaded".equals(event.getEventType().getName()))
+                loaded.add(event.<RecordedClass>getValue("implementation").getName());
+
+        assertThat(loaded, hasItem(Nancy.class.getName()));
+    }
+
+    @Test
+    public void shouldRecordPhaseDurations()
+            throws IOException {
+        final File dump = new File(temp.getRoot(), "discovery.jfr");
+        final Recording recording = new Recording();
+        try {
+            recording.enable("hm.binkley.util.Discovered");
+            recording.start();
+            with(new DefaultListableBeanFactory()).bind(Bob.class,
+                    new URLClassLoader(new URL[0], getClass().getClassLoader()));
+            recording.stop();
+            recording.dump(dump.toPath());
+        } finally {
+            recording.close();
+        }
+
+        final List<Duration> durations = new ArrayList<Duration>();
+        for (final RecordedEvent event : RecordingFile.readAllEvents(dump.toPath()))
+            if ("hm.binkley.util.Discovered".equals(event.getEventType().getName()))
+                durations.add(event.getDuration());
+
+        assertThat(durations.size(), is(equalTo(1)));
+        assertThat(durations.get(0), is(greaterThan(Duration.ZERO)));
+    }
+
+    @Test
+    public void shouldNotTimeWithoutRecording() {
+        assertThat(ServiceListeners.enabled(), is(false));
+
+        final Recording recording = new Recording();
+        try {
+            recording.enable("hm.binkley.util.Loaded");
+            recording.start();
+
+            assertThat(ServiceListeners.enabled(), is(true));
+        } finally {
+            recording.close();
+        }
+    }
+}
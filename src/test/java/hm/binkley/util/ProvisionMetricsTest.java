@@ -0,0 +1,137 @@
+/*
+ * This is free and unencumbered software released into the public domain.
+ *
+ * Anyone is free to copy, modify, publish, use, compile, sell, or
+ * distribute this software, either in source code form or as a compiled
+ * binary, for any purpose, commercial or non-commercial, and by any
+ * means.
+ *
+ * In jurisdictions that recognize copyright laws, the author or authors
+ * of this software dedicate any and all copyright interest in the
+ * software to the public domain. We make this dedication for the benefit
+ * of the public at large and to the detriment of our heirs and
+ * successors. We intend this dedication to be an overt act of
+ * relinquishment in perpetuity of all present and future rights to this
+ * software under copyright law.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY CLAIM, DAMAGES OR
+ * OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ * ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ *
+ * For more information, please refer to <http://unlicense.org/>.
+ */
+
+package hm.binkley.util;
+
+import org.junit.Test;
+
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.lang.ref.WeakReference;
+import java.net.URL;
+import java.net.URLClassLoader;
+
+import static hm.binkley.util.WeakReferences.cleared;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.nullValue;
+import static org.junit.Assert.assertThat;
+
+/**
+ * {@code ProvisionMetricsTest} tests {@link ProvisionMetrics}.
+ *
+ * @author <a href="mailto:binkley@alumni.rice.edu">B. K. Oxley (binkley)</a>
+ */
+public final class ProvisionMetricsTest {
+    @Test
+    public void shouldRecordStatistics() {
+        final ProvisionMetrics metrics = new ProvisionMetrics();
+        metrics.provisioned(String.class, 3L, 16L);
+        metrics.provisioned(String.class, 5L, 32L);
+
+        final ProvisionMetrics.Statistics statistics = metrics.statistics(String.class);
+
+        assertThat(statistics.getCount(), is(equalTo(2L)));
+        assertThat(statistics.getTotalNanos(), is(equalTo(8L)));
+        assertThat(statistics.getMaxNanos(), is(equalTo(5L)));
+        assertThat(statistics.getMeanNanos(), is(equalTo(4.0)));
+        assertThat(statistics.getAllocatedBytes(), is(equalTo(48L)));
+    }
+
+    @Test
+    public void shouldBucketByPowersOfTwo() {
+        final ProvisionMetrics metrics = new ProvisionMetrics();
+        metrics.provisioned(String.class, 0L, 0L);
+        metrics.provisioned(String.class, 1L, 0L);
+        metrics.provisioned(String.class, 2L, 0L);
+        metrics.provisioned(String.class, 3L, 0L);
+        metrics.provisioned(String.class, 1024L, 0L);
+
+        final long[] histogram = metrics.statistics(String.class).getHistogram();
+
+        assertThat(histogram[0], is(equalTo(2L)));
+        assertThat(histogram[1], is(equalTo(2L)));
+        assertThat(histogram[10], is(equalTo(1L)));
+    }
+
+    @Test
+    public void shouldNotKnowUnconstructed() {
+        final ProvisionMetrics metrics = new ProvisionMetrics();
+
+        assertThat(metrics.statistics(String.class), is(nullValue()));
+        assertThat(metrics.getStatistics().isEmpty(), is(true));
+    }
+
+    @Test
+    public void shouldForgetOnReset() {
+        final ProvisionMetrics metrics = new ProvisionMetrics();
+        metrics.provisioned(String.class, 1L, 0L);
+        metrics.reset();
+
+        assertThat(metrics.statistics(String.class), is(nullValue()));
+        assertThat(metrics.getStatistics().isEmpty(), is(true));
+    }
+
+    @Test
+    public void shouldNotPinImplementationLoaders()
+            throws Exception {
+        final ProvisionMetrics metrics = new ProvisionMetrics();
+        final WeakReference<ClassLoader> loader = provisionFromThrowawayLoader(metrics);
+
+        assertThat(cleared(loader), is(true));
+        assertThat(metrics.getStatistics().isEmpty(), is(true));
+    }
+
+    @Test
+    public void shouldRegisterGlobalMetricsWithJmx()
+            throws Exception {
+        ProvisionMetrics.global().provisioned(ProvisionMetricsTest.class, 1L, 0L);
+
+        final Object[] statistics = (Object[]) ManagementFactory.getPlatformMBeanServer()
+                .getAttribute(new ObjectName(ProvisionMetrics.OBJECT_NAME), "Statistics");
+
+        assertThat(0 < statistics.length, is(true));
+    }
+
+    private static WeakReference<ClassLoader> provisionFromThrowawayLoader(
+            final ProvisionMetrics metrics)
+            throws Exception {
+        final URL classes = Leaf.class.getProtectionDomain().getCodeSource().getLocation();
+        final URLClassLoader loader = new URLClassLoader(new URL[]{classes}, null);
+        try {
+            final Class<?> leaf = loader.loadClass(Leaf.class.getName());
+            metrics.provisioned(leaf, 1L, 0L);
+            assertThat(metrics.getStatistics().size(), is(equalTo(1)));
+        } finally {
+            loader.close();
+        }
+        return new WeakReference<ClassLoader>(loader);
+    }
+
+    /** Loaded afresh by a throwaway class loader. */
+    public static final class Leaf {}
+}
@@ -0,0 +1,281 @@
+/*
+ * This is free and unencumbered software released into the public domain.
+ *
+ * Anyone is free to copy, modify, publish, use, compile, sell, or
+ * distribute this software, either in source code form or as a compiled
+ * binary, for any purpose, commercial or non-commercial, and by any
+ * means.
+ *
+ * In jurisdictions that recognize copyright laws, the author or authors
+ * of this software dedicate any and all copyright interest in the
+ * software to the public domain. We make this dedication for the benefit
+ * of the public at large and to the detriment of our heirs and
+ * successors. We intend this dedication to be an overt act of
+ * relinquishment in perpetuity of all present and future rights to this
+ * software under copyright law.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY CLAIM, DAMAGES OR
+ * OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ * ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ *
+ * For more information, please refer to <http://unlicense.org/>.
+ */
+
+package hm.binkley.util;
+
+import com.google.inject.AbstractModule;
+import com.google.inject.Injector;
+import com.google.inject.Key;
+import com.google.inject.TypeLiteral;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.springframework.asm.ClassWriter;
+import org.springframework.asm.MethodVisitor;
+import org.springframework.asm.Type;
+import org.springframework.beans.factory.config.BeanDefinition;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.lang.management.ClassLoadingMXBean;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.util.Set;
+import java.util.jar.JarEntry;
+import java.util.jar.JarOutputStream;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import static com.google.inject.Guice.createInjector;
+import static hm.binkley.util.ServiceBinder.with;
+import static java.lang.String.format;
+import static java.lang.management.ManagementFactory.getClassLoadingMXBean;
+import static java.nio.file.Files.createTempDirectory;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.lessThanOrEqualTo;
+import static org.junit.Assert.assertThat;
+import static org.springframework.asm.Opcodes.ACC_FINAL;
+import static org.springframework.asm.Opcodes.ACC_PUBLIC;
+import static org.springframework.asm.Opcodes.ACC_SUPER;
+import static org.springframework.asm.Opcodes.ALOAD;
+import static org.springframework.asm.Opcodes.INVOKESPECIAL;
+import static org.springframework.asm.Opcodes.RETURN;
+import static org.springframework.asm.Opcodes.V1_6;
+
+/**
+ * {@code ServiceBinderIT} gates startup performance at scale, run by failsafe in the
+ * integration-test phase.  It generates a worst-case classpath of many jars with thousands of
+ * providers, configurations with comments, blank lines and duplicates, then bounds the wall time,
+ * allocated bytes and loaded classes of {@link ServiceBinder#bind(Class, ClassLoader)} with Guice
+ * and with Spring Framework.  For Guice this includes creating the injector and the set, as
+ * Guice defers its work until then; for Spring, registering bean definitions. <p/> Bounds are
+ * about twice those measured, and four times for wall time, which varies most between machines;
+ * scale wall time bounds with system property {@code service-binder.gate.slack}.  A blow-up in
+ * scaling also fails, comparing the cost per provider to that with a classpath a tenth the size.
+ * Some growth is expected, as class loaders search jars in turn for each class.
+ *
+ * @author <a href="mailto:binkley@alumni.rice.edu">B. K. Oxley (binkley)</a>
+ */
+public final class ServiceBinderIT {
+    private static final int JARS = 300;
+    private static final int PROVIDERS = 10;
+    private static final double SLACK = Double
+            .parseDouble(System.getProperty("service-binder.gate.slack", "1"));
+    /** Classes loaded besides providers, such as injector internals on first use. */
+    private static final long EXTRA_CLASSES = 1000;
+    /** Limit of cost per provider of the full classpath over that of a tenth of it. */
+    private static final double SCALING = 5.0;
+
+    /** Held so the level is not lost when collected. */
+    private static final Logger SPRING = Logger.getLogger("org.springframework");
+
+    private static File root;
+    private static URL[] large;
+    private static URL[] small;
+
+    @BeforeClass
+    public static void setUpClass()
+            throws IOException {
+        SPRING.setLevel(Level.WARNING);
+        root = createTempDirectory("service-binder-it-").toFile();
+        large = new URL[JARS];
+        for (int j = 0; j < JARS; ++j)
+            large[j] = jar(j);
+        small = new URL[JARS / 10];
+        System.arraycopy(large, 0, small, 0, small.length);
+        // Warm up the injectors so later measures are of binding
+        guice(loader(small));
+        spring(loader(small));
+    }
+
+    @AfterClass
+    public static void tearDownClass() {
+        final File[] files = root.listFiles();
+        if (null != files)
+            for (final File file : files)
+                file.delete();
+        root.delete();
+    }
+
+    @Test
+    public void shouldBindLargeClasspathWithGuice() {
+        // Guice 3 generates a fast class for each constructor
+        gate("Guice", 15000, 256 * 1024, 2, new Bind() {
+            @Override
+            public int bind(final ClassLoader loader) {
+                return guice(loader);
+            }
+        });
+    }
+
+    @Test
+    public void shouldBindLargeClasspathWithSpring() {
+        gate("Spring", 6000, 128 * 1024, 1, new Bind() {
+            @Override
+            public int bind(final ClassLoader loader) {
+                return spring(loader);
+            }
+        });
+    }
+
+    private static void gate(final String injector, final long millis,
+            final long bytesPerProvider, final int classesPerProvider, final Bind bind) {
+        final Measure tenth = new Measure(bind, loader(small));
+        final Measure full = new Measure(bind, loader(large));
+        System.out.println(format("%s: %s; a tenth: %s", injector, full, tenth));
+
+        // Duplicates across jars are bound once each time listed, as ServiceLoader would load
+        assertThat(full.bound, is(JARS * (PROVIDERS + 2)));
+        assertThat(full.nanos / 1000000, is(lessThanOrEqualTo((long) (SLACK * millis))));
+        assertThat(full.bytes / full.bound, is(lessThanOrEqualTo(bytesPerProvider)));
+        assertThat(full.classes,
+                is(lessThanOrEqualTo(classesPerProvider * JARS * PROVIDERS + EXTRA_CLASSES)));
+        assertThat((double) full.nanos / full.bound,
+                is(lessThanOrEqualTo(SCALING * tenth.nanos / tenth.bound)));
+        assertThat((double) full.bytes / full.bound,
+                is(lessThanOrEqualTo(SCALING * tenth.bytes / tenth.bound)));
+    }
+
+    /** Binds with Guice, returning the count of bindings made. */
+    private static int guice(final ClassLoader loader) {
+        final Injector injector = createInjector(new AbstractModule() {
+            @Override
+            protected void configure() {
+                with(binder()).bind(Plugin.class, loader);
+            }
+        });
+        return injector.getInstance(Key.get(new TypeLiteral<Set<Plugin>>() {})).size();
+    }
+
+    /** Binds with Spring, returning the count of registrations made. */
+    private static int spring(final ClassLoader loader) {
+        final Registrations context = new Registrations();
+        final int before = context.registrations;
+        with(context).bind(Plugin.class, loader);
+        return context.registrations - before;
+    }
+
+    /** Creates a new class loader over <var>jars</var>, so nothing is cached for it yet. */
+    private static URLClassLoader loader(final URL[] jars) {
+        return new URLClassLoader(jars, Plugin.class.getClassLoader());
+    }
+
+    /**
+     * Writes the <var>j</var>th jar of providers, with a configuration listing each provider,
+     * one provider again, a provider of the first jar, a comment and blank lines.
+     */
+    private static URL jar(final int j)
+            throws IOException {
+        final File jar = new File(root, "plugins-" + j + ".jar");
+        final StringBuilder config = new StringBuilder("# Generated plugins ").append(j)
+                .append("\n\n");
+        final JarOutputStream out = new JarOutputStream(new FileOutputStream(jar));
+        try {
+            for (int p = 0; p < PROVIDERS; ++p) {
+                final String name = name(j, p);
+                out.putNextEntry(new JarEntry(name.replace('.', '/') + ".class"));
+                out.write(provider(name));
+                config.append("  ").append(name).append("  # Provider ").append(p)
+                        .append("\r\n");
+            }
+            config.append('\n').append(name(j, 0)).append('\n');
+            config.append(name(0, j % PROVIDERS)).append('\n');
+            out.putNextEntry(new JarEntry("META-INF/services/" + Plugin.class.getName()));
+            out.write(config.toString().getBytes("UTF-8"));
+        } finally {
+            out.close();
+        }
+        return jar.toURI().toURL();
+    }
+
+    private static String name(final int j, final int p) {
+        return ServiceBinderIT.class.getPackage().getName() + ".generated.Plugin" + j + "x" + p;
+    }
+
+    /** Generates a public final class implementing {@link Plugin} with a default constructor. */
+    private static byte[] provider(final String name) {
+        final ClassWriter writer = new ClassWriter(ClassWriter.COMPUTE_MAXS);
+        writer.visit(V1_6, ACC_PUBLIC | ACC_FINAL | ACC_SUPER, name.replace('.', '/'), null,
+                "java/lang/Object", new String[]{Type.getInternalName(Plugin.class)});
+        final MethodVisitor init = writer.visitMethod(ACC_PUBLIC, "<init>", "()V", null, null);
+        init.visitCode();
+        init.visitVarInsn(ALOAD, 0);
+        init.visitMethodInsn(INVOKESPECIAL, "java/lang/Object", "<init>", "()V");
+        init.visitInsn(RETURN);
+        init.visitMaxs(0, 0);
+        init.visitEnd();
+        writer.visitEnd();
+        return writer.toByteArray();
+    }
+
+    public interface Plugin {}
+
+    private interface Bind {
+        int bind(final ClassLoader loader);
+    }
+
+    /** Counts bean definitions registered, overriding duplicates as Spring does by default. */
+    private static final class Registrations
+            extends AnnotationConfigApplicationContext {
+        private int registrations;
+
+        @Override
+        public void registerBeanDefinition(final String name,
+                final BeanDefinition definition) {
+            super.registerBeanDefinition(name, definition);
+            ++registrations;
+        }
+    }
+
+    /** Measures a single bind on the calling thread. */
+    private static final class Measure {
+        private static final ClassLoadingMXBean CLASSES = getClassLoadingMXBean();
+
+        private final int bound;
+        private final long nanos;
+        private final long bytes;
+        private final long classes;
+
+        private Measure(final Bind bind, final ClassLoader loader) {
+            final long classes = CLASSES.getTotalLoadedClassCount();
+            final long bytes = ProvisionMetrics.allocatedBytes();
+            final long nanos = System.nanoTime();
+            bound = bind.bind(loader);
+            this.nanos = System.nanoTime() - nanos;
+            this.bytes = ProvisionMetrics.allocatedBytes() - bytes;
+            this.classes = CLASSES.getTotalLoadedClassCount() - classes;
+        }
+
+        @Override
+        public String toString() {
+            return format("%d bound in %d ms, %d bytes, %d classes", bound, nanos / 1000000,
+                    bytes, classes);
+        }
+    }
+}
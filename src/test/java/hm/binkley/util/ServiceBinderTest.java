@@ -31,27 +31,59 @@ import com.google.inject.AbstractModule;
 import com.google.inject.Injector;
 import com.google.inject.Key;
 import com.google.inject.Module;
+import com.google.inject.Scopes;
 import com.google.inject.TypeLiteral;
 import org.junit.Before;
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
 import org.kohsuke.MetaInfServices;
+import org.springframework.beans.factory.support.DefaultListableBeanFactory;
 import org.springframework.context.ApplicationContext;
 import org.springframework.context.annotation.AnnotationConfigApplicationContext;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 
+import javax.annotation.Nonnull;
 import javax.inject.Inject;
 import javax.inject.Named;
+import javax.inject.Singleton;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.lang.annotation.Retention;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.util.ArrayList;
+import java.util.Enumeration;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.ServiceConfigurationError;
 import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
 import static com.google.inject.Guice.createInjector;
 import static com.google.inject.name.Names.named;
 import static hm.binkley.util.ServiceBinder.with;
+import static java.lang.annotation.RetentionPolicy.CLASS;
+import static java.util.Collections.enumeration;
+import static java.util.Collections.list;
+import static java.util.Collections.synchronizedSet;
+import static java.util.concurrent.TimeUnit.SECONDS;
 import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.hasItem;
+import static org.hamcrest.Matchers.instanceOf;
 import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.not;
+import static org.hamcrest.Matchers.notNullValue;
+import static org.hamcrest.Matchers.nullValue;
+import static org.hamcrest.Matchers.sameInstance;
 import static org.junit.Assert.assertThat;
 
 /**
@@ -60,6 +92,9 @@ import static org.junit.Assert.assertThat;
  * @author <a href="mailto:binkley@alumni.rice.edu">B. K. Oxley (binkley)</a>
  */
 public final class ServiceBinderTest {
+    @Rule
+    public final TemporaryFolder temp = new TemporaryFolder();
+
     @Before
     public void setUp() {
         Logger.getLogger("org.springframework").setLevel(Level.WARNING);
@@ -93,6 +128,34 @@ public final class ServiceBinderTest {
         assertThat(guice().getInstance(Nancy.class).nickName, is(equalTo("Fancy")));
     }
 
+    @Test
+    public void shouldBindAllServicesWithGuice() {
+        final Set<Class<? extends Bob>> found = new HashSet<Class<? extends Bob>>();
+        for (final Bob bob : guice(new Binding() {
+            @Override
+            public void bind(final ServiceBinder<?> binder) {
+                binder.bindAll(Bob.class);
+            }
+        }).getInstance(Key.get(new TypeLiteral<Set<Bob>>() {})))
+            found.add(bob.getClass());
+
+        assertThat(found, is(equalTo(expected())));
+    }
+
+    @Test
+    public void shouldBindServicesInParallelWithGuice() {
+        final Set<Class<? extends Bob>> found = new HashSet<Class<? extends Bob>>();
+        for (final Bob bob : guice(new Binding() {
+            @Override
+            public void bind(final ServiceBinder<?> binder) {
+                binder.parallel().bind(Bob.class);
+            }
+        }).getInstance(Key.get(new TypeLiteral<Set<Bob>>() {})))
+            found.add(bob.getClass());
+
+        assertThat(found, is(equalTo(expected())));
+    }
+
     @Test
     public void shouldBindServicesWithSpring() {
         final Set<Class<? extends Bob>> found = new HashSet<Class<? extends Bob>>();
@@ -106,6 +169,807 @@ public final class ServiceBinderTest {
         assertThat(found, is(equalTo(expected)));
     }
 
+    @Test
+    public void shouldBindAllServicesWithSpring() {
+        final Set<Class<? extends Bob>> found = new HashSet<Class<? extends Bob>>();
+        for (final Bob bob : spring(new Binding() {
+            @Override
+            public void bind(final ServiceBinder<?> binder) {
+                binder.bindAll(Bob.class);
+            }
+        }).getBeansOfType(Bob.class).values())
+            found.add(bob.getClass());
+
+        assertThat(found, is(equalTo(expected())));
+    }
+
+    @Test
+    public void shouldBindServicesInParallelWithSpring() {
+        final Set<Class<? extends Bob>> found = new HashSet<Class<? extends Bob>>();
+        for (final Bob bob : spring(new Binding() {
+            @Override
+            public void bind(final ServiceBinder<?> binder) {
+                binder.parallel().bind(Bob.class);
+            }
+        }).getBeansOfType(Bob.class).values())
+            found.add(bob.getClass());
+
+        assertThat(found, is(equalTo(expected())));
+    }
+
+    @Test
+    public void shouldBindServicesWithInjector() {
+        final Set<Class<? extends Bob>> found = new HashSet<Class<? extends Bob>>();
+        for (final Bob bob : injector(new Binding() {
+            @Override
+            public void bind(final ServiceBinder<?> binder) {
+                binder.bind(Bob.class);
+            }
+        }).getInstances(Bob.class))
+            found.add(bob.getClass());
+
+        assertThat(found, is(equalTo(expected())));
+    }
+
+    @Test
+    public void shouldInjectServicesWithInjector() {
+        final Nancy nancy = nancy(injector(new Binding() {
+            @Override
+            public void bind(final ServiceBinder<?> binder) {
+                binder.bind(Bob.class);
+            }
+        }));
+
+        assertThat(nancy.catName, is(equalTo("Felix")));
+        assertThat(nancy.favoriteColor, is(equalTo("White")));
+        assertThat(nancy.nickName, is(equalTo("Fancy")));
+    }
+
+    @Test
+    public void shouldNotLoadLazilyBoundServicesWithInjectorUntilInjected() {
+        final RecordingClassLoader loader = new RecordingClassLoader();
+        final ServiceInjector injector = injector(new Binding() {
+            @Override
+            public void bind(final ServiceBinder<?> binder) {
+                binder.lazy().bind(Bob.class, loader);
+            }
+        });
+
+        assertThat(loader.loaded, not(hasItem(Nancy.class.getName())));
+        assertThat(nancy(injector).catName, is(equalTo("Felix")));
+        assertThat(loader.loaded, hasItem(Nancy.class.getName()));
+    }
+
+    @Test
+    public void shouldBindSingletonsWithInjector() {
+        final ServiceInjector injector = injector(new Binding() {
+            @Override
+            public void bind(final ServiceBinder<?> binder) {
+                binder.singleton().bind(Bob.class);
+            }
+        });
+
+        assertThat(nancy(injector), is(sameInstance(nancy(injector))));
+    }
+
+    @Test
+    public void shouldBindHighestPriorityProviderWithInjector() {
+        final ServiceInjector injector = injector(new Binding() {
+            @Override
+            public void bind(final ServiceBinder<?> binder) {
+                binder.bindHighestPriority(Bob.class);
+            }
+        });
+
+        assertThat(injector.getInstance(Bob.class), is(instanceOf(Nancy.class)));
+    }
+
+    @Test
+    public void shouldMeasureProvisionsWithInjector() {
+        final ProvisionMetrics metrics = new ProvisionMetrics();
+        final ServiceInjector injector = injector(new Binding() {
+            @Override
+            public void bind(final ServiceBinder<?> binder) {
+                binder.instrumented(metrics).bind(Bob.class);
+            }
+        });
+        nancy(injector);
+        nancy(injector);
+
+        assertThat(metrics.statistics(Nancy.class).getCount(), is(equalTo(2L)));
+    }
+
+    @Test
+    public void shouldWarmUpByConstructingWithInjector()
+            throws Exception {
+        final WarmedUp hook = new WarmedUp();
+        final ServiceWarmUp warmUp = new ServiceWarmUp(ForkJoinPool.commonPool(), true, hook);
+        injector(new Binding() {
+            @Override
+            public void bind(final ServiceBinder<?> binder) {
+                binder.warmUp(warmUp).bind(Bob.class);
+            }
+        });
+        warmUp.future().get(10, SECONDS);
+
+        assertThat(hook.implementations, is(equalTo(expected())));
+        assertThat(hook.instances.get(), is(equalTo(2)));
+    }
+
+    @Test
+    public void shouldBindPlanWithInjector() {
+        final ServicePlan plan = plan(new Binding() {
+            @Override
+            public void bind(final ServiceBinder<?> binder) {
+                binder.lazy().bind(Bob.class);
+            }
+        });
+        final ServiceInjector injector = injector(new Binding() {
+            @Override
+            public void bind(final ServiceBinder<?> binder) {}
+        });
+        plan.bindTo(injector);
+
+        assertThat(nancy(injector).catName, is(equalTo("Felix")));
+    }
+
+    @Test
+    public void shouldNotLoadLazilyBoundServicesWithGuiceUntilInjected() {
+        final RecordingClassLoader loader = new RecordingClassLoader();
+        final Injector injector = guice(new Binding() {
+            @Override
+            public void bind(final ServiceBinder<?> binder) {
+                binder.lazy().bind(Bob.class, loader);
+            }
+        });
+
+        assertThat(loader.loaded, not(hasItem(Nancy.class.getName())));
+
+        final Set<Class<? extends Bob>> found = new HashSet<Class<? extends Bob>>();
+        for (final Bob bob : injector.getInstance(Key.get(new TypeLiteral<Set<Bob>>() {})))
+            found.add(bob.getClass());
+
+        assertThat(found, is(equalTo(expected())));
+        assertThat(loader.loaded, hasItem(Nancy.class.getName()));
+    }
+
+    @Test
+    public void shouldFieldInjectLazilyBoundServicesWithGuice() {
+        for (final Bob bob : guice(new Binding() {
+            @Override
+            public void bind(final ServiceBinder<?> binder) {
+                binder.lazy().bind(Bob.class);
+            }
+        }).getInstance(Key.get(new TypeLiteral<Set<Bob>>() {})))
+            if (bob instanceof Nancy)
+                assertThat(((Nancy) bob).nickName, is(equalTo("Fancy")));
+    }
+
+    @Test
+    public void shouldNotCreateLazilyBoundServicesWithSpringUntilInjected() {
+        final RecordingClassLoader loader = new RecordingClassLoader();
+        final AnnotationConfigApplicationContext context = new AnnotationConfigApplicationContext();
+        context.setClassLoader(loader);
+        context.getDefaultListableBeanFactory().setAllowEagerClassLoading(false);
+        context.register(Dependencies.class);
+        with(context).lazy().bind(Bob.class, loader);
+        context.refresh();
+
+        assertThat(context.getBeanDefinition(Nancy.class.getName()).getBeanClassName(),
+                is(equalTo(Nancy.class.getName())));
+        assertThat(context.getBeanFactory().containsSingleton(Nancy.class.getName()),
+                is(false));
+        assertThat(loader.loaded, not(hasItem(Nancy.class.getName())));
+
+        assertThat(context.getBean(Nancy.class.getName(), Nancy.class).catName,
+                is(equalTo("Felix")));
+    }
+
+    @Test
+    public void shouldInjectServicesWithFactoriesWithGuice() {
+        final Nancy nancy = nancy(guice(new Binding() {
+            @Override
+            public void bind(final ServiceBinder<?> binder) {
+                binder.factories().bind(Bob.class);
+            }
+        }));
+
+        assertThat(nancy.catName, is(equalTo("Felix")));
+        assertThat(nancy.nickName, is(equalTo("Fancy")));
+        assertThat(nancy.favoriteColor, is(equalTo("White")));
+    }
+
+    @Test
+    public void shouldKeepImplementationScopeWithFactoriesWithGuice() {
+        final Injector injector = guice(new Binding() {
+            @Override
+            public void bind(final ServiceBinder<?> binder) {
+                binder.factories().bind(Cow.class);
+            }
+        });
+        final Key<Set<Cow>> key = Key.get(new TypeLiteral<Set<Cow>>() {});
+
+        assertThat(injector.getInstance(key).iterator().next(),
+                is(sameInstance(injector.getInstance(key).iterator().next())));
+    }
+
+    @Test
+    public void shouldInjectLazilyBoundServicesWithFactoriesWithGuice() {
+        final Injector injector = guice(new Binding() {
+            @Override
+            public void bind(final ServiceBinder<?> binder) {
+                binder.factories().lazy().singleton().bind(Bob.class);
+            }
+        });
+
+        assertThat(nancy(injector).nickName, is(equalTo("Fancy")));
+        assertThat(nancy(injector), is(sameInstance(nancy(injector))));
+    }
+
+    @Test
+    public void shouldInjectServicesWithFactoriesWithSpring() {
+        final ApplicationContext context = spring(new Binding() {
+            @Override
+            public void bind(final ServiceBinder<?> binder) {
+                binder.factories().unscoped().bind(Bob.class);
+            }
+        });
+        final Nancy nancy = context.getBean(Nancy.class);
+
+        assertThat(nancy.catName, is(equalTo("Felix")));
+        assertThat(nancy.nickName, is(equalTo("Fancy")));
+        assertThat(nancy.favoriteColor, is(equalTo("White")));
+        assertThat(context.getBean(Nancy.class), is(not(sameInstance(nancy))));
+    }
+
+    @Test
+    public void shouldInjectServicesWithGeneratedModule() {
+        final Injector injector = createInjector(new AbstractModule() {
+            @Override
+            protected void configure() {
+                bindConstant().annotatedWith(named("cat-name")).to("Felix");
+                bindConstant().annotatedWith(named("nick-name")).to("Fancy");
+                bindConstant().annotatedWith(named("favorite-color")).to("White");
+                install(new TestServicesModule());
+            }
+        });
+        final Nancy nancy = nancy(injector);
+
+        assertThat(injector.getInstance(Key.get(new TypeLiteral<Set<Bob>>() {})).size(),
+                is(equalTo(2)));
+        assertThat(nancy.catName, is(equalTo("Felix")));
+        assertThat(nancy.nickName, is(equalTo("Fancy")));
+        assertThat(nancy.favoriteColor, is(equalTo("White")));
+    }
+
+    @Test
+    public void shouldInjectServicesWithGeneratedConfiguration() {
+        final ApplicationContext context = new AnnotationConfigApplicationContext(
+                Dependencies.class, TestServicesConfiguration.class);
+        final Nancy nancy = context.getBean(Nancy.class.getName(), Nancy.class);
+
+        assertThat(context.getBeansOfType(Bob.class).size(), is(equalTo(2)));
+        assertThat(nancy.catName, is(equalTo("Felix")));
+        assertThat(nancy.nickName, is(equalTo("Fancy")));
+        assertThat(nancy.favoriteColor, is(equalTo("White")));
+    }
+
+    @Test
+    public void shouldWarmUpByConstructingWithGuice()
+            throws Exception {
+        final WarmedUp hook = new WarmedUp();
+        final ServiceWarmUp warmUp = new ServiceWarmUp(ForkJoinPool.commonPool(), true, hook);
+        guice(new Binding() {
+            @Override
+            public void bind(final ServiceBinder<?> binder) {
+                binder.warmUp(warmUp).bind(Bob.class);
+            }
+        });
+
+        warmUp.future().get(10, SECONDS);
+
+        assertThat(hook.implementations, is(equalTo(expected())));
+        assertThat(hook.instances.get(), is(equalTo(2)));
+    }
+
+    @Test
+    public void shouldWarmUpLazilyBoundByConstructingWithSpring()
+            throws Exception {
+        final WarmedUp hook = new WarmedUp();
+        final ServiceWarmUp warmUp = new ServiceWarmUp(ForkJoinPool.commonPool(), true, hook);
+        final AnnotationConfigApplicationContext context
+                = (AnnotationConfigApplicationContext) spring(new Binding() {
+            @Override
+            public void bind(final ServiceBinder<?> binder) {
+                binder.lazy().warmUp(warmUp).bind(Bob.class);
+            }
+        });
+
+        warmUp.future().get(10, SECONDS);
+
+        assertThat(hook.implementations, is(equalTo(expected())));
+        assertThat(context.getBeanFactory().containsSingleton(Nancy.class.getName()), is(true));
+    }
+
+    @Test
+    public void shouldWarmUpLazilyBoundByInitializingOnly()
+            throws Exception {
+        final RecordingClassLoader loader = new RecordingClassLoader();
+        final WarmedUp hook = new WarmedUp();
+        final ServiceWarmUp warmUp = new ServiceWarmUp(ForkJoinPool.commonPool(), false, hook);
+        final DefaultListableBeanFactory beanFactory = new DefaultListableBeanFactory();
+        with(beanFactory).lazy().warmUp(warmUp).bind(Bob.class, loader);
+
+        warmUp.future().get(10, SECONDS);
+
+        assertThat(hook.implementations, is(equalTo(expected())));
+        assertThat(hook.instances.get(), is(equalTo(0)));
+        assertThat(loader.loaded, hasItem(Nancy.class.getName()));
+        assertThat(beanFactory.containsSingleton(Nancy.class.getName()), is(false));
+    }
+
+    @Test
+    public void shouldMeasureProvisionsWithGuice() {
+        final ProvisionMetrics metrics = new ProvisionMetrics();
+        final Injector injector = guice(new Binding() {
+            @Override
+            public void bind(final ServiceBinder<?> binder) {
+                binder.instrumented(metrics).bind(Bob.class);
+            }
+        });
+        nancy(injector);
+        nancy(injector);
+
+        assertThat(metrics.statistics(Nancy.class).getCount(), is(equalTo(2L)));
+        assertThat(nancy(injector).favoriteColor, is(equalTo("White")));
+    }
+
+    @Test
+    public void shouldMeasureOnlyConstructionsOfLazySingletonsWithGuice() {
+        final ProvisionMetrics metrics = new ProvisionMetrics();
+        final Injector injector = guice(new Binding() {
+            @Override
+            public void bind(final ServiceBinder<?> binder) {
+                binder.instrumented(metrics).factories().lazy().singleton().bind(Bob.class);
+            }
+        });
+        nancy(injector);
+        nancy(injector);
+
+        assertThat(metrics.statistics(Nancy.class).getCount(), is(equalTo(1L)));
+        assertThat(nancy(injector).nickName, is(equalTo("Fancy")));
+    }
+
+    @Test
+    public void shouldMeasureProvisionsWithSpring() {
+        final ProvisionMetrics metrics = new ProvisionMetrics();
+        final ApplicationContext context = spring(new Binding() {
+            @Override
+            public void bind(final ServiceBinder<?> binder) {
+                binder.instrumented(metrics).unscoped().bind(Bob.class);
+            }
+        });
+        context.getBean(Nancy.class);
+        context.getBean(Nancy.class);
+
+        assertThat(metrics.statistics(Nancy.class).getCount(), is(equalTo(2L)));
+        assertThat(metrics.statistics(Fred.class), is(nullValue()));
+    }
+
+    @Test
+    public void shouldNotLoadProvidersRejectedByName() {
+        final RecordingClassLoader loader = new RecordingClassLoader();
+        final Injector injector = guice(new Binding() {
+            @Override
+            public void bind(final ServiceBinder<?> binder) {
+                binder.filter(ServiceFilters.named(".*\\$Nancy")).bind(Bob.class, loader);
+            }
+        });
+
+        assertThat(injector.getInstance(Key.get(new TypeLiteral<Set<Bob>>() {})).size(),
+                is(equalTo(1)));
+        assertThat(loader.loaded, not(hasItem(Fred.class.getName())));
+    }
+
+    @Test
+    public void shouldNotLoadProvidersRejectedByAnnotation() {
+        final RecordingClassLoader loader = new RecordingClassLoader();
+        final DefaultListableBeanFactory beanFactory = new DefaultListableBeanFactory();
+        with(beanFactory).filter(ServiceFilters.annotated(Chosen.class)).lazy().
+                bind(Bob.class, loader);
+
+        assertThat(beanFactory.containsBeanDefinition(Fred.class.getName()), is(true));
+        assertThat(beanFactory.containsBeanDefinition(Nancy.class.getName()), is(false));
+        assertThat(loader.loaded, not(hasItem(Nancy.class.getName())));
+    }
+
+    @Test
+    public void shouldBindOnlyFirstProviderWithGuice() {
+        final RecordingClassLoader loader = new RecordingClassLoader();
+        final Injector injector = guice(new Binding() {
+            @Override
+            public void bind(final ServiceBinder<?> binder) {
+                binder.bindFirst(Bob.class, loader);
+            }
+        });
+
+        final Class<?> first = injector.getInstance(Bob.class).getClass();
+        assertThat(loader.loaded, not(hasItem(
+                (Fred.class == first ? Nancy.class : Fred.class).getName())));
+    }
+
+    @Test
+    public void shouldNotReadConfigurationsAfterFirstProvider()
+            throws IOException {
+        final URL missing = new File(temp.getRoot(), "missing").toURI().toURL();
+        final ClassLoader loader = new ClassLoader(ServiceBinderTest.class.getClassLoader()) {
+            @Override
+            public Enumeration<URL> getResources(final String name)
+                    throws IOException {
+                final List<URL> resources = list(super.getResources(name));
+                if (name.endsWith(Bob.class.getName()))
+                    resources.add(missing);
+                return enumeration(resources);
+            }
+        };
+
+        assertThat(guice(new Binding() {
+            @Override
+            public void bind(final ServiceBinder<?> binder) {
+                binder.bindFirst(Bob.class, loader);
+            }
+        }).getInstance(Bob.class), is(notNullValue()));
+    }
+
+    @Test
+    public void shouldBindHighestPriorityProviderWithGuice() {
+        final RecordingClassLoader loader = new RecordingClassLoader();
+        final Injector injector = guice(new Binding() {
+            @Override
+            public void bind(final ServiceBinder<?> binder) {
+                binder.bindHighestPriority(Bob.class, loader);
+            }
+        });
+
+        assertThat(injector.getInstance(Bob.class), is(instanceOf(Nancy.class)));
+        assertThat(loader.loaded, not(hasItem(Fred.class.getName())));
+    }
+
+    @Test
+    public void shouldBindHighestPriorityProviderAsPrimaryWithSpring() {
+        final ApplicationContext context = spring(new Binding() {
+            @Override
+            public void bind(final ServiceBinder<?> binder) {
+                binder.lazy().bindHighestPriority(Bob.class);
+            }
+        });
+
+        assertThat(context.getBean(Bob.class), is(instanceOf(Nancy.class)));
+        assertThat(((AnnotationConfigApplicationContext) context).getBeanFactory()
+                .getBeanDefinition(Nancy.class.getName()).isPrimary(), is(true));
+    }
+
+    @Test
+    public void shouldBindPlanWithSeveralGuiceInjectors() {
+        final ServicePlan plan = plan(new Binding() {
+            @Override
+            public void bind(final ServiceBinder<?> binder) {
+                binder.singleton().bind(Bob.class);
+            }
+        });
+        final Injector first = guice(plan);
+        final Injector second = guice(plan);
+
+        assertThat(nancy(first), is(sameInstance(nancy(first))));
+        assertThat(nancy(first), is(not(sameInstance(nancy(second)))));
+        assertThat(nancy(second).catName, is(equalTo("Felix")));
+    }
+
+    @Test
+    public void shouldBindPlanWithSeveralSpringContexts() {
+        final ServicePlan plan = plan(new Binding() {
+            @Override
+            public void bind(final ServiceBinder<?> binder) {
+                binder.factories().bind(Bob.class);
+            }
+        });
+        final AnnotationConfigApplicationContext first = spring(plan);
+        final AnnotationConfigApplicationContext second = spring(plan);
+
+        final Set<Class<? extends Bob>> found = new HashSet<Class<? extends Bob>>();
+        for (final Bob bob : second.getBeansOfType(Bob.class).values())
+            found.add(bob.getClass());
+        assertThat(found, is(equalTo(expected())));
+        assertThat(first.getBean(Nancy.class), is(not(sameInstance(second.getBean(Nancy.class)))));
+        assertThat(first.getBeanDefinition(Nancy.class.getName()),
+                is(not(sameInstance(second.getBeanDefinition(Nancy.class.getName())))));
+    }
+
+    @Test
+    public void shouldNotLoadClassesWhenBindingPlan() {
+        final RecordingClassLoader loader = new RecordingClassLoader();
+        final ServicePlan plan = plan(new Binding() {
+            @Override
+            public void bind(final ServiceBinder<?> binder) {
+                binder.bind(Bob.class, loader);
+            }
+        });
+        loader.loaded.clear();
+        guice(plan);
+        spring(plan);
+
+        assertThat(loader.loaded.isEmpty(), is(true));
+    }
+
+    @Test(expected = ServiceConfigurationError.class)
+    public void shouldRejectGuiceScopeWhenBindingPlanWithSpring() {
+        spring(plan(new Binding() {
+            @Override
+            public void bind(final ServiceBinder<?> binder) {
+                binder.in(Scopes.SINGLETON).bind(Bob.class);
+            }
+        }));
+    }
+
+    @Test
+    public void shouldBindSingletonsWithGuice() {
+        final Injector injector = guice(new Binding() {
+            @Override
+            public void bind(final ServiceBinder<?> binder) {
+                binder.singleton().bind(Bob.class);
+            }
+        });
+
+        assertThat(nancy(injector), is(sameInstance(nancy(injector))));
+    }
+
+    @Test
+    public void shouldBindInGuiceScope() {
+        final Injector injector = guice(new Binding() {
+            @Override
+            public void bind(final ServiceBinder<?> binder) {
+                binder.in(Scopes.SINGLETON).lazy().bind(Bob.class);
+            }
+        });
+
+        assertThat(nancy(injector), is(sameInstance(nancy(injector))));
+    }
+
+    @Test
+    public void shouldBindUnscopedWithGuiceByDefault() {
+        final Injector injector = guice(new Binding() {
+            @Override
+            public void bind(final ServiceBinder<?> binder) {
+                binder.bind(Bob.class);
+            }
+        });
+
+        assertThat(nancy(injector), is(not(sameInstance(nancy(injector)))));
+    }
+
+    @Test
+    public void shouldBindUnscopedWithSpring() {
+        final ApplicationContext context = spring(new Binding() {
+            @Override
+            public void bind(final ServiceBinder<?> binder) {
+                binder.unscoped().bind(Bob.class);
+            }
+        });
+
+        assertThat(context.getBean(Nancy.class),
+                is(not(sameInstance(context.getBean(Nancy.class)))));
+    }
+
+    @Test
+    public void shouldBindUnscopedWithGuice() {
+        final Injector injector = guice(new Binding() {
+            @Override
+            public void bind(final ServiceBinder<?> binder) {
+                binder.unscoped().bind(Bob.class);
+            }
+        });
+
+        assertThat(nancy(injector), is(not(sameInstance(nancy(injector)))));
+    }
+
+    @Test
+    public void shouldBindEagerSingletonsWithSpringEvenIfLazy() {
+        final AnnotationConfigApplicationContext context = new AnnotationConfigApplicationContext();
+        context.register(Dependencies.class);
+        with(context).lazy().eagerSingleton().bind(Bob.class);
+        context.refresh();
+
+        assertThat(context.getBeanFactory().containsSingleton(Nancy.class.getName()), is(true));
+    }
+
+    @Test
+    public void shouldBindInSpringScope() {
+        final AnnotationConfigApplicationContext context = new AnnotationConfigApplicationContext();
+        context.register(Dependencies.class);
+        with(context).in("prototype").bind(Bob.class);
+        context.refresh();
+
+        assertThat(context.getBeanDefinition(Nancy.class.getName()).isPrototype(), is(true));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void shouldRejectGuiceScopeWithSpring() {
+        with(new DefaultListableBeanFactory()).in(Scopes.SINGLETON);
+    }
+
+    @Test
+    public void shouldRejectSpringScopeWithGuice() {
+        final AtomicReference<Exception> failure = new AtomicReference<Exception>();
+        guice(new Binding() {
+            @Override
+            public void bind(final ServiceBinder<?> binder) {
+                try {
+                    binder.in("prototype");
+                } catch (final IllegalArgumentException e) {
+                    failure.set(e);
+                }
+            }
+        });
+
+        assertThat(failure.get(), is(instanceOf(IllegalArgumentException.class)));
+    }
+
+    @Test
+    public void shouldFailInParallelAsSerially()
+            throws IOException {
+        final File root = temp.newFolder();
+        final File config = new File(root, "META-INF/services/" + Bob.class.getName());
+        config.getParentFile().mkdirs();
+        final FileOutputStream out = new FileOutputStream(config);
+        try {
+            out.write("hm.binkley.util.Missing\n".getBytes("UTF-8"));
+        } finally {
+            out.close();
+        }
+        final ClassLoader loader = new URLClassLoader(new URL[]{root.toURI().toURL()},
+                getClass().getClassLoader());
+
+        assertThat(failure(with(new DefaultListableBeanFactory()).parallel(), loader),
+                is(equalTo(failure(with(new DefaultListableBeanFactory()), loader))));
+    }
+
+    @Test
+    public void shouldBindSharedProvidersOnceFromManyClassLoaders() {
+        final ClassLoader a = new RecordingClassLoader();
+        final ClassLoader b = new RecordingClassLoader();
+        final Set<Class<? extends Bob>> found = new HashSet<Class<? extends Bob>>();
+        final List<Bob> bobs = injector(new Binding() {
+            @Override
+            public void bind(final ServiceBinder<?> binder) {
+                binder.bindAcross(Bob.class, a, b);
+            }
+        }).getInstances(Bob.class);
+        for (final Bob bob : bobs)
+            found.add(bob.getClass());
+
+        assertThat(bobs.size(), is(equalTo(2)));
+        assertThat(found, is(equalTo(expected())));
+    }
+
+    @Test
+    public void shouldBindSharedProvidersOnceLazilyFromManyClassLoaders() {
+        final RecordingClassLoader a = new RecordingClassLoader();
+        final RecordingClassLoader b = new RecordingClassLoader();
+        final ServiceInjector injector = injector(new Binding() {
+            @Override
+            public void bind(final ServiceBinder<?> binder) {
+                binder.lazy().bindAcross(Bob.class, a, b);
+            }
+        });
+
+        assertThat(a.loaded, not(hasItem(Nancy.class.getName())));
+        assertThat(injector.getInstances(Bob.class).size(), is(equalTo(2)));
+    }
+
+    @Test
+    public void shouldBindShadedProvidersOnceFromManyClassLoaders()
+            throws IOException {
+        final ClassLoader parent = getClass().getClassLoader();
+        final URL shaded = shaded(Nancy.class.getName());
+        final ClassLoader a = new URLClassLoader(new URL[]{shaded}, parent);
+        final ClassLoader b = new URLClassLoader(new URL[]{shaded(Nancy.class.getName())},
+                parent);
+
+        assertThat(injector(new Binding() {
+            @Override
+            public void bind(final ServiceBinder<?> binder) {
+                binder.bindAcross(Bob.class, a, b);
+            }
+        }).getInstances(Bob.class).size(), is(equalTo(2)));
+    }
+
+    @Test
+    public void shouldReadSharedConfigurationsOnceFromManyClassLoaders()
+            throws IOException {
+        final URL shaded = shaded(Nancy.class.getName());
+        final ClassLoader parent = new URLClassLoader(new URL[]{shaded},
+                getClass().getClassLoader());
+        final List<URL> read = new ArrayList<URL>();
+        final ServiceListener listener = new ServiceListener() {
+            @Override
+            public void read(@Nonnull final URL config, final int providers, final int skipped,
+                    final long nanos) {
+                read.add(config);
+            }
+        };
+        ServiceListener.add(listener);
+        try {
+            with(new DefaultListableBeanFactory()).bindAcross(Bob.class,
+                    new URLClassLoader(new URL[0], parent),
+                    new URLClassLoader(new URL[0], parent), parent);
+        } finally {
+            ServiceListener.remove(listener);
+        }
+
+        assertThat(read.size(), is(equalTo(1)));
+    }
+
+    @Test
+    public void shouldCacheConfigurationsFromManyClassLoaders()
+            throws IOException {
+        final ClassLoader parent = new URLClassLoader(
+                new URL[]{shaded(Nancy.class.getName())}, getClass().getClassLoader());
+        final ClassLoader child = new URLClassLoader(new URL[0], parent);
+        final List<URL> read = new ArrayList<URL>();
+        final ServiceListener listener = new ServiceListener() {
+            @Override
+            public void read(@Nonnull final URL config, final int providers, final int skipped,
+                    final long nanos) {
+                read.add(config);
+            }
+        };
+        ServiceListener.add(listener);
+        try {
+            with(new DefaultListableBeanFactory()).bindAcross(Bob.class, child, parent);
+            final int first = read.size();
+            with(new DefaultListableBeanFactory()).bindAcross(Bob.class, child, parent);
+            with(new DefaultListableBeanFactory()).bind(Bob.class, child);
+
+            assertThat(read.size(), is(equalTo(first)));
+        } finally {
+            ServiceListener.remove(listener);
+        }
+    }
+
+    @Test
+    public void shouldBindNullClassLoaderAsSystem() {
+        final DefaultListableBeanFactory beanFactory = new DefaultListableBeanFactory();
+        with(beanFactory).bind(Bob.class, null);
+
+        assertThat(beanFactory.getBeanNamesForType(Bob.class).length, is(not(equalTo(0))));
+    }
+
+    @Test
+    public void shouldDiscoverSharedConfigurationsWithParentFirst()
+            throws IOException {
+        final ClassLoader parent = new URLClassLoader(
+                new URL[]{shaded(Nancy.class.getName())}, getClass().getClassLoader());
+        final ClassLoader child = new URLClassLoader(new URL[0], parent);
+        final Map<ClassLoader, Integer> discovered = new HashMap<ClassLoader, Integer>();
+        final ServiceListener listener = new ServiceListener() {
+            @Override
+            public void discovered(@Nonnull final Class<?> service,
+                    @Nonnull final ClassLoader classLoader, final int configurations,
+                    final int providers, final long nanos) {
+                discovered.put(classLoader, configurations);
+            }
+        };
+        ServiceListener.add(listener);
+        try {
+            with(new DefaultListableBeanFactory()).bindAcross(Bob.class, child, parent);
+        } finally {
+            ServiceListener.remove(listener);
+        }
+
+        assertThat(discovered.get(parent), is(not(equalTo(0))));
+        assertThat(discovered.get(child), is(equalTo(0)));
+    }
+
     @Test
     public void shouldConstructorInjectServicesWithSpring() {
         assertThat(spring().getBean(Nancy.class).catName, is(equalTo("Felix")));
@@ -123,11 +987,17 @@ public final class ServiceBinderTest {
 
     public interface Bob {}
 
+    /** Marks implementations chosen by filters, read from the class file. */
+    @Retention(CLASS)
+    public @interface Chosen {}
+
+    @Chosen
     @MetaInfServices
     public static final class Fred
             implements Bob {}
 
     @MetaInfServices
+    @ServicePriority(1)
     public static final class Nancy
             implements Bob {
         private final String catName;
@@ -147,6 +1017,13 @@ public final class ServiceBinderTest {
         }
     }
 
+    public interface Cow {}
+
+    @MetaInfServices
+    @Singleton
+    public static final class Bessie
+            implements Cow {}
+
     @MetaInfServices(Module.class)
     public static final class TestModule
             extends AbstractModule {
@@ -159,10 +1036,148 @@ public final class ServiceBinderTest {
         }
     }
 
+    /** Records the names of classes asked of it, delegating to the test class loader. */
+    private static final class RecordingClassLoader
+            extends ClassLoader {
+        private final Set<String> loaded = synchronizedSet(new HashSet<String>());
+
+        private RecordingClassLoader() {
+            super(ServiceBinderTest.class.getClassLoader());
+        }
+
+        @Override
+        protected Class<?> loadClass(final String name, final boolean resolve)
+                throws ClassNotFoundException {
+            loaded.add(name);
+            return super.loadClass(name, resolve);
+        }
+    }
+
+    /** Records implementations warmed up, and how many were constructed. */
+    private static final class WarmedUp
+            implements ServiceWarmUp.Hook {
+        private final Set<Class<? extends Bob>> implementations
+                = synchronizedSet(new HashSet<Class<? extends Bob>>());
+        private final AtomicInteger instances = new AtomicInteger();
+
+        @Override
+        public void warmUp(final Class<?> implementation, final Object instance) {
+            implementations.add(implementation.asSubclass(Bob.class));
+            if (null != instance)
+                instances.incrementAndGet();
+        }
+    }
+
+    /** Creates a classpath root configuring <var>implementation</var> as a {@code Bob}. */
+    private URL shaded(final String implementation)
+            throws IOException {
+        final File root = temp.newFolder();
+        final File config = new File(root, "META-INF/services/" + Bob.class.getName());
+        config.getParentFile().mkdirs();
+        final FileOutputStream out = new FileOutputStream(config);
+        try {
+            out.write((implementation + "\n").getBytes("UTF-8"));
+        } finally {
+            out.close();
+        }
+        return root.toURI().toURL();
+    }
+
+    /** Binds services with a configured service binder. */
+    private interface Binding {
+        void bind(final ServiceBinder<?> binder);
+    }
+
+    private static String failure(final ServiceBinder<?> binder, final ClassLoader loader) {
+        try {
+            binder.bind(Bob.class, loader);
+            throw new AssertionError("Did not fail");
+        } catch (final ServiceConfigurationError e) {
+            return e.getMessage();
+        }
+    }
+
+    private static Set<Class<? extends Bob>> expected() {
+        final Set<Class<? extends Bob>> expected = new HashSet<Class<? extends Bob>>();
+        expected.add(Fred.class);
+        expected.add(Nancy.class);
+        return expected;
+    }
+
+    private static Nancy nancy(final Injector injector) {
+        for (final Bob bob : injector.getInstance(Key.get(new TypeLiteral<Set<Bob>>() {})))
+            if (bob instanceof Nancy)
+                return (Nancy) bob;
+        throw new AssertionError("No Nancy");
+    }
+
+    private static Nancy nancy(final ServiceInjector injector) {
+        for (final Bob bob : injector.getInstances(Bob.class))
+            if (bob instanceof Nancy)
+                return (Nancy) bob;
+        throw new AssertionError("No Nancy");
+    }
+
+    private static ServiceInjector injector(final Binding binding) {
+        final ServiceInjector injector = new ServiceInjector();
+        injector.bindInstance(String.class, "cat-name", "Felix");
+        injector.bindInstance(String.class, "nick-name", "Fancy");
+        injector.bindInstance(String.class, "favorite-color", "White");
+        binding.bind(with(injector));
+        injector.start();
+        return injector;
+    }
+
     private static Injector guice() {
         return createInjector(new TestModule());
     }
 
+    private static Injector guice(final Binding binding) {
+        return createInjector(new AbstractModule() {
+            @Override
+            protected void configure() {
+                bindConstant().annotatedWith(named("cat-name")).to("Felix");
+                bindConstant().annotatedWith(named("nick-name")).to("Fancy");
+                bindConstant().annotatedWith(named("favorite-color")).to("White");
+                binding.bind(with(binder()));
+            }
+        });
+    }
+
+    private static ApplicationContext spring(final Binding binding) {
+        final AnnotationConfigApplicationContext context = new AnnotationConfigApplicationContext();
+        context.register(Dependencies.class);
+        binding.bind(with(context));
+        context.refresh();
+        return context;
+    }
+
+    private static ServicePlan plan(final Binding binding) {
+        final ServicePlan.Builder builder = new ServicePlan.Builder();
+        binding.bind(with(builder));
+        return builder.build();
+    }
+
+    private static Injector guice(final ServicePlan plan) {
+        return createInjector(new AbstractModule() {
+            @Override
+            protected void configure() {
+                bindConstant().annotatedWith(named("cat-name")).to("Felix");
+                bindConstant().annotatedWith(named("nick-name")).to("Fancy");
+                bindConstant().annotatedWith(named("favorite-color")).to("White");
+                plan.bindTo(binder());
+            }
+        });
+    }
+
+    private static AnnotationConfigApplicationContext spring(final ServicePlan plan) {
+        final AnnotationConfigApplicationContext context = new AnnotationConfigApplicationContext();
+        context.register(Dependencies.class);
+        plan.bindTo(context);
+        context.refresh();
+        return context;
+    }
+
     private static ApplicationContext spring() {
         final AnnotationConfigApplicationContext context = new AnnotationConfigApplicationContext();
         context.register(Dependencies.class);
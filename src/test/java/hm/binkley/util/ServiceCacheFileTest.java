@@ -0,0 +1,162 @@
+/*
+ * This is free and unencumbered software released into the public domain.
+ *
+ * Anyone is free to copy, modify, publish, use, compile, sell, or
+ * distribute this software, either in source code form or as a compiled
+ * binary, for any purpose, commercial or non-commercial, and by any
+ * means.
+ *
+ * In jurisdictions that recognize copyright laws, the author or authors
+ * of this software dedicate any and all copyright interest in the
+ * software to the public domain. We make this dedication for the benefit
+ * of the public at large and to the detriment of our heirs and
+ * successors. We intend this dedication to be an overt act of
+ * relinquishment in perpetuity of all present and future rights to this
+ * software under copyright law.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY CLAIM, DAMAGES OR
+ * OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ * ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ *
+ * For more information, please refer to <http://unlicense.org/>.
+ */
+
+package hm.binkley.util;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.util.List;
+import java.util.jar.JarOutputStream;
+import java.util.zip.ZipEntry;
+
+import static java.util.Arrays.asList;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.notNullValue;
+import static org.hamcrest.Matchers.nullValue;
+import static org.junit.Assert.assertThat;
+
+/**
+ * {@code ServiceCacheFileTest} tests {@link ServiceCacheFile}.
+ *
+ * @author <a href="mailto:binkley@alumni.rice.edu">B. K. Oxley (binkley)</a>
+ */
+public final class ServiceCacheFileTest {
+    @Rule
+    public final TemporaryFolder temp = new TemporaryFolder();
+
+    @Test
+    public void shouldPersistScans()
+            throws IOException {
+        final File jar = jar("a.One");
+        final File file = new File(temp.getRoot(), "services.cache");
+        scan(jar, file);
+
+        final ServiceCacheFile.Jar cached = ServiceCacheFile.read(file).get(jar);
+
+        assertThat(cached, is(notNullValue()));
+        assertThat(cached.services.get("a.Service"), is(equalTo(asList("a.One"))));
+    }
+
+    @Test
+    public void shouldReuseUnchangedScans()
+            throws IOException {
+        final File jar = jar("a.One");
+        final File file = new File(temp.getRoot(), "services.cache");
+        scan(jar, file);
+        corruptKeepingFingerprint(jar);
+
+        assertThat(implementations(ServiceDiscovery.scan(loader(jar), ServiceCacheFile.read(file))),
+                is(equalTo(asList("a.One"))));
+    }
+
+    @Test
+    public void shouldRescanChangedJars()
+            throws IOException {
+        final File jar = jar("a.One");
+        final File file = new File(temp.getRoot(), "services.cache");
+        scan(jar, file);
+        rewrite(jar, "a.One", "a.Two");
+
+        assertThat(implementations(ServiceDiscovery.scan(loader(jar), ServiceCacheFile.read(file))),
+                is(equalTo(asList("a.One", "a.Two"))));
+    }
+
+    @Test
+    public void shouldIgnoreCorruptFiles()
+            throws IOException {
+        final File file = temp.newFile("services.cache");
+        final FileOutputStream out = new FileOutputStream(file);
+        try {
+            out.write(new byte[]{'S', 'B', 'C', 'F', 0, 1, 0, 0, 0, 9});
+        } finally {
+            out.close();
+        }
+
+        assertThat(ServiceCacheFile.read(file).get(jar("a.One")), is(nullValue()));
+    }
+
+    private static void scan(final File jar, final File file)
+            throws IOException {
+        final ServiceCacheFile store = ServiceCacheFile.read(file);
+        ServiceDiscovery.scan(loader(jar), store);
+        store.write();
+    }
+
+    /** Not a jar anymore - found only if the cache is used. */
+    private static void corruptKeepingFingerprint(final File jar)
+            throws IOException {
+        final long lastModified = jar.lastModified();
+        final RandomAccessFile raf = new RandomAccessFile(jar, "rw");
+        try {
+            raf.write(new byte[(int) raf.length()]);
+        } finally {
+            raf.close();
+        }
+        jar.setLastModified(lastModified);
+    }
+
+    private static List<String> implementations(final ServiceDiscovery discovery) {
+        final List<ServiceConfiguration> configurations = discovery.configurations("a.Service");
+        assertThat(configurations.size(), is(equalTo(1)));
+        return configurations.get(0).implementations;
+    }
+
+    private static ClassLoader loader(final File jar)
+            throws IOException {
+        return new URLClassLoader(new URL[]{jar.toURI().toURL()}, null);
+    }
+
+    private File jar(final String... implementations)
+            throws IOException {
+        final File jar = temp.newFile();
+        rewrite(jar, implementations);
+        return jar;
+    }
+
+    private static void rewrite(final File jar, final String... implementations)
+            throws IOException {
+        final JarOutputStream out = new JarOutputStream(new FileOutputStream(jar));
+        try {
+            out.putNextEntry(new ZipEntry("META-INF/services/a.Service"));
+            for (final String implementation : implementations)
+                out.write((implementation + "\n").getBytes("UTF-8"));
+            out.closeEntry();
+        } finally {
+            out.close();
+        }
+        jar.setLastModified(jar.lastModified() + 2000);
+    }
+}
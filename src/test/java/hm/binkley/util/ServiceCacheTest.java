@@ -0,0 +1,135 @@
+/*
+ * This is free and unencumbered software released into the public domain.
+ *
+ * Anyone is free to copy, modify, publish, use, compile, sell, or
+ * distribute this software, either in source code form or as a compiled
+ * binary, for any purpose, commercial or non-commercial, and by any
+ * means.
+ *
+ * In jurisdictions that recognize copyright laws, the author or authors
+ * of this software dedicate any and all copyright interest in the
+ * software to the public domain. We make this dedication for the benefit
+ * of the public at large and to the detriment of our heirs and
+ * successors. We intend this dedication to be an overt act of
+ * relinquishment in perpetuity of all present and future rights to this
+ * software under copyright law.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY CLAIM, DAMAGES OR
+ * OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ * ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ *
+ * For more information, please refer to <http://unlicense.org/>.
+ */
+
+package hm.binkley.util;
+
+import org.junit.Test;
+import org.springframework.beans.factory.support.DefaultListableBeanFactory;
+
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+import static hm.binkley.util.ServiceBinder.with;
+import static java.util.concurrent.Executors.newFixedThreadPool;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.greaterThan;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.not;
+import static org.hamcrest.Matchers.sameInstance;
+import static org.junit.Assert.assertThat;
+
+/**
+ * {@code ServiceCacheTest} tests {@link ServiceCache}.
+ *
+ * @author <a href="mailto:binkley@alumni.rice.edu">B. K. Oxley (binkley)</a>
+ */
+public final class ServiceCacheTest {
+    @Test
+    public void shouldCacheConfigurations() {
+        final ClassLoader loader = loader();
+
+        assertThat(ServiceCache.configurations(ServiceBinderTest.Bob.class, loader),
+                is(sameInstance(
+                        ServiceCache.configurations(ServiceBinderTest.Bob.class, loader))));
+    }
+
+    @Test
+    public void shouldCountHits() {
+        final ClassLoader loader = loader();
+        ServiceCache.configurations(ServiceBinderTest.Bob.class, loader);
+        final long hits = ServiceCache.statistics().hits();
+
+        ServiceCache.configurations(ServiceBinderTest.Bob.class, loader);
+
+        assertThat(ServiceCache.statistics().hits(), is(greaterThan(hits)));
+    }
+
+    @Test
+    public void shouldInvalidate() {
+        final ClassLoader loader = loader();
+        final List<ServiceConfiguration> configurations = ServiceCache
+                .configurations(ServiceBinderTest.Bob.class, loader);
+
+        ServiceCache.invalidate(loader);
+
+        assertThat(ServiceCache.configurations(ServiceBinderTest.Bob.class, loader),
+                is(not(sameInstance(configurations))));
+    }
+
+    @Test
+    public void shouldDiscoverOnceConcurrently()
+            throws Exception {
+        final ClassLoader loader = loader();
+        final int threads = 8;
+        final CountDownLatch start = new CountDownLatch(1);
+        final ExecutorService pool = newFixedThreadPool(threads);
+        try {
+            final List<Future<List<ServiceConfiguration>>> found
+                    = new ArrayList<Future<List<ServiceConfiguration>>>();
+            for (int i = 0; i < threads; ++i)
+                found.add(pool.submit(new Callable<List<ServiceConfiguration>>() {
+                    @Override
+                    public List<ServiceConfiguration> call()
+                            throws InterruptedException {
+                        start.await();
+                        return ServiceCache
+                                .configurations(ServiceBinderTest.Bob.class, loader);
+                    }
+                }));
+            start.countDown();
+
+            for (final Future<List<ServiceConfiguration>> each : found)
+                assertThat(each.get(), is(sameInstance(found.get(0).get())));
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    public void shouldRememberResolvedClasses() {
+        final ClassLoader loader = loader();
+
+        with(new DefaultListableBeanFactory()).bind(ServiceBinderTest.Bob.class, loader);
+
+        int resolved = 0;
+        for (final ServiceConfiguration configuration : ServiceCache
+                .configurations(ServiceBinderTest.Bob.class, loader))
+            resolved += configuration.resolved();
+        assertThat(resolved, is(equalTo(2)));
+    }
+
+    /** A fresh class loader, delegating all lookups, so as to start with an empty cache. */
+    private static ClassLoader loader() {
+        return new URLClassLoader(new URL[0], ServiceCacheTest.class.getClassLoader());
+    }
+}
@@ -0,0 +1,138 @@
+/*
+ * This is free and unencumbered software released into the public domain.
+ *
+ * Anyone is free to copy, modify, publish, use, compile, sell, or
+ * distribute this software, either in source code form or as a compiled
+ * binary, for any purpose, commercial or non-commercial, and by any
+ * means.
+ *
+ * In jurisdictions that recognize copyright laws, the author or authors
+ * of this software dedicate any and all copyright interest in the
+ * software to the public domain. We make this dedication for the benefit
+ * of the public at large and to the detriment of our heirs and
+ * successors. We intend this dedication to be an overt act of
+ * relinquishment in perpetuity of all present and future rights to this
+ * software under copyright law.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY CLAIM, DAMAGES OR
+ * OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ * ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ *
+ * For more information, please refer to <http://unlicense.org/>.
+ */
+
+package hm.binkley.util;
+
+import hm.binkley.util.ServiceBinderTest.Bob;
+import hm.binkley.util.ServiceBinderTest.Nancy;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.springframework.beans.factory.support.DefaultListableBeanFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+
+import static hm.binkley.util.ServiceBinder.with;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.hasItem;
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+
+/**
+ * {@code ServiceClassListTest} tests {@link ServiceClassList}.
+ *
+ * @author <a href="mailto:binkley@alumni.rice.edu">B. K. Oxley (binkley)</a>
+ */
+public final class ServiceClassListTest {
+    @Rule
+    public final TemporaryFolder temp = new TemporaryFolder();
+    @Rule
+    public final ConfiguredLoaders loaders = new ConfiguredLoaders();
+
+    private final ServiceClassList classList = new ServiceClassList();
+
+    @Before
+    public void setUp() {
+        ServiceListener.add(classList);
+    }
+
+    @After
+    public void tearDown() {
+        ServiceListener.remove(classList);
+    }
+
+    @Test
+    public void shouldListServiceThenImplementations()
+            throws IOException {
+        with(new DefaultListableBeanFactory()).bind(Bob.class, loader());
+
+        final List<String> lines = lines();
+        assertThat(lines.get(0), is(equalTo("hm/binkley/util/ServiceBinderTest$Bob")));
+        assertThat(lines, hasItem("hm/binkley/util/ServiceBinderTest$Nancy"));
+    }
+
+    @Test
+    public void shouldListClassesOnce()
+            throws IOException {
+        with(new DefaultListableBeanFactory()).bind(Bob.class, loader());
+        with(new DefaultListableBeanFactory()).bind(Bob.class, loader());
+
+        final List<String> lines = lines();
+        assertThat(new HashSet<String>(lines).size(), is(equalTo(lines.size())));
+    }
+
+    @Test
+    public void shouldWriteClassListFile()
+            throws IOException {
+        with(new DefaultListableBeanFactory()).bind(Bob.class, loader());
+        final File file = temp.newFile("app.classlist");
+        classList.write(file);
+
+        assertThat(file.length(), is(equalTo((long) text().length())));
+    }
+
+    @Test
+    public void shouldNotRecordClassesOfOtherLoaders()
+            throws Exception {
+        final URL classes = Nancy.class.getProtectionDomain().getCodeSource().getLocation();
+        final URLClassLoader other = new URLClassLoader(new URL[]{classes}, null);
+        try {
+            final Class<?> nancy = other.loadClass(Nancy.class.getName());
+            classList.loaded(Bob.class, classes, nancy, 0L);
+
+            assertThat(classList.classes().contains(nancy), is(false));
+        } finally {
+            other.close();
+        }
+    }
+
+    private ClassLoader loader()
+            throws IOException {
+        return loaders.loader(Bob.class, Nancy.class.getName());
+    }
+
+    private List<String> lines()
+            throws IOException {
+        return Arrays.asList(text().split("\n"));
+    }
+
+    private String text()
+            throws IOException {
+        final StringWriter writer = new StringWriter();
+        classList.write(writer);
+        return writer.toString();
+    }
+}
@@ -0,0 +1,93 @@
+/*
+ * This is free and unencumbered software released into the public domain.
+ *
+ * Anyone is free to copy, modify, publish, use, compile, sell, or
+ * distribute this software, either in source code form or as a compiled
+ * binary, for any purpose, commercial or non-commercial, and by any
+ * means.
+ *
+ * In jurisdictions that recognize copyright laws, the author or authors
+ * of this software dedicate any and all copyright interest in the
+ * software to the public domain. We make this dedication for the benefit
+ * of the public at large and to the detriment of our heirs and
+ * successors. We intend this dedication to be an overt act of
+ * relinquishment in perpetuity of all present and future rights to this
+ * software under copyright law.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY CLAIM, DAMAGES OR
+ * OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ * ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ *
+ * For more information, please refer to <http://unlicense.org/>.
+ */
+
+package hm.binkley.util;
+
+import org.junit.Test;
+
+import java.nio.file.spi.FileSystemProvider;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static java.util.Arrays.asList;
+import static org.hamcrest.Matchers.empty;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+
+/**
+ * {@code ServiceDiscoveryTest} tests {@link ServiceDiscovery}.
+ *
+ * @author <a href="mailto:binkley@alumni.rice.edu">B. K. Oxley (binkley)</a>
+ */
+public final class ServiceDiscoveryTest {
+    private static final ClassLoader LOADER = ServiceDiscoveryTest.class.getClassLoader();
+
+    @Test
+    public void shouldScanCompletely() {
+        assertThat(ServiceDiscovery.scan(LOADER).complete(), is(true));
+    }
+
+    @Test
+    public void shouldScanAsLookup() {
+        final Class<ServiceBinderTest.Bob> service = ServiceBinderTest.Bob.class;
+
+        assertThat(names(ServiceDiscovery.scan(LOADER).configurations(service.getName())),
+                is(equalTo(names(ServiceDiscovery.configurations(service, LOADER,
+                        ServiceDiscovery.indices(service, LOADER))))));
+    }
+
+    @Test
+    public void shouldScanImplementations() {
+        assertThat(implementations(ServiceDiscovery.scan(LOADER)
+                        .configurations(ServiceBinderTest.Bob.class.getName())),
+                is(equalTo(asList(ServiceBinderTest.Fred.class.getName(),
+                        ServiceBinderTest.Nancy.class.getName()))));
+    }
+
+    @Test
+    public void shouldNotDiscoverRuntimeModuleProviders() {
+        assertThat(ServiceModules.configurations(FileSystemProvider.class.getName(), LOADER,
+                Collections.<String>emptyList()), is(empty()));
+    }
+
+    private static List<String> names(final List<ServiceConfiguration> configurations) {
+        final List<String> names = new ArrayList<String>();
+        for (final ServiceConfiguration configuration : configurations)
+            names.add(configuration.url.toExternalForm());
+        return names;
+    }
+
+    private static List<String> implementations(
+            final List<ServiceConfiguration> configurations) {
+        final List<String> implementations = new ArrayList<String>();
+        for (final ServiceConfiguration configuration : configurations)
+            implementations.addAll(configuration.implementations);
+        return implementations;
+    }
+}
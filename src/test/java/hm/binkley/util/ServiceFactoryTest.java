@@ -0,0 +1,116 @@
+/*
+ * This is free and unencumbered software released into the public domain.
+ *
+ * Anyone is free to copy, modify, publish, use, compile, sell, or
+ * distribute this software, either in source code form or as a compiled
+ * binary, for any purpose, commercial or non-commercial, and by any
+ * means.
+ *
+ * In jurisdictions that recognize copyright laws, the author or authors
+ * of this software dedicate any and all copyright interest in the
+ * software to the public domain. We make this dedication for the benefit
+ * of the public at large and to the detriment of our heirs and
+ * successors. We intend this dedication to be an overt act of
+ * relinquishment in perpetuity of all present and future rights to this
+ * software under copyright law.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY CLAIM, DAMAGES OR
+ * OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ * ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ *
+ * For more information, please refer to <http://unlicense.org/>.
+ */
+
+package hm.binkley.util;
+
+import org.junit.Test;
+
+import java.lang.reflect.InvocationTargetException;
+
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.instanceOf;
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+
+/**
+ * {@code ServiceFactoryTest} tests {@link ServiceFactory}.
+ *
+ * @author <a href="mailto:binkley@alumni.rice.edu">B. K. Oxley (binkley)</a>
+ */
+public final class ServiceFactoryTest {
+    @Test
+    public void shouldConstructWithArguments()
+            throws NoSuchMethodException, InvocationTargetException {
+        final ServiceFactory<Pair> factory = new ServiceFactory<Pair>(
+                Pair.class.getDeclaredConstructor(String.class, int.class));
+
+        final Pair pair = factory.create("Felix", 3);
+
+        assertThat(pair.name, is(equalTo("Felix")));
+        assertThat(pair.count, is(equalTo(3)));
+    }
+
+    @Test
+    public void shouldWrapConstructorExceptions()
+            throws NoSuchMethodException {
+        final ServiceFactory<Pair> factory = new ServiceFactory<Pair>(
+                Pair.class.getDeclaredConstructor());
+
+        try {
+            factory.create();
+            fail("Did not throw");
+        } catch (final InvocationTargetException e) {
+            assertThat(e.getCause(), is(instanceOf(IllegalStateException.class)));
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void shouldRejectMissingPrimitiveArguments()
+            throws NoSuchMethodException, InvocationTargetException {
+        new ServiceFactory<Pair>(Pair.class.getDeclaredConstructor(String.class, int.class))
+                .create("Felix", null);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void shouldRejectMistypedArguments()
+            throws NoSuchMethodException, InvocationTargetException {
+        new ServiceFactory<Pair>(Pair.class.getDeclaredConstructor(String.class, int.class))
+                .create(3, "Felix");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void shouldRejectWrongArgumentCount()
+            throws NoSuchMethodException, InvocationTargetException {
+        new ServiceFactory<Pair>(Pair.class.getDeclaredConstructor(String.class, int.class))
+                .create("Felix");
+    }
+
+    @Test(expected = AssertionError.class)
+    public void shouldNotWrapErrors()
+            throws NoSuchMethodException, InvocationTargetException {
+        new ServiceFactory<Pair>(Pair.class.getDeclaredConstructor(boolean.class)).create(true);
+    }
+
+    private static final class Pair {
+        private final String name;
+        private final int count;
+
+        private Pair(final String name, final int count) {
+            this.name = name;
+            this.count = count;
+        }
+
+        private Pair() {
+            throw new IllegalStateException("No pair");
+        }
+
+        private Pair(final boolean fail) {
+            throw new AssertionError("No pair");
+        }
+    }
+}
@@ -0,0 +1,219 @@
+/*
+ * This is free and unencumbered software released into the public domain.
+ *
+ * Anyone is free to copy, modify, publish, use, compile, sell, or
+ * distribute this software, either in source code form or as a compiled
+ * binary, for any purpose, commercial or non-commercial, and by any
+ * means.
+ *
+ * In jurisdictions that recognize copyright laws, the author or authors
+ * of this software dedicate any and all copyright interest in the
+ * software to the public domain. We make this dedication for the benefit
+ * of the public at large and to the detriment of our heirs and
+ * successors. We intend this dedication to be an overt act of
+ * relinquishment in perpetuity of all present and future rights to this
+ * software under copyright law.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY CLAIM, DAMAGES OR
+ * OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ * ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ *
+ * For more information, please refer to <http://unlicense.org/>.
+ */
+
+package hm.binkley.util;
+
+import com.google.inject.Guice;
+import com.google.inject.Injector;
+import com.google.inject.Key;
+import com.google.inject.Module;
+import com.google.inject.util.Types;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import javax.tools.JavaCompiler;
+import javax.tools.ToolProvider;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static java.util.Arrays.asList;
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.not;
+import static org.hamcrest.Matchers.notNullValue;
+import static org.hamcrest.Matchers.nullValue;
+import static org.hamcrest.Matchers.sameInstance;
+import static org.junit.Assert.assertThat;
+
+/**
+ * {@code ServiceIndexTest} tests {@link ServiceIndex} and {@link ServiceIndexProcessor}.
+ *
+ * @author <a href="mailto:binkley@alumni.rice.edu">B. K. Oxley (binkley)</a>
+ */
+public final class ServiceIndexTest {
+    @Rule
+    public final TemporaryFolder temp = new TemporaryFolder();
+
+    @Test
+    public void shouldRoundTrip()
+            throws IOException {
+        final Map<String, List<String>> services = new LinkedHashMap<String, List<String>>();
+        services.put("a.Service", asList("a.One", "a.Two"));
+        services.put("b.Service", Arrays.<String>asList());
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        new ServiceIndex(services).write(out);
+
+        final ServiceIndex index = ServiceIndex
+                .read(new ByteArrayInputStream(out.toByteArray()));
+
+        assertThat(index.implementations("a.Service"), is(equalTo(asList("a.One", "a.Two"))));
+        assertThat(index.implementations("b.Service"), is(equalTo(Arrays.<String>asList())));
+        assertThat(index.implementations("c.Service"), is(nullValue()));
+    }
+
+    @Test
+    public void shouldIgnoreOtherVersions()
+            throws IOException {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        new ServiceIndex(new LinkedHashMap<String, List<String>>()).write(out);
+        final byte[] bytes = out.toByteArray();
+        bytes[5] = (byte) (ServiceIndex.VERSION + 1);
+
+        assertThat(ServiceIndex.read(new ByteArrayInputStream(bytes)), is(nullValue()));
+    }
+
+    @Test
+    public void shouldIndexMetaInfServices()
+            throws IOException {
+        final URL resource = getClass().getClassLoader().getResource(ServiceIndex.NAME);
+        assertThat(resource, is(notNullValue()));
+
+        final ServiceIndex index = ServiceIndex.read(resource.openStream());
+
+        assertThat(index.implementations(ServiceBinderTest.Bob.class.getName()),
+                is(equalTo(asList(ServiceBinderTest.Fred.class.getName(),
+                        ServiceBinderTest.Nancy.class.getName()))));
+        assertThat(index.implementations(Module.class.getName()),
+                is(equalTo(asList(ServiceBinderTest.TestModule.class.getName()))));
+    }
+
+    @Test
+    public void shouldIndexInConfigurationOrder()
+            throws IOException {
+        final File sources = temp.newFolder();
+        final File classes = temp.newFolder();
+        write(new File(classes, "META-INF/services/b.Service"), "b.Zebra\nb.Aardvark\n");
+        write(new File(sources, "b/Service.java"), "package b; public interface Service {}");
+        write(new File(sources, "b/Mouse.java"), "package b; "
+                + "@org.kohsuke.MetaInfServices public class Mouse implements Service {}");
+        write(new File(sources, "b/Cat.java"), "package b; "
+                + "@org.kohsuke.MetaInfServices public class Cat implements Service {}");
+        final String classPath = System.getProperty("java.class.path");
+        final JavaCompiler javac = ToolProvider.getSystemJavaCompiler();
+
+        assertThat(javac.run(null, null, null, "-classpath", classPath, "-processorpath",
+                classPath, "-processor", ServiceIndexProcessor.class.getName(), "-d",
+                classes.getPath(), new File(sources, "b/Service.java").getPath(),
+                new File(sources, "b/Mouse.java").getPath(),
+                new File(sources, "b/Cat.java").getPath()), is(equalTo(0)));
+
+        final FileInputStream in = new FileInputStream(new File(classes, ServiceIndex.NAME));
+        try {
+            assertThat(ServiceIndex.read(in).implementations("b.Service"),
+                    is(equalTo(asList("b.Zebra", "b.Aardvark", "b.Mouse", "b.Cat"))));
+        } finally {
+            in.close();
+        }
+    }
+
+    @Test
+    public void shouldKeepScopeInGeneratedModule()
+            throws Exception {
+        final File sources = temp.newFolder();
+        final File classes = temp.newFolder();
+        write(new File(sources, "c/Service.java"), "package c; public interface Service {}");
+        write(new File(sources, "c/Cow.java"), "package c; @javax.inject.Singleton "
+                + "@org.kohsuke.MetaInfServices public class Cow implements Service {}");
+
+        assertThat(compile(classes, null, "c.Bindings", new File(sources, "c/Service.java"),
+                new File(sources, "c/Cow.java")), is(equalTo(0)));
+
+        final URLClassLoader loader = new URLClassLoader(new URL[]{classes.toURI().toURL()},
+                getClass().getClassLoader());
+        try {
+            final Injector injector = Guice.createInjector(
+                    (Module) loader.loadClass("c.BindingsModule").newInstance());
+            final Key<?> key = Key.get(Types.setOf(loader.loadClass("c.Service")));
+            assertThat(((Set<?>) injector.getInstance(key)).iterator().next(),
+                    is(sameInstance(((Set<?>) injector.getInstance(key)).iterator().next())));
+        } finally {
+            loader.close();
+        }
+    }
+
+    @Test
+    public void shouldRejectCheckedExceptionsInGeneratedBindings()
+            throws IOException {
+        final File sources = temp.newFolder();
+        final File classes = temp.newFolder();
+        write(new File(sources, "d/Service.java"), "package d; public interface Service {}");
+        write(new File(sources, "d/Bull.java"), "package d; @org.kohsuke.MetaInfServices "
+                + "public class Bull implements Service { public Bull() throws Exception {} }");
+        final ByteArrayOutputStream err = new ByteArrayOutputStream();
+
+        assertThat(compile(classes, err, "d.Bindings", new File(sources, "d/Service.java"),
+                new File(sources, "d/Bull.java")), is(not(equalTo(0))));
+        assertThat(err.toString("UTF-8"),
+                containsString("Cannot construct with checked exceptions: d.Bull"));
+    }
+
+    @Test
+    public void shouldFindRoot()
+            throws IOException {
+        assertThat(ServiceIndex.root(new URL("jar:file:/a.jar!/" + ServiceIndex.NAME),
+                ServiceIndex.NAME), is(equalTo("jar:file:/a.jar!/")));
+    }
+
+    private static int compile(final File classes, final OutputStream err,
+            final String bindings, final File... sources) {
+        final String classPath = System.getProperty("java.class.path");
+        final List<String> arguments = new ArrayList<String>(asList("-classpath", classPath,
+                "-processorpath", classPath, "-processor", ServiceIndexProcessor.class.getName(),
+                "-A" + ServiceIndexProcessor.class.getName() + ".bindings=" + bindings, "-d",
+                classes.getPath()));
+        for (final File source : sources)
+            arguments.add(source.getPath());
+        return ToolProvider.getSystemJavaCompiler()
+                .run(null, null, err, arguments.toArray(new String[arguments.size()]));
+    }
+
+    private static void write(final File file, final String contents)
+            throws IOException {
+        file.getParentFile().mkdirs();
+        final OutputStream out = new FileOutputStream(file);
+        try {
+            out.write(contents.getBytes("UTF-8"));
+        } finally {
+            out.close();
+        }
+    }
+}
@@ -0,0 +1,227 @@
+/*
+ * This is free and unencumbered software released into the public domain.
+ *
+ * Anyone is free to copy, modify, publish, use, compile, sell, or
+ * distribute this software, either in source code form or as a compiled
+ * binary, for any purpose, commercial or non-commercial, and by any
+ * means.
+ *
+ * In jurisdictions that recognize copyright laws, the author or authors
+ * of this software dedicate any and all copyright interest in the
+ * software to the public domain. We make this dedication for the benefit
+ * of the public at large and to the detriment of our heirs and
+ * successors. We intend this dedication to be an overt act of
+ * relinquishment in perpetuity of all present and future rights to this
+ * software under copyright law.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY CLAIM, DAMAGES OR
+ * OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ * ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ *
+ * For more information, please refer to <http://unlicense.org/>.
+ */
+
+package hm.binkley.util;
+
+import org.junit.Test;
+
+import javax.inject.Inject;
+import javax.inject.Named;
+import javax.inject.Provider;
+import javax.inject.Singleton;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.ServiceConfigurationError;
+import java.util.Set;
+
+import static java.util.Arrays.asList;
+import static org.hamcrest.Matchers.containsInAnyOrder;
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.not;
+import static org.hamcrest.Matchers.notNullValue;
+import static org.hamcrest.Matchers.sameInstance;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+
+/**
+ * {@code ServiceInjectorTest} tests {@link ServiceInjector}.
+ *
+ * @author <a href="mailto:binkley@alumni.rice.edu">B. K. Oxley (binkley)</a>
+ */
+public final class ServiceInjectorTest {
+    private final ServiceInjector injector = new ServiceInjector();
+
+    @Test
+    public void shouldInjectSupertypesFirst() {
+        injector.bindInstance(String.class, "color", "White");
+
+        final Kitten kitten = injector.getInstance(Kitten.class);
+
+        assertThat(kitten.order, is(equalTo(asList("Cat: White", "Kitten: White"))));
+    }
+
+    @Test
+    public void shouldInjectOverriddenMethodsOnce() {
+        injector.bindInstance(String.class, "color", "White");
+
+        final Kitten kitten = injector.getInstance(Kitten.class);
+
+        assertThat(kitten.overridden, is(equalTo(1)));
+    }
+
+    @Test
+    public void shouldInjectProvidersAndSets() {
+        injector.bindInstance(String.class, "color", "White");
+        injector.bindInstance(Integer.class, "lives", 9);
+        injector.add(Cat.class, injector.getProvider(Cat.class));
+        injector.add(Cat.class, injector.getProvider(Kitten.class));
+
+        final Owner owner = injector.getInstance(Owner.class);
+
+        assertThat(owner.color.get(), is(equalTo("White")));
+        assertThat(owner.cats.size(), is(equalTo(2)));
+        assertThat(owner.lives, is(equalTo(9)));
+    }
+
+    @Test
+    public void shouldHonorSingletonAnnotation() {
+        assertThat(injector.getInstance(Litter.class),
+                is(sameInstance(injector.getInstance(Litter.class))));
+    }
+
+    @Test
+    public void shouldNotShareUnscopedInstances() {
+        injector.bindInstance(String.class, "color", "White");
+
+        assertThat(injector.getInstance(Cat.class),
+                is(not(sameInstance(injector.getInstance(Cat.class)))));
+    }
+
+    @Test
+    public void shouldRunStartActionsInOrder() {
+        final List<String> started = new ArrayList<String>();
+        injector.onStart(new Runnable() {
+            @Override
+            public void run() {
+                started.add("first");
+            }
+        });
+        injector.onStart(new Runnable() {
+            @Override
+            public void run() {
+                started.add("second");
+            }
+        });
+        injector.start();
+
+        assertThat(started, containsInAnyOrder("first", "second"));
+        assertThat(started.get(0), is(equalTo("first")));
+    }
+
+    @Test(expected = ServiceConfigurationError.class)
+    public void shouldFailOnMissingNamedBinding() {
+        injector.getInstance(Cat.class);
+    }
+
+    @Test(expected = ServiceConfigurationError.class)
+    public void shouldFailOnDuplicateBinding() {
+        injector.bindInstance(String.class, "color", "White");
+        injector.bindInstance(String.class, "color", "Black");
+    }
+
+    @Test
+    public void shouldFailOnCircularDependencyNamingCycle() {
+        try {
+            injector.getInstance(Chicken.class);
+            fail("Expected circular dependency");
+        } catch (final ServiceConfigurationError e) {
+            assertThat(e.getMessage(), containsString(Chicken.class.getName() + " -> "
+                    + Egg.class.getName() + " -> " + Chicken.class.getName()));
+        }
+
+        assertThat(injector.getInstance(Litter.class), is(notNullValue()));
+    }
+
+    public static class Cat {
+        final List<String> order = new ArrayList<String>();
+        int overridden;
+
+        @Inject
+        @Named("color")
+        String color;
+
+        @Inject
+        void cat() {
+            if (!subclassInjected())
+                order.add("Cat: " + color);
+        }
+
+        @Inject
+        void overridden() {
+            ++overridden;
+        }
+
+        boolean subclassInjected() {
+            return false;
+        }
+    }
+
+    public static final class Kitten
+            extends Cat {
+        @Inject
+        @Named("color")
+        String kittenColor;
+
+        @Inject
+        void kitten() {
+            order.add("Kitten: " + kittenColor);
+        }
+
+        @Inject
+        @Override
+        void overridden() {
+            ++overridden;
+        }
+
+        @Override
+        boolean subclassInjected() {
+            return null != kittenColor;
+        }
+    }
+
+    @Singleton
+    public static final class Litter {}
+
+    public static final class Owner {
+        final Provider<String> color;
+        final Set<Cat> cats;
+        int lives;
+
+        @Inject
+        public Owner(@Named("color") final Provider<String> color, final Set<Cat> cats) {
+            this.color = color;
+            this.cats = cats;
+        }
+
+        @Inject
+        void lives(@Named("lives") final int lives) {
+            this.lives = lives;
+        }
+    }
+
+    public static final class Chicken {
+        @Inject
+        public Chicken(final Egg egg) {}
+    }
+
+    public static final class Egg {
+        @Inject
+        public Egg(final Chicken chicken) {}
+    }
+}
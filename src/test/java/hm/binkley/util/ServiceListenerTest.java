@@ -0,0 +1,208 @@
+/*
+ * This is free and unencumbered software released into the public domain.
+ *
+ * Anyone is free to copy, modify, publish, use, compile, sell, or
+ * distribute this software, either in source code form or as a compiled
+ * binary, for any purpose, commercial or non-commercial, and by any
+ * means.
+ *
+ * In jurisdictions that recognize copyright laws, the author or authors
+ * of this software dedicate any and all copyright interest in the
+ * software to the public domain. We make this dedication for the benefit
+ * of the public at large and to the detriment of our heirs and
+ * successors. We intend this dedication to be an overt act of
+ * relinquishment in perpetuity of all present and future rights to this
+ * software under copyright law.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY CLAIM, DAMAGES OR
+ * OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ * ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ *
+ * For more information, please refer to <http://unlicense.org/>.
+ */
+
+package hm.binkley.util;
+
+import hm.binkley.util.ServiceBinderTest.Bob;
+import hm.binkley.util.ServiceBinderTest.Nancy;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.springframework.beans.factory.support.DefaultListableBeanFactory;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.io.IOException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.channels.spi.SelectorProvider;
+import java.util.List;
+import java.util.ServiceConfigurationError;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static hm.binkley.util.ServiceBinder.with;
+import static hm.binkley.util.ServiceListeners.Phase.DISCOVERED;
+import static java.util.Collections.singletonList;
+import static org.hamcrest.Matchers.empty;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.hasItem;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.not;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+import static org.junit.Assume.assumeThat;
+
+/**
+ * {@code ServiceListenerTest} tests {@link ServiceListener}.
+ *
+ * @author <a href="mailto:binkley@alumni.rice.edu">B. K. Oxley (binkley)</a>
+ */
+public final class ServiceListenerTest {
+    @Rule
+    public final ConfiguredLoaders loaders = new ConfiguredLoaders();
+
+    private final RecordingListener listener = new RecordingListener();
+    private URL config;
+
+    @Before
+    public void setUp() {
+        ServiceListener.add(listener);
+    }
+
+    @After
+    public void tearDown() {
+        ServiceListener.remove(listener);
+    }
+
+    @Test
+    public void shouldReportEachPhase()
+            throws IOException {
+        final ClassLoader loader = loader("# Nancy\n\n" + Nancy.class.getName() + "\n");
+
+        with(new DefaultListableBeanFactory()).bind(Bob.class, loader);
+
+        assertThat(listener.events, hasItem("discovered " + Bob.class.getName()));
+        assertThat(listener.events, hasItem("read " + config + " 1 2"));
+        assertThat(listener.events, hasItem("loaded " + Nancy.class.getName()));
+        assertThat(listener.events, hasItem("bound " + config + " 1"));
+    }
+
+    @Test
+    public void shouldReportFailures()
+            throws IOException {
+        final ClassLoader loader = loader("hm.binkley.util.Missing\n");
+
+        try {
+            with(new DefaultListableBeanFactory()).bind(Bob.class, loader);
+            fail("Did not fail");
+        } catch (final ServiceConfigurationError ignored) {
+        }
+
+        assertThat(listener.events, hasItem("failed " + config));
+    }
+
+    @Test
+    public void shouldReportProviderFactoryRejections()
+            throws IOException {
+        assumeThat(System.getProperty("java.specification.version"), is(not(equalTo("1.8"))));
+        // A JDK class in a named module, with a static provider() factory
+        final String factory = SelectorProvider.class.getName();
+        final URL config = new URL("jrt:/java.base");
+
+        try {
+            ServiceBinder.loadClass(SelectorProvider.class, getClass().getClassLoader(),
+                    new ServiceConfiguration(config, singletonList(factory)), 0);
+            fail("Expected provider() factory rejected");
+        } catch (final ServiceConfigurationError ignored) {
+        }
+
+        assertThat(listener.events, hasItem("failed " + config));
+        assertThat(listener.events,
+                hasItem("cause " + UnsupportedOperationException.class.getName()));
+    }
+
+    @Test
+    public void shouldTimeOnePassAcrossClassLoaders()
+            throws IOException {
+        final ClassLoader first = loader(Nancy.class.getName());
+        final ClassLoader second = loader(Nancy.class.getName());
+
+        with(new DefaultListableBeanFactory()).bindAcross(Bob.class, first, second);
+
+        assertThat(count("begin " + DISCOVERED), is(equalTo(1)));
+        assertThat(count("discovered " + Bob.class.getName()), is(equalTo(2)));
+    }
+
+    @Test
+    public void shouldNotReportWhenRemoved()
+            throws IOException {
+        ServiceListener.remove(listener);
+
+        with(new DefaultListableBeanFactory()).bind(Bob.class, loader(Nancy.class.getName()));
+
+        assertThat(listener.events, is(empty()));
+    }
+
+    /** A new loader so discovery is not already cached, remembering its configuration. */
+    private ClassLoader loader(final String config)
+            throws IOException {
+        final URLClassLoader loader = loaders.loader(Bob.class, config);
+        this.config = loader.findResource("META-INF/services/" + Bob.class.getName());
+        return loader;
+    }
+
+    private int count(final String event) {
+        int count = 0;
+        for (final String each : listener.events)
+            if (each.equals(event))
+                ++count;
+        return count;
+    }
+
+    private static final class RecordingListener
+            extends ServiceListener {
+        private final List<String> events = new CopyOnWriteArrayList<String>();
+
+        @Override
+        public void discovered(@Nonnull final Class<?> service,
+                @Nonnull final ClassLoader classLoader, final int configurations,
+                final int providers, final long nanos) {
+            events.add("discovered " + service.getName());
+        }
+
+        @Override
+        public void read(@Nonnull final URL config, final int providers, final int skipped,
+                final long nanos) {
+            events.add("read " + config + " " + providers + " " + skipped);
+        }
+
+        @Override
+        public void loaded(@Nonnull final Class<?> service, @Nonnull final URL config,
+                @Nonnull final Class<?> implementation, final long nanos) {
+            events.add("loaded " + implementation.getName());
+        }
+
+        @Override
+        public void bound(@Nonnull final Class<?> service, @Nonnull final URL config,
+                final int implementations, final long nanos) {
+            events.add("bound " + config + " " + implementations);
+        }
+
+        @Override
+        public void failed(@Nullable final Class<?> service, @Nullable final URL config,
+                @Nonnull final String message, @Nonnull final Exception cause) {
+            events.add("failed " + config);
+            events.add("cause " + cause.getClass().getName());
+        }
+
+        @Override
+        void begin(@Nonnull final ServiceListeners.Phase phase) {
+            events.add("begin " + phase);
+        }
+    }
+}
@@ -0,0 +1,241 @@
+/*
+ * This is free and unencumbered software released into the public domain.
+ *
+ * Anyone is free to copy, modify, publish, use, compile, sell, or
+ * distribute this software, either in source code form or as a compiled
+ * binary, for any purpose, commercial or non-commercial, and by any
+ * means.
+ *
+ * In jurisdictions that recognize copyright laws, the author or authors
+ * of this software dedicate any and all copyright interest in the
+ * software to the public domain. We make this dedication for the benefit
+ * of the public at large and to the detriment of our heirs and
+ * successors. We intend this dedication to be an overt act of
+ * relinquishment in perpetuity of all present and future rights to this
+ * software under copyright law.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY CLAIM, DAMAGES OR
+ * OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ * ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ *
+ * For more information, please refer to <http://unlicense.org/>.
+ */
+
+package hm.binkley.util;
+
+import com.google.inject.Guice;
+import hm.binkley.util.ServiceBinderTest.Bob;
+import hm.binkley.util.ServicePlugins.ChildInjectors;
+import hm.binkley.util.ServicePlugins.RegisteredBeans;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.springframework.beans.factory.support.DefaultListableBeanFactory;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.ref.WeakReference;
+import java.util.List;
+import java.util.jar.JarEntry;
+import java.util.jar.JarOutputStream;
+
+import static hm.binkley.util.WeakReferences.cleared;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.hamcrest.Matchers.empty;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.hasSize;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.not;
+import static org.junit.Assert.assertThat;
+
+/**
+ * {@code ServicePluginsTest} tests {@link ServicePlugins}.
+ *
+ * @author <a href="mailto:binkley@alumni.rice.edu">B. K. Oxley (binkley)</a>
+ */
+public final class ServicePluginsTest {
+    @Rule
+    public final TemporaryFolder folder = new TemporaryFolder();
+
+    private File directory;
+    private ServicePlugins plugins;
+
+    @Before
+    public void setUp()
+            throws IOException {
+        directory = folder.newFolder("plugins");
+    }
+
+    @After
+    public void tearDown()
+            throws IOException {
+        if (null != plugins)
+            plugins.close();
+    }
+
+    @Test
+    public void shouldAddPluginInChildInjector()
+            throws IOException {
+        final ChildInjectors injectors = new ChildInjectors(Guice.createInjector(), Bob.class);
+        plugins = new ServicePlugins(directory, new HidingClassLoader(), injectors);
+        jar(new File(directory, "plugged.jar"));
+        plugins.scan();
+
+        final List<Bob> bobs = injectors.instances(Bob.class);
+        assertThat(bobs, hasSize(1));
+        assertPlugged(bobs.get(0));
+    }
+
+    @Test
+    public void shouldRemovePluginFromChildInjectors()
+            throws IOException {
+        final ChildInjectors injectors = new ChildInjectors(Guice.createInjector(), Bob.class);
+        plugins = new ServicePlugins(directory, new HidingClassLoader(), injectors);
+        final File jar = jar(new File(directory, "plugged.jar"));
+        plugins.scan();
+        assertThat(jar.delete(), is(true));
+        plugins.scan();
+
+        assertThat(plugins.plugins(), is(empty()));
+        assertThat(injectors.instances(Bob.class), is(empty()));
+    }
+
+    @Test
+    public void shouldReleaseRemovedPluginClassLoader()
+            throws IOException, InterruptedException {
+        final ChildInjectors injectors = new ChildInjectors(Guice.createInjector(), Bob.class);
+        plugins = new ServicePlugins(directory, new HidingClassLoader(), injectors);
+        final File jar = jar(new File(directory, "plugged.jar"));
+        final WeakReference<ClassLoader> loader = plug(injectors);
+        assertThat(jar.delete(), is(true));
+        plugins.scan();
+
+        assertThat(cleared(loader), is(true));
+    }
+
+    @Test
+    public void shouldAddAndRemovePluginBeans()
+            throws IOException {
+        final DefaultListableBeanFactory beanFactory = new DefaultListableBeanFactory();
+        plugins = new ServicePlugins(directory, new HidingClassLoader(),
+                new RegisteredBeans(beanFactory, Bob.class));
+        final File jar = jar(new File(directory, "plugged.jar"));
+        plugins.scan();
+
+        assertThat(beanFactory.getBeansOfType(Bob.class).values(), hasSize(1));
+        assertPlugged(beanFactory.getBean(Bob.class));
+
+        assertThat(jar.delete(), is(true));
+        plugins.scan();
+
+        assertThat(beanFactory.getBeansOfType(Bob.class).values(), is(empty()));
+    }
+
+    @Test
+    public void shouldReloadChangedPlugin()
+            throws IOException {
+        final ChildInjectors injectors = new ChildInjectors(Guice.createInjector(), Bob.class);
+        plugins = new ServicePlugins(directory, new HidingClassLoader(), injectors);
+        final File jar = jar(new File(directory, "plugged.jar"));
+        plugins.scan();
+        final ServicePlugin before = plugins.plugins().get(0);
+        assertThat(jar.setLastModified(jar.lastModified() - 60000), is(true));
+        plugins.scan();
+
+        assertThat(plugins.plugins(), hasSize(1));
+        assertThat(plugins.plugins().get(0), is(not(equalTo(before))));
+        assertThat(injectors.instances(Bob.class), hasSize(1));
+    }
+
+    @Test
+    public void shouldNotScanOnceClosed()
+            throws IOException {
+        final ChildInjectors injectors = new ChildInjectors(Guice.createInjector(), Bob.class);
+        plugins = new ServicePlugins(directory, new HidingClassLoader(), injectors);
+        jar(new File(directory, "plugged.jar"));
+        plugins.close();
+        plugins.scan();
+
+        assertThat(plugins.plugins(), is(empty()));
+        assertThat(injectors.instances(Bob.class), is(empty()));
+    }
+
+    @Test
+    public void shouldWatchForNewPlugins()
+            throws IOException, InterruptedException {
+        final ChildInjectors injectors = new ChildInjectors(Guice.createInjector(), Bob.class);
+        plugins = new ServicePlugins(directory, new HidingClassLoader(), injectors);
+        plugins.start();
+        assertThat(plugins.plugins(), is(empty()));
+
+        final File staged = jar(folder.newFile("plugged.jar"));
+        assertThat(staged.renameTo(new File(directory, staged.getName())), is(true));
+
+        final long deadline = System.currentTimeMillis() + 30000;
+        while (plugins.plugins().isEmpty() && System.currentTimeMillis() < deadline)
+            Thread.sleep(50);
+        assertThat(injectors.instances(Bob.class), hasSize(1));
+    }
+
+    /** Adds and uses the plugin, remembering its class loader weakly. */
+    private WeakReference<ClassLoader> plug(final ChildInjectors injectors) {
+        plugins.scan();
+        assertPlugged(injectors.instances(Bob.class).get(0));
+        return new WeakReference<ClassLoader>(plugins.plugins().get(0).classLoader());
+    }
+
+    private static void assertPlugged(final Bob bob) {
+        assertThat(bob.getClass().getName(), is(equalTo(Plugged.class.getName())));
+        assertThat(bob.getClass(), is(not(equalTo((Object) Plugged.class))));
+    }
+
+    /** Writes a plugin jar holding {@link Plugged} and its service configuration. */
+    private static File jar(final File jar)
+            throws IOException {
+        final String resource = Plugged.class.getName().replace('.', '/') + ".class";
+        final JarOutputStream out = new JarOutputStream(new FileOutputStream(jar));
+        try {
+            out.putNextEntry(new JarEntry("META-INF/services/" + Bob.class.getName()));
+            out.write((Plugged.class.getName() + "\n").getBytes(UTF_8));
+            out.putNextEntry(new JarEntry(resource));
+            final InputStream in = Plugged.class.getClassLoader().getResourceAsStream(resource);
+            try {
+                final byte[] buffer = new byte[4096];
+                for (int n; -1 != (n = in.read(buffer)); )
+                    out.write(buffer, 0, n);
+            } finally {
+                in.close();
+            }
+        } finally {
+            out.close();
+        }
+        return jar;
+    }
+
+    /** Hides {@link Plugged} so the plugin class loader defines it. */
+    private static final class HidingClassLoader
+            extends ClassLoader {
+        private HidingClassLoader() {
+            super(ServicePluginsTest.class.getClassLoader());
+        }
+
+        @Override
+        protected Class<?> loadClass(final String name, final boolean resolve)
+                throws ClassNotFoundException {
+            if (Plugged.class.getName().equals(name))
+                throw new ClassNotFoundException(name);
+            return super.loadClass(name, resolve);
+        }
+    }
+
+    public static final class Plugged
+            implements Bob {}
+}
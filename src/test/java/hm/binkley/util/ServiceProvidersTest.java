@@ -0,0 +1,136 @@
+/*
+ * This is free and unencumbered software released into the public domain.
+ *
+ * Anyone is free to copy, modify, publish, use, compile, sell, or
+ * distribute this software, either in source code form or as a compiled
+ * binary, for any purpose, commercial or non-commercial, and by any
+ * means.
+ *
+ * In jurisdictions that recognize copyright laws, the author or authors
+ * of this software dedicate any and all copyright interest in the
+ * software to the public domain. We make this dedication for the benefit
+ * of the public at large and to the detriment of our heirs and
+ * successors. We intend this dedication to be an overt act of
+ * relinquishment in perpetuity of all present and future rights to this
+ * software under copyright law.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY CLAIM, DAMAGES OR
+ * OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ * ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ *
+ * For more information, please refer to <http://unlicense.org/>.
+ */
+
+package hm.binkley.util;
+
+import hm.binkley.util.ServiceBinderTest.Bob;
+import hm.binkley.util.ServiceBinderTest.Fred;
+import hm.binkley.util.ServiceBinderTest.Nancy;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.Spliterator;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+
+import static java.util.Arrays.asList;
+import static java.util.Collections.synchronizedSet;
+import static org.hamcrest.Matchers.containsInAnyOrder;
+import static org.hamcrest.Matchers.empty;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.hasSize;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.notNullValue;
+import static org.junit.Assert.assertThat;
+
+/**
+ * {@code ServiceProvidersTest} tests {@link ServiceProviders}.
+ *
+ * @author <a href="mailto:binkley@alumni.rice.edu">B. K. Oxley (binkley)</a>
+ */
+public final class ServiceProvidersTest {
+    @Test
+    public void shouldStreamImplementations() {
+        final List<Class<? extends Bob>> found = ServiceProviders
+                .stream(Bob.class, new RecordingClassLoader())
+                .collect(Collectors.<Class<? extends Bob>>toList());
+
+        assertThat(found, containsInAnyOrder(asList(Fred.class, Nancy.class).toArray()));
+    }
+
+    @Test
+    public void shouldStreamInParallelInOrder() {
+        final List<Class<? extends Bob>> serial = ServiceProviders
+                .stream(Bob.class, new RecordingClassLoader())
+                .collect(Collectors.<Class<? extends Bob>>toList());
+        final List<Class<? extends Bob>> parallel = ServiceProviders
+                .stream(Bob.class, new RecordingClassLoader()).parallel()
+                .collect(Collectors.<Class<? extends Bob>>toList());
+
+        assertThat(parallel, is(equalTo(serial)));
+    }
+
+    @Test
+    public void shouldLoadOnlyWhenAdvanced() {
+        final RecordingClassLoader loader = new RecordingClassLoader();
+        final Spliterator<Class<? extends Bob>> providers = ServiceProviders
+                .spliterator(Bob.class, loader);
+
+        assertThat(loader.loaded, is(empty()));
+
+        providers.tryAdvance(new Consumer<Class<? extends Bob>>() {
+            @Override
+            public void accept(final Class<? extends Bob> implementation) {
+            }
+        });
+
+        assertThat(loader.loaded, hasSize(1));
+    }
+
+    @Test
+    public void shouldSplitWithinConfiguration() {
+        final Spliterator<Class<? extends Bob>> rest = ServiceProviders
+                .spliterator(Bob.class, new RecordingClassLoader());
+        final Spliterator<Class<? extends Bob>> first = rest.trySplit();
+
+        assertThat(first, is(notNullValue()));
+
+        final List<Class<? extends Bob>> found = new ArrayList<Class<? extends Bob>>();
+        final Consumer<Class<? extends Bob>> add = new Consumer<Class<? extends Bob>>() {
+            @Override
+            public void accept(final Class<? extends Bob> implementation) {
+                found.add(implementation);
+            }
+        };
+        first.forEachRemaining(add);
+        rest.forEachRemaining(add);
+
+        assertThat(found, is(equalTo(ServiceProviders.stream(Bob.class)
+                .collect(Collectors.<Class<? extends Bob>>toList()))));
+    }
+
+    /** Records the service implementations asked of it, delegating to the test class loader. */
+    private static final class RecordingClassLoader
+            extends ClassLoader {
+        private final Set<String> loaded = synchronizedSet(new HashSet<String>());
+
+        private RecordingClassLoader() {
+            super(ServiceProvidersTest.class.getClassLoader());
+        }
+
+        @Override
+        protected Class<?> loadClass(final String name, final boolean resolve)
+                throws ClassNotFoundException {
+            if (name.startsWith(ServiceBinderTest.class.getName() + "$"))
+                loaded.add(name);
+            return super.loadClass(name, resolve);
+        }
+    }
+}